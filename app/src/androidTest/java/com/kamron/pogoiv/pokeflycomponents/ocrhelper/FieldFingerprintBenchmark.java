@@ -0,0 +1,177 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures how well the fingerprints of the name and candy name fields of the test info screens tell texts apart.
+ * A hit is a field matching a copy of itself with some color noise, or cropped one pixel off. A false hit is a field
+ * matching a copy of a field from a screen of another pokemon.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class FieldFingerprintBenchmark {
+
+    private static final int MAX_DISTANCE = 3;
+    private static final int NOISY_COPIES = 8;
+    private static final int NOISE = 6;
+    private static final int[][] SHIFTS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+
+    private Context mContext;
+    private final Random random = new Random(1);
+
+    private static class Field {
+        final String text;
+        final FieldFingerprint fingerprint;
+        final List<FieldFingerprint> copies = new ArrayList<>();
+
+        Field(String text, FieldFingerprint fingerprint) {
+            this.text = text;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getContext();
+    }
+
+    @Test
+    public void benchmarkName() throws IOException {
+        List<Field> fields = new ArrayList<>();
+        for (Device device : Device.values()) {
+            fields.addAll(loadFields(device, device.expectedNameArea));
+        }
+        benchmark("name", fields);
+    }
+
+    @Test
+    public void benchmarkCandyName() throws IOException {
+        List<Field> fields = new ArrayList<>();
+        for (Device device : Device.values()) {
+            fields.addAll(loadFields(device, device.expectedCandyNameArea));
+        }
+        benchmark("candy", fields);
+    }
+
+    /**
+     * Fingerprint a field of every info screen of a device, and its noisy and shifted copies.
+     */
+    private List<Field> loadFields(Device device, Rect area) throws IOException {
+        List<Field> fields = new ArrayList<>();
+        if (area.isEmpty()) {
+            return fields;
+        }
+        for (String assetFileName : mContext.getAssets().list(device.infoScreensDirPath)) {
+            if (!assetFileName.endsWith(".png")) {
+                continue; // A directory of screens for another test
+            }
+            Bitmap screen = BitmapFactory.decodeStream(
+                    mContext.getAssets().open(device.infoScreensDirPath + "/" + assetFileName));
+            Field field = new Field(getText(assetFileName), fingerprint(screen, area, 0, 0, 0));
+            for (int i = 0; i < NOISY_COPIES; i++) {
+                field.copies.add(fingerprint(screen, area, 0, 0, NOISE));
+            }
+            for (int[] shift : SHIFTS) {
+                field.copies.add(fingerprint(screen, area, shift[0], shift[1], 0));
+            }
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    /**
+     * The pokemon a screen shows, from its file name, like pidgey for pidgey_favorited.png. Screens in another
+     * language, like pidgey_de.png, show another name.
+     */
+    private static String getText(String assetFileName) {
+        String name = assetFileName.substring(0, assetFileName.length() - ".png".length());
+        if (name.endsWith("_de")) {
+            return name;
+        }
+        int end = name.indexOf('_');
+        return end < 0 ? name : name.substring(0, end);
+    }
+
+    /**
+     * Crop a field out of a screen, add noise to its colors and keep only its dark text, like OcrHelper does.
+     */
+    private int[] cropField(Bitmap screen, Rect area, int dx, int dy, int noise) {
+        int width = area.width();
+        int height = area.height();
+        int count = width * height;
+        int[] pixels = new int[count];
+        screen.getPixels(pixels, 0, width, area.left + dx, area.top + dy, width, height);
+        if (noise > 0) {
+            for (int i = 0; i < count; i++) {
+                pixels[i] = Color.rgb(addNoise(Color.red(pixels[i]), noise), addNoise(Color.green(pixels[i]), noise),
+                        addNoise(Color.blue(pixels[i]), noise));
+            }
+        }
+        PixelScratch.replaceColorsAndHash(pixels, pixels, count, 68, 105, 108, Color.WHITE, 200, true);
+        return pixels;
+    }
+
+    private int addNoise(int channel, int noise) {
+        return Math.max(0, Math.min(255, channel + random.nextInt(2 * noise + 1) - noise));
+    }
+
+    private FieldFingerprint fingerprint(Bitmap screen, Rect area, int dx, int dy, int noise) {
+        return FieldFingerprint.of(cropField(screen, area, dx, dy, noise), area.width(), area.height(), Color.WHITE);
+    }
+
+    private void benchmark(String fieldName, List<Field> fields) {
+        for (int distance = 0; distance <= MAX_DISTANCE; distance++) {
+            int hits = 0;
+            int copies = 0;
+            for (Field field : fields) {
+                for (FieldFingerprint copy : field.copies) {
+                    copies++;
+                    if (field.fingerprint.matches(copy, distance)) {
+                        hits++;
+                    }
+                }
+            }
+
+            int falseHits = 0;
+            int otherCopies = 0;
+            for (Field field : fields) {
+                for (Field other : fields) {
+                    if (field.text.equals(other.text)) {
+                        continue;
+                    }
+                    for (FieldFingerprint copy : other.copies) {
+                        otherCopies++;
+                        if (field.fingerprint.matches(copy, distance)) {
+                            falseHits++;
+                        }
+                    }
+                }
+            }
+
+            Log.i("FieldFingerprintBenchmark", fieldName + " on " + fields.size() + " fields at distance "
+                    + distance + ": hits " + hits + "/" + copies + ", false hits " + falseHits + "/" + otherCopies);
+            if (distance == OcrHelper.NAME_FINGERPRINT_DISTANCE) {
+                assertEquals(fieldName + " false hits", 0, falseHits);
+            }
+        }
+    }
+}
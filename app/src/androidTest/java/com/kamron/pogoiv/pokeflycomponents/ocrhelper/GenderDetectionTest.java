@@ -68,7 +68,8 @@ public class GenderDetectionTest {
 
                 assertNotNull(results.pokemonGenderArea);
 
-                Pokemon.Gender detectedGender = OcrHelper.getPokemonGenderFromImg(bmp, results.pokemonGenderArea);
+                Pokemon.Gender detectedGender = OcrHelper.getPokemonGenderFromImg(ScreenImage.of(bmp),
+                        results.pokemonGenderArea);
 
                 assertEquals("Gender detection error;", detectedGender, gender);
             }
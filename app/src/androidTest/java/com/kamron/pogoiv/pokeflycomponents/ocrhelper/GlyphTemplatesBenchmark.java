@@ -0,0 +1,132 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.googlecode.tesseract.android.TessBaseAPI;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares the glyph templates to Tesseract on the candy amount field of the test info screens. The templates learn
+ * from a first Tesseract pass over every field, which stands in for the amounts a user would confirm, then both read
+ * every field again. The templates only answer once the fields have shown every digit twice.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class GlyphTemplatesBenchmark {
+
+    private static final String WHITELIST = "0123456789";
+
+    private Context mContext;
+    private OcrEngine engine;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getContext();
+        File dataDir = InstrumentationRegistry.getTargetContext().getExternalFilesDir(null);
+        assumeTrue("Tesseract data not installed", dataDir != null
+                && new File(dataDir, "tessdata/eng.traineddata").exists());
+        engine = new OcrEngine(dataDir.toString(), "eng", TessBaseAPI.PageSegMode.PSM_SINGLE_LINE, WHITELIST,
+                "benchmark");
+    }
+
+    @After
+    public void tearDown() {
+        if (engine != null) {
+            engine.end();
+        }
+    }
+
+    @Test
+    public void benchmarkCandyAmount() throws IOException {
+        List<Bitmap> fields = new ArrayList<>();
+        for (Device device : Device.values()) {
+            fields.addAll(loadFields(device, device.expectedCandyAmountArea));
+        }
+        benchmark("candyAmount", fields);
+    }
+
+    /**
+     * Crop a field out of every info screen of a device and keep only its dark text, like OcrHelper does.
+     */
+    private List<Bitmap> loadFields(Device device, Rect area) throws IOException {
+        List<Bitmap> fields = new ArrayList<>();
+        if (area.isEmpty()) {
+            return fields;
+        }
+        for (String assetFileName : mContext.getAssets().list(device.infoScreensDirPath)) {
+            if (!assetFileName.endsWith(".png")) {
+                continue; // A directory of screens for another test
+            }
+            Bitmap screen = BitmapFactory.decodeStream(
+                    mContext.getAssets().open(device.infoScreensDirPath + "/" + assetFileName));
+            Bitmap field = Bitmap.createBitmap(screen, area.left, area.top, area.width(), area.height())
+                    .copy(Bitmap.Config.ARGB_8888, true);
+            int count = field.getWidth() * field.getHeight();
+            int[] pixels = new int[count];
+            field.getPixels(pixels, 0, field.getWidth(), 0, 0, field.getWidth(), field.getHeight());
+            PixelScratch.replaceColorsAndHash(pixels, pixels, count, 68, 105, 108, Color.WHITE, 90, true);
+            field.setPixels(pixels, 0, field.getWidth(), 0, 0, field.getWidth(), field.getHeight());
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    private void benchmark(String fieldName, List<Bitmap> fields) {
+        GlyphTemplates templates = new GlyphTemplates(fieldName, WHITELIST);
+        String[] tesseractTexts = new String[fields.size()];
+        long tesseractNanos = 0;
+        for (int i = 0; i < fields.size(); i++) {
+            Bitmap field = fields.get(i);
+            long start = SystemClock.elapsedRealtimeNanos();
+            tesseractTexts[i] = engine.recognize(WHITELIST, field);
+            tesseractNanos += SystemClock.elapsedRealtimeNanos() - start;
+            templates.learn(pixelsOf(field), field.getWidth(), 0, 0, field.getWidth(), field.getHeight(),
+                    Color.WHITE, tesseractTexts[i]);
+        }
+
+        long templateNanos = 0;
+        for (int i = 0; i < fields.size(); i++) {
+            Bitmap field = fields.get(i);
+            int[] pixels = pixelsOf(field);
+            long start = SystemClock.elapsedRealtimeNanos();
+            String text = templates.recognize(pixels, field.getWidth(), 0, 0, field.getWidth(), field.getHeight(),
+                    Color.WHITE);
+            templateNanos += SystemClock.elapsedRealtimeNanos() - start;
+            if (text != null) {
+                assertEquals(fieldName + " field " + i, tesseractTexts[i].replaceAll("\\s", ""), text);
+            }
+        }
+
+        int count = Math.max(1, fields.size());
+        Log.i("GlyphTemplatesBenchmark", fieldName + " on " + fields.size() + " fields: Tesseract "
+                + tesseractNanos / 1000 / count + " us per field, templates " + templateNanos / 1000 / count
+                + " us per field, " + templates);
+    }
+
+    private static int[] pixelsOf(Bitmap bitmap) {
+        int[] pixels = new int[bitmap.getWidth() * bitmap.getHeight()];
+        bitmap.getPixels(pixels, 0, bitmap.getWidth(), 0, 0, bitmap.getWidth(), bitmap.getHeight());
+        return pixels;
+    }
+}
@@ -13,19 +13,20 @@ import com.kamron.pogoiv.clipboardlogic.tokens.IVPercentageTokenMode;
 import com.kamron.pogoiv.clipboardlogic.tokens.PokemonNameToken;
 import com.kamron.pogoiv.clipboardlogic.tokens.SeparatorToken;
 import com.kamron.pogoiv.clipboardlogic.tokens.UnicodeToken;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.CalibrationProfile;
 import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames;
 import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldResults;
 import com.kamron.pogoiv.scanlogic.Data;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
+import timber.log.Timber;
+
 /**
  * A singleton class which is used to access and modify the "persistent" settings saved in phone memory.
  */
@@ -52,11 +53,14 @@ public class GoIVSettings {
     public static final String HAS_WARNED_USER_NO_SCREENREC = "GOIV_hasWarnedUserNoScreenRec";
     public static final String COPY_TO_CLIPBOARD_SHOW_TOAST = "copyToClipboardShowToast";
     public static final String AUTO_APPRAISAL_SCAN_DELAY = "autoAppraisalScanDelay";
+    public static final String SCREEN_WATCHER_FRAME_RATE = "screenWatcherFrameRate";
     public static final String AUTO_OPEN_APPRAISE_DIALOGUE = "autoOpenAppraiseDialogue";
     public static final String QUICK_IV_PREVIEW = "quick_iv_preview";
     public static final String QUICK_IV_PREVIEW_CLIPBOARD = "quick_iv_preview_clipboard";
     public static final String MANUAL_SCREEN_CALIBRATION_ACTIVE = "manual_screen_calibration_active";
     public static final String MANUAL_SCREEN_CALIBRATION_VERSION = "manual_screen_calibration_version";
+    public static final String MANUAL_SCREEN_CALIBRATION_REVISION = "manual_screen_calibration_revision";
+    public static final String IV_LOOKUP_INDEX_BUDGET = "ivLookupIndexBudget";
 
     // Increment this value when you want to make all users recalibrate GoIV
     public static int LATEST_SCREEN_CALIBRATION_VERSION = 1;
@@ -66,9 +70,26 @@ public class GoIVSettings {
     private final SharedPreferences prefs;
     private Context context;
 
+    /**
+     * The parsed screen calibration, null until it's needed and whenever the calibration changed since.
+     */
+    private volatile CalibrationProfile calibrationProfile;
+    // The preferences only keep a weak reference to their listeners
+    private final SharedPreferences.OnSharedPreferenceChangeListener calibrationListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                    if (MANUAL_SCREEN_CALIBRATION_ACTIVE.equals(key)
+                            || MANUAL_SCREEN_CALIBRATION_REVISION.equals(key)) {
+                        calibrationProfile = null;
+                    }
+                }
+            };
+
     private GoIVSettings(Context context) {
         this.context = context;
         prefs = context.getSharedPreferences(PREFS_GO_IV_SETTINGS, Context.MODE_MULTI_PROCESS);
+        prefs.registerOnSharedPreferenceChangeListener(calibrationListener);
     }
 
     public static @NonNull GoIVSettings getInstance(Context context) {
@@ -98,10 +119,32 @@ public class GoIVSettings {
         return prefs.getInt(MANUAL_SCREEN_CALIBRATION_VERSION, 0) == LATEST_SCREEN_CALIBRATION_VERSION;
     }
 
+    /**
+     * Get a number which changes every time a manual screen calibration is saved, so what was computed from the
+     * calibration values can be kept until they change.
+     */
+    public int getCalibrationRevision() {
+        return prefs.getInt(MANUAL_SCREEN_CALIBRATION_REVISION, 0);
+    }
+
     public String getCalibrationValue(String valueName) {
         return prefs.getString(valueName, "Error- no value saved");
     }
 
+    /**
+     * Get the screen calibration, parsed the first time it's needed after every change.
+     *
+     * @return The calibration, CalibrationProfile.UNCALIBRATED if the user didn't calibrate GoIV
+     */
+    public @NonNull CalibrationProfile getCalibrationProfile() {
+        CalibrationProfile profile = calibrationProfile;
+        if (profile == null) {
+            profile = CalibrationProfile.parse(prefs.getAll());
+            calibrationProfile = profile;
+        }
+        return profile;
+    }
+
     public void saveScreenCalibrationResults(ScanFieldResults results) {
         SharedPreferences.Editor editor = prefs.edit();
         editor.putString(ScanFieldNames.POKEMON_NAME_AREA,
@@ -138,7 +181,9 @@ public class GoIVSettings {
                 String.format("#%06X", (0xFFFFFF & results.infoScreenFabGreenPixelColor)));
         editor.putBoolean(GoIVSettings.MANUAL_SCREEN_CALIBRATION_ACTIVE, true);
         editor.putInt(GoIVSettings.MANUAL_SCREEN_CALIBRATION_VERSION, LATEST_SCREEN_CALIBRATION_VERSION);
+        editor.putInt(GoIVSettings.MANUAL_SCREEN_CALIBRATION_REVISION, getCalibrationRevision() + 1);
         editor.apply();
+        calibrationProfile = null; // The listener is only called later, on the main thread
     }
 
     public boolean shouldLaunchPokemonGo() {
@@ -299,6 +344,24 @@ public class GoIVSettings {
         return prefs.getInt(AUTO_APPRAISAL_SCAN_DELAY, 400);
     }
 
+    /**
+     * Get how many frames of the screen recording are checked for the pokemon screen per second.
+     *
+     * @return The frame rate, 0 to only check the screen after the user touched it.
+     */
+    public int getScreenWatcherFrameRate() {
+        return prefs.getInt(SCREEN_WATCHER_FRAME_RATE, 10);
+    }
+
+    /**
+     * Get how much memory the precomputed IV lookup indexes are allowed to use.
+     *
+     * @return The memory budget in bytes.
+     */
+    public int getIVLookupIndexBudget() {
+        return prefs.getInt(IV_LOOKUP_INDEX_BUDGET, 4) * 1024 * 1024;
+    }
+
     @SuppressWarnings("unchecked")
     public Map<String, String> loadAppraisalCache() {
         Map<String, String> appraisalCache = new HashMap<>();
@@ -330,30 +393,20 @@ public class GoIVSettings {
         return appraisalCache;
     }
 
-    public void saveAppraisalCache(Map<String, String> appraisalCache) {
+    /**
+     * Delete the appraisal cache file of older versions, once its entries moved to the OCR cache.
+     */
+    public void deleteAppraisalCache() {
         File fileName = new File(context.getCacheDir(), "appraisalCache.ser");
-
-        FileOutputStream fos = null;
-        ObjectOutputStream out = null;
-        try {
-            fos = new FileOutputStream(fileName);
-            out = new ObjectOutputStream(fos);
-            out.writeObject(appraisalCache);
-        } catch (Exception ignored) {
-            //Fall-through
-        } finally {
-            try {
-                if (fos != null) {
-                    fos.flush();
-                    fos.close();
-                }
-                if (out != null) {
-                    out.flush();
-                    out.close();
-                }
-            } catch (Exception ignored) {
-                //Fall-through
-            }
+        if (!fileName.delete()) {
+            Timber.w("Could not delete %s", fileName);
         }
     }
+
+    /**
+     * Get the file which holds the OCR results of earlier scans.
+     */
+    public File getOcrCacheFile() {
+        return new File(context.getCacheDir(), "ocrCache.log");
+    }
 }
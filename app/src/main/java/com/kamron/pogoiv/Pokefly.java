@@ -21,6 +21,7 @@ import android.os.IBinder;
 import android.support.annotation.ColorInt;
 import android.support.annotation.ColorRes;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.content.LocalBroadcastManager;
 import android.support.v7.widget.DefaultItemAnimator;
@@ -58,11 +59,17 @@ import com.kamron.pogoiv.pokeflycomponents.GoIVNotificationManager;
 import com.kamron.pogoiv.pokeflycomponents.IVPopupButton;
 import com.kamron.pogoiv.pokeflycomponents.IVPreviewPrinter;
 import com.kamron.pogoiv.pokeflycomponents.ScreenWatcher;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.CalibrationProfile;
 import com.kamron.pogoiv.pokeflycomponents.ocrhelper.OcrHelper;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanExecutor;
 import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanPoint;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScreenImage;
+import com.kamron.pogoiv.scanlogic.ArcGeometry;
 import com.kamron.pogoiv.scanlogic.CPRange;
 import com.kamron.pogoiv.scanlogic.Data;
 import com.kamron.pogoiv.scanlogic.IVCombination;
+import com.kamron.pogoiv.scanlogic.IVCombinationSet;
+import com.kamron.pogoiv.scanlogic.IVFilter;
 import com.kamron.pogoiv.scanlogic.IVScanResult;
 import com.kamron.pogoiv.scanlogic.PokeInfoCalculator;
 import com.kamron.pogoiv.scanlogic.PokeSpam;
@@ -70,6 +77,7 @@ import com.kamron.pogoiv.scanlogic.Pokemon;
 import com.kamron.pogoiv.scanlogic.PokemonNameCorrector;
 import com.kamron.pogoiv.scanlogic.PokemonShareHandler;
 import com.kamron.pogoiv.scanlogic.ScanContainer;
+import com.kamron.pogoiv.scanlogic.ScanHistoryStore;
 import com.kamron.pogoiv.scanlogic.ScanResult;
 import com.kamron.pogoiv.scanlogic.UpgradeCost;
 import com.kamron.pogoiv.utils.GuiUtil;
@@ -80,6 +88,7 @@ import com.kamron.pogoiv.widgets.recyclerviews.adapters.IVResultsAdapter;
 import java.io.File;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.List;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
@@ -140,7 +149,7 @@ public class Pokefly extends Service {
     private SharedPreferences sharedPref;
     private ScreenGrabber screen;
     private ScreenShotHelper screenShotHelper;
-    private OcrHelper ocr;
+    private ScanExecutor scanExecutor;
 
 
     private boolean infoShownSent = false;
@@ -430,8 +439,8 @@ public class Pokefly extends Service {
         return clipboardTokenHandler;
     }
 
-    public OcrHelper getOcr() {
-        return ocr;
+    public ScanExecutor getScanExecutor() {
+        return scanExecutor;
     }
 
     public int getTrainerLevel() {
@@ -499,14 +508,14 @@ public class Pokefly extends Service {
             /* Assumes MainActivity initialized ScreenGrabber before starting this service. */
             if (!GoIVSettings.getInstance(this).isManualScreenshotModeEnabled()) {
                 screen = ScreenGrabber.getInstance();
-                autoAppraisal = new AutoAppraisal(screen, this, attDefStaLayout,
+                autoAppraisal = new AutoAppraisal(screen, scanExecutor, this, attDefStaLayout,
                         attCheckbox, defCheckbox, staCheckbox,
                         appraisalIVRangeGroup, appraisalStatsGroup);
                 screenWatcher = new ScreenWatcher(this, appraisalBox, autoAppraisal);
                 screenWatcher.watchScreen();
 
             } else {
-                screenShotHelper = ScreenShotHelper.start(Pokefly.this);
+                screenShotHelper = ScreenShotHelper.start(Pokefly.this, scanExecutor);
             }
             goIVNotificationManager.showRunningNotification();
         }
@@ -569,10 +578,7 @@ public class Pokefly extends Service {
 
         if (!GoIVSettings.getInstance(this).isManualScreenshotModeEnabled()) {
             screenWatcher.unwatchScreen();
-            if (screen != null) {
-                screen.exit();
-                screen = null;
-            }
+            autoAppraisal.stop();
         } else {
             screenShotHelper.stop();
             screenShotHelper = null;
@@ -580,9 +586,23 @@ public class Pokefly extends Service {
         ivButton.setShown(false, infoShownSent);
         hideInfoLayoutArcPointer();
 
-        ocr.exit();
-        //Now ocr contains an invalid instance hence let's clear it.
-        ocr = null;
+        // The scans grab the screen, so only release it once they're done
+        final ScreenGrabber scannedScreen = screen;
+        if (scannedScreen != null) {
+            scannedScreen.detach();
+            screen = null;
+        }
+        scanExecutor.shutdown(new Runnable() {
+            @Override public void run() {
+                if (scannedScreen != null) {
+                    scannedScreen.exit();
+                }
+            }
+        });
+        //Now scanExecutor can't run any more scans hence let's clear it.
+        scanExecutor = null;
+
+        ScanHistoryStore.getInstance(this).flush();
 
         running = false;
         LocalBroadcastManager.getInstance(this).sendBroadcast(new Intent(ACTION_UPDATE_UI));
@@ -627,14 +647,15 @@ public class Pokefly extends Service {
      */
     private void setArcPointer(double pokeLevel) {
 
+        ArcGeometry arc = Data.getArcGeometry();
         int index = Data.maxPokeLevelToIndex(pokeLevel);
 
         //If the pokemon is overleveled (Raid catch or weather modifier the arc indicator will be stuck at max)
-        if (index >= Data.arcX.length) {
-            index = Data.arcX.length - 1;
+        if (index >= arc.getPointCount()) {
+            index = arc.getPointCount() - 1;
         }
-        arcParams.x = Data.arcX[index] - arcParams.width / 2;
-        arcParams.y = Data.arcY[index] - arcParams.height / 2 - statusBarHeight;
+        arcParams.x = arc.getX(index) - arcParams.width / 2;
+        arcParams.y = arc.getY(index) - arcParams.height / 2 - statusBarHeight;
         //That is, (int) (arcCenter + (radius * Math.cos(angleInRadians))) and
         //(int) (arcInitialY + (radius * Math.sin(angleInRadians))).
         windowManager.updateViewLayout(arcPointer, arcParams);
@@ -1051,18 +1072,21 @@ public class Pokefly extends Service {
 
         IVScanResult ivScanResult = pokeInfoCalculator.getIVPossibilities(pokemon, estimatedPokemonLevelRange,
                 pokemonHP.get(), pokemonCP.get(), pokemonGender, isLucky);
+        ScanContainer.scanContainer.addCurrScanToHistory(pokemonUniqueID);
+        learnConfirmedNumbers(pokemonCP.get(), pokemonHP.get(), pokemonCandy);
 
-        refineByAvailableAppraisalInfo(ivScanResult);
-        refineByEggRaidInformation(ivScanResult);
+        refineByAvailableInformation(ivScanResult);
 
         //Dont run clipboard logic if scan failed - some tokens might crash the program.
-        if (ivScanResult.iVCombinations.size() > 0) {
+        if (ivScanResult.getCount() > 0) {
             addClipboardInfoIfSettingOn(ivScanResult);
+            if (!ScanContainer.scanContainer.isScanRefinable()) {
+                addEarlierScansFromHistory(ivScanResult, pokemonUniqueID);
+            }
+            ScanHistoryStore.getInstance(this).append(ivScanResult, pokemonUniqueID);
         }
         populateResultsBox(ivScanResult);
-        boolean enableCompare = ScanContainer.scanContainer.prevScan != null;
-        exResCompare.setEnabled(enableCompare);
-        exResCompare.setTextColor(getColorC(enableCompare ? R.color.colorPrimary : R.color.unimportantText));
+        updateCompareButton();
 
         moveOverlay(false); // We don't want overlay to stay on top if user had appraisal box
         closeKeyboard();
@@ -1070,17 +1094,55 @@ public class Pokefly extends Service {
     }
 
     /**
-     * Deletes impossible combinations from the ivScanResult that comes from the knowledge that a pokemon was aquired
-     * from an egg or a raid. Pokemon from eggs and raids cannot have stats lower than 10.
-     *
-     * @param ivScanResult The ivscanresult object to remove the impossible combinations from.
+     * Let the OCR learn what the numbers the user just confirmed look like, so it reads them faster next time.
      */
-    private void refineByEggRaidInformation(IVScanResult ivScanResult) {
-        if (eggRaidSwitch.isChecked()) {
-            ivScanResult.refineByEggRaid();
-        }
+    private void learnConfirmedNumbers(final int cp, final int hp, final Optional<Integer> candyAmount) {
+        scanExecutor.submit(new ScanExecutor.ScanTask<Void>() {
+            @Override public Void run(@NonNull OcrHelper ocr) {
+                ocr.learnConfirmedNumbers(cp, hp, candyAmount);
+                return null;
+            }
+        }, new ScanExecutor.ScanCallback<Void>() {
+            @Override public void onResult(@Nullable Void result) {
+            }
+        });
+    }
+
+    private void updateCompareButton() {
+        boolean enableCompare = ScanContainer.scanContainer.isScanRefinable();
+        exResCompare.setEnabled(enableCompare);
+        exResCompare.setTextColor(getColorC(enableCompare ? R.color.colorPrimary : R.color.unimportantText));
     }
 
+    /**
+     * Look up the scans of this pokemon from earlier sessions, and let the user compare against them once they're
+     * read, as long as the result is still shown.
+     */
+    private void addEarlierScansFromHistory(final IVScanResult ivScanResult, @Nullable String uniqueID) {
+        if (uniqueID == null || uniqueID.isEmpty()) {
+            return;
+        }
+        // Records appended from now on are this scan
+        final long scanTime = System.currentTimeMillis();
+        ScanHistoryStore.getInstance(this).lookupByUniqueID(uniqueID, new ScanHistoryStore.LookupCallback() {
+            @Override public void onRecords(@NonNull List<ScanHistoryStore.Record> records) {
+                if (ScanContainer.scanContainer.currScan != ivScanResult) {
+                    return;
+                }
+                List<IVScanResult> earlierScans = new ArrayList<>();
+                for (ScanHistoryStore.Record record : records) {
+                    Pokemon pokemon = record.getPokemon(pokeInfoCalculator);
+                    if (record.timestamp < scanTime && pokemon != null) {
+                        earlierScans.add(record.toIVScanResult(pokemon));
+                    }
+                }
+                if (ScanContainer.scanContainer.addEarlierScans(earlierScans)) {
+                    populatePrevScanNarrowing();
+                    updateCompareButton();
+                }
+            }
+        });
+    }
 
     /**
      * Closes the android keyboard... But this method only works if focus is on a direct child of infolayout.
@@ -1162,21 +1224,29 @@ public class Pokefly extends Service {
     }
 
     /**
-     * Refines the combinations in an ivscanresult by reading the input
-     * in the appraisalbox and calling the appropriate methods in ivscanresults.refineX
+     * Refines the combinations in an ivscanresult by reading the input in the appraisalbox and the egg/raid switch,
+     * and applying all the matching filters in a single ivscanresult.refine pass.
      *
      * @param ivScanResult the scan result to refine
      */
-    private void refineByAvailableAppraisalInfo(IVScanResult ivScanResult) {
+    private void refineByAvailableInformation(IVScanResult ivScanResult) {
+        ArrayList<IVFilter> filters = new ArrayList<>();
 
         if (attCheckbox.isChecked() || defCheckbox.isChecked() || staCheckbox.isChecked()) {
-            ivScanResult.refineByHighest(attCheckbox.isChecked(), defCheckbox.isChecked(), staCheckbox.isChecked());
+            filters.add(IVFilter.highestStats(attCheckbox.isChecked(), defCheckbox.isChecked(),
+                    staCheckbox.isChecked()));
         }
 
-        ivScanResult.refineByAppraisalPercentageRange(getSelectedAppraiseIVRangeValue());
+        filters.add(IVFilter.appraisalPercentageRange(getSelectedAppraiseIVRangeValue()));
 
-        ivScanResult.refineByAppraisalIVRange(getSelectedAppraiseStatRangeValue());
+        filters.add(IVFilter.appraisalIVRange(getSelectedAppraiseStatRangeValue()));
 
+        if (eggRaidSwitch.isChecked()) {
+            // Pokemon from eggs and raids cannot have stats lower than 10.
+            filters.add(IVFilter.EGG_RAID);
+        }
+
+        ivScanResult.refine(filters.toArray(new IVFilter[filters.size()]));
     }
 
     /**
@@ -1281,7 +1351,6 @@ public class Pokefly extends Service {
      * Sets all the information in the result box.
      */
     private void populateResultsBox(IVScanResult ivScanResult) {
-        ivScanResult.sortCombinations();
         populateResultsHeader(ivScanResult);
 
 
@@ -1376,7 +1445,7 @@ public class Pokefly extends Service {
         tvAvgIV.setText(getString(R.string.avg));
 
         resultsCombinations.setText(
-                String.format(getString(R.string.possible_iv_combinations), ivScanResult.iVCombinations.size()));
+                String.format(getString(R.string.possible_iv_combinations), ivScanResult.getCount()));
 
 
         populateAllIvPossibilities(ivScanResult);
@@ -1403,7 +1472,7 @@ public class Pokefly extends Service {
         tvAvgIV.setText(getString(R.string.avg));
 
         resultsCombinations.setText(
-                String.format(getString(R.string.possible_iv_combinations), ivScanResult.iVCombinations.size()));
+                String.format(getString(R.string.possible_iv_combinations), ivScanResult.getCount()));
 
         seeAllPossibilities.setVisibility(View.GONE);
         correctCPorLevel.setVisibility(View.VISIBLE);
@@ -1416,13 +1485,14 @@ public class Pokefly extends Service {
         llMaxIV.setVisibility(View.GONE);
         llMinIV.setVisibility(View.GONE);
         tvAvgIV.setText(getString(R.string.iv));
-        resultsAttack.setText(String.valueOf(ivScanResult.iVCombinations.get(0).att));
-        resultsDefense.setText(String.valueOf(ivScanResult.iVCombinations.get(0).def));
-        resultsHP.setText(String.valueOf(ivScanResult.iVCombinations.get(0).sta));
+        IVCombination combination = ivScanResult.getIVCombinations().get(0);
+        resultsAttack.setText(String.valueOf(combination.att));
+        resultsDefense.setText(String.valueOf(combination.def));
+        resultsHP.setText(String.valueOf(combination.sta));
 
-        GuiUtil.setTextColorByIV(resultsAttack, ivScanResult.iVCombinations.get(0).att);
-        GuiUtil.setTextColorByIV(resultsDefense, ivScanResult.iVCombinations.get(0).def);
-        GuiUtil.setTextColorByIV(resultsHP, ivScanResult.iVCombinations.get(0).sta);
+        GuiUtil.setTextColorByIV(resultsAttack, combination.att);
+        GuiUtil.setTextColorByIV(resultsDefense, combination.def);
+        GuiUtil.setTextColorByIV(resultsHP, combination.sta);
 
         llSingleMatch.setVisibility(View.VISIBLE);
         llMultipleIVMatches.setVisibility(View.GONE);
@@ -1667,7 +1737,7 @@ public class Pokefly extends Service {
         int low = 0;
         int ave = 0;
         int high = 0;
-        if (ivScanResult.iVCombinations.size() != 0) {
+        if (ivScanResult.getCount() != 0) {
             low = ivScanResult.getLowestIVCombination().percentPerfect;
             ave = ivScanResult.getAveragePercent();
             high = ivScanResult.getHighestIVCombination().percentPerfect;
@@ -1677,7 +1747,7 @@ public class Pokefly extends Service {
         GuiUtil.setTextColorByPercentage(resultsMaxPercentage, high);
 
 
-        if (ivScanResult.iVCombinations.size() > 0) {
+        if (ivScanResult.getCount() > 0) {
             resultsMinPercentage.setText(getString(R.string.percent, low));
             resultsAvePercentage.setText(getString(R.string.percent, ave));
             resultsMaxPercentage.setText(getString(R.string.percent, high));
@@ -1734,12 +1804,11 @@ public class Pokefly extends Service {
     @OnClick(R.id.exResCompare)
     public void reduceScanByComparison() {
         IVScanResult thisScan = ScanContainer.scanContainer.currScan;
-        IVScanResult prevScan = ScanContainer.scanContainer.prevScan;
-        if (prevScan != null) {
-            ArrayList<IVCombination> newResult = ScanContainer.scanContainer.getLatestIVIntersection();
+        if (ScanContainer.scanContainer.isScanRefinable()) {
+            IVCombinationSet newResult = ScanContainer.scanContainer.getLatestIVIntersection();
             // Since the only change was an intersection, if the sizes are equal the content's also equal.
-            boolean changed = newResult.size() != thisScan.iVCombinations.size();
-            thisScan.iVCombinations = newResult;
+            boolean changed = newResult.size() != thisScan.getCount();
+            thisScan.refineByIntersection(newResult);
             if (changed) {
                 addClipboardInfoIfSettingOn(thisScan);
                 populateResultsBox(thisScan);
@@ -1830,6 +1899,45 @@ public class Pokefly extends Service {
         }
     }
 
+    private static final int MAX_OTHER_SPECIES_CANDIDATES = 5;
+
+    /**
+     * Fills the input spinner with the evolution line of the pokemon guessed from the scanned name, and selects the
+     * guess. If the scanned name isn't an exact match, the scanned CP and HP help out:
+     * - If the guessed pokemon can't have them, the pokemon of the same evolution line which explains them with the
+     *   most IV combinations is selected instead.
+     * - If none of the evolution line can, the species which explain them best are offered after the evolution line.
+     *   The guess stays selected, a close name is still a better hint than a CP and HP many species can have.
+     *
+     * @param possiblePoke The pokemon guessed from the scanned name
+     */
+    private void updatePokeInputSpinner(PokemonNameCorrector.PokeDist possiblePoke) {
+        Pokemon selectedPokemon = possiblePoke.pokemon;
+        ArrayList<Pokemon> pokemons = pokeInfoCalculator.getEvolutionLine(selectedPokemon);
+        if (possiblePoke.dist != 0 && pokemonCP.isPresent() && pokemonHP.isPresent()) {
+            List<PokeInfoCalculator.SpeciesMatch> matches = pokeInfoCalculator.getPokemonMatchingCpAndHp(
+                    pokemonCP.get(), pokemonHP.get(), estimatedPokemonLevelRange, possiblePoke.pokemon);
+            if (!matches.isEmpty()) {
+                boolean guessMatches = false;
+                for (PokeInfoCalculator.SpeciesMatch match : matches) {
+                    guessMatches |= match.pokemon == possiblePoke.pokemon;
+                }
+                if (!guessMatches) {
+                    selectedPokemon = matches.get(0).pokemon;
+                }
+            } else {
+                matches = pokeInfoCalculator.getPokemonMatchingCpAndHp(pokemonCP.get(), pokemonHP.get(),
+                        estimatedPokemonLevelRange, null);
+                for (int i = 0; i < matches.size() && i < MAX_OTHER_SPECIES_CANDIDATES; i++) {
+                    pokemons.add(matches.get(i).pokemon);
+                }
+            }
+        }
+
+        pokeInputSpinnerAdapter.updatePokemonList(pokemons);
+        pokeInputSpinner.setSelection(pokeInputSpinnerAdapter.getPosition(selectedPokemon));
+    }
+
     /**
      * showInfoLayout
      * Shows the info layout once a scan is complete. Allows the user to change any data and then
@@ -1856,10 +1964,7 @@ public class Pokefly extends Service {
             resetToSpinner(); //always have the input as spinner as default
 
             autoCompleteTextView1.setText("");
-            pokeInputSpinnerAdapter.updatePokemonList(
-                    pokeInfoCalculator.getEvolutionLine(possiblePoke.pokemon));
-            int selection = pokeInputSpinnerAdapter.getPosition(possiblePoke.pokemon);
-            pokeInputSpinner.setSelection(selection);
+            updatePokeInputSpinner(possiblePoke);
 
             pokemonHPEdit.setText(optionalIntToString(pokemonHP));
             pokemonCPEdit.setText(optionalIntToString(pokemonCP));
@@ -1899,42 +2004,69 @@ public class Pokefly extends Service {
             externalFilesDir = getFilesDir();
         }
         String extDir = externalFilesDir.toString();
-        ocr = OcrHelper.init(extDir, pokeInfoCalculator, GoIVSettings.getInstance(this), getResources());
+        scanExecutor = new ScanExecutor(extDir, pokeInfoCalculator, GoIVSettings.getInstance(this), getResources());
     }
 
 
     /**
      * scanPokemon
-     * Performs OCR on an image of a pokemon and sends the pulled info to PokeFly to display.
+     * Performs OCR on an image of a pokemon on the scan thread and sends the pulled info to PokeFly to display.
      *
-     * @param pokemonImage   The image of the pokemon
+     * @param pokemonImage   Provides the image of the pokemon on the scan thread, returns null if there's no image.
+     *                       The image is closed once scanned.
      * @param screenShotPath The screenshot path if it is a file, used to delete once checked
      */
-    private void scanPokemon(@NonNull Bitmap pokemonImage, @NonNull Optional<String> screenShotPath) {
+    private void scanPokemon(@NonNull final ScanExecutor.ScanTask<ScreenImage> pokemonImage,
+                             @NonNull final Optional<String> screenShotPath) {
         //WARNING: this method *must* always send an intent at the end, no matter what, to avoid the application
         // hanging.
 
-        Intent info = Pokefly.createNoInfoIntent();
-        try {
-            ScanResult res = ocr.scanPokemon(GoIVSettings.getInstance(this), pokemonImage, trainerLevel);
-            if (res.isFailed()) {
-                Toast.makeText(Pokefly.this, getString(R.string.scan_pokemon_failed), Toast.LENGTH_SHORT).show();
+        final CalibrationProfile calibration = GoIVSettings.getInstance(this).getCalibrationProfile();
+        final int scanTrainerLevel = trainerLevel;
+        scanExecutor.submit(new ScanExecutor.ScanTask<ScanResult>() {
+            @Override public ScanResult run(@NonNull OcrHelper ocr) throws Exception {
+                ScreenImage screenImage = pokemonImage.run(ocr);
+                if (screenImage == null) {
+                    return null;
+                }
+                try {
+                    return ocr.scanPokemon(calibration, screenImage, scanTrainerLevel);
+                } finally {
+                    screenImage.close();
+                }
             }
-            Pokefly.populateInfoIntent(info, res, screenShotPath);
-        } finally {
-            LocalBroadcastManager.getInstance(Pokefly.this).sendBroadcast(info);
-        }
+        }, new ScanExecutor.ScanCallback<ScanResult>() {
+            @Override public void onResult(@Nullable ScanResult res) {
+                Intent info = Pokefly.createNoInfoIntent();
+                if (res != null) {
+                    if (res.isFailed()) {
+                        Toast.makeText(Pokefly.this, getString(R.string.scan_pokemon_failed), Toast.LENGTH_SHORT)
+                                .show();
+                    }
+                    Pokefly.populateInfoIntent(info, res, screenShotPath);
+                }
+                LocalBroadcastManager.getInstance(Pokefly.this).sendBroadcast(info);
+            }
+
+            @Override public void onCancelled() {
+                LocalBroadcastManager.getInstance(Pokefly.this).sendBroadcast(Pokefly.createNoInfoIntent());
+            }
+        });
     }
 
     /**
      * Called by intent from pokefly, captures the screen and runs it through scanPokemon.
      */
     public void takeScreenshot() {
-        Bitmap bmp = screen.grabScreen();
-        if (bmp == null) {
+        final ScreenGrabber screenGrabber = screen;
+        if (screenGrabber == null) {
             return;
         }
-        scanPokemon(bmp, Optional.<String>absent());
+        scanPokemon(new ScanExecutor.ScanTask<ScreenImage>() {
+            @Override public ScreenImage run(@NonNull OcrHelper ocr) {
+                return screenGrabber.grabScreenImage();
+            }
+        }, Optional.<String>absent());
     }
 
     /**
@@ -1944,7 +2076,7 @@ public class Pokefly extends Service {
     private final BroadcastReceiver processBitmap = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            Bitmap bitmap = intent.getParcelableExtra(KEY_BITMAP);
+            final Bitmap bitmap = intent.getParcelableExtra(KEY_BITMAP);
             if (bitmap == null) {
                 return;
             }
@@ -1956,17 +2088,22 @@ public class Pokefly extends Service {
                 screenShotPath = Optional.absent();
             }
 
-            // this should allow processing of images where the displaymetrics don't match, for example a different
-            // phone, it is known that the red dot might not display correctly.
-            if (displayMetrics.heightPixels != bitmap.getHeight() || displayMetrics.widthPixels != bitmap.getWidth()) {
-                Matrix matrix = new Matrix();
-                float ratio = displayMetrics.widthPixels / (float) bitmap.getWidth();
-                matrix.postScale(ratio, ratio);
-                bitmap = Bitmap.createBitmap(bitmap, 0, 0, displayMetrics.widthPixels, displayMetrics.heightPixels,
-                        matrix, true);
-            }
-
-            scanPokemon(bitmap, screenShotPath);
+            final int widthPixels = displayMetrics.widthPixels;
+            final int heightPixels = displayMetrics.heightPixels;
+            scanPokemon(new ScanExecutor.ScanTask<ScreenImage>() {
+                @Override public ScreenImage run(@NonNull OcrHelper ocr) {
+                    // this should allow processing of images where the displaymetrics don't match, for example a
+                    // different phone, it is known that the red dot might not display correctly.
+                    if (heightPixels != bitmap.getHeight() || widthPixels != bitmap.getWidth()) {
+                        Matrix matrix = new Matrix();
+                        float ratio = widthPixels / (float) bitmap.getWidth();
+                        matrix.postScale(ratio, ratio);
+                        return ScreenImage.of(
+                                Bitmap.createBitmap(bitmap, 0, 0, widthPixels, heightPixels, matrix, true));
+                    }
+                    return ScreenImage.of(bitmap);
+                }
+            }, screenShotPath);
         }
     };
 
@@ -2,7 +2,6 @@ package com.kamron.pogoiv;
 
 import android.annotation.TargetApi;
 import android.graphics.Bitmap;
-import android.graphics.Color;
 import android.graphics.PixelFormat;
 import android.graphics.Point;
 import android.graphics.Rect;
@@ -12,13 +11,18 @@ import android.media.Image;
 import android.media.ImageReader;
 import android.media.projection.MediaProjection;
 import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
 import android.util.DisplayMetrics;
 
-import java.nio.ByteBuffer;
-import java.util.concurrent.TimeUnit;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScreenImage;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScreenPixels;
 
 import timber.log.Timber;
 
@@ -27,21 +31,69 @@ import timber.log.Timber;
  */
 public class ScreenGrabber {
 
+    /**
+     * Receives the frames of the screen while they're watched, see watchFrames.
+     */
+    public interface FrameListener {
+        /**
+         * Called on the frame thread for every new frame of the screen. The frame is only valid during the call, and
+         * is scaled down: read a few pixels from it, grab the screen to scan it.
+         */
+        @WorkerThread
+        void onFrame(@NonNull ScreenPixels frame);
+    }
+
+    /**
+     * The watched frames are this many times smaller than the screen in each direction. The screen is recognized from
+     * pixels inside areas of a single color, which keep their color when the frame is scaled down.
+     */
+    private static final int WATCHER_SCALE = 4;
+    /**
+     * How long the full resolution display keeps rendering after a grab, so that the grabs of a scan don't each wait
+     * for it to render a first frame.
+     */
+    private static final long CAPTURE_LINGER_MS = 2000;
+    /**
+     * How long a grab waits for the full resolution display to render a first frame, see prepareGrab.
+     */
+    private static final long FIRST_FRAME_TIMEOUT_MS = 500;
+
     private static ScreenGrabber instance = null;
     private ImageReader imageReader;
     private MediaProjection projection = null;
     private DisplayMetrics rawDisplayMetrics;
     private VirtualDisplay virtualDisplay;
 
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Object captureLock = new Object();
+    private boolean capturing = false; // Guarded by captureLock
+    private final Runnable stopCapture = new Runnable() {
+        @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+        @Override public void run() {
+            synchronized (captureLock) {
+                if (virtualDisplay != null) {
+                    virtualDisplay.setSurface(null);
+                }
+                capturing = false;
+            }
+        }
+    };
+
+    private ImageReader watcherReader;
+    private VirtualDisplay watcherDisplay;
+    private HandlerThread frameThread;
+
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     private ScreenGrabber(MediaProjection mediaProjection, DisplayMetrics raw) {
         rawDisplayMetrics = raw;
         projection = mediaProjection;
+        // A scan holds one image until it's done, while grabPixels needs two more for acquireLatestImage
         imageReader = ImageReader.newInstance(rawDisplayMetrics.widthPixels, rawDisplayMetrics.heightPixels,
-                PixelFormat.RGBA_8888, 2);
+                PixelFormat.RGBA_8888, 3);
+        // The display only renders into the ImageReader while something is grabbed, see startCapture
         virtualDisplay = projection.createVirtualDisplay("screen-mirror", rawDisplayMetrics.widthPixels,
                 rawDisplayMetrics.heightPixels,
-                rawDisplayMetrics.densityDpi, DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR, imageReader.getSurface(),
+                rawDisplayMetrics.densityDpi, DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR, null,
                 null, null);
     }
 
@@ -65,6 +117,8 @@ public class ScreenGrabber {
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     public void exit() {
         if (projection != null) {
+            unwatchFrames();
+            mainHandler.removeCallbacks(stopCapture);
             virtualDisplay.release();
             virtualDisplay = null;
             imageReader.close();
@@ -72,113 +126,277 @@ public class ScreenGrabber {
             projection.stop();
             projection = null;
             rawDisplayMetrics = null;
+            detach();
+        }
+    }
+
+    /**
+     * Stop handing out this instance, so init creates a new one, while the scans which still use it finish. Call exit
+     * once they're done.
+     */
+    public void detach() {
+        if (instance == this) {
             instance = null;
         }
     }
 
+    /**
+     * Make the full resolution display render into the ImageReader, until CAPTURE_LINGER_MS after the latest call.
+     *
+     * @return Whether the display only starts rendering now, so that the ImageReader has no frame of the screen yet
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private boolean startCapture() {
+        synchronized (captureLock) {
+            mainHandler.removeCallbacks(stopCapture);
+            mainHandler.postDelayed(stopCapture, CAPTURE_LINGER_MS);
+            if (capturing) {
+                return false;
+            }
+            // Frames left over from the last time the display rendered are of a screen that's long gone
+            try {
+                Image stale = imageReader.acquireLatestImage();
+                if (stale != null) {
+                    stale.close();
+                }
+            } catch (IllegalStateException e) {
+                Timber.e(e);
+            }
+            virtualDisplay.setSurface(imageReader.getSurface());
+            capturing = true;
+            return true;
+        }
+    }
+
+    /**
+     * Make the full resolution display render ahead of a grab expected within CAPTURE_LINGER_MS, for example after
+     * the user touched the screen, so that the grab finds a frame instead of waiting for the first one.
+     */
+    public void prepareGrab() {
+        try {
+            startCapture();
+        } catch (Exception exception) {
+            Timber.e(exception);
+        }
+    }
+
     @WorkerThread
-    public @Nullable Bitmap grabScreen() {
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private @Nullable Image acquireLatestImage() {
         Image image = null;
-        Bitmap bmp = null;
         Integer retries = 60; // Retry for an entire second (given the rendering speed of 60fps)
+        boolean firstFrame = startCapture();
 
         while (retries > 0) {
             try {
                 //Note: imageReader shouldn't be null, but apparently sometimes is.
                 //Let's allow this to still happen.
-                image = imageReader.acquireLatestImage();
+                image = firstFrame ? awaitFirstFrame() : imageReader.acquireLatestImage();
                 break;
             } catch (Exception exception) {
                 Timber.e("Error thrown in grabScreen() - acquireLatestImage()");
                 Timber.e(exception);
+                retries--;
             }
-            // If the screenshot failed, wait 16 milliseconds (1/60 seconds, the duration of a frame at 60fps).
-            // This avoid useless and very fast executions (100 loops on a n-GHz lasts less then a nanosecond) because
-            // a new video frame will never be available in time. This also greatly reduce battery drain.
-            try {
-                TimeUnit.MILLISECONDS.wait(16);
-            } catch (InterruptedException e) {
-                Timber.e(e);
-            }
-            retries--;
+            // If the screenshot failed, wait 16 milliseconds (1/60 seconds, the duration of a frame at 60fps). This
+            // avoid useless and very fast executions because a new video frame will never be available in time. This
+            // also greatly reduce battery drain.
+            SystemClock.sleep(16);
         }
-        if (image != null) {
-            final Image.Plane[] planes = image.getPlanes();
-            final ByteBuffer buffer = planes[0].getBuffer();
-            int pixelStride = planes[0].getPixelStride();
-            int rowStride = planes[0].getRowStride();
-            int rowPaddingPx = (rowStride - pixelStride * rawDisplayMetrics.widthPixels) / pixelStride;
-            image.close();
+        return image;
+    }
 
-            try {
-                bmp = Bitmap.createBitmap(rawDisplayMetrics.widthPixels + rowPaddingPx,
-                        rawDisplayMetrics.heightPixels, Bitmap.Config.ARGB_8888);
-                bmp.copyPixelsFromBuffer(buffer);
-                // Crop padding
-                bmp = Bitmap.createBitmap(bmp, 0, 0, bmp.getWidth() - rowPaddingPx, bmp.getHeight());
-            } catch (Exception exception) {
-                Timber.e("Exception thrown in grabScreen() - when creating bitmap");
-                Timber.e(exception);
+    /**
+     * Wait up to FIRST_FRAME_TIMEOUT_MS for the first frame of the full resolution display, which startCapture just
+     * made render.
+     *
+     * @return The first frame, or null if the display didn't render one in time
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private @Nullable Image awaitFirstFrame() {
+        long deadline = SystemClock.uptimeMillis() + FIRST_FRAME_TIMEOUT_MS;
+        Image image = imageReader.acquireLatestImage();
+        while (image == null && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(16); // The duration of a frame at 60fps
+            image = imageReader.acquireLatestImage();
+        }
+        return image;
+    }
+
+    /**
+     * Start delivering the frames of the screen to a listener, on a background thread. The frames come from a
+     * display of a fraction of the screen resolution, which is cheap enough to render all the time; the full
+     * resolution display only renders while the screen is grabbed.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public void watchFrames(@NonNull final FrameListener listener) {
+        unwatchFrames();
+        final int screenWidth = rawDisplayMetrics.widthPixels;
+        final int screenHeight = rawDisplayMetrics.heightPixels;
+        int width = Math.max(1, screenWidth / WATCHER_SCALE);
+        int height = Math.max(1, screenHeight / WATCHER_SCALE);
+
+        // The listener holds one image, while acquireLatestImage needs two
+        watcherReader = ImageReader.newInstance(width, height, PixelFormat.RGBA_8888, 2);
+        frameThread = new HandlerThread("ScreenFrames");
+        frameThread.start();
+        watcherReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
+            @Override public void onImageAvailable(ImageReader reader) {
+                Image image;
+                try {
+                    image = reader.acquireLatestImage();
+                } catch (IllegalStateException e) {
+                    Timber.e(e);
+                    return;
+                }
+                if (image == null) {
+                    return;
+                }
+                ScaledFrame frame = new ScaledFrame(ScreenImage.of(image), screenWidth, screenHeight);
+                try {
+                    listener.onFrame(frame);
+                } finally {
+                    frame.close();
+                }
             }
+        }, new Handler(frameThread.getLooper()));
+        watcherDisplay = projection.createVirtualDisplay("screen-watcher", width, height,
+                Math.max(1, rawDisplayMetrics.densityDpi / WATCHER_SCALE),
+                DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR, watcherReader.getSurface(), null, null);
+    }
+
+    /**
+     * Stop delivering frames to the listener set with watchFrames.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public void unwatchFrames() {
+        if (frameThread == null) {
+            return;
         }
+        watcherDisplay.release();
+        watcherDisplay = null;
+        watcherReader.setOnImageAvailableListener(null, null);
+        frameThread.quitSafely();
+        try {
+            frameThread.join(); // The listener may still be reading a frame of the reader
+        } catch (InterruptedException e) {
+            Timber.e(e);
+        }
+        frameThread = null;
+        watcherReader.close();
+        watcherReader = null;
+    }
 
-        return bmp;
+    /**
+     * Grab the current screen as a bitmap, for example to calibrate the scan areas. Use grabScreenImage to scan it.
+     */
+    @WorkerThread
+    public @Nullable Bitmap grabScreen() {
+        ScreenImage frame = grabScreenImage();
+        if (frame == null) {
+            return null;
+        }
+        try {
+            return frame.crop(0, 0, frame.getWidth(), frame.getHeight());
+        } catch (Exception exception) {
+            Timber.e("Exception thrown in grabScreen() - when creating bitmap");
+            Timber.e(exception);
+            return null;
+        } finally {
+            // The buffer belongs to the image, only close it once it has been copied
+            frame.close();
+        }
+    }
+
+    /**
+     * Grab the current screen without copying it. The fields scanned from the returned image are read straight from
+     * the buffer of the ImageReader, which is held until the image is closed: close it as soon as the scan is done.
+     *
+     * @return The screen, or null if it couldn't be grabbed
+     */
+    @WorkerThread
+    public @Nullable ScreenImage grabScreenImage() {
+        Image image = acquireLatestImage();
+        return image != null ? ScreenImage.of(image) : null;
     }
 
     /**
-     * Grab a few pixels from the current screen.
+     * Grab a few pixels from the current screen. If the full resolution display wasn't rendering, this waits for its
+     * first frame: call prepareGrab ahead when grabbing on the main thread.
      *
      * @param points array of points representing coordinates to grab
-     * @return array of colors for the requested pixels, or null if any of them is out-of-bounds
+     * @return array of colors for the requested pixels, or null if any of them is out-of-bounds or the screen
+     *     didn't change since the last grab
      */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     public @Nullable @ColorInt int[] grabPixels(Point[] points) {
-        Image image = null;
+        Image image;
         try {
-            //Note: imageReader shouldn't be null, but apparently sometimes is.
-            //Let's allow this to still happen.
-            image = imageReader.acquireLatestImage();
+            image = startCapture() ? awaitFirstFrame() : imageReader.acquireLatestImage();
         } catch (Exception exception) {
             Timber.e("Error thrown in grabPixels() - acquireLatestImage()");
             Timber.e(exception);
+            return null;
         }
-
         if (image == null) {
             return null;
         }
+        ScreenImage frame = ScreenImage.of(image);
+        try {
+            return getPixels(frame, points);
+        } finally {
+            frame.close();
+        }
+    }
 
-        Rect imageBounds = new Rect(0, 0, image.getWidth(), image.getHeight());
+    /**
+     * Get a few pixels of a frame.
+     *
+     * @return array of colors for the requested pixels, or null if any of them is out-of-bounds
+     */
+    public static @Nullable @ColorInt int[] getPixels(@NonNull ScreenPixels frame, Point[] points) {
+        Rect imageBounds = new Rect(0, 0, frame.getWidth(), frame.getHeight());
         @ColorInt int[] pixels = new int[points.length];
-
-        Image.Plane imgPlane = image.getPlanes()[0];
-        int pixelStride = imgPlane.getPixelStride();
-        int rowStride = imgPlane.getRowStride();
-        ByteBuffer buffer = imgPlane.getBuffer();
-
         for (int i = 0; i < points.length; i++) {
             Point p = points[i];
-            if (imageBounds.contains(p.x, p.y)) {
-                pixels[i] = getPixel(buffer, p, pixelStride, rowStride);
-            } else {
-                pixels = null;
-                //Jump to resource cleanup code.
-                break;
+            if (!imageBounds.contains(p.x, p.y)) {
+                return null;
             }
+            pixels[i] = frame.getPixel(p.x, p.y);
         }
-
-        //Resource cleanup
-        image.close();
-
         return pixels;
     }
 
-    //Inspired by http://stackoverflow.com/a/27655022/53974.
-    private static @ColorInt int getPixel(ByteBuffer buffer, Point pos, int pixelStride, int rowStride) {
-        int offset = pos.y * rowStride + pos.x * pixelStride;
-        //This works because the image reader is configured with PixelFormat.RGBA_8888.
-        int r = buffer.get(offset) & 0xff;
-        int g = buffer.get(offset + 1) & 0xff;
-        int b = buffer.get(offset + 2) & 0xff;
-        int a = buffer.get(offset + 3) & 0xff;
-        return Color.argb(a, r, g, b);
+    /**
+     * A frame of the watcher display, read in the coordinates of the screen. Its pixels are only good enough to
+     * recognize the screen, scans grab the screen at full resolution.
+     */
+    private static class ScaledFrame implements ScreenPixels {
+        private final ScreenImage frame;
+        private final int width;
+        private final int height;
+
+        ScaledFrame(ScreenImage frame, int width, int height) {
+            this.frame = frame;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override public int getWidth() {
+            return width;
+        }
+
+        @Override public int getHeight() {
+            return height;
+        }
+
+        @Override public int getPixel(int x, int y) {
+            return frame.getPixel(Math.min(x * frame.getWidth() / width, frame.getWidth() - 1),
+                    Math.min(y * frame.getHeight() / height, frame.getHeight() - 1));
+        }
+
+        void close() {
+            frame.close();
+        }
     }
 }
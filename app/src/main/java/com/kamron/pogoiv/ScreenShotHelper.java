@@ -10,10 +10,16 @@ import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Handler;
 import android.provider.MediaStore;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
 import android.support.v4.content.LocalBroadcastManager;
 import android.util.Log;
+import android.util.Pair;
 
 import com.kamron.pogoiv.activities.OcrCalibrationResultActivity;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.OcrHelper;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanExecutor;
 
 import java.io.File;
 import java.util.Calendar;
@@ -45,60 +51,87 @@ public class ScreenShotHelper {
         }
     }
 
-    private ScreenShotHelper(final Context context) {
+    private ScreenShotHelper(final Context context, final ScanExecutor scanExecutor) {
         this.contentResolver = context.getContentResolver();
         mediaObserver = new ContentObserver(new Handler()) {
             @Override
-            public void onChange(boolean selfChange, Uri uri) {
+            public void onChange(boolean selfChange, final Uri uri) {
                 super.onChange(selfChange, uri);
                 if (!uri.toString().contains("images")) {
                     return;
                 }
 
-                final String pathChange = getRealPathFromUri(uri);
-                if (!pathChange.contains("Screenshot")) {
-                    return;
-                }
-
-                /* Ignore random events related to opening old screenshots by making
-                 * sure the file was created within the past 10 seconds.
-                 */
-                long now = Calendar.getInstance().getTimeInMillis();
-                long filetime = new File(pathChange).lastModified();
-                if (now - filetime > 10000) {
-                    return;
-                }
-
-                Bitmap bitmap = null;
-                try {
-                    bitmap = BitmapFactory.decodeFile(pathChange);
-                } catch (Exception e) {
-                    Timber.log(Log.ERROR, e);
-                } finally {
-                    if (bitmap != null) {
-                        if (sShouldRecalibrateWithNextScreenshot) {
-                            // Use the screenshot to recalibrate GoIV
-                            OcrCalibrationResultActivity.startCalibration(context, bitmap);
-                            sShouldRecalibrateWithNextScreenshot = false;
-                            if (GoIVSettings.getInstance(context).shouldDeleteScreenshots()) {
-                                deleteScreenShot(pathChange);
-                            }
-                        } else {
-                            // Scan 'mon info
-                            Intent newintent = Pokefly.createProcessBitmapIntent(bitmap, pathChange);
-                            LocalBroadcastManager.getInstance(context).sendBroadcast(newintent);
+                // Query the path and decode the full screen image on the scan thread, not on the main thread
+                scanExecutor.submit(new ScanExecutor.ScanTask<Pair<String, Bitmap>>() {
+                    @Override public Pair<String, Bitmap> run(@NonNull OcrHelper ocr) {
+                        return decodeNewScreenshot(uri);
+                    }
+                }, new ScanExecutor.ScanCallback<Pair<String, Bitmap>>() {
+                    @Override public void onResult(@Nullable Pair<String, Bitmap> screenshot) {
+                        if (screenshot != null) {
+                            onScreenshotDecoded(context, screenshot.first, screenshot.second);
                         }
                     }
-                }
+                });
             }
         };
         contentResolver.registerContentObserver(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, true,
                 mediaObserver);
     }
 
-    public static ScreenShotHelper start(final Context context) {
+    /**
+     * Decodes a new screenshot. Runs on the scan thread.
+     *
+     * @param uri The changed media uri
+     * @return The screenshot path and bitmap, or null if the uri isn't a screenshot taken just now.
+     */
+    @WorkerThread
+    private @Nullable Pair<String, Bitmap> decodeNewScreenshot(Uri uri) {
+        if (contentResolver == null) {
+            return null; // Stopped while this decode was queued
+        }
+
+        final String pathChange = getRealPathFromUri(uri);
+        if (!pathChange.contains("Screenshot")) {
+            return null;
+        }
+
+        /* Ignore random events related to opening old screenshots by making
+         * sure the file was created within the past 10 seconds.
+         */
+        long now = Calendar.getInstance().getTimeInMillis();
+        long filetime = new File(pathChange).lastModified();
+        if (now - filetime > 10000) {
+            return null;
+        }
+
+        Bitmap bitmap = null;
+        try {
+            bitmap = BitmapFactory.decodeFile(pathChange);
+        } catch (Exception e) {
+            Timber.log(Log.ERROR, e);
+        }
+        return bitmap != null ? Pair.create(pathChange, bitmap) : null;
+    }
+
+    private void onScreenshotDecoded(Context context, String pathChange, Bitmap bitmap) {
+        if (sShouldRecalibrateWithNextScreenshot) {
+            // Use the screenshot to recalibrate GoIV
+            OcrCalibrationResultActivity.startCalibration(context, bitmap);
+            sShouldRecalibrateWithNextScreenshot = false;
+            if (GoIVSettings.getInstance(context).shouldDeleteScreenshots()) {
+                deleteScreenShot(pathChange);
+            }
+        } else {
+            // Scan 'mon info
+            Intent newintent = Pokefly.createProcessBitmapIntent(bitmap, pathChange);
+            LocalBroadcastManager.getInstance(context).sendBroadcast(newintent);
+        }
+    }
+
+    public static ScreenShotHelper start(final Context context, final ScanExecutor scanExecutor) {
         if (instance == null) {
-            instance = new ScreenShotHelper(context);
+            instance = new ScreenShotHelper(context, scanExecutor);
         }
         return instance;
     }
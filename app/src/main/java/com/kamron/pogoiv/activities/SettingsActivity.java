@@ -114,8 +114,11 @@ public class SettingsActivity extends AppCompatActivity {
                 manualScreenshotModePreference.setEnabled(false);
                 Preference autoAppraisalScanDelay = getPreferenceManager()
                         .findPreference(GoIVSettings.AUTO_APPRAISAL_SCAN_DELAY);
+                Preference screenWatcherFrameRate = getPreferenceManager()
+                        .findPreference(GoIVSettings.SCREEN_WATCHER_FRAME_RATE);
                 PreferenceScreen preferenceScreen = getPreferenceScreen();
                 preferenceScreen.removePreference(autoAppraisalScanDelay);
+                preferenceScreen.removePreference(screenWatcherFrameRate);
             }
 
             //If strings support use_default_pokemonsname_as_ocrstring, display pref and set default ON
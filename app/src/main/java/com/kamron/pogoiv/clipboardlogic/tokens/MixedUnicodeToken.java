@@ -42,38 +42,13 @@ public class MixedUnicodeToken extends ClipboardToken {
 
     @Override
     public String getValue(IVScanResult ivScanResult, PokeInfoCalculator pokeInfoCalculator) {
-        //Initialize the lowest and highest of each stat
-        int lowestAttackStat = 15;
-        int lowestDefenseStat = 15;
-        int lowestStaminaStat = 15;
-        int highestAttackStat = 0;
-        int highestDefenseStat = 0;
-        int highestStaminaStat = 0;
-
-        //Loop through all iVCombinations to find the lowest of each stat
-        for (IVCombination ivc : ivScanResult.iVCombinations) {
-            // Save the lowest and highest attackIV of any Combination
-            if (ivc.att < lowestAttackStat) {
-                lowestAttackStat = ivc.att;
-            }
-            if (ivc.att > highestAttackStat) {
-                highestAttackStat = ivc.att;
-            }
-            // Save the lowest and highest defenseIV of any Combination
-            if (ivc.def < lowestDefenseStat) {
-                lowestDefenseStat = ivc.def;
-            }
-            if (ivc.def > highestDefenseStat) {
-                highestDefenseStat = ivc.def;
-            }
-            // Save the lowest and highest staminaIV of any Combination
-            if (ivc.sta < lowestStaminaStat) {
-                lowestStaminaStat = ivc.sta;
-            }
-            if (ivc.sta > highestStaminaStat) {
-                highestStaminaStat = ivc.sta;
-            }
-        }
+        //The scan result keeps the lowest and highest of each stat over all its combinations
+        int lowestAttackStat = ivScanResult.lowAttack;
+        int lowestDefenseStat = ivScanResult.lowDefense;
+        int lowestStaminaStat = ivScanResult.lowStamina;
+        int highestAttackStat = ivScanResult.highAttack;
+        int highestDefenseStat = ivScanResult.highDefense;
+        int highestStaminaStat = ivScanResult.highStamina;
 
         //Since each stat will have it's own unicode character set, we initialize one for each
         String[] attToUse;
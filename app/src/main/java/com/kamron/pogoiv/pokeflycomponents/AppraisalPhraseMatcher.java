@@ -0,0 +1,116 @@
+package com.kamron.pogoiv.pokeflycomponents;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds which of a set of phrases the OCR'd appraisal text contains, tolerating a few misread letters.
+ * <p>
+ * Every phrase is matched against every substring of the text by edit distance, in a single pass over the text per
+ * phrase. A phrase may be off by one letter for every five it has, so short phrases such as "hp" must match exactly.
+ * The best match is the one with the fewest errors; on a tie, the phrase added first wins.
+ *
+ * @param <T> What a phrase stands for, such as the radio button to check when the text contains it
+ */
+final class AppraisalPhraseMatcher<T> {
+
+    static final class Match<T> {
+        final T key;
+        final String phrase;
+        final int distance;
+
+        Match(T key, String phrase, int distance) {
+            this.key = key;
+            this.phrase = phrase;
+            this.distance = distance;
+        }
+    }
+
+    /**
+     * A phrase may have one error for every this many letters.
+     */
+    private static final int LETTERS_PER_ERROR = 5;
+
+    private final List<T> keys = new ArrayList<>();
+    private final List<String> phrases = new ArrayList<>();
+
+    /**
+     * Add phrases which stand for a key.
+     */
+    AppraisalPhraseMatcher<T> add(@NonNull T key, @NonNull String... keyPhrases) {
+        for (String phrase : keyPhrases) {
+            String normalized = normalize(phrase);
+            if (!normalized.isEmpty()) {
+                keys.add(key);
+                phrases.add(normalized);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Find the phrase the text contains with the fewest errors.
+     *
+     * @param text The appraisal text, as returned by normalize
+     * @return The best match, or null if the text contains none of the phrases
+     */
+    @Nullable Match<T> match(@NonNull String text) {
+        Match<T> best = null;
+        for (int i = 0; i < phrases.size(); i++) {
+            String phrase = phrases.get(i);
+            int bound = phrase.length() / LETTERS_PER_ERROR;
+            if (best != null) {
+                bound = Math.min(bound, best.distance - 1);
+            }
+            if (bound < 0) {
+                continue;
+            }
+            int distance = substringDistance(phrase, text, bound);
+            if (distance <= bound) {
+                best = new Match<>(keys.get(i), phrase, distance);
+                if (distance == 0) {
+                    break; // Nothing after it can beat an exact match
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Lower case a text and turn every run of whitespace into a single space, such as the line breaks of the OCR.
+     */
+    static @NonNull String normalize(@NonNull String text) {
+        return text.toLowerCase().replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * The fewest letters to insert, delete or change in a substring of the text to get the phrase.
+     *
+     * @param bound The largest distance of interest, the result is larger than it if the phrase is further away
+     */
+    static int substringDistance(@NonNull String phrase, @NonNull String text, int bound) {
+        int length = phrase.length();
+        // The distances of the phrase prefixes to the best substring ending at the current letter of the text. A
+        // substring may start anywhere, so every column starts at 0.
+        int[] column = new int[length + 1];
+        for (int i = 0; i <= length; i++) {
+            column[i] = i;
+        }
+        int best = column[length];
+        for (int j = 0; j < text.length() && best > 0; j++) {
+            char letter = text.charAt(j);
+            int diagonal = 0;
+            for (int i = 1; i <= length; i++) {
+                int above = column[i];
+                int cost = phrase.charAt(i - 1) == letter ? 0 : 1;
+                column[i] = Math.min(diagonal + cost, Math.min(above, column[i - 1]) + 1);
+                diagonal = above;
+            }
+            best = Math.min(best, column[length]);
+        }
+        return best <= bound ? best : bound + 1;
+    }
+}
@@ -1,8 +1,10 @@
 package com.kamron.pogoiv.pokeflycomponents;
 
 import android.content.Context;
-import android.graphics.Bitmap;
 import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
 import android.widget.CheckBox;
 import android.widget.LinearLayout;
 import android.widget.RadioGroup;
@@ -10,28 +12,47 @@ import android.widget.RadioGroup;
 import com.kamron.pogoiv.GoIVSettings;
 import com.kamron.pogoiv.R;
 import com.kamron.pogoiv.ScreenGrabber;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.AppraisalTextSignature;
 import com.kamron.pogoiv.pokeflycomponents.ocrhelper.OcrHelper;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanArea;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanExecutor;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScreenImage;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScreenPixels;
 
 /**
  * Created by Johan on 2016-12-01.
  * A class to handle automatic scanning of appraisal information.
+ * <p>
+ * While the frames of the screen are watched, the text of the appraisal box is scanned once it stops changing, see
+ * onFrame, and again after a while if it didn't match anything. Otherwise it's scanned a while after every touch,
+ * and again shortly after if it didn't match anything.
  */
 public class AutoAppraisal {
 
     ScreenScan screenScanner = new ScreenScan(); //The runnable that keeps scanning the screen
+    TextSettled textSettled = new TextSettled(); //The runnable that scans once the appraisal text stopped changing
     Handler handler = new Handler();
     private GoIVSettings settings;
 
     private ScreenGrabber screenGrabber;
+    private ScanExecutor scanExecutor;
     Context context;
 
     private static final int SCANRETRIES = 3; // max num of retries if appraisal text doesn't match
     private static final int RETRYDELAY = 50; // ms delay between retry scans
+    private static final int TEXT_SETTLE_MS = 250; // ms the appraisal text must stay the same before it's scanned
     private int numTouches = 0;
     private int numRetries = 0;
     private int scanDelay;
     private boolean autoAppraisalDone = false;
 
+    private final int navBarHeight;
+    private boolean watchingFrames = false;
+    private volatile boolean watchingText = false; // Whether the frame thread should look for appraisal text
+    // Only used on the frame thread
+    private int lastTextSignature = AppraisalTextSignature.NO_TEXT;
+    private ScanArea textArea;
+
     //UI elements in pokefly to modify.
     CheckBox attCheckbox;
     CheckBox defCheckbox;
@@ -41,33 +62,19 @@ public class AutoAppraisal {
     RadioGroup appraisalStatsGroup;
     LinearLayout attDefStaLayout;
 
-    //Appraisal phrases
-    private String highest_stat_att;
-    private String highest_stat_def;
-    private String highest_stat_hp;
-    private String ivrange1_phrase1;
-    private String ivrange1_phrase2;
-    private String ivrange2_phrase1;
-    private String ivrange2_phrase2;
-    private String ivrange3_phrase1;
-    private String ivrange3_phrase2;
-    private String ivrange4_phrase1;
-    private String ivrange4_phrase2;
-    private String statsrange1_phrase1;
-    private String statsrange1_phrase2;
-    private String statsrange2_phrase1;
-    private String statsrange2_phrase2;
-    private String statsrange3_phrase1;
-    private String statsrange3_phrase2;
-    private String statsrange4_phrase1;
-    private String statsrange4_phrase2;
-
-
-    public AutoAppraisal(ScreenGrabber screenGrabber, Context context, LinearLayout attDefStaLayout,
+    //Appraisal phrases, and what they check
+    private AppraisalPhraseMatcher<Integer> ivRangePhrases;
+    private AppraisalPhraseMatcher<CheckBox> highestStatPhrases;
+    private AppraisalPhraseMatcher<Integer> statsRangePhrases;
+
+
+    public AutoAppraisal(ScreenGrabber screenGrabber, ScanExecutor scanExecutor, Context context,
+                         LinearLayout attDefStaLayout,
                          CheckBox attCheckbox, CheckBox defCheckbox, CheckBox staCheckbox,
                          RadioGroup appraisalIVRangeGroup, RadioGroup appraisalStatsGroup) {
         this.context = context;
         this.screenGrabber = screenGrabber;
+        this.scanExecutor = scanExecutor;
         this.attDefStaLayout = attDefStaLayout;
         this.attCheckbox = attCheckbox;
         this.defCheckbox = defCheckbox;
@@ -75,66 +82,71 @@ public class AutoAppraisal {
         this.appraisalIVRangeGroup = appraisalIVRangeGroup;
         this.appraisalStatsGroup = appraisalStatsGroup;
         settings = GoIVSettings.getInstance(context);
+        navBarHeight = OcrHelper.getNavigationBarSize(context);
         getAppraisalPhrases();
     }
 
     private void getAppraisalPhrases() {
-        highest_stat_att = context.getString(R.string.highest_stat_att);
-        highest_stat_def = context.getString(R.string.highest_stat_def);
-        highest_stat_hp = context.getString(R.string.highest_stat_hp);
+        highestStatPhrases = new AppraisalPhraseMatcher<CheckBox>()
+                .add(attCheckbox, context.getString(R.string.highest_stat_att))
+                .add(defCheckbox, context.getString(R.string.highest_stat_def))
+                .add(staCheckbox, context.getString(R.string.highest_stat_hp));
 
+        int[] ivRangeResIds;
+        int[] statsRangeResIds;
         if (settings.playerTeam() == 0) {
-            ivrange1_phrase1 = context.getString(R.string.mystic_percentage1_phrase1);
-            ivrange1_phrase2 = context.getString(R.string.mystic_percentage1_phrase2);
-            ivrange2_phrase1 = context.getString(R.string.mystic_percentage2_phrase1);
-            ivrange2_phrase2 = context.getString(R.string.mystic_percentage2_phrase2);
-            ivrange3_phrase1 = context.getString(R.string.mystic_percentage3_phrase1);
-            ivrange3_phrase2 = context.getString(R.string.mystic_percentage3_phrase2);
-            ivrange4_phrase1 = context.getString(R.string.mystic_percentage4_phrase1);
-            ivrange4_phrase2 = context.getString(R.string.mystic_percentage4_phrase2);
-            statsrange1_phrase1 = context.getString(R.string.mystic_ivrange1_phrase1);
-            statsrange1_phrase2 = context.getString(R.string.mystic_ivrange1_phrase2);
-            statsrange2_phrase1 = context.getString(R.string.mystic_ivrange2_phrase1);
-            statsrange2_phrase2 = context.getString(R.string.mystic_ivrange2_phrase2);
-            statsrange3_phrase1 = context.getString(R.string.mystic_ivrange3_phrase1);
-            statsrange3_phrase2 = context.getString(R.string.mystic_ivrange3_phrase2);
-            statsrange4_phrase1 = context.getString(R.string.mystic_ivrange4_phrase1);
-            statsrange4_phrase2 = context.getString(R.string.mystic_ivrange4_phrase2);
+            ivRangeResIds = new int[]{
+                    R.string.mystic_percentage1_phrase1, R.string.mystic_percentage1_phrase2,
+                    R.string.mystic_percentage2_phrase1, R.string.mystic_percentage2_phrase2,
+                    R.string.mystic_percentage3_phrase1, R.string.mystic_percentage3_phrase2,
+                    R.string.mystic_percentage4_phrase1, R.string.mystic_percentage4_phrase2};
+            statsRangeResIds = new int[]{
+                    R.string.mystic_ivrange1_phrase1, R.string.mystic_ivrange1_phrase2,
+                    R.string.mystic_ivrange2_phrase1, R.string.mystic_ivrange2_phrase2,
+                    R.string.mystic_ivrange3_phrase1, R.string.mystic_ivrange3_phrase2,
+                    R.string.mystic_ivrange4_phrase1, R.string.mystic_ivrange4_phrase2};
         } else if (settings.playerTeam() == 1) {
-            ivrange1_phrase1 = context.getString(R.string.valor_percentage1_phrase1);
-            ivrange1_phrase2 = context.getString(R.string.valor_percentage1_phrase2);
-            ivrange2_phrase1 = context.getString(R.string.valor_percentage2_phrase1);
-            ivrange2_phrase2 = context.getString(R.string.valor_percentage2_phrase2);
-            ivrange3_phrase1 = context.getString(R.string.valor_percentage3_phrase1);
-            ivrange3_phrase2 = context.getString(R.string.valor_percentage3_phrase2);
-            ivrange4_phrase1 = context.getString(R.string.valor_percentage4_phrase1);
-            ivrange4_phrase2 = context.getString(R.string.valor_percentage4_phrase2);
-            statsrange1_phrase1 = context.getString(R.string.valor_ivrange1_phrase1);
-            statsrange1_phrase2 = context.getString(R.string.valor_ivrange1_phrase2);
-            statsrange2_phrase1 = context.getString(R.string.valor_ivrange2_phrase1);
-            statsrange2_phrase2 = context.getString(R.string.valor_ivrange2_phrase2);
-            statsrange3_phrase1 = context.getString(R.string.valor_ivrange3_phrase1);
-            statsrange3_phrase2 = context.getString(R.string.valor_ivrange3_phrase2);
-            statsrange4_phrase1 = context.getString(R.string.valor_ivrange4_phrase1);
-            statsrange4_phrase2 = context.getString(R.string.valor_ivrange4_phrase2);
+            ivRangeResIds = new int[]{
+                    R.string.valor_percentage1_phrase1, R.string.valor_percentage1_phrase2,
+                    R.string.valor_percentage2_phrase1, R.string.valor_percentage2_phrase2,
+                    R.string.valor_percentage3_phrase1, R.string.valor_percentage3_phrase2,
+                    R.string.valor_percentage4_phrase1, R.string.valor_percentage4_phrase2};
+            statsRangeResIds = new int[]{
+                    R.string.valor_ivrange1_phrase1, R.string.valor_ivrange1_phrase2,
+                    R.string.valor_ivrange2_phrase1, R.string.valor_ivrange2_phrase2,
+                    R.string.valor_ivrange3_phrase1, R.string.valor_ivrange3_phrase2,
+                    R.string.valor_ivrange4_phrase1, R.string.valor_ivrange4_phrase2};
         } else {
-            ivrange1_phrase1 = context.getString(R.string.instinct_percentage1_phrase1);
-            ivrange1_phrase2 = context.getString(R.string.instinct_percentage1_phrase2);
-            ivrange2_phrase1 = context.getString(R.string.instinct_percentage2_phrase1);
-            ivrange2_phrase2 = context.getString(R.string.instinct_percentage2_phrase2);
-            ivrange3_phrase1 = context.getString(R.string.instinct_percentage3_phrase1);
-            ivrange3_phrase2 = context.getString(R.string.instinct_percentage3_phrase2);
-            ivrange4_phrase1 = context.getString(R.string.instinct_percentage4_phrase1);
-            ivrange4_phrase2 = context.getString(R.string.instinct_percentage4_phrase2);
-            statsrange1_phrase1 = context.getString(R.string.instinct_ivrange1_phrase1);
-            statsrange1_phrase2 = context.getString(R.string.instinct_ivrange1_phrase2);
-            statsrange2_phrase1 = context.getString(R.string.instinct_ivrange2_phrase1);
-            statsrange2_phrase2 = context.getString(R.string.instinct_ivrange2_phrase2);
-            statsrange3_phrase1 = context.getString(R.string.instinct_ivrange3_phrase1);
-            statsrange3_phrase2 = context.getString(R.string.instinct_ivrange3_phrase2);
-            statsrange4_phrase1 = context.getString(R.string.instinct_ivrange4_phrase1);
-            statsrange4_phrase2 = context.getString(R.string.instinct_ivrange4_phrase2);
+            ivRangeResIds = new int[]{
+                    R.string.instinct_percentage1_phrase1, R.string.instinct_percentage1_phrase2,
+                    R.string.instinct_percentage2_phrase1, R.string.instinct_percentage2_phrase2,
+                    R.string.instinct_percentage3_phrase1, R.string.instinct_percentage3_phrase2,
+                    R.string.instinct_percentage4_phrase1, R.string.instinct_percentage4_phrase2};
+            statsRangeResIds = new int[]{
+                    R.string.instinct_ivrange1_phrase1, R.string.instinct_ivrange1_phrase2,
+                    R.string.instinct_ivrange2_phrase1, R.string.instinct_ivrange2_phrase2,
+                    R.string.instinct_ivrange3_phrase1, R.string.instinct_ivrange3_phrase2,
+                    R.string.instinct_ivrange4_phrase1, R.string.instinct_ivrange4_phrase2};
+        }
+        ivRangePhrases = createPhraseMatcher(ivRangeResIds, new int[]{R.id.appraisalIVRange1,
+                R.id.appraisalIVRange2, R.id.appraisalIVRange3, R.id.appraisalIVRange4});
+        statsRangePhrases = createPhraseMatcher(statsRangeResIds, new int[]{R.id.appraisalStat1,
+                R.id.appraisalStat2, R.id.appraisalStat3, R.id.appraisalStat4});
+    }
+
+    /**
+     * Create a matcher of two phrases for each of four radio buttons.
+     *
+     * @param phraseResIds The phrases, two for each radio button in order
+     * @param radioIds     The ids of the radio buttons
+     */
+    private AppraisalPhraseMatcher<Integer> createPhraseMatcher(int[] phraseResIds, int[] radioIds) {
+        AppraisalPhraseMatcher<Integer> matcher = new AppraisalPhraseMatcher<>();
+        for (int i = 0; i < radioIds.length; i++) {
+            matcher.add(radioIds[i],
+                    context.getString(phraseResIds[2 * i]), context.getString(phraseResIds[2 * i + 1]));
         }
+        return matcher;
     }
 
     public void screenTouched() {
@@ -149,14 +161,62 @@ public class AutoAppraisal {
             // Signal to the user that we're now looking for the first appraisal phase.
             highlightActiveCheckboxGroup();
         } else if ((numTouches > 2) && (!autoAppraisalDone)) {
-            // pickup possible changes of the setting
-            scanDelay = settings.getAutoAppraisalScanDelay();
             highlightActiveCheckboxGroup();
-            // Scan Appraisal text after the configured delay.
-            scanAppraisalText(scanDelay);
+            if (!watchingFrames) {
+                // pickup possible changes of the setting
+                scanDelay = settings.getAutoAppraisalScanDelay();
+                // Scan Appraisal text after the configured delay.
+                scanAppraisalText(scanDelay);
+            }
         } else if (autoAppraisalDone) {
             resetBackgroundHighlights();
         }
+        updateWatchingText();
+    }
+
+    /**
+     * Set whether the frames of the screen are watched, and passed to onFrame. Without frames, the appraisal text is
+     * scanned after every touch instead.
+     */
+    public void setWatchingFrames(boolean watchingFrames) {
+        this.watchingFrames = watchingFrames;
+        updateWatchingText();
+    }
+
+    /**
+     * Look for appraisal text in the frames from the "Appraise" menu item on, until the appraisal is done.
+     */
+    private void updateWatchingText() {
+        watchingText = watchingFrames && numTouches >= 2 && !autoAppraisalDone;
+        if (!watchingText) {
+            handler.removeCallbacks(textSettled);
+        }
+    }
+
+    /**
+     * Check a frame of the screen for a change of the appraisal text. Once the text stays the same for
+     * TEXT_SETTLE_MS, the typewriter animation is done and the text is scanned, once.
+     *
+     * @param frame A frame of the screen, which may be scaled down
+     */
+    @WorkerThread
+    void onFrame(@NonNull ScreenPixels frame) {
+        if (!watchingText) {
+            lastTextSignature = AppraisalTextSignature.NO_TEXT;
+            return;
+        }
+        if (textArea == null) {
+            textArea = OcrHelper.getAppraisalBoxArea(frame.getWidth(), frame.getHeight(), navBarHeight);
+        }
+        int signature = AppraisalTextSignature.of(frame, textArea);
+        if (signature == lastTextSignature) {
+            return;
+        }
+        lastTextSignature = signature;
+        handler.removeCallbacks(textSettled);
+        if (signature != AppraisalTextSignature.NO_TEXT) {
+            handler.postDelayed(textSettled, TEXT_SETTLE_MS);
+        }
     }
 
     /**
@@ -195,6 +255,15 @@ public class AutoAppraisal {
         appraisalStatsGroup.setBackground(null);
     }
 
+    /**
+     * Stop watching the appraisal text and cancel every scan which is still to come, before Pokefly is destroyed.
+     */
+    public void stop() {
+        setWatchingFrames(false);
+        handler.removeCallbacks(screenScanner);
+        handler.removeCallbacks(textSettled);
+    }
+
     /**
      * Resets any necessary variables to their default states for the next Appraisal process.
      */
@@ -202,6 +271,7 @@ public class AutoAppraisal {
         numTouches = 0;
         numRetries = 0;
         autoAppraisalDone = false;
+        updateWatchingText();
         resetBackgroundHighlights();
     }
 
@@ -213,6 +283,7 @@ public class AutoAppraisal {
      */
     private void addInfoFromAppraiseText(String appraiseText, String hash) {
         boolean match = false;
+        appraiseText = AppraisalPhraseMatcher.normalize(appraiseText);
 
         if (!isIVRangeGroupDone()) { // Only if none of the IVRange checkboxes have been checked.
             // See if appraiseText matches any of the IVRange strings
@@ -225,121 +296,114 @@ public class AutoAppraisal {
         if (!match) { // Lastly, check if the appraiseText matches any of the Stat phrases
             match = setStatsRangeWith(appraiseText);
         }
-        if (!match && numRetries < SCANRETRIES) { // If nothing matched and we have not yet reached maximum # of retries
+        updateWatchingText(); // Stop watching the text once the appraisal is done
+        if (!match && numRetries < SCANRETRIES) {
+            // Nothing matched and we have not yet reached maximum # of retries
             numRetries++;
             // Nothing matched, so this phrase should be thrown away.
-            OcrHelper.removeEntryFromAppraisalCache(settings, hash);
-            // Let's schedule another scan to see if animation has finished.
-            scanAppraisalText(RETRYDELAY);
-        } else if (!match) { // Nothing matched and we've ran out of retry attempts.
+            OcrHelper.removeEntryFromAppraisalCache(hash);
+            if (!watchingFrames) {
+                // Let's schedule another scan to see if animation has finished.
+                scanAppraisalText(RETRYDELAY);
+            } else if (watchingText) {
+                // The text may look settled without being readable yet, and a box which doesn't change any more
+                // is never scanned again by onFrame.
+                handler.removeCallbacks(textSettled);
+                handler.postDelayed(textSettled, TEXT_SETTLE_MS);
+            }
+        } else if (!match) { // Out of retry attempts
             // Nothing matched, so this phrase should be thrown away.
-            OcrHelper.removeEntryFromAppraisalCache(settings, hash);
+            OcrHelper.removeEntryFromAppraisalCache(hash);
         }
     }
 
     /**
      * Selects the appropriate appraisalStatsGroup Checkbox depending on which phrase is matched.
      *
-     * @param appraiseText the text to interpret.
+     * @param appraiseText the normalized text to interpret.
      * @return boolean returns true if the appraiseText matched a configured phrase.
      */
     private boolean setStatsRangeWith(String appraiseText) {
-        if (appraiseText.toLowerCase().contains(statsrange1_phrase1)
-                || (appraiseText.toLowerCase().contains(statsrange1_phrase2))) {
-            appraisalStatsGroup.check(R.id.appraisalStat1);
-            highlightActiveCheckboxGroup();
-            autoAppraisalDone = true;
-            return true;
-        }
-        if (appraiseText.toLowerCase().contains(statsrange2_phrase1)
-                || (appraiseText.toLowerCase().contains(statsrange2_phrase2))) {
-            appraisalStatsGroup.check(R.id.appraisalStat2);
-            highlightActiveCheckboxGroup();
-            autoAppraisalDone = true;
-            return true;
-        }
-        if (appraiseText.toLowerCase().contains(statsrange3_phrase1)
-                || (appraiseText.toLowerCase().contains(statsrange3_phrase2))) {
-            appraisalStatsGroup.check(R.id.appraisalStat3);
-            highlightActiveCheckboxGroup();
-            autoAppraisalDone = true;
-            return true;
-        }
-        if (appraiseText.toLowerCase().contains(statsrange4_phrase1)
-                || (appraiseText.toLowerCase().contains(statsrange4_phrase2))) {
-            appraisalStatsGroup.check(R.id.appraisalStat4);
-            highlightActiveCheckboxGroup();
-            autoAppraisalDone = true;
-            return true;
+        AppraisalPhraseMatcher.Match<Integer> match = statsRangePhrases.match(appraiseText);
+        if (match == null) {
+            return false;
         }
-        return false;
+        appraisalStatsGroup.check(match.key);
+        highlightActiveCheckboxGroup();
+        autoAppraisalDone = true;
+        return true;
     }
 
     /**
      * Sets each of the highest stats as found within the appraisal phrases given
      *
-     * @param appraiseText the text to interpret.
+     * @param appraiseText the normalized text to interpret.
      * @return boolean returns true if one of the highest stats phrase was matched.
      */
     private boolean setHighestStatsWith(String appraiseText) {
-        if (appraiseText.toLowerCase().contains(highest_stat_att)) {
-            attCheckbox.setChecked(true);
-            return true;
-        }
-        if (appraiseText.toLowerCase().contains(highest_stat_def)) {
-            defCheckbox.setChecked(true);
-            return true;
+        AppraisalPhraseMatcher.Match<CheckBox> match = highestStatPhrases.match(appraiseText);
+        if (match == null) {
+            return false;
         }
-        if (appraiseText.toLowerCase().contains(highest_stat_hp)) {
-            staCheckbox.setChecked(true);
-            return true;
-        }
-        return false;
+        match.key.setChecked(true);
+        return true;
     }
 
     /**
      * Selects the appropriate appraisalIVRangeGroup Checkbox depending on which phrase is matched.
      *
-     * @param appraiseText the text to interpret.
+     * @param appraiseText the normalized text to interpret.
      * @return boolean returns true if the appraiseText matched a configured phrase.
      */
     private boolean setIVRangeWith(String appraiseText) {
-        if (appraiseText.toLowerCase().contains(ivrange1_phrase1)
-                || (appraiseText.toLowerCase().contains(ivrange1_phrase2))) {
-            appraisalIVRangeGroup.check(R.id.appraisalIVRange1);
-            return true;
-        }
-        if (appraiseText.toLowerCase().contains(ivrange2_phrase1)
-                || (appraiseText.toLowerCase().contains(ivrange2_phrase2))) {
-            appraisalIVRangeGroup.check(R.id.appraisalIVRange2);
-            return true;
+        AppraisalPhraseMatcher.Match<Integer> match = ivRangePhrases.match(appraiseText);
+        if (match == null) {
+            return false;
         }
-        if (appraiseText.toLowerCase().contains(ivrange3_phrase1)
-                || (appraiseText.toLowerCase().contains(ivrange3_phrase2))) {
-            appraisalIVRangeGroup.check(R.id.appraisalIVRange3);
-            return true;
-        }
-        if (appraiseText.toLowerCase().contains(ivrange4_phrase1)
-                || (appraiseText.toLowerCase().contains(ivrange4_phrase2))) {
-            appraisalIVRangeGroup.check(R.id.appraisalIVRange4);
-            return true;
-        }
-        return false;
+        appraisalIVRangeGroup.check(match.key);
+        return true;
     }
 
     /**
-     * The task which looks at the bottom of the screen, and adds any info it finds.  This method then calls
-     * addInfoFromAppraiseText which performs the work of matching phrases to determine what should be checked.
+     * The task which looks at the bottom of the screen on the scan thread, and adds any info it finds.  This method
+     * then calls addInfoFromAppraiseText on the main thread, which performs the work of matching phrases to determine
+     * what should be checked.
      */
     private class ScreenScan implements Runnable {
         @Override
         public void run() {
-            Bitmap screen = screenGrabber.grabScreen();
-            if (screen != null) {
-                String appraiseText = OcrHelper.getAppraisalText(context, settings, screen);
-                String hash = appraiseText.substring(0, appraiseText.indexOf("#"));
-                String text = appraiseText.substring(appraiseText.indexOf("#") + 1);
-                addInfoFromAppraiseText(text, hash);
+            scanExecutor.submit(new ScanExecutor.ScanTask<String>() {
+                @Override public String run(@NonNull OcrHelper ocr) {
+                    ScreenImage screen = screenGrabber.grabScreenImage();
+                    if (screen == null) {
+                        return null;
+                    }
+                    try {
+                        return OcrHelper.getAppraisalText(context, settings, screen);
+                    } finally {
+                        screen.close();
+                    }
+                }
+            }, new ScanExecutor.ScanCallback<String>() {
+                @Override public void onResult(@Nullable String appraiseText) {
+                    if (appraiseText != null) {
+                        String hash = appraiseText.substring(0, appraiseText.indexOf("#"));
+                        String text = appraiseText.substring(appraiseText.indexOf("#") + 1);
+                        addInfoFromAppraiseText(text, hash);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Scans the appraisal text once it stopped changing, see onFrame.
+     */
+    private class TextSettled implements Runnable {
+        @Override
+        public void run() {
+            if (watchingText) {
+                screenScanner.run();
             }
         }
     }
@@ -1,13 +1,17 @@
 package com.kamron.pogoiv.pokeflycomponents;
 
-import android.graphics.Bitmap;
 import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.widget.Toast;
 
 import com.kamron.pogoiv.GoIVSettings;
 import com.kamron.pogoiv.Pokefly;
 import com.kamron.pogoiv.ScreenGrabber;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.CalibrationProfile;
 import com.kamron.pogoiv.pokeflycomponents.ocrhelper.OcrHelper;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanExecutor;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScreenImage;
 import com.kamron.pogoiv.scanlogic.IVScanResult;
 import com.kamron.pogoiv.scanlogic.PokeInfoCalculator;
 import com.kamron.pogoiv.scanlogic.Pokemon;
@@ -54,7 +58,8 @@ public class IVPreviewPrinter {
     }
 
     /**
-     * A quick scan which will try to analyze the screen and show a quick iv preview message.
+     * A quick scan which will try to analyze the screen and show a quick iv preview message. The screen is grabbed
+     * and read on the scan thread, the result is shown on the main thread.
      */
     private static class QuickIVScanAttempt implements Runnable {
 
@@ -70,39 +75,51 @@ public class IVPreviewPrinter {
 
         @Override
         public void run() {
-            boolean succeeded = runQuickScan();
-            if (!succeeded) {
-                IVPopupButton ivButton = ivButtonRef.get();
-                if (ivButton != null) {
-                    ivButtonRef.get().showError();
-                }
+            Pokefly pokefly = pokeflyRef.get();
+            if (pokefly == null) {
+                return; // This quick scan fired after Pokefly stopped
+            }
+
+            ScanExecutor scanExecutor = pokefly.getScanExecutor();
+            if (scanExecutor == null) {
+                return; // This quick scan fired after Pokefly stopped
             }
+
+            final CalibrationProfile calibration = GoIVSettings.getInstance(pokefly).getCalibrationProfile();
+            final int trainerLevel = pokefly.getTrainerLevel();
+            scanExecutor.submit(new ScanExecutor.ScanTask<ScanResult>() {
+                @Override public ScanResult run(@NonNull OcrHelper ocr) {
+                    ScreenImage screen = ScreenGrabber.getInstance().grabScreenImage();
+                    if (screen == null) {
+                        return null;
+                    }
+                    try {
+                        return ocr.scanPokemon(calibration, screen, trainerLevel);
+                    } finally {
+                        screen.close();
+                    }
+                }
+            }, new ScanExecutor.ScanCallback<ScanResult>() {
+                @Override public void onResult(@Nullable ScanResult res) {
+                    boolean succeeded = showQuickScan(res);
+                    if (!succeeded) {
+                        IVPopupButton ivButton = ivButtonRef.get();
+                        if (ivButton != null) {
+                            ivButton.showError();
+                        }
+                    }
+                }
+            });
         }
 
         /**
          * Attempts to generate and print a quickiv message, if it fails, does nothing and returns false.
          *
+         * @param res The scan of the screen, or null if the screen couldn't be grabbed
          * @return true if successfully printed message, false otherwise.
          */
-        private boolean runQuickScan() {
-            Bitmap bmp = ScreenGrabber.getInstance().grabScreen();
-
-            if (bmp == null) {
-                return false;
-            }
-
-            Pokefly pokefly = pokeflyRef.get();
-            if (pokefly == null) {
-                return false; // This quick scan fired after Pokefly stopped
-            }
-
-            OcrHelper ocr = pokefly.getOcr();
-            if (ocr == null) {
-                return false; // This quick scan fired after Pokefly stopped
-            }
-
-            ScanResult res = ocr.scanPokemon(GoIVSettings.getInstance(pokefly), bmp, pokefly.getTrainerLevel());
-            if (!res.getPokemonHP().isPresent() || !res.getPokemonCP().isPresent()) {
+        private boolean showQuickScan(@Nullable ScanResult res) {
+            if (res == null || !res.getPokemonHP().isPresent() || !res.getPokemonCP().isPresent()) {
                 return false;
             }
 
@@ -0,0 +1,182 @@
+package com.kamron.pogoiv.pokeflycomponents;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.CalibrationProfile;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanPoint;
+
+/**
+ * Tells from a small constellation of pixels which screen of Pokemon Go is shown, and how sure it is of that.
+ * <p>
+ * The pixels are compared to the colors they have on each kind of screen with a tolerance per channel, so a color
+ * filter, a night mode shift or the compression of the screen recording doesn't hide the pokemon screen. The
+ * confidence of a screen type is the share of the pixels which look like they should on it; the most confident type
+ * wins, if it's confident enough. The menu button is the marker of the pokemon screen. White cards and backgrounds are
+ * on many other screens, so without it the pokemon screen isn't recognized however well the other pixels match.
+ */
+final class ScreenClassifier {
+
+    enum ScreenType {
+        /**
+         * The pokemon screen with the info card in its place, the screen which can be scanned.
+         */
+        POKEMON_INFO,
+        /**
+         * The pokemon screen with the info card scrolled up over the pokemon, the name and arc are gone.
+         */
+        SCROLLED_DOWN,
+        /**
+         * The pokemon screen dimmed by the appraisal of a team leader.
+         */
+        APPRAISAL,
+        UNKNOWN
+    }
+
+    static final class Result {
+        final ScreenType type;
+        final float confidence;
+
+        Result(ScreenType type, float confidence) {
+            this.type = type;
+            this.confidence = confidence;
+        }
+    }
+
+    private static final int DEFAULT_CARD_WHITE = 0xFFFAFAFA;
+    private static final int DEFAULT_FAB_GREEN = 0xFF1C8796;
+    /**
+     * How far each channel of a pixel may be off from its expected color.
+     */
+    private static final int TOLERANCE = 16;
+    private static final float MIN_CONFIDENCE = 0.75f;
+    /**
+     * How much the overlay of an appraisal may darken the screen.
+     */
+    private static final float MIN_DIM_FACTOR = 0.2f;
+    private static final float MAX_DIM_FACTOR = 0.85f;
+
+    // The indexes of the points: the card at the height of the power up button, the card next to the pokemon type,
+    // the pokemon background above the card, and the floating menu button
+    private static final int CARD = 0;
+    private static final int CARD_MARGIN = 1;
+    private static final int BACKGROUND = 2;
+    private static final int FAB = 3;
+
+    private final CalibrationProfile calibration;
+    private final ScanPoint[] points;
+    private final int cardColor;
+    private final int fabColor;
+
+    /**
+     * Classify the screens of a calibration, the points the user didn't calibrate are guessed from the screen size.
+     */
+    ScreenClassifier(@NonNull CalibrationProfile calibration, int screenWidth, int screenHeight) {
+        this.calibration = calibration;
+
+        ScanPoint card = calibration.getCardWhitePixel();
+        ScanPoint fab = calibration.getFabGreenPixel();
+        if (card == null || fab == null) {
+            // The white left of "power up", and the greenish color of the transfer button
+            card = new ScanPoint((int) Math.round(screenWidth * 0.041667), (int) Math.round(screenHeight * 0.8046875));
+            fab = new ScanPoint((int) Math.round(screenWidth * 0.862445), (int) Math.round(screenHeight * 0.9004));
+        }
+        points = new ScanPoint[4];
+        points[CARD] = card;
+        points[CARD_MARGIN] = new ScanPoint(card.xCoord, (int) Math.round(screenHeight * 0.65));
+        points[BACKGROUND] = new ScanPoint(card.xCoord, (int) Math.round(screenHeight * 0.25));
+        points[FAB] = fab;
+
+        Integer calibratedCard = calibration.getCardWhiteColor();
+        Integer calibratedFab = calibration.getFabGreenColor();
+        cardColor = calibratedCard != null ? calibratedCard : DEFAULT_CARD_WHITE;
+        fabColor = calibratedFab != null ? calibratedFab : DEFAULT_FAB_GREEN;
+    }
+
+    @NonNull CalibrationProfile getCalibration() {
+        return calibration;
+    }
+
+    /**
+     * The points to read from the screen for classify, in its order.
+     */
+    @NonNull ScanPoint[] getPoints() {
+        return points.clone();
+    }
+
+    /**
+     * Classify a screen.
+     *
+     * @param pixels The colors of the points of getPoints, null if they couldn't be read
+     * @return The most likely screen type, UNKNOWN if no type is confident enough
+     */
+    @NonNull Result classify(@Nullable int[] pixels) {
+        if (pixels == null || pixels.length != points.length) {
+            return new Result(ScreenType.UNKNOWN, 0);
+        }
+
+        boolean card = matches(pixels[CARD], cardColor, 1);
+        boolean margin = matches(pixels[CARD_MARGIN], cardColor, 1);
+        boolean background = matches(pixels[BACKGROUND], cardColor, 1);
+        boolean fab = matches(pixels[FAB], fabColor, 1);
+        float info = fab ? share(card, margin, !background, fab) : 0;
+        float scrolled = fab ? share(card, margin, background, fab) : 0;
+
+        // The appraisal darkens the whole screen evenly, the card tells by how much
+        float dim = dimFactor(pixels[CARD], cardColor);
+        float appraisal = 0;
+        if (dim >= MIN_DIM_FACTOR && dim <= MAX_DIM_FACTOR) {
+            appraisal = share(matches(pixels[CARD], cardColor, dim), matches(pixels[CARD_MARGIN], cardColor, dim),
+                    matches(pixels[FAB], fabColor, dim));
+        }
+
+        Result best = new Result(ScreenType.POKEMON_INFO, info);
+        if (scrolled > best.confidence) {
+            best = new Result(ScreenType.SCROLLED_DOWN, scrolled);
+        }
+        if (appraisal > best.confidence) {
+            best = new Result(ScreenType.APPRAISAL, appraisal);
+        }
+        if (best.confidence < MIN_CONFIDENCE) {
+            return new Result(ScreenType.UNKNOWN, best.confidence);
+        }
+        return best;
+    }
+
+    /**
+     * Whether each channel of a pixel is within the tolerance of an expected color, darkened by a factor.
+     */
+    private static boolean matches(int pixel, int expected, float factor) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+            int channel = (pixel >> shift) & 0xFF;
+            int expectedChannel = Math.round(((expected >> shift) & 0xFF) * factor);
+            if (Math.abs(channel - expectedChannel) > TOLERANCE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * By how much a pixel is darker than an expected color, averaged over the channels.
+     */
+    private static float dimFactor(int pixel, int expected) {
+        int sum = 0;
+        int expectedSum = 0;
+        for (int shift = 0; shift <= 16; shift += 8) {
+            sum += (pixel >> shift) & 0xFF;
+            expectedSum += (expected >> shift) & 0xFF;
+        }
+        return expectedSum > 0 ? (float) sum / expectedSum : 0;
+    }
+
+    private static float share(boolean... checks) {
+        int passed = 0;
+        for (boolean check : checks) {
+            if (check) {
+                passed++;
+            }
+        }
+        return (float) passed / checks.length;
+    }
+}
@@ -1,14 +1,15 @@
 package com.kamron.pogoiv.pokeflycomponents;
 
 import android.annotation.SuppressLint;
-import android.graphics.Color;
 import android.graphics.PixelFormat;
 import android.graphics.Point;
 import android.os.Build;
 import android.os.Handler;
-import android.support.annotation.ColorInt;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.DisplayMetrics;
-import android.util.Log;
 import android.view.Gravity;
 import android.view.MotionEvent;
 import android.view.View;
@@ -18,15 +19,18 @@ import android.widget.LinearLayout;
 import com.kamron.pogoiv.GoIVSettings;
 import com.kamron.pogoiv.Pokefly;
 import com.kamron.pogoiv.ScreenGrabber;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.CalibrationProfile;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanPoint;
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScreenPixels;
 
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.SCREEN_INFO_CARD_WHITE_HEX;
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.SCREEN_INFO_CARD_WHITE_PIXEL;
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.SCREEN_INFO_FAB_GREEN_HEX;
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.SCREEN_INFO_FAB_GREEN_PIXEL;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A class which checks the screen every time the user pressses the screen, and calls to the ivbutton and
  * quickivpreview when the user is on the pokemon screen.
+ * <p>
+ * When a screen watcher frame rate is set, the screen is checked on the frames of the screen recording instead, up to
+ * that many times per second, so the ivbutton shows up as soon as the pokemon screen does.
  * Created by johan on 2017-07-06.
  */
 
@@ -35,15 +39,34 @@ public class ScreenWatcher {
     private static final int SCREEN_SCAN_INITIAL_DELAY_MS = 1000; // just to check if we left the screen
     private static final int SCREEN_SCAN_DELAY_MS = 700;
     private static final int SCREEN_SCAN_RETRIES = 4;
+    /**
+     * How many checked frames in a row must agree before the user is considered to have entered or left the pokemon
+     * screen, so a frame of a transition animation doesn't count.
+     */
+    private static final int FRAME_STABLE_SAMPLES = 2;
+
+    /**
+     * The pixels which are checked to determine if the user is on the pokemon screen, and what tells from them.
+     */
+    private static class Markers {
+        final ScreenClassifier classifier;
+        final Point[] area;
+
+        Markers(ScreenClassifier classifier, Point[] area) {
+            this.classifier = classifier;
+            this.area = area;
+        }
+    }
 
     private LinearLayout touchView;
     private WindowManager.LayoutParams touchViewParams;
-    private Point[] area = new Point[2];
-    private Integer[] areaColor = new Integer[2];
+    private volatile Markers markers; // Read by the frame thread
 
     private Handler screenScanHandler;
     private Runnable screenScanRunnable;
     private int screenScanRetries;
+    private boolean watchingFrames = false;
+    private FrameScan frameScan;
 
     private LinearLayout appraisalBox;
     private AutoAppraisal autoAppraisal;
@@ -57,48 +80,39 @@ public class ScreenWatcher {
         this.appraisalBox = appraisalBox;
         this.autoAppraisal = autoAppraisal;
 
-        initMarkerPixels();
+        markers = initMarkerPixels(GoIVSettings.getInstance(pokefly).getCalibrationProfile());
     }
 
     /**
      * Initiates which pixels should be scanned during a screen scan to determine if the user is on the pokemon screen.
      */
-    private void initMarkerPixels() {
-
-        GoIVSettings set = GoIVSettings.getInstance(pokefly);
-        if (set.hasManualScanCalibration()) {
-            try {
-                String wpps = set.getCalibrationValue(SCREEN_INFO_CARD_WHITE_PIXEL);
-                int area0x = Integer.parseInt(wpps.split(",")[0]);
-                int area0y = Integer.parseInt(wpps.split(",")[1]);
-
-                String gpmp = set.getCalibrationValue(SCREEN_INFO_FAB_GREEN_PIXEL);
-                int area1x = Integer.parseInt(gpmp.split(",")[0]);
-                int area1y = Integer.parseInt(gpmp.split(",")[1]);
-
-                area[0] = new Point(area0x, area0y);
-                area[1] = new Point(area1x, area1y);
-
-                areaColor[0] = Color.parseColor(set.getCalibrationValue(SCREEN_INFO_CARD_WHITE_HEX));
-                areaColor[1] = Color.parseColor(set.getCalibrationValue(SCREEN_INFO_FAB_GREEN_HEX));
-            } catch (Exception e) {
-                Log.e("ScreenWatcher", e.getMessage());
-            }
+    private Markers initMarkerPixels(@NonNull CalibrationProfile calibration) {
+        ScreenClassifier classifier =
+                new ScreenClassifier(calibration, displayMetrics.widthPixels, displayMetrics.heightPixels);
+        ScanPoint[] points = classifier.getPoints();
+        Point[] area = new Point[points.length];
+        for (int i = 0; i < points.length; i++) {
+            area[i] = new Point(points[i].xCoord, points[i].yCoord);
         }
+        return new Markers(classifier, area);
+    }
 
-        if (area[0] == null || area[1] == null) {
-            area[0] = new Point(                // these values used to get "white" left of "power up"
-                    (int) Math.round(displayMetrics.widthPixels * 0.041667),
-                    (int) Math.round(displayMetrics.heightPixels * 0.8046875));
-            area[1] = new Point(                // these values used to get greenish color in transfer button
-                    (int) Math.round(displayMetrics.widthPixels * 0.862445),
-                    (int) Math.round(displayMetrics.heightPixels * 0.9004));
+    /**
+     * Get the marker pixels for the current calibration, which the user may have changed since the last check.
+     */
+    private Markers getMarkers() {
+        Markers current = markers;
+        CalibrationProfile calibration = GoIVSettings.getInstance(pokefly).getCalibrationProfile();
+        if (calibration != current.classifier.getCalibration()) {
+            current = initMarkerPixels(calibration); // The user recalibrated since
+            markers = current;
         }
+        return current;
     }
 
     /**
      * Scan a screen every time a user presses the screen, and trigger the quickIvPreview and IVButton to show if
-     * he's on a pokemon screen.
+     * he's on a pokemon screen. With a screen watcher frame rate, scan the frames of the screen instead.
      */
     @SuppressLint("RtlHardcoded")
     public void watchScreen() {
@@ -122,49 +136,187 @@ public class ScreenWatcher {
         touchView.setOnTouchListener(new GoIVOnTouchEventLogic());
         WindowManager windowManager = (WindowManager) pokefly.getSystemService(Pokefly.WINDOW_SERVICE);
         windowManager.addView(touchView, touchViewParams);
+
+        int frameRate = GoIVSettings.getInstance(pokefly).getScreenWatcherFrameRate();
+        if (frameRate > 0 && ScreenGrabber.getInstance() != null) {
+            frameScan = new FrameScan(frameRate);
+            ScreenGrabber.getInstance().watchFrames(frameScan);
+            watchingFrames = true;
+            autoAppraisal.setWatchingFrames(true);
+        }
     }
 
     /**
-     * isUserOnPokemonScreen
-     * Scans the device screen to check area[0] for the white and area[1] for the transfer button.
-     * If both exist then the user is on the pokemon screen.
+     * Scans the marker pixels of the device screen to tell which screen the user is on.
+     *
+     * @return The screen type, or null if the screen couldn't be read
      */
-    private boolean isUserOnPokemonScreen() {
-        if (ScreenGrabber.getInstance() != null) {
-            @ColorInt int[] pixels = ScreenGrabber.getInstance().grabPixels(area);
-            if (pixels != null) {
-                if (areaColor[0] != null) {
-                    return pixels[0] == areaColor[0] && pixels[1] == areaColor[1];
-                } else {
-                    return (pixels[0] == Color.rgb(250, 250, 250) || pixels[0] == Color.rgb(249, 249, 249))
-                            && pixels[1] == Color.rgb(28, 135, 150);
-                }
-            }
+    private @Nullable ScreenClassifier.ScreenType classifyUserScreen() {
+        ScreenGrabber screenGrabber = ScreenGrabber.getInstance();
+        if (screenGrabber == null) {
+            return null;
+        }
+        Markers current = getMarkers();
+        int[] pixels = screenGrabber.grabPixels(current.area);
+        if (pixels == null) {
+            return null;
         }
-        return false;
+        return current.classifier.classify(pixels).type;
+    }
+
+    /**
+     * Show the IVButton and the quickIvPreview, the user is on the pokemon screen.
+     */
+    private void onPokemonScreenEntered() {
+        pokefly.getIvButton().setShown(true, pokefly.getInfoShownSent());
+        pokefly.getIvPreviewPrinter().printIVPreview(pokefly.getIvButton());
+    }
+
+    /**
+     * Hide the IVButton, the user isn't on the pokemon screen.
+     */
+    private void onPokemonScreenLeft() {
+        pokefly.getIvButton().setShown(false, pokefly.getInfoShownSent());
+        // The user left the pokemon screen, any scan still running is of a screen that's gone
+        pokefly.getScanExecutor().cancelPending();
     }
 
     /**
      * The running method which is called initially by the touchevent, and which calls itself like an echo a couple
      * of times just to retry - in case the user is running a particularly fast / slow phone.
+     * <p>
+     * A screen which couldn't be read or classified may be a transition, so it's only retried. The IVButton is only
+     * hidden when the screen is a pokemon screen which can't be scanned, or is still another screen after the last
+     * retry.
      */
     private class ScreenScan implements Runnable {
         @Override public void run() {
             if (screenScanRetries > 0) {
-                if (isUserOnPokemonScreen()) {
+                ScreenClassifier.ScreenType screen = classifyUserScreen();
+                if (screen == ScreenClassifier.ScreenType.POKEMON_INFO) {
                     screenScanRetries = 0; //skip further retries.
-                    pokefly.getIvButton().setShown(true, pokefly.getInfoShownSent());
-                    pokefly.getIvPreviewPrinter().printIVPreview(pokefly.getIvButton());
+                    onPokemonScreenEntered();
+
+                } else if (screen != null && screen != ScreenClassifier.ScreenType.UNKNOWN) {
+                    // A pokemon screen which can't be scanned, it can only change with the next touch
+                    screenScanRetries = 0;
+                    onPokemonScreenLeft();
 
                 } else {
                     screenScanRetries--;
-                    screenScanHandler.postDelayed(screenScanRunnable, SCREEN_SCAN_DELAY_MS);
-                    pokefly.getIvButton().setShown(false, pokefly.getInfoShownSent());
+                    if (screenScanRetries > 0) {
+                        screenScanHandler.postDelayed(screenScanRunnable, SCREEN_SCAN_DELAY_MS);
+                    } else if (screen != null) {
+                        onPokemonScreenLeft();
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Checks the frames of the screen on the frame thread, at most frameRate times per second, and tells the main
+     * thread when the user entered or left the pokemon screen.
+     * <p>
+     * Frames only come while the screen changes, so the last one may come right after a checked frame. The markers of
+     * a frame which comes too soon are kept, and checked once the interval is over unless another frame came.
+     */
+    private class FrameScan implements ScreenGrabber.FrameListener {
+        private final Handler mainHandler = new Handler(Looper.getMainLooper());
+        private final long minFrameIntervalNanos;
+        private volatile boolean resetRequested = false;
+        // Only used on the frame thread
+        private Handler frameHandler;
+        private long lastFrameNanos = 0;
+        private Boolean onPokemonScreen = false; // Null until the frames tell again after a reset
+        private boolean changedMatches;
+        private int changedSamples = 0;
+        private Markers throttledMarkers;
+        private int[] throttledPixels;
+
+        private final Runnable checkThrottledFrame = new Runnable() {
+            @Override public void run() {
+                lastFrameNanos = SystemClock.elapsedRealtimeNanos();
+                check(throttledMarkers, throttledPixels);
+                throttledMarkers = null;
+                throttledPixels = null;
+            }
+        };
+
+        FrameScan(int frameRate) {
+            minFrameIntervalNanos = TimeUnit.SECONDS.toNanos(1) / frameRate;
+        }
+
+        /**
+         * Forget which screen the frames showed, so the next frames tell the main thread again even if it's the same
+         * screen. Called on the main thread when the user touches the screen, which may go to another pokemon without
+         * ever leaving the pokemon screen.
+         */
+        void reset() {
+            resetRequested = true;
+        }
+
+        @Override public void onFrame(@NonNull ScreenPixels frame) {
+            if (frameHandler == null) {
+                frameHandler = new Handler(Looper.myLooper());
+            }
+            Markers current = getMarkers();
+            long now = SystemClock.elapsedRealtimeNanos();
+            long wait = lastFrameNanos + minFrameIntervalNanos - now;
+            frameHandler.removeCallbacks(checkThrottledFrame);
+            if (wait > 0) {
+                throttledMarkers = current;
+                throttledPixels = ScreenGrabber.getPixels(frame, current.area);
+                frameHandler.postDelayed(checkThrottledFrame, TimeUnit.NANOSECONDS.toMillis(wait) + 1);
+                return;
+            }
+            throttledMarkers = null;
+            throttledPixels = null;
+            lastFrameNanos = now;
+            autoAppraisal.onFrame(frame);
+            check(current, ScreenGrabber.getPixels(frame, current.area));
+        }
+
+        private void check(Markers current, int[] pixels) {
+            if (resetRequested) {
+                resetRequested = false;
+                onPokemonScreen = null;
+                changedSamples = 0;
+            }
+            boolean matches = current.classifier.classify(pixels).type == ScreenClassifier.ScreenType.POKEMON_INFO;
+            if (onPokemonScreen != null && matches == onPokemonScreen) {
+                changedSamples = 0;
+                return;
+            }
+            if (changedSamples > 0 && matches != changedMatches) {
+                changedSamples = 0;
+            }
+            changedMatches = matches;
+            changedSamples++;
+            if (changedSamples < FRAME_STABLE_SAMPLES) {
+                return;
+            }
+            changedSamples = 0;
+            onPokemonScreen = matches;
+            final boolean entered = matches;
+            mainHandler.post(new Runnable() {
+                @Override public void run() {
+                    // Ignore frames once unwatched, and while the user appraises: the appraisal covers the markers
+                    if (!watchingFrames || appraisalBox.getVisibility() == View.VISIBLE) {
+                        return;
+                    }
+                    // The frames told, no need to grab the screen after the touch
+                    screenScanHandler.removeCallbacks(screenScanRunnable);
+                    if (entered) {
+                        onPokemonScreenEntered();
+                    } else {
+                        onPokemonScreenLeft();
+                    }
+                }
+            });
+        }
+    }
+
     /**
      * The logic which should run every time goiv is running and the user presses the screen.
      */
@@ -181,8 +333,17 @@ public class ScreenWatcher {
                 } else {
                     // Not appraising, let's check to see if they're looking at a pokemon screen.
                     // The postDelayed will wait SCREEN_SCAN_DELAY_MS after the user touches the screen before
-                    // performing a scan of the screen to detect the pixels associated with a Pokemon screen.
+                    // performing a scan of the screen to detect the pixels associated with a Pokemon screen. When the
+                    // frames are watched, they usually tell first and cancel it, but a touch may not change the
+                    // screen at all.
+                    if (frameScan != null) {
+                        frameScan.reset();
+                    }
                     if (screenScanHandler != null) { // Ensure this is not executed after unwatchScreen()
+                        if (ScreenGrabber.getInstance() != null) {
+                            // Have a frame ready for the scan, grabPixels would wait for it on the main thread
+                            ScreenGrabber.getInstance().prepareGrab();
+                        }
                         screenScanHandler.removeCallbacks(screenScanRunnable);
                         screenScanHandler.postDelayed(screenScanRunnable, SCREEN_SCAN_INITIAL_DELAY_MS);
                         screenScanRetries = SCREEN_SCAN_RETRIES;
@@ -198,6 +359,14 @@ public class ScreenWatcher {
      * Undoes the effects of watchScreen.
      */
     public void unwatchScreen() {
+        if (watchingFrames) {
+            watchingFrames = false;
+            autoAppraisal.setWatchingFrames(false);
+            if (ScreenGrabber.getInstance() != null) {
+                ScreenGrabber.getInstance().unwatchFrames();
+            }
+            frameScan = null;
+        }
         WindowManager windowManager = (WindowManager) pokefly.getSystemService(Pokefly.WINDOW_SERVICE);
         windowManager.removeView(touchView);
         touchViewParams = null;
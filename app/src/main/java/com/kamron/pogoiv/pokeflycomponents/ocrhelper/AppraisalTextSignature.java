@@ -0,0 +1,76 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import android.support.annotation.NonNull;
+
+/**
+ * A cheap signature of the text in the appraisal box, to tell from frame to frame whether the team leader is still
+ * typing without running any OCR.
+ * <p>
+ * The signature combines how many pixels of the appraisal text color each row of a sample grid over the box hits:
+ * every letter the typewriter animation adds changes the count of some row, so the signature stays the same once the
+ * text is complete.
+ */
+public final class AppraisalTextSignature {
+    /**
+     * The signature of a box without text.
+     */
+    public static final int NO_TEXT = 0;
+
+    private static final int SAMPLE_ROWS = 24;
+    private static final int SAMPLE_COLUMNS = 96;
+    /**
+     * How many samples must hit text before the box counts as having any, so noise doesn't look like text.
+     */
+    private static final int MIN_TEXT_SAMPLES = 3;
+    // The color of the appraisal text, and how far from it the anti-aliased edges of the letters may be
+    private static final int TEXT_R = 68;
+    private static final int TEXT_G = 105;
+    private static final int TEXT_B = 108;
+    private static final int TEXT_DISTANCE = 60;
+
+    private AppraisalTextSignature() {
+    }
+
+    /**
+     * Compute the signature of the text in an area of a screen.
+     *
+     * @param screen The screen, which may be a scaled down frame
+     * @param box    The area of the appraisal box, see OcrHelper.getAppraisalBoxArea
+     * @return The signature, NO_TEXT if the box has no text
+     */
+    public static int of(@NonNull ScreenPixels screen, @NonNull ScanArea box) {
+        int left = Math.max(0, box.xPoint);
+        int top = Math.max(0, box.yPoint);
+        int right = Math.min(screen.getWidth(), box.xPoint + box.width);
+        int bottom = Math.min(screen.getHeight(), box.yPoint + box.height);
+        if (right <= left || bottom <= top) {
+            return NO_TEXT;
+        }
+
+        int signature = 1;
+        int textSamples = 0;
+        for (int row = 0; row < SAMPLE_ROWS; row++) {
+            int y = top + (bottom - top) * row / SAMPLE_ROWS;
+            int rowSamples = 0;
+            for (int column = 0; column < SAMPLE_COLUMNS; column++) {
+                int x = left + (right - left) * column / SAMPLE_COLUMNS;
+                if (isText(screen.getPixel(x, y))) {
+                    rowSamples++;
+                }
+            }
+            signature = 31 * signature + rowSamples;
+            textSamples += rowSamples;
+        }
+        if (textSamples < MIN_TEXT_SAMPLES) {
+            return NO_TEXT;
+        }
+        return signature != NO_TEXT ? signature : 1;
+    }
+
+    private static boolean isText(int pixel) {
+        int rDiff = TEXT_R - ((pixel >> 16) & 0xFF);
+        int gDiff = TEXT_G - ((pixel >> 8) & 0xFF);
+        int bDiff = TEXT_B - (pixel & 0xFF);
+        return rDiff * rDiff + gDiff * gDiff + bDiff * bDiff <= TEXT_DISTANCE * TEXT_DISTANCE;
+    }
+}
@@ -0,0 +1,342 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.kamron.pogoiv.GoIVSettings;
+
+import java.util.Map;
+
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.ARC_INIT_POINT;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.ARC_RADIUS;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.CANDY_NAME_AREA;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_CANDY_AMOUNT_AREA;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_CP_AREA;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_EVOLUTION_COST_AREA;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_GENDER_AREA;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_HP_AREA;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_NAME_AREA;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_POWER_UP_CANDY_COST;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_POWER_UP_STARDUST_COST;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_TYPE_AREA;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.SCREEN_INFO_CARD_WHITE_HEX;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.SCREEN_INFO_CARD_WHITE_PIXEL;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.SCREEN_INFO_FAB_GREEN_HEX;
+import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.SCREEN_INFO_FAB_GREEN_PIXEL;
+
+/**
+ * The screen calibration of the user, parsed once from the values saved by GoIVSettings.saveScreenCalibrationResults.
+ * <p>
+ * A profile never changes: GoIVSettings parses a new one when the calibration changes, so a scan which took a profile
+ * reads all its fields from the same calibration. Its areas must not be modified. A value which can't be parsed is
+ * null, and the OCR falls back to the default location of that field, as it does without a calibration.
+ */
+public final class CalibrationProfile {
+    /**
+     * The profile of a user who didn't calibrate GoIV: every area is null.
+     */
+    public static final CalibrationProfile UNCALIBRATED = new CalibrationProfile();
+
+    /**
+     * The height of the "LUCKY POKEMON" line, which pushes the fields below the HP down, relative to the power up
+     * candy cost field, or to the screen height when that field isn't calibrated.
+     */
+    private static final double LUCKY_OFFSET_FACTOR = 1.2;
+    private static final double LUCKY_OFFSET_SCREEN_FACTOR = 0.0247 * LUCKY_OFFSET_FACTOR;
+
+    private final boolean calibrated;
+    private final int luckyOffset;
+
+    private final ScanArea nameArea;
+    private final ScanArea typeArea;
+    private final ScanArea genderArea;
+    private final ScanArea candyNameArea;
+    private final ScanArea hpArea;
+    private final ScanArea cpArea;
+    private final ScanArea candyAmountArea;
+    private final ScanArea evolutionCostArea;
+    private final ScanArea powerUpStardustCostArea;
+    private final ScanArea powerUpCandyCostArea;
+
+    private final ScanPoint arcInit;
+    private final int arcRadius;
+
+    private final ScanPoint cardWhitePixel;
+    private final Integer cardWhiteColor;
+    private final ScanPoint fabGreenPixel;
+    private final Integer fabGreenColor;
+
+    /**
+     * The same profile for a lucky pokemon, computed with this one when its offset only depends on the calibration.
+     */
+    private final CalibrationProfile luckyProfile;
+
+    private CalibrationProfile() {
+        calibrated = false;
+        luckyOffset = 0;
+        nameArea = null;
+        typeArea = null;
+        genderArea = null;
+        candyNameArea = null;
+        hpArea = null;
+        cpArea = null;
+        candyAmountArea = null;
+        evolutionCostArea = null;
+        powerUpStardustCostArea = null;
+        powerUpCandyCostArea = null;
+        arcInit = null;
+        arcRadius = -1;
+        cardWhitePixel = null;
+        cardWhiteColor = null;
+        fabGreenPixel = null;
+        fabGreenColor = null;
+        luckyProfile = null;
+    }
+
+    private CalibrationProfile(@NonNull Map<String, ?> values) {
+        calibrated = true;
+        luckyOffset = 0;
+        nameArea = parseArea(values.get(POKEMON_NAME_AREA));
+        typeArea = parseArea(values.get(POKEMON_TYPE_AREA));
+        genderArea = parseArea(values.get(POKEMON_GENDER_AREA));
+        candyNameArea = parseArea(values.get(CANDY_NAME_AREA));
+        hpArea = parseArea(values.get(POKEMON_HP_AREA));
+        cpArea = parseArea(values.get(POKEMON_CP_AREA));
+        candyAmountArea = parseArea(values.get(POKEMON_CANDY_AMOUNT_AREA));
+        evolutionCostArea = parseArea(values.get(POKEMON_EVOLUTION_COST_AREA));
+        powerUpStardustCostArea = parseArea(values.get(POKEMON_POWER_UP_STARDUST_COST));
+        powerUpCandyCostArea = parseArea(values.get(POKEMON_POWER_UP_CANDY_COST));
+
+        ScanPoint parsedArcInit = parsePoint(values.get(ARC_INIT_POINT));
+        int parsedArcRadius = parseInt(values.get(ARC_RADIUS));
+        arcInit = parsedArcRadius >= 0 ? parsedArcInit : null;
+        arcRadius = parsedArcInit != null ? parsedArcRadius : -1;
+
+        ScanPoint parsedWhitePixel = parsePoint(values.get(SCREEN_INFO_CARD_WHITE_PIXEL));
+        ScanPoint parsedGreenPixel = parsePoint(values.get(SCREEN_INFO_FAB_GREEN_PIXEL));
+        Integer parsedWhiteColor = parseColor(values.get(SCREEN_INFO_CARD_WHITE_HEX));
+        Integer parsedGreenColor = parseColor(values.get(SCREEN_INFO_FAB_GREEN_HEX));
+        if (parsedWhitePixel != null && parsedGreenPixel != null) {
+            cardWhitePixel = parsedWhitePixel;
+            fabGreenPixel = parsedGreenPixel;
+        } else {
+            cardWhitePixel = null;
+            fabGreenPixel = null;
+        }
+        if (parsedWhiteColor != null && parsedGreenColor != null) {
+            cardWhiteColor = parsedWhiteColor;
+            fabGreenColor = parsedGreenColor;
+        } else {
+            cardWhiteColor = null;
+            fabGreenColor = null;
+        }
+
+        luckyProfile = powerUpCandyCostArea != null
+                ? new CalibrationProfile(this, (int) (powerUpCandyCostArea.height * LUCKY_OFFSET_FACTOR))
+                : null;
+    }
+
+    /**
+     * Copy a profile with the fields which move down on the screen of a lucky pokemon offset. The name, the CP, the
+     * level arc and the screen markers are above the "LUCKY POKEMON" line and don't move.
+     */
+    private CalibrationProfile(@NonNull CalibrationProfile profile, int luckyOffset) {
+        calibrated = profile.calibrated;
+        this.luckyOffset = luckyOffset;
+        nameArea = profile.nameArea;
+        typeArea = offset(profile.typeArea, luckyOffset);
+        genderArea = offset(profile.genderArea, luckyOffset);
+        candyNameArea = offset(profile.candyNameArea, luckyOffset);
+        hpArea = offset(profile.hpArea, luckyOffset);
+        cpArea = profile.cpArea;
+        candyAmountArea = offset(profile.candyAmountArea, luckyOffset);
+        evolutionCostArea = offset(profile.evolutionCostArea, luckyOffset);
+        powerUpStardustCostArea = offset(profile.powerUpStardustCostArea, luckyOffset);
+        powerUpCandyCostArea = offset(profile.powerUpCandyCostArea, luckyOffset);
+        arcInit = profile.arcInit;
+        arcRadius = profile.arcRadius;
+        cardWhitePixel = profile.cardWhitePixel;
+        cardWhiteColor = profile.cardWhiteColor;
+        fabGreenPixel = profile.fabGreenPixel;
+        fabGreenColor = profile.fabGreenColor;
+        luckyProfile = null;
+    }
+
+    /**
+     * Parse the calibration values saved by GoIVSettings.saveScreenCalibrationResults.
+     *
+     * @param values The saved preferences, as returned by SharedPreferences.getAll
+     * @return The profile, UNCALIBRATED if the user didn't calibrate GoIV
+     */
+    public static @NonNull CalibrationProfile parse(@NonNull Map<String, ?> values) {
+        if (!Boolean.TRUE.equals(values.get(GoIVSettings.MANUAL_SCREEN_CALIBRATION_ACTIVE))) {
+            return UNCALIBRATED;
+        }
+        return new CalibrationProfile(values);
+    }
+
+    private static @Nullable ScanArea parseArea(@Nullable Object value) {
+        if (!(value instanceof String)) {
+            return null;
+        }
+        try {
+            String[] values = ((String) value).split(",");
+            return new ScanArea(Integer.parseInt(values[0]), Integer.parseInt(values[1]),
+                    Integer.parseInt(values[2]), Integer.parseInt(values[3]));
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private static @Nullable ScanPoint parsePoint(@Nullable Object value) {
+        if (!(value instanceof String)) {
+            return null;
+        }
+        try {
+            String[] values = ((String) value).split(",");
+            return new ScanPoint(Integer.parseInt(values[0]), Integer.parseInt(values[1]));
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private static int parseInt(@Nullable Object value) {
+        if (!(value instanceof String)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt((String) value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parse a color saved as "#RRGGBB" by GoIVSettings into an opaque color.
+     */
+    private static @Nullable Integer parseColor(@Nullable Object value) {
+        if (!(value instanceof String)) {
+            return null;
+        }
+        String hex = (String) value;
+        if (hex.length() != 7 || hex.charAt(0) != '#' || hex.charAt(1) == '-' || hex.charAt(1) == '+') {
+            return null;
+        }
+        try {
+            return 0xFF000000 | Integer.parseInt(hex.substring(1), 16);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static @Nullable ScanArea offset(@Nullable ScanArea area, int luckyOffset) {
+        return area != null ? new ScanArea(area.xPoint, area.yPoint + luckyOffset, area.width, area.height) : null;
+    }
+
+    /**
+     * Whether the user calibrated GoIV. The areas of an uncalibrated profile are all null.
+     */
+    public boolean isCalibrated() {
+        return calibrated;
+    }
+
+    /**
+     * Get the profile to scan a lucky pokemon with, where the fields below the HP are offset downward by the height
+     * of the "LUCKY POKEMON" line.
+     *
+     * @param screenHeight The height of the screen, used when the offset can't be computed from the calibration
+     */
+    public @NonNull CalibrationProfile getLuckyProfile(int screenHeight) {
+        if (luckyOffset != 0) {
+            return this;
+        }
+        if (luckyProfile != null) {
+            return luckyProfile;
+        }
+        return new CalibrationProfile(this, (int) (LUCKY_OFFSET_SCREEN_FACTOR * screenHeight));
+    }
+
+    /**
+     * How much the areas of this profile are offset for a lucky pokemon, 0 if they aren't.
+     */
+    public int getLuckyOffset() {
+        return luckyOffset;
+    }
+
+    public @Nullable ScanArea getNameArea() {
+        return nameArea;
+    }
+
+    public @Nullable ScanArea getTypeArea() {
+        return typeArea;
+    }
+
+    public @Nullable ScanArea getGenderArea() {
+        return genderArea;
+    }
+
+    public @Nullable ScanArea getCandyNameArea() {
+        return candyNameArea;
+    }
+
+    public @Nullable ScanArea getHpArea() {
+        return hpArea;
+    }
+
+    public @Nullable ScanArea getCpArea() {
+        return cpArea;
+    }
+
+    public @Nullable ScanArea getCandyAmountArea() {
+        return candyAmountArea;
+    }
+
+    public @Nullable ScanArea getEvolutionCostArea() {
+        return evolutionCostArea;
+    }
+
+    public @Nullable ScanArea getPowerUpStardustCostArea() {
+        return powerUpStardustCostArea;
+    }
+
+    public @Nullable ScanArea getPowerUpCandyCostArea() {
+        return powerUpCandyCostArea;
+    }
+
+    /**
+     * The center of the level arc, null if it isn't calibrated. Never null when the radius is calibrated.
+     */
+    public @Nullable ScanPoint getArcInit() {
+        return arcInit;
+    }
+
+    /**
+     * The radius of the level arc, -1 if it isn't calibrated.
+     */
+    public int getArcRadius() {
+        return arcRadius;
+    }
+
+    /**
+     * The pixel of the info card which is white on the pokemon screen, null if it isn't calibrated. Never null when
+     * the green pixel is calibrated.
+     */
+    public @Nullable ScanPoint getCardWhitePixel() {
+        return cardWhitePixel;
+    }
+
+    public @Nullable Integer getCardWhiteColor() {
+        return cardWhiteColor;
+    }
+
+    /**
+     * The pixel of the menu button which is green on the pokemon screen, null if it isn't calibrated.
+     */
+    public @Nullable ScanPoint getFabGreenPixel() {
+        return fabGreenPixel;
+    }
+
+    public @Nullable Integer getFabGreenColor() {
+        return fabGreenColor;
+    }
+}
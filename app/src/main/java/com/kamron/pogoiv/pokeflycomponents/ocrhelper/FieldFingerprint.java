@@ -0,0 +1,116 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+/**
+ * A perceptual fingerprint of the text of a filtered field, which stays the same when a few pixels of the field
+ * change, like the shimmer of an animation.
+ * <p>
+ * The bounding box of the text is divided in a grid of 16 by 4 cells, and each cell gives one bit of a 64-bit hash:
+ * whether the cell holds more text than the average cell. Two fingerprints match when their hashes are within a
+ * Hamming distance, and their text has nearly the same bounding box and pixel count.
+ * <p>
+ * Texts which only differ by a character or two can have the same fingerprint, so a match is only a likely match.
+ * Only use it for fields where a wrong match is caught later, like the names the PokemonNameCorrector checks.
+ */
+final class FieldFingerprint {
+    private static final int COLUMNS = 16;
+    private static final int ROWS = 4;
+
+    /**
+     * Bit (row * COLUMNS + column) is set if the cell holds more text than the average cell.
+     */
+    final long bits;
+    final int textPixels;
+    final int textWidth;
+    final int textHeight;
+
+    FieldFingerprint(long bits, int textPixels, int textWidth, int textHeight) {
+        this.bits = bits;
+        this.textPixels = textPixels;
+        this.textWidth = textWidth;
+        this.textHeight = textHeight;
+    }
+
+    /**
+     * Fingerprint a filtered field, where every pixel which isn't text has the background color.
+     *
+     * @param pixels  The pixels of the field
+     * @param width   The width of the field
+     * @param height  The height of the field
+     * @param bgColor The color which replaced everything but the text
+     */
+    static FieldFingerprint of(int[] pixels, int width, int height, int bgColor) {
+        int minX = width;
+        int minY = height;
+        int maxX = -1;
+        int maxY = -1;
+        int textPixels = 0;
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * width;
+            for (int x = 0; x < width; x++) {
+                if (pixels[rowStart + x] != bgColor) {
+                    textPixels++;
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        if (textPixels == 0) {
+            return new FieldFingerprint(0, 0, 0, 0);
+        }
+
+        int textWidth = maxX - minX + 1;
+        int textHeight = maxY - minY + 1;
+        int[] columnWidths = new int[COLUMNS];
+        int[] rowHeights = new int[ROWS];
+        for (int dx = 0; dx < textWidth; dx++) {
+            columnWidths[dx * COLUMNS / textWidth]++;
+        }
+        for (int dy = 0; dy < textHeight; dy++) {
+            rowHeights[dy * ROWS / textHeight]++;
+        }
+
+        int[] cellPixels = new int[COLUMNS * ROWS];
+        for (int y = minY; y <= maxY; y++) {
+            int rowStart = y * width;
+            int cellRow = (y - minY) * ROWS / textHeight;
+            for (int x = minX; x <= maxX; x++) {
+                if (pixels[rowStart + x] != bgColor) {
+                    cellPixels[cellRow * COLUMNS + (x - minX) * COLUMNS / textWidth]++;
+                }
+            }
+        }
+
+        // A cell is set if its density, cellPixels / cellArea, is above the density of the whole text box
+        long textArea = (long) textWidth * textHeight;
+        long bits = 0;
+        for (int cell = 0; cell < COLUMNS * ROWS; cell++) {
+            long cellArea = (long) columnWidths[cell % COLUMNS] * rowHeights[cell / COLUMNS];
+            if (cellPixels[cell] * textArea > textPixels * cellArea) {
+                bits |= 1L << cell;
+            }
+        }
+        return new FieldFingerprint(bits, textPixels, textWidth, textHeight);
+    }
+
+    /**
+     * The number of cells which differ between two fingerprints.
+     */
+    int distance(FieldFingerprint other) {
+        return Long.bitCount(bits ^ other.bits);
+    }
+
+    /**
+     * Whether two fingerprints are likely of the same text.
+     *
+     * @param maxDistance The maximum number of cells which may differ
+     */
+    boolean matches(FieldFingerprint other, int maxDistance) {
+        int pixelTolerance = Math.max(2, textPixels / 64);
+        return distance(other) <= maxDistance
+                && Math.abs(textWidth - other.textWidth) <= 1
+                && Math.abs(textHeight - other.textHeight) <= 1
+                && Math.abs(textPixels - other.textPixels) <= pixelTolerance;
+    }
+}
@@ -0,0 +1,82 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import android.support.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * The OCR results of the latest crops of one field, looked up by fingerprint rather than by exact pixels, so a field
+ * which only changed by a few pixels since it was last read doesn't need Tesseract again.
+ * <p>
+ * The cache holds a fixed number of entries and replaces the oldest one when full. Lookups compare the fingerprint to
+ * every entry, which is cheap for the few entries a field needs.
+ */
+class FingerprintCache {
+    private final String fieldName;
+    private final int maxDistance;
+    private final FieldFingerprint[] fingerprints;
+    private final String[] results;
+    private int next = 0;
+
+    private int lookups = 0;
+    private int hits = 0;
+
+    /**
+     * @param fieldName   The name of the field, used in the statistics
+     * @param capacity    How many results to keep
+     * @param maxDistance How many cells of two fingerprints may differ for them to match
+     */
+    FingerprintCache(String fieldName, int capacity, int maxDistance) {
+        this.fieldName = fieldName;
+        this.maxDistance = maxDistance;
+        fingerprints = new FieldFingerprint[capacity];
+        results = new String[capacity];
+    }
+
+    /**
+     * Get the result of the closest matching fingerprint.
+     *
+     * @return The OCR result, or null if no fingerprint matches
+     */
+    synchronized @Nullable String get(FieldFingerprint fingerprint) {
+        lookups++;
+        int bestDistance = Integer.MAX_VALUE;
+        String bestResult = null;
+        for (int i = 0; i < fingerprints.length; i++) {
+            if (fingerprints[i] != null && fingerprint.matches(fingerprints[i], maxDistance)) {
+                int distance = fingerprint.distance(fingerprints[i]);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    bestResult = results[i];
+                }
+            }
+        }
+        if (bestResult != null) {
+            hits++;
+        }
+        return bestResult;
+    }
+
+    synchronized void put(FieldFingerprint fingerprint, String result) {
+        fingerprints[next] = fingerprint;
+        results[next] = result;
+        next = (next + 1) % fingerprints.length;
+    }
+
+    synchronized int getLookups() {
+        return lookups;
+    }
+
+    synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The hit rate of the lookups so far, like "hp: 12/40 (30%) at distance 1"
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%s: %d/%d (%d%%) at distance %d", fieldName, hits, lookups,
+                lookups == 0 ? 0 : hits * 100 / lookups, maxDistance);
+    }
+}
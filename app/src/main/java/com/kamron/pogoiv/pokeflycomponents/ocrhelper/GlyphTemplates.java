@@ -0,0 +1,391 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads the characters of a number field, like the CP or the candy amount, by comparing each character to templates
+ * of the characters the user confirmed in that field before. The game renders these fields in a few fixed fonts, so
+ * once every character has been seen a couple of times, the templates read the field in microseconds instead of the
+ * milliseconds Tesseract takes.
+ * <p>
+ * A field is split in characters at the columns without text. Each character is scaled to a grid of 8 by 12 cells,
+ * and compared to the templates by normalized cross-correlation, which ignores differences of size and thickness. The
+ * templates only answer when every character is clearly closer to one template than to any other; otherwise the
+ * caller falls back to Tesseract and keeps the field as a sample, which is learned once the user confirms what it
+ * shows. Only confirmed values are learned, since a misread of Tesseract would teach a wrong template.
+ * <p>
+ * A character which was never learned would be read as the closest one which was, so the templates don't answer
+ * until every character of the field's alphabet has a template.
+ */
+class GlyphTemplates {
+    private static final int GRID_COLUMNS = 8;
+    private static final int GRID_ROWS = 12;
+    private static final int MIN_GLYPH_PIXELS = 3; // Smaller chunks are noise which survived the color filter
+
+    /**
+     * How many times a character must have been learned before its template is used.
+     */
+    private static final int MIN_SAMPLES = 2;
+    /**
+     * The correlation a character needs with its best template, and how much lower its second best must be.
+     */
+    private static final float MIN_SCORE = 0.85f;
+    private static final float MIN_MARGIN = 0.05f;
+    /**
+     * Below this correlation with the template of the character it was confirmed as, a character is likely out of
+     * place, like a sample of another field, and isn't learned. It isn't learned either if it correlates better with
+     * the template of another character.
+     */
+    private static final float MIN_LEARN_SCORE = 0.6f;
+    /**
+     * How much the width to height ratio of a character may differ from its template, as a factor.
+     */
+    private static final float MAX_ASPECT_FACTOR = 1.35f;
+
+    private static class Template {
+        final float[] sum = new float[GRID_COLUMNS * GRID_ROWS];
+        final float[] features = new float[GRID_COLUMNS * GRID_ROWS];
+        float aspectSum = 0;
+        int samples = 0;
+
+        void add(float[] sampleFeatures, float aspect) {
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += sampleFeatures[i];
+            }
+            System.arraycopy(sum, 0, features, 0, sum.length);
+            normalize(features);
+            aspectSum += aspect;
+            samples++;
+        }
+
+        float aspect() {
+            return aspectSum / samples;
+        }
+    }
+
+    private final String fieldName;
+    private final String alphabet;
+    private final Map<Character, Template> templates = new LinkedHashMap<>();
+
+    /**
+     * The last field read by Tesseract, cropped to the region which was read, until it's learned or replaced.
+     */
+    @Nullable private int[] samplePixels;
+    private int sampleWidth;
+    private int sampleHeight;
+    private int sampleBgColor;
+    @Nullable private String sampleText;
+
+    private int reads = 0;
+    private int templateReads = 0;
+
+    /**
+     * @param fieldName The name of the field, used in the statistics
+     * @param alphabet  Every character the field can show
+     */
+    GlyphTemplates(String fieldName, String alphabet) {
+        this.fieldName = fieldName;
+        this.alphabet = alphabet;
+    }
+
+    /**
+     * Read the characters in a region of a filtered field, where every pixel which isn't text has the background
+     * color.
+     *
+     * @param pixels  The pixels of the field
+     * @param width   The width of the field
+     * @param left    The first column of the region
+     * @param top     The first row of the region
+     * @param right   The column after the region
+     * @param bottom  The row after the region
+     * @param bgColor The color which replaced everything but the text
+     * @return The characters without spaces, or null if the templates aren't confident about each of them
+     */
+    synchronized @Nullable String recognize(int[] pixels, int width, int left, int top, int right, int bottom,
+                                            int bgColor) {
+        reads++;
+        if (!isComplete()) {
+            return null;
+        }
+        List<int[]> glyphs = segment(pixels, width, left, top, right, bottom, bgColor);
+        if (glyphs.isEmpty()) {
+            return null;
+        }
+
+        float[] features = new float[GRID_COLUMNS * GRID_ROWS];
+        StringBuilder text = new StringBuilder(glyphs.size());
+        for (int[] glyph : glyphs) {
+            float aspect = extractFeatures(pixels, width, glyph, bgColor, features);
+            float bestScore = -1;
+            float secondScore = -1;
+            char bestCharacter = 0;
+            for (Map.Entry<Character, Template> entry : templates.entrySet()) {
+                Template template = entry.getValue();
+                if (template.samples < MIN_SAMPLES) {
+                    continue;
+                }
+                if (!isSimilarAspect(aspect, template.aspect())) {
+                    continue; // Ruled out by its shape, which counts as a runner-up far behind
+                }
+                float score = dot(features, template.features);
+                if (score > bestScore) {
+                    secondScore = bestScore;
+                    bestScore = score;
+                    bestCharacter = entry.getKey();
+                } else if (score > secondScore) {
+                    secondScore = score;
+                }
+            }
+            if (bestScore < MIN_SCORE || bestScore - secondScore < MIN_MARGIN) {
+                return null;
+            }
+            text.append(bestCharacter);
+        }
+
+        templateReads++;
+        return text.toString();
+    }
+
+    /**
+     * Whether every character of the alphabet has a template which is used.
+     */
+    private boolean isComplete() {
+        for (int i = 0; i < alphabet.length(); i++) {
+            Template template = templates.get(alphabet.charAt(i));
+            if (template == null || template.samples < MIN_SAMPLES) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keep a region of a field which Tesseract read, to learn it once the user confirms what it shows. Replaces the
+     * sample kept before.
+     *
+     * @param text What Tesseract read in the region, see recognize for the other parameters
+     */
+    synchronized void keepSample(int[] pixels, int width, int left, int top, int right, int bottom, int bgColor,
+                                 String text) {
+        sampleWidth = right - left;
+        sampleHeight = bottom - top;
+        samplePixels = new int[sampleWidth * sampleHeight];
+        for (int y = 0; y < sampleHeight; y++) {
+            System.arraycopy(pixels, (top + y) * width + left, samplePixels, y * sampleWidth, sampleWidth);
+        }
+        sampleBgColor = bgColor;
+        sampleText = text;
+    }
+
+    /**
+     * @return What Tesseract read in the sample, or null if there's no sample
+     */
+    synchronized @Nullable String getSampleText() {
+        return sampleText;
+    }
+
+    /**
+     * Learn the sample with the characters the user confirmed it shows, unless it was replaced since it was checked.
+     *
+     * @param checkedText What Tesseract read in the sample which was checked against the confirmed value
+     * @param text        The characters the sample shows
+     */
+    synchronized void learnSample(String checkedText, String text) {
+        if (samplePixels == null || !checkedText.equals(sampleText)) {
+            return;
+        }
+        learn(samplePixels, sampleWidth, 0, 0, sampleWidth, sampleHeight, sampleBgColor, text);
+        samplePixels = null;
+        sampleText = null;
+    }
+
+    /**
+     * Learn the characters of a field. Does nothing if the field doesn't split in as many characters as the text,
+     * if the text has a character outside of the alphabet, or if a character doesn't look like what was learned as
+     * that character before.
+     *
+     * @param text The characters the region shows, see recognize for the other parameters
+     */
+    synchronized void learn(int[] pixels, int width, int left, int top, int right, int bottom, int bgColor,
+                            String text) {
+        String characters = text.replaceAll("\\s", "");
+        List<int[]> glyphs = segment(pixels, width, left, top, right, bottom, bgColor);
+        if (characters.isEmpty() || glyphs.size() != characters.length()) {
+            return;
+        }
+        for (int i = 0; i < characters.length(); i++) {
+            if (alphabet.indexOf(characters.charAt(i)) < 0) {
+                return;
+            }
+        }
+
+        float[][] glyphFeatures = new float[glyphs.size()][GRID_COLUMNS * GRID_ROWS];
+        float[] aspects = new float[glyphs.size()];
+        for (int i = 0; i < glyphs.size(); i++) {
+            aspects[i] = extractFeatures(pixels, width, glyphs.get(i), bgColor, glyphFeatures[i]);
+            if (!isConsistent(glyphFeatures[i], characters.charAt(i))) {
+                return;
+            }
+        }
+
+        for (int i = 0; i < glyphs.size(); i++) {
+            Template template = templates.get(characters.charAt(i));
+            if (template == null) {
+                template = new Template();
+                templates.put(characters.charAt(i), template);
+            }
+            template.add(glyphFeatures[i], aspects[i]);
+        }
+    }
+
+    /**
+     * Whether a character looks like the template of the character it was confirmed as, and not more like the template
+     * of another one. Characters without an established template are always consistent.
+     */
+    private boolean isConsistent(float[] features, char character) {
+        Template template = templates.get(character);
+        if (template == null || template.samples < MIN_SAMPLES) {
+            return true;
+        }
+        float score = dot(features, template.features);
+        if (score < MIN_LEARN_SCORE) {
+            return false;
+        }
+        for (Map.Entry<Character, Template> entry : templates.entrySet()) {
+            if (entry.getKey() != character && entry.getValue().samples >= MIN_SAMPLES
+                    && dot(features, entry.getValue().features) > score) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return How many reads the templates answered, like "cp: 30/40 (75%) by template"
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%s: %d/%d (%d%%) by template", fieldName, templateReads, reads,
+                reads == 0 ? 0 : templateReads * 100 / reads);
+    }
+
+    /**
+     * Split a region in characters at the columns without text.
+     *
+     * @return The bounding boxes of the characters as {left, top, right, bottom}, right and bottom excluded
+     */
+    private static List<int[]> segment(int[] pixels, int width, int left, int top, int right, int bottom,
+                                       int bgColor) {
+        List<int[]> glyphs = new ArrayList<>();
+        int[] glyph = null;
+        int glyphPixels = 0;
+        for (int x = left; x <= right; x++) {
+            int columnTop = -1;
+            int columnBottom = -1;
+            int columnPixels = 0;
+            if (x < right) {
+                for (int y = top; y < bottom; y++) {
+                    if (pixels[y * width + x] != bgColor) {
+                        if (columnTop < 0) {
+                            columnTop = y;
+                        }
+                        columnBottom = y;
+                        columnPixels++;
+                    }
+                }
+            }
+
+            if (columnPixels > 0) {
+                if (glyph == null) {
+                    glyph = new int[]{x, columnTop, x + 1, columnBottom + 1};
+                    glyphPixels = 0;
+                } else {
+                    glyph[1] = Math.min(glyph[1], columnTop);
+                    glyph[2] = x + 1;
+                    glyph[3] = Math.max(glyph[3], columnBottom + 1);
+                }
+                glyphPixels += columnPixels;
+            } else if (glyph != null) {
+                if (glyphPixels >= MIN_GLYPH_PIXELS) {
+                    glyphs.add(glyph);
+                }
+                glyph = null;
+            }
+        }
+        return glyphs;
+    }
+
+    /**
+     * Scale a character to the template grid, as the share of text in each cell, normalized to a mean of 0 and a
+     * length of 1 so the dot product of two grids is their correlation.
+     *
+     * @param features Filled with the grid
+     * @return The width to height ratio of the character
+     */
+    private static float extractFeatures(int[] pixels, int width, int[] glyph, int bgColor, float[] features) {
+        int glyphWidth = glyph[2] - glyph[0];
+        int glyphHeight = glyph[3] - glyph[1];
+        int[] cellPixels = new int[GRID_COLUMNS * GRID_ROWS];
+        int[] cellArea = new int[GRID_COLUMNS * GRID_ROWS];
+        for (int dy = 0; dy < glyphHeight; dy++) {
+            int rowStart = (glyph[1] + dy) * width + glyph[0];
+            int cellRow = dy * GRID_ROWS / glyphHeight * GRID_COLUMNS;
+            for (int dx = 0; dx < glyphWidth; dx++) {
+                int cell = cellRow + dx * GRID_COLUMNS / glyphWidth;
+                cellArea[cell]++;
+                if (pixels[rowStart + dx] != bgColor) {
+                    cellPixels[cell]++;
+                }
+            }
+        }
+
+        // A character smaller than the grid leaves empty cells, fill them from the cell they stretch
+        for (int cell = 0; cell < features.length; cell++) {
+            int column = cell % GRID_COLUMNS;
+            int row = cell / GRID_COLUMNS;
+            int sourceCell = (row * glyphHeight / GRID_ROWS * GRID_ROWS / glyphHeight) * GRID_COLUMNS
+                    + column * glyphWidth / GRID_COLUMNS * GRID_COLUMNS / glyphWidth;
+            int source = cellArea[cell] > 0 ? cell : sourceCell;
+            features[cell] = cellArea[source] > 0 ? (float) cellPixels[source] / cellArea[source] : 0;
+        }
+        normalize(features);
+        return (float) glyphWidth / glyphHeight;
+    }
+
+    private static void normalize(float[] features) {
+        float mean = 0;
+        for (float feature : features) {
+            mean += feature;
+        }
+        mean /= features.length;
+
+        float squares = 0;
+        for (int i = 0; i < features.length; i++) {
+            features[i] -= mean;
+            squares += features[i] * features[i];
+        }
+        // A character which fills its whole box has no shape to correlate, its grid stays 0 and matches nothing
+        float length = (float) Math.sqrt(squares);
+        for (int i = 0; i < features.length; i++) {
+            features[i] = length > 0 ? features[i] / length : 0;
+        }
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static boolean isSimilarAspect(float aspect, float templateAspect) {
+        return aspect <= templateAspect * MAX_ASPECT_FACTOR && templateAspect <= aspect * MAX_ASPECT_FACTOR;
+    }
+}
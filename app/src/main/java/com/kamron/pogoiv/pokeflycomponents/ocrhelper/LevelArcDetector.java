@@ -0,0 +1,154 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import android.support.annotation.NonNull;
+
+import com.kamron.pogoiv.scanlogic.ArcGeometry;
+import com.kamron.pogoiv.scanlogic.Data;
+
+import java.util.Arrays;
+
+/**
+ * Finds the level of a pokemon from the position of the white dot on the level arc.
+ * <p>
+ * For every level the arc has a point, and the dot is at the level whose point is the most white along the radius of
+ * the arc, towards and away from its center. The pixels to probe along that radius only depend on the arc, so they
+ * are computed once per arc and screen size, and detecting a level is a walk over integer coordinates.
+ * <p>
+ * The arc is only white up to the dot, so the detector first probes every few levels from the top of the arc to find
+ * where the white starts, and only walks level by level from just above there.
+ */
+final class LevelArcDetector {
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int COARSE_STRIDE = 4;
+
+    private final ArcGeometry arc;
+    private final int screenWidth;
+    private final int screenHeight;
+
+    /**
+     * The coordinates to probe for each level index, indexed by the distance from the arc point, starting at 1: the
+     * pixels towards the arc center and the pixels away from it. A level's arrays end at the first probe outside of
+     * the screen; outOfScreen says whether they do.
+     */
+    private final int[][] towardX;
+    private final int[][] towardY;
+    private final int[][] awayX;
+    private final int[][] awayY;
+    private final boolean[] outOfScreen;
+
+    /**
+     * Precompute the probes of an arc.
+     */
+    LevelArcDetector(@NonNull ArcGeometry arc, int screenWidth, int screenHeight) {
+        this.arc = arc;
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+
+        // The dot is far smaller than this, longer white lines are as good as the longest
+        int arcRadius = (int) Math.round(Math.hypot(arc.getX(0) - arc.getInitX(), arc.getY(0) - arc.getInitY()));
+        int maxDistance = Math.max(4, arcRadius / 8);
+
+        int levels = arc.getPointCount();
+        towardX = new int[levels][];
+        towardY = new int[levels][];
+        awayX = new int[levels][];
+        awayY = new int[levels][];
+        outOfScreen = new boolean[levels];
+        for (int levelIdx = 0; levelIdx < levels; levelIdx++) {
+            int x = arc.getX(levelIdx);
+            int y = arc.getY(levelIdx);
+            double angle = Math.atan2(arc.getInitY() - y, arc.getInitX() - x);
+            double cos = Math.cos(angle);
+            double sin = Math.sin(angle);
+
+            int[] tx = new int[maxDistance + 1];
+            int[] ty = new int[maxDistance + 1];
+            int[] ax = new int[maxDistance + 1];
+            int[] ay = new int[maxDistance + 1];
+            int distance = 1;
+            for (; distance <= maxDistance; distance++) {
+                tx[distance] = (int) Math.round(x + distance * cos);
+                ty[distance] = (int) Math.round(y + distance * sin);
+                ax[distance] = (int) Math.round(x - distance * cos);
+                ay[distance] = (int) Math.round(y - distance * sin);
+                if (!isOnScreen(tx[distance], ty[distance]) || !isOnScreen(ax[distance], ay[distance])) {
+                    outOfScreen[levelIdx] = true;
+                    break;
+                }
+            }
+            towardX[levelIdx] = Arrays.copyOf(tx, distance);
+            towardY[levelIdx] = Arrays.copyOf(ty, distance);
+            awayX[levelIdx] = Arrays.copyOf(ax, distance);
+            awayY[levelIdx] = Arrays.copyOf(ay, distance);
+        }
+    }
+
+    private boolean isOnScreen(int x, int y) {
+        return x >= 0 && x < screenWidth && y >= 0 && y < screenHeight;
+    }
+
+    /**
+     * Whether this detector was computed for the given arc and screen size.
+     */
+    boolean isFor(@NonNull ArcGeometry arc, int screenWidth, int screenHeight) {
+        return this.arc.getVersion() == arc.getVersion()
+                && this.screenWidth == screenWidth && this.screenHeight == screenHeight;
+    }
+
+    /**
+     * Scans the arc and tries to determine the pokemon level, returns 1 if nothing found.
+     *
+     * @param pokemonImage The image of the entire screen
+     * @param maxLevel     The highest level the pokemon can have
+     * @return the estimated pokemon level, or 1 if nothing found
+     */
+    double detectLevel(@NonNull ScreenImage pokemonImage, double maxLevel) {
+        int maxLevelIdx = Math.min(Data.maxPokeLevelToIndex(maxLevel), arc.getPointCount() - 1);
+
+        // Find the highest probed level which isn't white; the dot can't be above it
+        int startIdx = maxLevelIdx;
+        for (int levelIdx = maxLevelIdx; levelIdx >= 0; levelIdx -= COARSE_STRIDE) {
+            if (getWhiteLineDistance(pokemonImage, levelIdx) >= 0) {
+                break;
+            }
+            startIdx = levelIdx;
+        }
+
+        int previousLevelDistance = -1; // Initial value indicating no found white pixels
+        for (int levelIdx = startIdx; levelIdx >= 0; levelIdx--) {
+            int whiteLineDistance = getWhiteLineDistance(pokemonImage, levelIdx);
+
+            // If we found a lower white line distance than our last calculation, last calculation was best match.
+            // If the actual level is 1.0, we fall out to the default case below the for loop.
+            if (whiteLineDistance < previousLevelDistance) {
+                return Data.levelIdxToLevel(levelIdx + 1);
+            }
+            previousLevelDistance = whiteLineDistance;
+        }
+        return 1;
+    }
+
+    /**
+     * Determine the distance from the arc point of a level which is consistently white in 2 directions: towards and
+     * away the level arc center. This helps identify the point closest to the center of the level indicator dot.
+     *
+     * @return -1 if the arc point isn't white or the white reaches out of the screen, otherwise the first distance at
+     * which neither direction is white.
+     */
+    int getWhiteLineDistance(@NonNull ScreenImage pokemonImage, int levelIdx) {
+        if (pokemonImage.getPixel(arc.getX(levelIdx), arc.getY(levelIdx)) != WHITE) {
+            return -1;
+        }
+        int[] tx = towardX[levelIdx];
+        int[] ty = towardY[levelIdx];
+        int[] ax = awayX[levelIdx];
+        int[] ay = awayY[levelIdx];
+        for (int distance = 1; distance < tx.length; distance++) {
+            if (pokemonImage.getPixel(tx[distance], ty[distance]) != WHITE
+                    && pokemonImage.getPixel(ax[distance], ay[distance]) != WHITE) {
+                return distance;
+            }
+        }
+        return outOfScreen[levelIdx] ? -1 : tx.length;
+    }
+}
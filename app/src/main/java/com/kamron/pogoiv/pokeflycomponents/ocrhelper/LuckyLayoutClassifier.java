@@ -0,0 +1,78 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Tells from a few pixels whether a pokemon screen has the layout of a lucky pokemon, before any OCR runs.
+ * <p>
+ * On the screen of a lucky pokemon a golden "LUCKY POKEMON" line pushes the fields below the name down, so the area
+ * where a normal pokemon has its dark gray HP text has golden text instead. A grid of pixels over that area tells the
+ * two apart; when neither color clearly dominates the classifier says not lucky, and the caller finds out from the HP
+ * read.
+ */
+final class LuckyLayoutClassifier {
+    private static final int SAMPLE_ROWS = 4;
+    private static final int SAMPLE_COLUMNS = 32;
+    /**
+     * How many golden pixels the grid must hit, and by how many times they must outnumber the gray ones.
+     */
+    private static final int MIN_GOLDEN_PIXELS = 4;
+    private static final int MIN_GOLDEN_FACTOR = 4;
+
+    private LuckyLayoutClassifier() {
+    }
+
+    /**
+     * Whether the HP area of a normal pokemon has the golden text of a lucky pokemon.
+     *
+     * @param pokemonImage The image of the entire screen
+     * @param hpArea       The area of the HP of a normal pokemon
+     */
+    static boolean looksLucky(@NonNull ScreenImage pokemonImage, @NonNull ScanArea hpArea) {
+        int left = Math.max(0, hpArea.xPoint);
+        int top = Math.max(0, hpArea.yPoint);
+        int right = Math.min(pokemonImage.getWidth(), hpArea.xPoint + hpArea.width);
+        int bottom = Math.min(pokemonImage.getHeight(), hpArea.yPoint + hpArea.height);
+        if (right <= left || bottom <= top) {
+            return false;
+        }
+
+        int golden = 0;
+        int gray = 0;
+        for (int row = 1; row <= SAMPLE_ROWS; row++) {
+            int y = top + (bottom - top) * row / (SAMPLE_ROWS + 1);
+            for (int column = 0; column < SAMPLE_COLUMNS; column++) {
+                int x = left + (right - left) * column / SAMPLE_COLUMNS;
+                int pixel = pokemonImage.getPixel(x, y);
+                if (isGolden(pixel)) {
+                    golden++;
+                } else if (isGrayText(pixel)) {
+                    gray++;
+                }
+            }
+        }
+        return golden >= MIN_GOLDEN_PIXELS && golden > gray * MIN_GOLDEN_FACTOR;
+    }
+
+    /**
+     * Whether a pixel is of the saturated yellow to orange of the lucky text.
+     */
+    private static boolean isGolden(int pixel) {
+        int r = (pixel >> 16) & 0xFF;
+        int g = (pixel >> 8) & 0xFF;
+        int b = pixel & 0xFF;
+        return r >= 180 && r >= g && g - b >= 40 && r - b >= 100;
+    }
+
+    /**
+     * Whether a pixel is of the dark, nearly gray color of the HP text.
+     */
+    private static boolean isGrayText(int pixel) {
+        int r = (pixel >> 16) & 0xFF;
+        int g = (pixel >> 8) & 0xFF;
+        int b = pixel & 0xFF;
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        return max < 120 && max - min < 40;
+    }
+}
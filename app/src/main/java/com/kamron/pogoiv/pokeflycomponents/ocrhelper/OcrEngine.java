@@ -0,0 +1,112 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.googlecode.tesseract.android.TessBaseAPI;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A pre-initialized Tesseract engine dedicated to one OCR profile (numbers, names, types or appraisals), together with
+ * the worker thread which recognizes the fields of that profile.
+ * <p>
+ * Every profile keeps its own page segmentation mode for its whole life, and the whitelist is only changed when a
+ * field of the profile asks for a different one, so the engines don't thrash between settings. Fields of different
+ * profiles are recognized in parallel, fields of the same profile one after another.
+ */
+class OcrEngine {
+
+    private final TessBaseAPI tesseract = new TessBaseAPI();
+    private final ExecutorService worker;
+
+    /**
+     * The whitelist currently set on the engine, guarded by this.
+     */
+    private String whitelist;
+
+    /**
+     * Creates and initializes the engine. Takes a while, call it on a background thread.
+     *
+     * @param dataPath    Path the OCR data files.
+     * @param language    The Tesseract language to load.
+     * @param pageSegMode The page segmentation mode of the profile.
+     * @param whitelist   The initial character whitelist of the profile.
+     * @param name        The name of the profile, used to name the worker thread.
+     */
+    OcrEngine(@NonNull String dataPath, @NonNull String language, int pageSegMode, @NonNull String whitelist,
+              @NonNull final String name) {
+        tesseract.init(dataPath, language);
+        tesseract.setPageSegMode(pageSegMode);
+        tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, whitelist);
+        this.whitelist = whitelist;
+
+        worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "GoIV OCR " + name);
+                thread.setPriority(Thread.NORM_PRIORITY - 1); // Same as the scan thread
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Recognize a field on the worker thread of this engine.
+     *
+     * @param field The field recognition, which should only use this engine for OCR
+     * @return The future result of the field
+     */
+    <T> Future<T> submit(@NonNull Callable<T> field) {
+        return worker.submit(field);
+    }
+
+    /**
+     * OCR an image with this engine. Can be called from any thread, calls are serialized.
+     *
+     * @param whitelist The characters the text can contain
+     * @param image     The image to read
+     * @param rectangle The part of the image to read, or null to read all of it
+     * @return The text in the image
+     */
+    synchronized String recognize(@NonNull String whitelist, @NonNull Bitmap image, @Nullable Rect rectangle) {
+        if (!whitelist.equals(this.whitelist)) {
+            tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, whitelist);
+            this.whitelist = whitelist;
+        }
+        tesseract.setImage(image);
+        if (rectangle != null) {
+            tesseract.setRectangle(rectangle);
+        }
+        return tesseract.getUTF8Text();
+    }
+
+    /**
+     * OCR a whole image with this engine.
+     *
+     * @see #recognize(String, Bitmap, Rect)
+     */
+    String recognize(@NonNull String whitelist, @NonNull Bitmap image) {
+        return recognize(whitelist, image, null);
+    }
+
+    /**
+     * Stop the worker thread once the fields already submitted are done, then release the engine.
+     */
+    void end() {
+        worker.execute(new Runnable() {
+            @Override public void run() {
+                synchronized (OcrEngine.this) {
+                    tesseract.stop();
+                    tesseract.end();
+                }
+            }
+        });
+        worker.shutdown();
+    }
+}
@@ -8,7 +8,6 @@ import android.graphics.Point;
 import android.graphics.Rect;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.util.LruCache;
 import android.view.Display;
 import android.view.WindowManager;
 
@@ -16,6 +15,7 @@ import com.google.common.base.Optional;
 import com.googlecode.tesseract.android.TessBaseAPI;
 import com.kamron.pogoiv.GoIVSettings;
 import com.kamron.pogoiv.R;
+import com.kamron.pogoiv.scanlogic.ArcGeometry;
 import com.kamron.pogoiv.scanlogic.Data;
 import com.kamron.pogoiv.scanlogic.PokeInfoCalculator;
 import com.kamron.pogoiv.scanlogic.Pokemon;
@@ -23,23 +23,14 @@ import com.kamron.pogoiv.scanlogic.ScanResult;
 import com.kamron.pogoiv.utils.LevelRange;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.ARC_INIT_POINT;
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.ARC_RADIUS;
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.CANDY_NAME_AREA;
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_CANDY_AMOUNT_AREA;
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_CP_AREA;
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_EVOLUTION_COST_AREA;
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_GENDER_AREA;
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_HP_AREA;
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_NAME_AREA;
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_POWER_UP_CANDY_COST;
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_POWER_UP_STARDUST_COST;
-import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEMON_TYPE_AREA;
+import timber.log.Timber;
 
 
 /**
@@ -49,13 +40,50 @@ import static com.kamron.pogoiv.pokeflycomponents.ocrhelper.ScanFieldNames.POKEM
 public class OcrHelper {
 
     private static OcrHelper instance = null;
-    private static TessBaseAPI tesseract = null;
+    private static OcrEngine numericEngine = null;
+    private static OcrEngine nameEngine = null;
+    private static OcrEngine typeEngine = null;
+    private static OcrEngine appraisalEngine = null;
     private static boolean isPokeSpamEnabled;
-    private static LruCache<String, String> ocrCache;
-    private static LruCache<String, String> appraisalCache;
+    private static OcrResultCache ocrCache;
+
+    /**
+     * How much memory the OCR results of all fields, appraisals included, may take. A scan adds a few hundred bytes.
+     */
+    private static final int OCR_CACHE_BYTES = 256 * 1024;
+
+    /**
+     * How many recent crops of each field the fingerprint caches remember, and how many of the 64 fingerprint cells
+     * may differ for a crop to reuse the result of an earlier one. Tune them with FieldFingerprintBenchmark and
+     * getFingerprintHitRates. A result found by fingerprint is only a close match, so it's never put in the ocrCache,
+     * which is kept on disk.
+     * <p>
+     * Only the name and candy name are looked up by fingerprint, since the PokemonNameCorrector catches a name which
+     * was reused by mistake. Number fields have nothing to catch a wrong reuse, and different digits can have the
+     * same fingerprint: on the smallest test screens, a candy amount of 3 and one of 4 fingerprint exactly the same.
+     */
+    private static final int FINGERPRINT_CACHE_SIZE = 16;
+    static final int NAME_FINGERPRINT_DISTANCE = 2;
+    private static FingerprintCache nameFingerprints;
+    private static FingerprintCache candyNameFingerprints;
+
+    private static GlyphTemplates cpTemplates;
+    private static GlyphTemplates hpTemplates;
+    private static GlyphTemplates candyAmountTemplates;
 
     private static Resources res;
 
+    /**
+     * The level arc of the manual calibration and what it was set up for, and the level arc probes of the current
+     * arc. Only accessed on the scan thread.
+     */
+    private static ArcGeometry calibratedArc;
+    private static CalibrationProfile calibratedArcProfile;
+    private static int calibratedArcTrainerLevel;
+    private static int calibratedArcScreenWidth;
+    private static int calibratedArcScreenHeight;
+    private static LevelArcDetector levelArcDetector;
+
     private OcrHelper() {
     }
 
@@ -72,92 +100,112 @@ public class OcrHelper {
         res = resources;
 
         if (instance == null) {
-            tesseract = new TessBaseAPI();
-            String lang = Locale.getDefault().getLanguage();
-            if (lang.contains("ja")) {
-                tesseract.init(dataPath, "jpn");
-            } else {
-                tesseract.init(dataPath, "eng");
-            }
-            tesseract.setPageSegMode(TessBaseAPI.PageSegMode.PSM_SINGLE_LINE);
-            tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, res.getString(R.string.ocr_whitelist_default));
-
-            ocrCache = new LruCache<>(200);
-            appraisalCache = new LruCache<>(200);
+            String lang = Locale.getDefault().getLanguage().contains("ja") ? "jpn" : "eng";
+            numericEngine = new OcrEngine(dataPath, lang, TessBaseAPI.PageSegMode.PSM_SINGLE_LINE,
+                    res.getString(R.string.ocr_whitelist_number), "numeric");
+            nameEngine = new OcrEngine(dataPath, lang, TessBaseAPI.PageSegMode.PSM_SINGLE_LINE,
+                    res.getString(R.string.ocr_whitelist_pokemon_name), "name");
+            typeEngine = new OcrEngine(dataPath, lang, TessBaseAPI.PageSegMode.PSM_SINGLE_LINE,
+                    res.getString(R.string.ocr_whitelist_pokemon_type), "type");
+            appraisalEngine = new OcrEngine(dataPath, lang, TessBaseAPI.PageSegMode.PSM_SINGLE_BLOCK,
+                    res.getString(R.string.ocr_whitelist_appraisals), "appraisal");
+
+            ocrCache = new OcrResultCache(settings.getOcrCacheFile(), OCR_CACHE_BYTES);
+            importAppraisalCache(settings);
+            nameFingerprints = new FingerprintCache("name", FINGERPRINT_CACHE_SIZE, NAME_FINGERPRINT_DISTANCE);
+            candyNameFingerprints =
+                    new FingerprintCache("candy", FINGERPRINT_CACHE_SIZE, NAME_FINGERPRINT_DISTANCE);
+            // The CP is cropped to its digits before it's read
+            cpTemplates = new GlyphTemplates("cp", res.getString(R.string.ocr_whitelist_number));
+            hpTemplates = new GlyphTemplates("hp", res.getString(R.string.ocr_whitelist_pokemon_hp));
+            candyAmountTemplates = new GlyphTemplates("candyAmount", res.getString(R.string.ocr_whitelist_number));
 
             instance = new OcrHelper();
         }
 
         isPokeSpamEnabled = settings.isPokeSpamEnabled();
 
+        return instance;
+    }
+
+    /**
+     * Move the appraisals cached by older versions, which had their own file, to the OCR cache.
+     */
+    private static void importAppraisalCache(@NonNull GoIVSettings settings) {
         Map<String, String> appraisalMap = settings.loadAppraisalCache();
         for (Map.Entry<String, String> entry : appraisalMap.entrySet()) {
-            appraisalCache.put(entry.getKey(), entry.getValue());
+            ocrCache.put(entry.getKey(), entry.getValue());
+        }
+        if (!appraisalMap.isEmpty()) {
+            settings.deleteAppraisalCache();
         }
-
-        return instance;
     }
 
     public void exit() {
-        if (tesseract != null) {
-            tesseract.stop();
-            tesseract.end();
-            tesseract = null;
+        if (numericEngine != null) {
+            numericEngine.end();
+            nameEngine.end();
+            typeEngine.end();
+            appraisalEngine.end();
+            numericEngine = null;
+            nameEngine = null;
+            typeEngine = null;
+            appraisalEngine = null;
+        }
+        if (nameFingerprints != null) {
+            Timber.d("Fingerprint cache hit rates: %s", getFingerprintHitRates());
+            Timber.d("Glyph template reads: %s", getGlyphTemplateRates());
+        }
+        if (ocrCache != null) {
+            ocrCache.close();
         }
         instance = null;
         ocrCache = null;
-        appraisalCache = null;
+        nameFingerprints = null;
+        candyNameFingerprints = null;
+        cpTemplates = null;
+        hpTemplates = null;
+        candyAmountTemplates = null;
+        calibratedArc = null;
+        calibratedArcProfile = null;
+        levelArcDetector = null;
+    }
+
+    /**
+     * Read the pixels of a bitmap in the pixel buffer of the calling thread, see {@link PixelScratch}.
+     *
+     * @return The buffer, with the pixels of the bitmap in its first width * height items
+     */
+    private static int[] readPixels(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = PixelScratch.get().pixels(width * height);
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        return pixels;
     }
 
     /**
      * Replaces colors in a bitmap that are not farther away from a specific color than a given
-     * threshold.
+     * threshold, and hashes the bitmap as it was before in the same pass over its pixels.
      *
-     * @param srcBitmap    The source bitmap to scan.
-     * @param mutateSrc    Indicates whether to mutate srcBitmap or to produce a new one.
+     * @param bitmap       The bitmap to scan and modify.
      * @param keepCr       The red color to keep
      * @param keepCg       The green color to keep
      * @param keepCb       The blue color to keep
      * @param replaceColor The color to replace mismatched colors with
      * @param distance     The distance threshold.
      * @param simpleBG     Whether the bitmap has a simple background
-     * @return Bitmap with replaced colors
+     * @return The hash of the original bitmap, like hashBitmap
      */
-    private static Bitmap replaceColors(Bitmap srcBitmap, boolean mutateSrc, int keepCr, int keepCg, int keepCb,
-                                        int replaceColor, int distance, boolean simpleBG) {
-        int[] allpixels = new int[srcBitmap.getHeight() * srcBitmap.getWidth()];
-        srcBitmap.getPixels(allpixels, 0, srcBitmap.getWidth(), 0, 0, srcBitmap.getWidth(), srcBitmap.getHeight());
-        int bgColor = replaceColor;
-        int distanceSq = distance * distance;
-
-        if (simpleBG) {
-            bgColor = allpixels[0];
-        }
-
-        for (int i = 0; i < allpixels.length; i++) {
-            /* Avoid unnecessary math for obviously background color. This removes most of the math
-             * for candy, HP and name bitmaps. */
-            if (allpixels[i] == bgColor) {
-                allpixels[i] = replaceColor;
-                continue;
-            }
-            int rDiff = keepCr - Color.red(allpixels[i]);
-            int gDiff = keepCg - Color.green(allpixels[i]);
-            int bDiff = keepCb - Color.blue(allpixels[i]);
-            int dSq = rDiff * rDiff + gDiff * gDiff + bDiff * bDiff;
-            if (dSq > distanceSq) {
-                allpixels[i] = replaceColor;
-            }
-        }
-
-        Bitmap dstBitmap;
-        if (mutateSrc) {
-            dstBitmap = srcBitmap;
-        } else {
-            dstBitmap = Bitmap.createBitmap(srcBitmap.getWidth(), srcBitmap.getHeight(), srcBitmap.getConfig());
-        }
-        dstBitmap.setPixels(allpixels, 0, srcBitmap.getWidth(), 0, 0, srcBitmap.getWidth(), srcBitmap.getHeight());
-        return dstBitmap;
+    private static String replaceColorsAndHash(Bitmap bitmap, int keepCr, int keepCg, int keepCb,
+                                               int replaceColor, int distance, boolean simpleBG) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = readPixels(bitmap);
+        int hash = PixelScratch.replaceColorsAndHash(pixels, pixels, width * height, keepCr, keepCg, keepCb,
+                replaceColor, distance, simpleBG);
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+        return Integer.toHexString(hash);
     }
 
     /**
@@ -166,113 +214,44 @@ public class OcrHelper {
      * @param pokemonImage The image of the entire screen
      * @return the estimated pokemon level, or 1 if nothing found
      */
-    private static double getPokemonLevelFromImg(@NonNull Bitmap pokemonImage, int trainerLevel) {
-        double estimatedPokemonLevel = Data.trainerLevelToMaxPokeLevel(trainerLevel);
-        double previousEstPokemonLevel = estimatedPokemonLevel + 0.5; // Initial value out of range
-        int previousLevelDistance = -1; // Initial value indicating no found white pixels
-        for (double estPokemonLevel = estimatedPokemonLevel; estPokemonLevel >= 1.0; estPokemonLevel -= 0.5) {
-            int index = Data.maxPokeLevelToIndex(estPokemonLevel);
-            int x = Data.arcX[index];
-            int y = Data.arcY[index];
-            int whiteLineDistance = getCardinalWhiteLineDistFromImg(pokemonImage, x, y);
-
-            // If we found a lower white line distance than our last calculation, last calculation was best match.
-            // If the actual level is 1.0, we fall out to the default case below the for loop.
-            if (whiteLineDistance < previousLevelDistance) {
-                return previousEstPokemonLevel;
-            }
-
-            // Have not passed the best match yet; store current values for next loop cycle
-            previousEstPokemonLevel = estPokemonLevel;
-            previousLevelDistance = whiteLineDistance;
+    private static double getPokemonLevelFromImg(@NonNull ScreenImage pokemonImage, int trainerLevel) {
+        ArcGeometry arc = Data.getArcGeometry();
+        LevelArcDetector detector = levelArcDetector;
+        if (detector == null || !detector.isFor(arc, pokemonImage.getWidth(), pokemonImage.getHeight())) {
+            detector = new LevelArcDetector(arc, pokemonImage.getWidth(), pokemonImage.getHeight());
+            levelArcDetector = detector;
         }
-        return 1;
+        return detector.detectLevel(pokemonImage, Data.trainerLevelToMaxPokeLevel(trainerLevel));
     }
 
     /**
-     * Examines the image from the given coordinates to determine the distance which is consistently white pixels in
-     * 2 directions: towards and away the level arc center.
-     * This helps identify the point closest to the center of the level indicator dot.
+     * Keep only the text of a cost area, whether it's the dark text of an affordable cost or the red text of a cost
+     * you can't afford.
      *
-     * @param pokemonImage The image of the entire screen
-     * @param x            Horizontal ordinate to scan from
-     * @param y            Vertical ordinate to scan from
-     * @return -1 if the given coordinate is not a white pixel, otherwise the distance from given
-     * coordinate which is white in each cardinal direction.
+     * @param costAreaImage The image of the cost area, modified in place.
+     * @param pixels        The pixels of costAreaImage, as read by readPixels.
      */
-    private static int getCardinalWhiteLineDistFromImg(Bitmap pokemonImage, int x, int y) {
-        final int targetColor = Color.WHITE;
-
-        Double angle = null;
-        int r = -1;
-        int i1x = x;
-        int i1y = y;
-        int i2x = x;
-        int i2y = y;
-
-        while (pokemonImage.getPixel(i1x, i1y) == targetColor || pokemonImage.getPixel(i2x, i2y) == targetColor) {
-            r++;
-            if (angle == null) {
-                angle = Math.atan2(Data.arcInitY - y, Data.arcInitX - x);
-            }
-            i1x = (int) Math.round(x + r * Math.cos(angle));
-            i1y = (int) Math.round(y + r * Math.sin(angle));
-            i2x = (int) Math.round(x - r * Math.cos(angle));
-            i2y = (int) Math.round(y - r * Math.sin(angle));
-            if (i1x < 0 || i1x >= pokemonImage.getWidth()
-                    || i1y < 0 || i1y >= pokemonImage.getHeight()
-                    || i2x < 0 || i2x >= pokemonImage.getWidth()
-                    || i2y < 0 || i2y >= pokemonImage.getHeight()) {
-                return -1;
-            }
-        }
-
-        return r;
-    }
-
-    private static Bitmap cleanCostAreaImage(@NonNull Bitmap costAreaImage) {
-        //clean the image
-        //the dark color used for text in pogo is approximately rgb 76,112,114 if you can afford evo/power up/new attack
-        //and the red color is rgb 255 95 100 when you cant afford the evolution/power up/new attack
-        //
-        //TODO: improve logic or current threshold values to clean a image, because currently the characters to
-        // separate digits(e.g. ',' for en/ja) are removed.
-        //TODO: add paramaters and logic to clean a image for lucky pokemon's stardust cost(yellow text).
-        Bitmap costImageCanAfford = replaceColors(costAreaImage, false, 68, 105, 108, Color.WHITE, 30,
-                false);
-        Bitmap costImageCannotAfford = replaceColors(costAreaImage, false, 255, 115, 115, Color.WHITE, 40,
-                false);
-
-        boolean affordIsBlank = isOnlyWhite(costImageCanAfford);
-        boolean cannotAffordIsBlank = isOnlyWhite(costImageCannotAfford);
-        //check if blank
-        if (affordIsBlank && cannotAffordIsBlank) { //if there's no red or black text, there's no text at all.
-            return costImageCanAfford;
-        }
-
-        //use the correctly refined image (refined for red or black text)
-        if (affordIsBlank) {
-            costAreaImage = costImageCannotAfford;
-        } else {
-            costAreaImage = costImageCanAfford;
-        }
-
-        return costAreaImage;
+    private static void cleanCostAreaImage(@NonNull Bitmap costAreaImage, @NonNull int[] pixels) {
+        int width = costAreaImage.getWidth();
+        int height = costAreaImage.getHeight();
+        int[] cleaned = PixelScratch.cleanCostArea(pixels, width, height);
+        costAreaImage.setPixels(cleaned, 0, width, 0, 0, width, height);
     }
 
     /**
      * Get the evolution cost for a pokemon, like getPokemonEvolutionCostFromImg, but without caching.
      *
      * @param evolutionCostImage The precut image of the evolution cost area.
+     * @param pixels             The pixels of evolutionCostImage, as read by readPixels.
      * @return the evolution cost (or -1 if absent) wrapped in Optional.of(), or Optional.absent() on scan failure
      */
-    private static Optional<Integer> getPokemonEvolutionCostFromImgUncached(@NonNull Bitmap evolutionCostImage) {
-        evolutionCostImage = cleanCostAreaImage(evolutionCostImage);
+    private static Optional<Integer> getPokemonEvolutionCostFromImgUncached(@NonNull Bitmap evolutionCostImage,
+                                                                            @NonNull int[] pixels) {
+        cleanCostAreaImage(evolutionCostImage, pixels);
         //If not cached or fully evolved, ocr text
         int result;
-        tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, res.getString(R.string.ocr_whitelist_number));
-        tesseract.setImage(evolutionCostImage);
-        String ocrResult = fixOcrLettersToNums(tesseract.getUTF8Text());
+        String ocrResult = fixOcrLettersToNums(
+                numericEngine.recognize(res.getString(R.string.ocr_whitelist_number), evolutionCostImage));
         try {
             result = Integer.parseInt(ocrResult);
             if (result == 10 || result == 1) { //second zero hidden behind floating button
@@ -297,7 +276,7 @@ public class OcrHelper {
      * @param pokemonImage The image of the full pokemon screen
      * @return the evolution cost (or -1 if absent) wrapped in Optional.of(), or Optional.absent() on scan failure
      */
-    private static Optional<Integer> getPokemonEvolutionCostFromImg(@NonNull Bitmap pokemonImage,
+    private static Optional<Integer> getPokemonEvolutionCostFromImg(@NonNull ScreenImage pokemonImage,
                                                                     @Nullable ScanArea evolutionCandyCostArea,
                                                                     @Nullable ScanArea powerupStardustCostArea) {
         Bitmap evolutionCandyCostImage = null;
@@ -308,7 +287,9 @@ public class OcrHelper {
             evolutionCandyCostImage = getImageCrop(pokemonImage, 0.625, 0.815, 0.2, 0.03);
         }
 
-        String hash = "candyCost" + hashBitmap(evolutionCandyCostImage);
+        int[] pixels = readPixels(evolutionCandyCostImage);
+        String hash = "candyCost" + Integer.toHexString(PixelScratch.hash(pixels,
+                evolutionCandyCostImage.getWidth() * evolutionCandyCostImage.getHeight()));
 
         if (ocrCache != null) {
             //return cache if it exists
@@ -323,7 +304,7 @@ public class OcrHelper {
             }
         }
 
-        Optional<Integer> result = getPokemonEvolutionCostFromImgUncached(evolutionCandyCostImage);
+        Optional<Integer> result = getPokemonEvolutionCostFromImgUncached(evolutionCandyCostImage, pixels);
         String ocrResult;
         if (result.isPresent() && isEvolvtionItemArea(pokemonImage, evolutionCandyCostArea, powerupStardustCostArea)) {
             ocrResult = String.valueOf(result.get()); //Store error code instead of scanned value
@@ -338,7 +319,8 @@ public class OcrHelper {
         return result;
     }
 
-    private static boolean isEvolvtionItemArea(@NonNull Bitmap pokemonImage, @Nullable ScanArea evolutionCostArea,
+    private static boolean isEvolvtionItemArea(@NonNull ScreenImage pokemonImage,
+                                               @Nullable ScanArea evolutionCostArea,
                                                @Nullable ScanArea powerUpStardustCostArea) {
         //Since 'new attack' button is at the same place as "evolve" on max evolutions, we need to make sure
         //We're not wrongly reading a 'new attack' button. Check this by scanning left of evolutionCostImage, and
@@ -346,7 +328,7 @@ public class OcrHelper {
         Bitmap evolutionStardustCostImage = null;
 
         if (evolutionCostArea != null && powerUpStardustCostArea != null) {
-            evolutionStardustCostImage = Bitmap.createBitmap(pokemonImage,
+            evolutionStardustCostImage = pokemonImage.crop(
                     powerUpStardustCostArea.xPoint,
                     evolutionCostArea.yPoint,
                     powerUpStardustCostArea.width,
@@ -358,10 +340,9 @@ public class OcrHelper {
         }
 
         if (evolutionStardustCostImage != null) {
-            evolutionStardustCostImage = cleanCostAreaImage(evolutionStardustCostImage);
-            tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, res.getString(R.string.ocr_whitelist_number));
-            tesseract.setImage(evolutionStardustCostImage);
-            String ocrResult = tesseract.getUTF8Text();
+            cleanCostAreaImage(evolutionStardustCostImage, readPixels(evolutionStardustCostImage));
+            String ocrResult = numericEngine.recognize(res.getString(R.string.ocr_whitelist_number),
+                    evolutionStardustCostImage);
             // remove characters for each locales to separate digits.
             // e.g. ',' for en/ja, '.' for de/es/it, and ' ' for fr.
             ocrResult = ocrResult.replaceAll("(\\W)", "");
@@ -397,7 +378,7 @@ public class OcrHelper {
      * @param pokemonImage The image of the full pokemon screen
      * @return the power up cost wrapped in Optional.of(), or Optional.absent() on scan failure
      */
-    private static Optional<Integer> getPokemonPowerUpStardustCostFromImg(@NonNull Bitmap pokemonImage,
+    private static Optional<Integer> getPokemonPowerUpStardustCostFromImg(@NonNull ScreenImage pokemonImage,
                                                                           @Nullable ScanArea powerUpStardustCostArea) {
         Bitmap powerUpStardustCostImage;
         if (powerUpStardustCostArea != null) {
@@ -419,9 +400,8 @@ public class OcrHelper {
             }
         }
 
-        tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, res.getString(R.string.ocr_whitelist_number));
-        tesseract.setImage(powerUpStardustCostImage);
-        String ocrResult = fixOcrLettersToNums(tesseract.getUTF8Text());
+        String ocrResult = fixOcrLettersToNums(
+                numericEngine.recognize(res.getString(R.string.ocr_whitelist_number), powerUpStardustCostImage));
         try {
             int result = Integer.parseInt(ocrResult);
             ocrCache.put(hash, ocrResult);
@@ -440,7 +420,7 @@ public class OcrHelper {
      * @param pokemonImage The image of the full pokemon screen
      * @return the power up cost wrapped in Optional.of(), or Optional.absent() on scan failure
      */
-    private static Optional<Integer> getPokemonPowerUpCandyCostFromImg(@NonNull Bitmap pokemonImage,
+    private static Optional<Integer> getPokemonPowerUpCandyCostFromImg(@NonNull ScreenImage pokemonImage,
                                                                        @Nullable ScanArea powerUpCandyCostArea) {
         Bitmap powerUpCandyCostImage;
         if (powerUpCandyCostArea != null) {
@@ -462,9 +442,8 @@ public class OcrHelper {
             }
         }
 
-        tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, res.getString(R.string.ocr_whitelist_number));
-        tesseract.setImage(powerUpCandyCostImage);
-        String ocrResult = fixOcrLettersToNums(tesseract.getUTF8Text());
+        String ocrResult = fixOcrLettersToNums(
+                numericEngine.recognize(res.getString(R.string.ocr_whitelist_number), powerUpCandyCostImage));
         try {
             int result = Integer.parseInt(ocrResult);
             ocrCache.put(hash, ocrResult);
@@ -478,35 +457,107 @@ public class OcrHelper {
     }
 
     /**
-     * Heuristic method to determine if the image looks empty. Works by taking a horisontal row of pixels from he
-     * middle, and looks if they're all pure white.
+     * Fingerprint a field which replaceColorsAndHash filtered.
      *
-     * @param refinedImage A pre-processed image of the evolution cost. (should be pre-refined to replace all non
-     *                     text colors with pure white)
-     * @return true if the image is likely only white
+     * @param filtered The filtered field
+     * @param bgColor  The color which replaced everything but the text
+     */
+    private static FieldFingerprint fingerprint(Bitmap filtered, int bgColor) {
+        return FieldFingerprint.of(readPixels(filtered), filtered.getWidth(), filtered.getHeight(), bgColor);
+    }
+
+    /**
+     * Describe how often the fields which missed the exact ocrCache were found by fingerprint, to tune the fingerprint
+     * distances on a set of screenshots.
      */
-    private static boolean isOnlyWhite(Bitmap refinedImage) {
-        int[] pixelArray = new int[refinedImage.getWidth()];
+    static String getFingerprintHitRates() {
+        return nameFingerprints + ", " + candyNameFingerprints;
+    }
 
-        //below code takes one line of pixels in the middle of the pixture from left to right
-        refinedImage.getPixels(pixelArray, 0, refinedImage.getWidth(), 0, refinedImage.getHeight() / 2, refinedImage
-                .getWidth(), 1);
+    /**
+     * Describe how many reads of the number fields the glyph templates answered without Tesseract.
+     */
+    static String getGlyphTemplateRates() {
+        return cpTemplates + ", " + hpTemplates + ", " + candyAmountTemplates;
+    }
 
-        for (int pixel : pixelArray) {
-            if (pixel != Color.rgb(255, 255, 255)) { // if pixel is not white
-                return false;
+    /**
+     * Teach the glyph templates the numbers the user confirmed for the last scan. A field is only learned if
+     * Tesseract read exactly the confirmed value in it, so neither a misread nor a field of another scan is learned.
+     *
+     * @param cp          The confirmed CP
+     * @param hp          The confirmed HP
+     * @param candyAmount The confirmed candy amount, if the user filled it in
+     */
+    public void learnConfirmedNumbers(int cp, int hp, Optional<Integer> candyAmount) {
+        learnConfirmedText(cpTemplates, Integer.toString(cp));
+        if (candyAmount.isPresent()) {
+            learnConfirmedText(candyAmountTemplates, Integer.toString(candyAmount.get()));
+        }
+
+        // The HP field shows the current HP too, which is only confirmed if the pokemon isn't hurt. The unit after
+        // the HP depends on the language, like HP or KP, and is learned as the HP of the whitelist.
+        String hpText = Integer.toString(hp);
+        String hpSampleText = hpTemplates.getSampleText();
+        if (hpSampleText != null) {
+            String[] hpParts = hpSampleText.replaceAll("\\s", "").split("/");
+            if (hpParts.length == 2 && hpParts[0].equals(hpText) && hpParts[1].startsWith(hpText)
+                    && hpParts[1].length() == hpText.length() + 2) {
+                hpTemplates.learnSample(hpSampleText, hpText + "/" + hpText + "HP");
             }
         }
-        return true;
+    }
+
+    /**
+     * Teach a field the characters of a confirmed value if Tesseract read the same in the sample of the field.
+     */
+    private static void learnConfirmedText(GlyphTemplates templates, String text) {
+        String sampleText = templates.getSampleText();
+        if (sampleText != null && sampleText.replaceAll("\\s", "").equals(text)) {
+            templates.learnSample(sampleText, text);
+        }
+    }
+
+    /**
+     * Read a filtered number field with its glyph templates, or with Tesseract when the templates aren't confident,
+     * in which case the field is kept as a sample to learn once the user confirms its value.
+     *
+     * @param templates The templates of the field
+     * @param whitelist The characters Tesseract may read
+     * @param image     The field, where everything but the text has the background color
+     * @param bgColor   The background color
+     * @param region    The part of the image to read, right and bottom included, or null to read all of it
+     * @return The text of the field
+     */
+    private static String recognizeNumber(GlyphTemplates templates, String whitelist, Bitmap image, int bgColor,
+                                          @Nullable Rect region) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int left = 0;
+        int top = 0;
+        int right = width;
+        int bottom = height;
+        if (region != null) {
+            left = Math.max(0, region.left);
+            top = Math.max(0, region.top);
+            right = Math.min(width, region.right + 1);
+            bottom = Math.min(height, region.bottom + 1);
+        }
+
+        int[] pixels = readPixels(image);
+        String text = templates.recognize(pixels, width, left, top, right, bottom, bgColor);
+        if (text == null) {
+            text = numericEngine.recognize(whitelist, image, region);
+            templates.keepSample(pixels, width, left, top, right, bottom, bgColor, text);
+        }
+        return text;
     }
 
     /**
      * Get the hashcode for a bitmap.
      */
     private static String hashBitmap(Bitmap bmp) {
-        int[] allpixels = new int[bmp.getHeight() * bmp.getWidth()];
-        bmp.getPixels(allpixels, 0, bmp.getWidth(), 0, 0, bmp.getWidth(), bmp.getHeight());
-        return Integer.toHexString(Arrays.hashCode(allpixels));
+        return Integer.toHexString(PixelScratch.hash(readPixels(bmp), bmp.getWidth() * bmp.getHeight()));
     }
 
     /**
@@ -530,7 +581,7 @@ public class OcrHelper {
      * @param pokemonImage the image of the whole screen
      * @return A string resulting from the scan
      */
-    private static String getPokemonNameFromImg(@NonNull Bitmap pokemonImage,
+    private static String getPokemonNameFromImg(@NonNull ScreenImage pokemonImage,
                                                 @NonNull Pokemon.Gender pokemonGender,
                                                 @Nullable ScanArea nameArea) {
         Bitmap name;
@@ -540,15 +591,18 @@ public class OcrHelper {
             name = getImageCrop(pokemonImage, 0.1, 0.4125, 0.85, 0.055);
         }
 
-        String hash = "name" + hashBitmap(name);
+        String hash = "name" + replaceColorsAndHash(name, 68, 105, 108, Color.WHITE, 200, true);
         String pokemonName = ocrCache.get(hash);
 
         if (pokemonName == null) {
-            name = replaceColors(name, true, 68, 105, 108, Color.WHITE, 200, true);
-            tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, res.getString(R.string.ocr_whitelist_pokemon_name));
-            tesseract.setImage(name);
-            pokemonName = fixOcrNumsToLetters(tesseract.getUTF8Text().replace(" ", ""));
-            ocrCache.put(hash, pokemonName);
+            FieldFingerprint fingerprint = fingerprint(name, Color.WHITE);
+            pokemonName = nameFingerprints.get(fingerprint);
+            if (pokemonName == null) {
+                pokemonName = nameEngine.recognize(res.getString(R.string.ocr_whitelist_pokemon_name), name);
+                pokemonName = fixOcrNumsToLetters(pokemonName.replace(" ", ""));
+                nameFingerprints.put(fingerprint, pokemonName);
+                ocrCache.put(hash, pokemonName);
+            }
         }
         return pokemonName;
     }
@@ -559,7 +613,7 @@ public class OcrHelper {
      * @param pokemonImage the image of the whole screen
      * @return A string resulting from the scan
      */
-    private static String getPokemonTypeFromImg(@NonNull Bitmap pokemonImage, @Nullable ScanArea typeArea) {
+    private static String getPokemonTypeFromImg(@NonNull ScreenImage pokemonImage, @Nullable ScanArea typeArea) {
         Bitmap type;
         if (typeArea != null) {
             type = getImageCrop(pokemonImage, typeArea);
@@ -567,14 +621,11 @@ public class OcrHelper {
             type = getImageCrop(pokemonImage, 0.365278, 0.572, 0.308333, 0.035156);
         }
 
-        String hash = "type" + hashBitmap(type);
+        String hash = "type" + replaceColorsAndHash(type, 68, 105, 108, Color.WHITE, 200, true);
         String pokemonType = ocrCache.get(hash);
 
         if (pokemonType == null) {
-            type = replaceColors(type, true, 68, 105, 108, Color.WHITE, 200, true);
-            tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, res.getString(R.string.ocr_whitelist_pokemon_type));
-            tesseract.setImage(type);
-            pokemonType = tesseract.getUTF8Text();
+            pokemonType = typeEngine.recognize(res.getString(R.string.ocr_whitelist_pokemon_type), type);
             ocrCache.put(hash, pokemonType);
         }
         return pokemonType;
@@ -586,7 +637,8 @@ public class OcrHelper {
      * @param pokemonImage The image of the whole screen
      * @return Optional.of("♂") if the pokémon is male, Optional.of("♀") if female, Optional.absent() otherwise
      */
-    public static Pokemon.Gender getPokemonGenderFromImg(@NonNull Bitmap pokemonImage, @Nullable ScanArea genderArea) {
+    public static Pokemon.Gender getPokemonGenderFromImg(@NonNull ScreenImage pokemonImage,
+                                                         @Nullable ScanArea genderArea) {
         Bitmap genderImage;
         if (genderArea != null) {
             genderImage = getImageCrop(pokemonImage, genderArea);
@@ -594,48 +646,12 @@ public class OcrHelper {
             genderImage = getImageCrop(pokemonImage, 0.822, 0.455, 0.0682, 0.03756);
         }
 
-        replaceColors(genderImage, true, 68, 105, 108, Color.WHITE, 200, true);
-
         int width = genderImage.getWidth();
         int height = genderImage.getHeight();
-
-        // The top left pixel should always be empty
-        int bgColor = genderImage.getPixel(0, 0);
+        int[] pixels = readPixels(genderImage);
 
         // Analyze the gender area to search for ♂ or ♀.
-        // Divide it in 2 vertical halves.
-        // Scan one line every two and search for the first non white pixel.
-        // Sum its X coordinate and repeat. The final sum will be used as score.
-        int upperHalfScore = 0;
-        int lowerHalfScore = 0;
-
-        // Top
-        for (int y = 0; y < height / 2; y += 2) {
-            for (int x = 0; x < width; x++) {
-                if (genderImage.getPixel(x, y) != bgColor) {
-                    upperHalfScore += x;
-                    break;
-                }
-            }
-        }
-
-        // Bottom
-        for (int y = (int) Math.ceil(height / 2f); y < height; y += 2) {
-            for (int x = 0; x < width; x++) {
-                if (genderImage.getPixel(x, y) != bgColor) {
-                    lowerHalfScore += x;
-                    break;
-                }
-            }
-        }
-
-        if (upperHalfScore > lowerHalfScore) {
-            return Pokemon.Gender.M;
-        } else if (lowerHalfScore > upperHalfScore) {
-            return Pokemon.Gender.F;
-        } else {
-            return Pokemon.Gender.N;
-        }
+        return PixelScratch.filterAndDetectGender(pixels, width, height);
     }
 
     /**
@@ -648,11 +664,10 @@ public class OcrHelper {
      * @param yHeight how many % of the height should be kept starting from the ystart.
      * @return The crop of the image.
      */
-    private static Bitmap getImageCrop(Bitmap img, double xStart, double yStart, double xWidth, double yHeight) {
+    private static Bitmap getImageCrop(ScreenImage img, double xStart, double yStart, double xWidth, double yHeight) {
         int w = img.getWidth();
         int h = img.getHeight();
-        return Bitmap.createBitmap(img, (int) (w * xStart), (int) (h * yStart),
-                (int) (w * xWidth), (int) (h * yHeight));
+        return img.crop((int) (w * xStart), (int) (h * yStart), (int) (w * xWidth), (int) (h * yHeight));
     }
 
     /**
@@ -662,11 +677,11 @@ public class OcrHelper {
      * @param scanArea The area of the image to get
      * @return The scanarea
      */
-    private static Bitmap getImageCrop(Bitmap img, ScanArea scanArea) {
+    private static Bitmap getImageCrop(ScreenImage img, ScanArea scanArea) {
         if (scanArea.width < 0 || scanArea.height < 0 || scanArea.xPoint < 0 || scanArea.yPoint < 0) {
             return null;
         }
-        return Bitmap.createBitmap(img, (scanArea.xPoint), scanArea.yPoint, scanArea.width, scanArea.height);
+        return img.crop(scanArea.xPoint, scanArea.yPoint, scanArea.width, scanArea.height);
     }
 
     /**
@@ -675,7 +690,7 @@ public class OcrHelper {
      * @param pokemonImage the image of the whole screen
      * @return the candy name, or "" if nothing was found
      */
-    private static String getCandyNameFromImg(@NonNull Bitmap pokemonImage,
+    private static String getCandyNameFromImg(@NonNull ScreenImage pokemonImage,
                                               @NonNull Pokemon.Gender pokemonGender,
                                               @Nullable ScanArea candyNameArea) {
         Bitmap candy;
@@ -685,16 +700,18 @@ public class OcrHelper {
             candy = getImageCrop(pokemonImage, 0.5, 0.678, 0.47, 0.026);
         }
 
-        String hash = "candy" + hashBitmap(candy);
+        String hash = "candy" + replaceColorsAndHash(candy, 68, 105, 108, Color.WHITE, 200, true);
         String candyName = ocrCache.get(hash);
 
         if (candyName == null) {
-            candy = replaceColors(candy, true, 68, 105, 108, Color.WHITE, 200, true);
-            tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, res.getString(R.string.ocr_whitelist_candy_name));
-            tesseract.setImage(candy);
-            candyName = tesseract.getUTF8Text();
-            candyName = fixOcrNumsToLetters(candyName);
-            ocrCache.put(hash, candyName);
+            FieldFingerprint fingerprint = fingerprint(candy, Color.WHITE);
+            candyName = candyNameFingerprints.get(fingerprint);
+            if (candyName == null) {
+                candyName = nameEngine.recognize(res.getString(R.string.ocr_whitelist_candy_name), candy);
+                candyName = fixOcrNumsToLetters(candyName);
+                candyNameFingerprints.put(fingerprint, candyName);
+                ocrCache.put(hash, candyName);
+            }
         }
         return candyName;
     }
@@ -705,7 +722,8 @@ public class OcrHelper {
      * @param pokemonImage the image of the whole screen
      * @return an integer of the interpreted pokemon name, 10 if scan failed
      */
-    private static Optional<Integer> getPokemonHPFromImg(@NonNull Bitmap pokemonImage, @Nullable ScanArea hpArea) {
+    private static Optional<Integer> getPokemonHPFromImg(@NonNull ScreenImage pokemonImage,
+                                                         @Nullable ScanArea hpArea) {
         Bitmap hp;
         if (hpArea != null) {
             hp = getImageCrop(pokemonImage, hpArea);
@@ -713,14 +731,12 @@ public class OcrHelper {
             hp = getImageCrop(pokemonImage, 0.357, 0.482, 0.285, 0.0293);
         }
 
-        String hash = "hp" + hashBitmap(hp);
+        String hash = "hp" + replaceColorsAndHash(hp, 55, 66, 61, Color.WHITE, 200, true);
         String pokemonHPStr = ocrCache.get(hash);
 
         if (pokemonHPStr == null) {
-            hp = replaceColors(hp, true, 55, 66, 61, Color.WHITE, 200, true);
-            tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, res.getString(R.string.ocr_whitelist_pokemon_hp));
-            tesseract.setImage(hp);
-            pokemonHPStr = tesseract.getUTF8Text();
+            pokemonHPStr = recognizeNumber(hpTemplates, res.getString(R.string.ocr_whitelist_pokemon_hp), hp,
+                    Color.WHITE, null);
             ocrCache.put(hash, pokemonHPStr);
         }
 
@@ -759,7 +775,7 @@ public class OcrHelper {
      * @param pokemonImage the image of the whole pokemon screen
      * @return a CP of the pokemon, 10 if scan failed
      */
-    private Optional<Integer> getPokemonCPFromImg(@NonNull Bitmap pokemonImage, @Nullable ScanArea cpArea) {
+    private Optional<Integer> getPokemonCPFromImg(@NonNull ScreenImage pokemonImage, @Nullable ScanArea cpArea) {
         Bitmap cp;
         if (cpArea != null) {
             cp = getImageCrop(pokemonImage, cpArea);
@@ -767,10 +783,11 @@ public class OcrHelper {
             cp = getImageCrop(pokemonImage, 0.25, 0.059, 0.5, 0.046);
         }
 
-        cp = replaceColors(cp, true, 255, 255, 255, Color.BLACK, 30, false);
-
         final int width = cp.getWidth();
         final int height = cp.getHeight();
+        final int[] pixels = readPixels(cp);
+        PixelScratch.replaceColorsAndHash(pixels, pixels, width * height, 255, 255, 255, Color.BLACK, 30, false);
+        cp.setPixels(pixels, 0, width, 0, 0, width, height);
 
         // Every chunk will contain a character
         ArrayList<Rect> chunks = new ArrayList<>(6);
@@ -780,7 +797,7 @@ public class OcrHelper {
         // When we're over a chunk check every pixel instead of skipping so we're sure to find the blank space after it
         for (int x = 0; x < width; x += (currentChunk != null) ? 1 : increment) {
             for (int y = 0; y < height; y += increment) {
-                final int pxColor = cp.getPixel(x, y);
+                final int pxColor = pixels[y * width + x];
 
                 if (currentChunk == null) {
                     if (pxColor != Color.BLACK) {
@@ -852,12 +869,8 @@ public class OcrHelper {
             }
         }
 
-        tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, res.getString(R.string.ocr_whitelist_pokemon_cp));
-        tesseract.setImage(cp);
-        if (mergeRect != null) {
-            tesseract.setRectangle(mergeRect);
-        }
-        String cpText = tesseract.getUTF8Text();
+        String cpText = recognizeNumber(cpTemplates, res.getString(R.string.ocr_whitelist_pokemon_cp), cp, Color.BLACK,
+                mergeRect);
         cpText = fixOcrLettersToNums(cpText);
 
         try {
@@ -873,15 +886,14 @@ public class OcrHelper {
      * @param pokemonImage the image of the whole pokemon screen
      * @return a string which should remain the same even if you power up a pokemon
      */
-    private static String getPokemonIdentifierFromImg(Bitmap pokemonImage) {
+    private static String getPokemonIdentifierFromImg(ScreenImage pokemonImage) {
         int w = pokemonImage.getWidth();
         int h = pokemonImage.getHeight();
-        Bitmap infoRow = Bitmap.createBitmap(pokemonImage,
+        Bitmap infoRow = pokemonImage.crop(
                 Math.round(w * .1f), Math.round(h / 1.714286f),
                 Math.round(w * .8f), Math.round(h / 25.26316f));
-        tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, res.getString(R.string.ocr_whitelist_pokemon_identifier));
-        tesseract.setImage(infoRow);
-        return tesseract.getUTF8Text(); // Unique text
+        // Unique text
+        return numericEngine.recognize(res.getString(R.string.ocr_whitelist_pokemon_identifier), infoRow);
     }
 
 
@@ -891,7 +903,7 @@ public class OcrHelper {
      * @param pokemonImage the image of the whole screen
      * @return candyAmount the candy amount, or blank Optional object if nothing was found
      */
-    private static Optional<Integer> getCandyAmountFromImg(@NonNull Bitmap pokemonImage,
+    private static Optional<Integer> getCandyAmountFromImg(@NonNull ScreenImage pokemonImage,
                                                            @Nullable ScanArea candyAmountArea) {
         if (!isPokeSpamEnabled) {
             return Optional.absent();
@@ -903,14 +915,12 @@ public class OcrHelper {
             candyAmount = getImageCrop(pokemonImage, 0.60, 0.644, 0.20, 0.038);
         }
 
-        String hash = "candyAmount" + hashBitmap(candyAmount);
+        String hash = "candyAmount" + replaceColorsAndHash(candyAmount, 68, 105, 108, Color.WHITE, 90, true);
         String pokemonCandyStr = ocrCache.get(hash);
 
         if (pokemonCandyStr == null) {
-            candyAmount = replaceColors(candyAmount, true, 68, 105, 108, Color.WHITE, 90, true);
-            tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, res.getString(R.string.ocr_whitelist_number));
-            tesseract.setImage(candyAmount);
-            pokemonCandyStr = tesseract.getUTF8Text();
+            pokemonCandyStr = recognizeNumber(candyAmountTemplates, res.getString(R.string.ocr_whitelist_number),
+                    candyAmount, Color.WHITE, null);
             ocrCache.put(hash, pokemonCandyStr);
         }
 
@@ -930,80 +940,122 @@ public class OcrHelper {
      * scanPokemon
      * Performs OCR on an image of a pokemon and returns the pulled info.
      *
+     * @param calibration  The screen calibration to find the fields with
      * @param pokemonImage The image of the pokemon
      * @param trainerLevel Current level of the trainer
      * @return an object
      */
-    public ScanResult scanPokemon(@NonNull GoIVSettings settings, @NonNull Bitmap pokemonImage, int trainerLevel) {
-        ensureCorrectLevelArcSettings(settings, trainerLevel); //todo, make it so it doesnt initiate on every scan?
+    public ScanResult scanPokemon(@NonNull CalibrationProfile calibration, @NonNull final ScreenImage pokemonImage,
+                                  int trainerLevel) {
+        ensureCorrectLevelArcSettings(calibration, trainerLevel, pokemonImage.getWidth(), pokemonImage.getHeight());
 
         Optional<Integer> powerUpStardustCost = Optional.absent();
         /*Optional<Integer> powerUpStardustCost = getPokemonPowerUpStardustCostFromImg(tesseract, ocrCache,
-                pokemonImage, ScanArea.calibratedFromSettings(POKEMON_POWER_UP_STARDUST_COST, settings));*/
-
-
-        Optional<Integer> hp = getPokemonHPFromImg(pokemonImage,
-                ScanArea.calibratedFromSettings(POKEMON_HP_AREA, settings, 0));
-
-        int luckyOffset = 0;
-        // If no  hpwas found, check by offsetting down by the height of the
-        // "LUCKY POKEMON" string, which is slightly higher than the power up candy cost field
-        if (!hp.isPresent()) {
-            int tempLuckyOffset = (int) (0.0247 * pokemonImage.getHeight() * 1.2); // Default value w/o calibration
-            ScanArea powerUpCandyArea = ScanArea.calibratedFromSettings(POKEMON_POWER_UP_CANDY_COST, settings);
-            if (powerUpCandyArea != null) {
-                tempLuckyOffset = (int) (powerUpCandyArea.height * 1.2);
-            } else{
-                /*
-                Toast.makeText(pokeflyRef.get(), "Please update GoIV recalibration on a normal unlucky Pokemon.", Toast
-                        .LENGTH_SHORT).show();
-                */
-                /* TODO: it should provide ocr error code values, and set one in the ScanResult, like following.
-                error = "xxx";
-                return new ScanResult(estimatedLevelRange, name, type, candyName, gender, hp, cp, candyAmount, evolutionCost,
-                        powerUpStardustCost, powerUpCandyCost, (luckyOffset != 0), uniqueIdentifier, error);
-                */
-            }
+                pokemonImage, calibration.getPowerUpStardustCostArea());*/
 
-            hp = getPokemonHPFromImg(pokemonImage,
-                    ScanArea.calibratedFromSettings(POKEMON_HP_AREA, settings, tempLuckyOffset));
 
-            if (hp.isPresent()) {
-                // Found successfully; assume this is a lucky pokemon and offset all further scans below that line
-                luckyOffset = tempLuckyOffset;
+        // Decide on the layout before reading anything, so the HP of a lucky pokemon is usually read only once.
+        // Without a calibration the HP is searched in its default area, which a lucky offset doesn't move.
+        CalibrationProfile fields = calibration;
+        ScanArea hpArea = calibration.getHpArea();
+        if (hpArea != null && LuckyLayoutClassifier.looksLucky(pokemonImage, hpArea)) {
+            fields = calibration.getLuckyProfile(pokemonImage.getHeight());
+        }
+        Optional<Integer> hp = getPokemonHPFromImg(pokemonImage, fields.getHpArea());
+
+        // If no hp was found, the layout might be the other one: check the HP where it would be
+        if (!hp.isPresent() && calibration.isCalibrated()) {
+            CalibrationProfile otherFields = fields == calibration
+                    ? calibration.getLuckyProfile(pokemonImage.getHeight())
+                    : calibration;
+            Optional<Integer> otherHp = getPokemonHPFromImg(pokemonImage, otherFields.getHpArea());
+
+            if (otherHp.isPresent()) {
+                // Found successfully; assume the layout is the other one and scan all further fields with it
+                Timber.d("Lucky layout misclassified, HP found with lucky offset %d", otherFields.getLuckyOffset());
+                hp = otherHp;
+                fields = otherFields;
             }
         }
-        Optional<Integer> powerUpCandyCost = getPokemonPowerUpCandyCostFromImg(pokemonImage,
-                ScanArea.calibratedFromSettings(POKEMON_POWER_UP_CANDY_COST, settings, luckyOffset));
+        // Everything below depends on the lucky offset: recognize the remaining fields in parallel, one worker per
+        // engine, while this thread looks for the level arc and the gender
+        final ScanArea powerUpCandyCostArea = fields.getPowerUpCandyCostArea();
+        final ScanArea cpArea = fields.getCpArea();
+        final ScanArea candyAmountArea = fields.getCandyAmountArea();
+        final ScanArea evolutionCandyCostArea = fields.getEvolutionCostArea();
+        final ScanArea powerUpStardustCostArea = fields.getPowerUpStardustCostArea();
+        final ScanArea typeArea = fields.getTypeArea();
+        final ScanArea nameArea = fields.getNameArea();
+        final ScanArea candyNameArea = fields.getCandyNameArea();
+
+        Future<Optional<Integer>> powerUpCandyCostFuture = numericEngine.submit(new Callable<Optional<Integer>>() {
+            @Override public Optional<Integer> call() throws Exception {
+                return getPokemonPowerUpCandyCostFromImg(pokemonImage, powerUpCandyCostArea);
+            }
+        });
+        Future<Optional<Integer>> cpFuture = numericEngine.submit(new Callable<Optional<Integer>>() {
+            @Override public Optional<Integer> call() throws Exception {
+                return getPokemonCPFromImg(pokemonImage, cpArea);
+            }
+        });
+        Future<Optional<Integer>> candyAmountFuture = numericEngine.submit(new Callable<Optional<Integer>>() {
+            @Override public Optional<Integer> call() throws Exception {
+                return getCandyAmountFromImg(pokemonImage, candyAmountArea);
+            }
+        });
+        Future<Optional<Integer>> evolutionCostFuture = numericEngine.submit(new Callable<Optional<Integer>>() {
+            @Override public Optional<Integer> call() throws Exception {
+                return getPokemonEvolutionCostFromImg(pokemonImage, evolutionCandyCostArea, powerUpStardustCostArea);
+            }
+        });
+        Future<String> typeFuture = typeEngine.submit(new Callable<String>() {
+            @Override public String call() throws Exception {
+                return getPokemonTypeFromImg(pokemonImage, typeArea);
+            }
+        });
+
+        final Pokemon.Gender gender = getPokemonGenderFromImg(pokemonImage, fields.getGenderArea());
+        Future<String> nameFuture = nameEngine.submit(new Callable<String>() {
+            @Override public String call() throws Exception {
+                return getPokemonNameFromImg(pokemonImage, gender, nameArea);
+            }
+        });
+        Future<String> candyNameFuture = nameEngine.submit(new Callable<String>() {
+            @Override public String call() throws Exception {
+                return getCandyNameFromImg(pokemonImage, gender, candyNameArea);
+            }
+        });
 
         double estimatedPokemonLevel = getPokemonLevelFromImg(pokemonImage, trainerLevel);
+
+        Optional<Integer> powerUpCandyCost = join(powerUpCandyCostFuture);
         LevelRange estimatedLevelRange =
                 refineLevelEstimate(trainerLevel, powerUpCandyCost, estimatedPokemonLevel);
-
-        String type = getPokemonTypeFromImg(pokemonImage,
-                ScanArea.calibratedFromSettings(POKEMON_TYPE_AREA, settings, luckyOffset));
-        Pokemon.Gender gender = getPokemonGenderFromImg(pokemonImage,
-                ScanArea.calibratedFromSettings(POKEMON_GENDER_AREA, settings, luckyOffset));
-        String name = getPokemonNameFromImg(pokemonImage, gender,
-                ScanArea.calibratedFromSettings(POKEMON_NAME_AREA, settings)); // Not offset for lucky
-        String candyName = getCandyNameFromImg(pokemonImage, gender,
-                ScanArea.calibratedFromSettings(CANDY_NAME_AREA, settings, luckyOffset));
-
-        Optional<Integer> cp = getPokemonCPFromImg(pokemonImage,
-                ScanArea.calibratedFromSettings(POKEMON_CP_AREA, settings)); // Not offset for lucky
-        Optional<Integer> candyAmount = getCandyAmountFromImg(pokemonImage,
-                    ScanArea.calibratedFromSettings(POKEMON_CANDY_AMOUNT_AREA, settings, luckyOffset));
-        ScanArea evolutionCandyCostArea =
-                ScanArea.calibratedFromSettings(POKEMON_EVOLUTION_COST_AREA, settings, luckyOffset);
-        ScanArea powerUpStardustCostArea =
-                ScanArea.calibratedFromSettings(POKEMON_POWER_UP_STARDUST_COST, settings, luckyOffset);
-        Optional<Integer> evolutionCost = getPokemonEvolutionCostFromImg(pokemonImage, evolutionCandyCostArea,
-                powerUpStardustCostArea);
+        String type = join(typeFuture);
+        String name = join(nameFuture);
+        String candyName = join(candyNameFuture);
+        Optional<Integer> cp = join(cpFuture);
+        Optional<Integer> candyAmount = join(candyAmountFuture);
+        Optional<Integer> evolutionCost = join(evolutionCostFuture);
         String uniqueIdentifier = name + type + candyName + hp.toString() + cp
                 .toString() + powerUpStardustCost.toString() + powerUpCandyCost.toString();
 
         return new ScanResult(estimatedLevelRange, name, type, candyName, gender, hp, cp, candyAmount, evolutionCost,
-                powerUpStardustCost, powerUpCandyCost, (luckyOffset != 0), uniqueIdentifier);
+                powerUpStardustCost, powerUpCandyCost, (fields.getLuckyOffset() != 0), uniqueIdentifier);
+    }
+
+    /**
+     * Wait for a field recognized by an OcrEngine worker.
+     */
+    private static <T> T join(Future<T> field) {
+        try {
+            return field.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the OCR of a field", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The OCR of a field failed", e.getCause());
+        }
     }
 
     /**
@@ -1046,15 +1098,26 @@ public class OcrHelper {
 
 
     /**
-     * Checks if the user has custom screen calibration, and if so, initiates the arc x,y parameters.
+     * Checks if the user has custom screen calibration, and if so, initiates the arc x,y parameters. The arc is only
+     * set up again when the calibration, the trainer level or the screen size changed since the last scan.
      *
      * @param trainerLevel the trainer level to initiate the arc points to.
      */
-    private static void ensureCorrectLevelArcSettings(@NonNull GoIVSettings settings, int trainerLevel) {
-        if (settings.hasManualScanCalibration()) {
-            ScanPoint arcInit = new ScanPoint(ARC_INIT_POINT, settings);
-            int arcRadius = Integer.valueOf(settings.getCalibrationValue(ARC_RADIUS));
-            Data.setupArcPoints(arcInit, arcRadius, trainerLevel);
+    private static void ensureCorrectLevelArcSettings(@NonNull CalibrationProfile calibration, int trainerLevel,
+                                                      int screenWidth, int screenHeight) {
+        ScanPoint arcInit = calibration.getArcInit();
+        if (arcInit == null) {
+            return;
+        }
+        if (calibratedArc == null || calibratedArcProfile != calibration || calibratedArcTrainerLevel != trainerLevel
+                || calibratedArcScreenWidth != screenWidth || calibratedArcScreenHeight != screenHeight) {
+            calibratedArc = Data.setupArcPoints(arcInit, calibration.getArcRadius(), trainerLevel);
+            calibratedArcProfile = calibration;
+            calibratedArcTrainerLevel = trainerLevel;
+            calibratedArcScreenWidth = screenWidth;
+            calibratedArcScreenHeight = screenHeight;
+        } else {
+            Data.setArcGeometry(calibratedArc); // In case Pokefly set up the uncalibrated arc meanwhile
         }
     }
 
@@ -1085,39 +1148,44 @@ public class OcrHelper {
      */
     public static String getAppraisalText(@NonNull Context context,
                                           @NonNull GoIVSettings settings,
-                                          @NonNull Bitmap screen) {
-        double appraisalBoxHeightFactor = 0.13;
-        int navBarHeight = getNavigationBarSize(context);
-        double appraisalBoxStartYFactor =
-                (double)(screen.getHeight() - navBarHeight) / screen.getHeight() - appraisalBoxHeightFactor;
-
-        Bitmap bottom = getImageCrop(screen, 0.05, appraisalBoxStartYFactor, 0.90, appraisalBoxHeightFactor);
-        String hash = "appraisal" + hashBitmap(bottom);
-        String appraisalText = appraisalCache.get(hash);
+                                          @NonNull ScreenImage screen) {
+        ScanArea box = getAppraisalBoxArea(screen.getWidth(), screen.getHeight(), getNavigationBarSize(context));
+        Bitmap bottom = getImageCrop(screen, box);
+        //68,105,108 is the color of the appraisal text
+        String hash = "appraisal" + replaceColorsAndHash(bottom, 68, 105, 108, Color.WHITE, 100, true);
+        String appraisalText = ocrCache.get(hash);
 
         if (appraisalText == null) {
-            //68,105,108 is the color of the appraisal text
-            bottom = replaceColors(bottom, true, 68, 105, 108, Color.WHITE, 100, true);
-            tesseract.setVariable(TessBaseAPI.VAR_CHAR_WHITELIST, res.getString(R.string.ocr_whitelist_appraisals));
-            tesseract.setImage(bottom);
-            //Set tesseract not single line mode
-            tesseract.setPageSegMode(TessBaseAPI.PageSegMode.PSM_SINGLE_BLOCK);
-            appraisalText = tesseract.getUTF8Text();
-            appraisalCache.put(hash, appraisalText);
-            settings.saveAppraisalCache(appraisalCache.snapshot());
+            // The appraisal engine reads in single block mode, the text spans several lines
+            appraisalText = appraisalEngine.recognize(res.getString(R.string.ocr_whitelist_appraisals), bottom);
+            ocrCache.put(hash, appraisalText);
         }
 
         return hash + "#" + appraisalText;
 
     }
 
+    /**
+     * Get the area of the text of the appraisal box, at the bottom of the screen above the navigation bar.
+     *
+     * @param navBarHeight The height of the navigation bar, see getNavigationBarSize
+     */
+    public static @NonNull ScanArea getAppraisalBoxArea(int screenWidth, int screenHeight, int navBarHeight) {
+        double appraisalBoxHeightFactor = 0.13;
+        double appraisalBoxStartYFactor =
+                (double)(screenHeight - navBarHeight) / screenHeight - appraisalBoxHeightFactor;
+        return new ScanArea((int) (screenWidth * 0.05), (int) (screenHeight * appraisalBoxStartYFactor),
+                (int) (screenWidth * 0.90), (int) (screenHeight * appraisalBoxHeightFactor));
+    }
+
     /**
      * Removes an entry from the ocrCache.
      *
      * @param hash The hash of the entry to remove.
      */
-    public static void removeEntryFromAppraisalCache(@NonNull GoIVSettings settings, @NonNull String hash) {
-        appraisalCache.remove(hash);
-        settings.saveAppraisalCache(appraisalCache.snapshot());
+    public static void removeEntryFromAppraisalCache(@NonNull String hash) {
+        if (ocrCache != null) {
+            ocrCache.remove(hash);
+        }
     }
 }
@@ -0,0 +1,362 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * The OCR results of every field type, keyed by field type and pixel hash (like "hp1f3a9c2"), kept on disk so they
+ * survive Pokefly restarts.
+ * <p>
+ * The results live in memory in least recently used order, bounded by an estimate of the bytes they take, and are
+ * backed by an append-only log of puts and removals:
+ * <pre>
+ * int    length of the rest of the record
+ * byte   PUT or REMOVE
+ * UTF    key
+ * UTF    result, for a PUT
+ * </pre>
+ * The log is replayed on a background thread when the cache is opened, and nothing waits for it: until it's loaded,
+ * only the results put in this session are found, and they win over the ones in the log. Changes are written in
+ * batches on that same thread, and the log is rewritten with only the live results once it holds mostly outdated
+ * records. Reading a result doesn't write anything, so the order of reads is only saved when the log is rewritten.
+ * <p>
+ * The keys are exact pixel hashes rather than fingerprints, since a result found here is used without any OCR, in
+ * this and every later session. Crops which only nearly match an earlier one are handled by the FingerprintCache of
+ * each field, which is only kept in memory.
+ */
+class OcrResultCache {
+    private static final int MAGIC = 0x4749564F; // "GIVO"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final long FLUSH_DELAY_MS = 2000;
+    private static final int ENTRY_OVERHEAD_BYTES = 64; // Estimate of the map entry and String objects
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private final File file;
+    private final int maxBytes;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+    private final CountDownLatch loaded = new CountDownLatch(1);
+
+    private final LinkedHashMap<String, String> results = new LinkedHashMap<>(64, 0.75f, true);
+    private int bytes = 0;
+    private final List<String[]> pendingRecords = new ArrayList<>(); // {key, result}, result null for a removal
+    private boolean flushScheduled = false;
+    private boolean closed = false;
+    private Set<String> changedWhileLoading = new HashSet<>(); // Keys put or removed before the log is loaded
+    private int logRecords = 0; // Only accessed on the writer thread
+
+    /**
+     * Open the cache, loading the log on a background thread.
+     *
+     * @param file     The log file, created if it doesn't exist
+     * @param maxBytes Roughly how much memory the results may take
+     */
+    OcrResultCache(@NonNull File file, int maxBytes) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        writer.execute(new Runnable() {
+            @Override public void run() {
+                load();
+            }
+        });
+    }
+
+    /**
+     * Get a result. While the log is being loaded, only results put in this session are found.
+     *
+     * @return The result, or null if it isn't cached
+     */
+    @Nullable
+    synchronized String get(@NonNull String key) {
+        return results.get(key);
+    }
+
+    /**
+     * Cache a result, evicting the least recently used ones if the cache is full. Returns immediately, the result is
+     * written later on a background thread. Ignored once the cache is closed.
+     */
+    synchronized void put(@NonNull String key, @NonNull String result) {
+        if (closed) {
+            return;
+        }
+        putInMemory(key, result);
+        addPendingRecord(key, result);
+    }
+
+    /**
+     * Remove a result, for example because it turned out to be wrong. Returns immediately. Ignored once the cache is
+     * closed.
+     */
+    synchronized void remove(@NonNull String key) {
+        if (closed) {
+            return;
+        }
+        removeFromMemory(key);
+        addPendingRecord(key, null);
+    }
+
+    /**
+     * Write the pending changes, then stop the background thread. Blocks until the changes are written.
+     */
+    void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        writer.execute(new Runnable() {
+            @Override public void run() {
+                writePendingRecords();
+            }
+        });
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wait until the log is loaded.
+     */
+    void awaitLoaded() {
+        try {
+            loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int sizeOf(String key, String result) {
+        return (key.length() + result.length()) * 2 + ENTRY_OVERHEAD_BYTES;
+    }
+
+    /**
+     * Called with the lock held.
+     */
+    private void putInMemory(String key, String result) {
+        String previous = results.put(key, result);
+        if (previous != null) {
+            bytes -= sizeOf(key, previous);
+        }
+        bytes += sizeOf(key, result);
+
+        Iterator<Map.Entry<String, String>> eldest = results.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, String> entry = eldest.next();
+            bytes -= sizeOf(entry.getKey(), entry.getValue());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Called with the lock held.
+     */
+    private void removeFromMemory(String key) {
+        String previous = results.remove(key);
+        if (previous != null) {
+            bytes -= sizeOf(key, previous);
+        }
+    }
+
+    /**
+     * Called with the lock held.
+     */
+    private void addPendingRecord(String key, @Nullable String result) {
+        if (changedWhileLoading != null) {
+            changedWhileLoading.add(key);
+        }
+        pendingRecords.add(new String[]{key, result});
+        if (!flushScheduled) {
+            flushScheduled = true;
+            writer.schedule(new Runnable() {
+                @Override public void run() {
+                    writePendingRecords();
+                }
+            }, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Replay the log, then add the results of this session on top of it. Runs on the writer thread.
+     */
+    private void load() {
+        // Replayed without the lock, in least recently used order
+        LinkedHashMap<String, String> replayed = new LinkedHashMap<>();
+        long validLength = HEADER_SIZE;
+        try {
+            if (!file.exists() || file.length() < HEADER_SIZE) {
+                writeHeader(file);
+                return;
+            }
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    Timber.w("Unknown OCR cache format, starting a new cache");
+                    in.close();
+                    writeHeader(file);
+                    return;
+                }
+
+                long fileLength = file.length();
+                long offset = HEADER_SIZE;
+                while (offset + 4 <= fileLength) {
+                    int length = in.readInt();
+                    if (length <= 0 || offset + 4 + length > fileLength) {
+                        break; // Truncated record, written while the app was killed
+                    }
+                    byte operation = in.readByte();
+                    String key = in.readUTF();
+                    replayed.remove(key);
+                    if (operation == PUT) {
+                        replayed.put(key, in.readUTF());
+                    }
+                    logRecords++;
+                    offset += 4 + length;
+                    validLength = offset;
+                }
+            } catch (EOFException e) {
+                Timber.w("OCR cache ends with a truncated record");
+            } finally {
+                in.close();
+            }
+
+            if (validLength < file.length()) {
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try {
+                    raf.setLength(validLength);
+                } finally {
+                    raf.close();
+                }
+            }
+        } catch (IOException e) {
+            Timber.e(e, "Could not load the OCR cache");
+        } finally {
+            synchronized (this) {
+                // The results of this session are more recent than everything in the log
+                Map<String, String> sessionResults = new LinkedHashMap<>(results);
+                results.clear();
+                bytes = 0;
+                for (Map.Entry<String, String> entry : replayed.entrySet()) {
+                    if (!changedWhileLoading.contains(entry.getKey())) {
+                        putInMemory(entry.getKey(), entry.getValue());
+                    }
+                }
+                for (Map.Entry<String, String> entry : sessionResults.entrySet()) {
+                    putInMemory(entry.getKey(), entry.getValue());
+                }
+                changedWhileLoading = null;
+            }
+            loaded.countDown();
+        }
+    }
+
+    private static void writeHeader(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Append every pending change to the log in one write, and rewrite the log if it's mostly outdated. Runs on the
+     * writer thread.
+     */
+    private void writePendingRecords() {
+        List<String[]> records;
+        int liveResults;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pendingRecords.isEmpty()) {
+                return;
+            }
+            records = new ArrayList<>(pendingRecords);
+            pendingRecords.clear();
+            liveResults = results.size();
+        }
+
+        try {
+            appendRecords(file, records);
+            logRecords += records.size();
+            if (logRecords > liveResults * 2 + 64) {
+                compact();
+            }
+        } catch (IOException e) {
+            // The changes are still in memory, they're only lost for the next session
+            Timber.e(e, "Could not write the OCR cache");
+        }
+    }
+
+    /**
+     * Rewrite the log with only the live results, least recently used first so a replay restores their order.
+     */
+    private void compact() throws IOException {
+        List<String[]> records = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, String> entry : results.entrySet()) {
+                records.add(new String[]{entry.getKey(), entry.getValue()});
+            }
+        }
+
+        File compacted = new File(file.getPath() + ".tmp");
+        writeHeader(compacted);
+        appendRecords(compacted, records);
+        if (!compacted.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+        logRecords = records.size();
+    }
+
+    private static void appendRecords(File file, List<String[]> records) throws IOException {
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        try {
+            for (String[] record : records) {
+                recordBytes.reset();
+                DataOutputStream recordOut = new DataOutputStream(recordBytes);
+                recordOut.writeByte(record[1] != null ? PUT : REMOVE);
+                recordOut.writeUTF(record[0]);
+                if (record[1] != null) {
+                    recordOut.writeUTF(record[1]);
+                }
+                out.writeInt(recordBytes.size());
+                recordBytes.writeTo(out);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import com.kamron.pogoiv.scanlogic.Pokemon;
+
+/**
+ * Pixel buffers reused by the OCR preprocessing of every field, and the pixel routines working on them, so scanning
+ * doesn't allocate pixel arrays once the buffers have grown to the largest field.
+ * <p>
+ * Every thread has its own scratch, so the scan thread and the worker of each OcrEngine never share buffers. A buffer
+ * is only valid until the next request for the same buffer on the same thread.
+ */
+final class PixelScratch {
+    private static final int WHITE = 0xFFFFFFFF;
+
+    private static final ThreadLocal<PixelScratch> SCRATCH = new ThreadLocal<PixelScratch>() {
+        @Override protected PixelScratch initialValue() {
+            return new PixelScratch();
+        }
+    };
+
+    private int[] pixels = new int[0];
+    private int[] filtered = new int[0];
+
+    private PixelScratch() {
+    }
+
+    /**
+     * Get the scratch of the calling thread.
+     */
+    static PixelScratch get() {
+        return SCRATCH.get();
+    }
+
+    /**
+     * Get a buffer of at least count pixels, meant for the pixels read from a field.
+     */
+    int[] pixels(int count) {
+        if (pixels.length < count) {
+            pixels = new int[count];
+        }
+        return pixels;
+    }
+
+    /**
+     * Get a second buffer of at least count pixels, meant for a filtered copy of the pixels.
+     */
+    int[] filtered(int count) {
+        if (filtered.length < count) {
+            filtered = new int[count];
+        }
+        return filtered;
+    }
+
+    /**
+     * Hash the first count pixels of an array. Same as Arrays.hashCode for an array of exactly count pixels, so hashes
+     * stored before the buffers were reused still match.
+     */
+    static int hash(int[] pixels, int count) {
+        int hash = 1;
+        for (int i = 0; i < count; i++) {
+            hash = 31 * hash + pixels[i];
+        }
+        return hash;
+    }
+
+    /**
+     * Replaces colors that are farther away from a specific color than a given threshold, and hashes the original
+     * pixels in the same pass. src and dst may be the same array.
+     *
+     * @param src          The pixels to filter.
+     * @param dst          Where to write the filtered pixels.
+     * @param count        The number of pixels.
+     * @param keepCr       The red color to keep
+     * @param keepCg       The green color to keep
+     * @param keepCb       The blue color to keep
+     * @param replaceColor The color to replace mismatched colors with
+     * @param distance     The distance threshold.
+     * @param simpleBG     Whether the pixels have a simple background, the color of the first pixel
+     * @return The hash of the pixels before filtering, see {@link #hash(int[], int)}
+     */
+    static int replaceColorsAndHash(int[] src, int[] dst, int count, int keepCr, int keepCg, int keepCb,
+                                    int replaceColor, int distance, boolean simpleBG) {
+        int bgColor = replaceColor;
+        int distanceSq = distance * distance;
+        int hash = 1;
+
+        if (simpleBG && count > 0) {
+            bgColor = src[0];
+        }
+
+        for (int i = 0; i < count; i++) {
+            int pixel = src[i];
+            hash = 31 * hash + pixel;
+            /* Avoid unnecessary math for obviously background color. This removes most of the math
+             * for candy, HP and name bitmaps. */
+            if (pixel == bgColor) {
+                dst[i] = replaceColor;
+                continue;
+            }
+            int rDiff = keepCr - ((pixel >> 16) & 0xFF);
+            int gDiff = keepCg - ((pixel >> 8) & 0xFF);
+            int bDiff = keepCb - (pixel & 0xFF);
+            int dSq = rDiff * rDiff + gDiff * gDiff + bDiff * bDiff;
+            dst[i] = dSq > distanceSq ? replaceColor : pixel;
+        }
+        return hash;
+    }
+
+    /**
+     * Keep only the text of a cost area, whether it's the dark text of an affordable cost or the red text of a cost
+     * you can't afford.
+     *
+     * @param pixels The pixels of the cost area, left as they are
+     * @return The filtered buffer of the calling thread, with the cleaned pixels in its first width * height items
+     */
+    static int[] cleanCostArea(int[] pixels, int width, int height) {
+        //the dark color used for text in pogo is approximately rgb 76,112,114 if you can afford evo/power up/new attack
+        //and the red color is rgb 255 95 100 when you cant afford the evolution/power up/new attack
+        //
+        //TODO: improve logic or current threshold values to clean a image, because currently the characters to
+        // separate digits(e.g. ',' for en/ja) are removed.
+        //TODO: add paramaters and logic to clean a image for lucky pokemon's stardust cost(yellow text).
+        int count = width * height;
+        int[] cleaned = get().filtered(count);
+
+        replaceColorsAndHash(pixels, cleaned, count, 68, 105, 108, WHITE, 30, false);
+        if (isRowOnlyWhite(cleaned, width, height)) {
+            //use the image refined for red text instead
+            replaceColorsAndHash(pixels, cleaned, count, 255, 115, 115, WHITE, 40, false);
+            if (isRowOnlyWhite(cleaned, width, height)) {
+                //if there's no red or black text, there's no text at all: keep the image refined for black text.
+                replaceColorsAndHash(pixels, cleaned, count, 68, 105, 108, WHITE, 30, false);
+            }
+        }
+        return cleaned;
+    }
+
+    /**
+     * Filter the background out of the pixels of the gender area, in place, and search the gender sign in them, see
+     * {@link #detectGender(int[], int, int)}.
+     */
+    static Pokemon.Gender filterAndDetectGender(int[] pixels, int width, int height) {
+        replaceColorsAndHash(pixels, pixels, width * height, 68, 105, 108, WHITE, 200, true);
+        return detectGender(pixels, width, height);
+    }
+
+    /**
+     * Heuristic method to determine if an image looks empty. Works by taking a horisontal row of pixels from the
+     * middle, and looks if they're all pure white.
+     *
+     * @param pixels The pixels of the image, pre-refined to replace all non text colors with pure white
+     * @return true if the image is likely only white
+     */
+    static boolean isRowOnlyWhite(int[] pixels, int width, int height) {
+        int rowStart = (height / 2) * width;
+        for (int i = rowStart; i < rowStart + width; i++) {
+            if (pixels[i] != WHITE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Search the gender sign in the pixels of the gender area.
+     * <p>
+     * Divide the area in 2 vertical halves, scan one line every two and search for the first pixel which isn't the
+     * background, the color of the top left pixel. The sum of their X coordinates is the score of the half: the ♂
+     * sign sticks out to the right at the top, and the ♀ sign at the bottom.
+     *
+     * @param pixels The pixels of the gender area, with the background filtered out
+     */
+    static Pokemon.Gender detectGender(int[] pixels, int width, int height) {
+        // The top left pixel should always be empty
+        int bgColor = pixels[0];
+
+        int upperHalfScore = 0;
+        int lowerHalfScore = 0;
+
+        // Top
+        for (int y = 0; y < height / 2; y += 2) {
+            upperHalfScore += firstForegroundX(pixels, width, y, bgColor);
+        }
+
+        // Bottom
+        for (int y = (int) Math.ceil(height / 2f); y < height; y += 2) {
+            lowerHalfScore += firstForegroundX(pixels, width, y, bgColor);
+        }
+
+        if (upperHalfScore > lowerHalfScore) {
+            return Pokemon.Gender.M;
+        } else if (lowerHalfScore > upperHalfScore) {
+            return Pokemon.Gender.F;
+        } else {
+            return Pokemon.Gender.N;
+        }
+    }
+
+    /**
+     * @return The X coordinate of the first pixel of a row which isn't the background, or 0 if there's none
+     */
+    private static int firstForegroundX(int[] pixels, int width, int y, int bgColor) {
+        int rowStart = y * width;
+        for (int x = 0; x < width; x++) {
+            if (pixels[rowStart + x] != bgColor) {
+                return x;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,174 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import android.content.res.Resources;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.kamron.pogoiv.GoIVSettings;
+import com.kamron.pogoiv.scanlogic.PokeInfoCalculator;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+/**
+ * A single background thread which owns the OCR engine and runs every screen grab, bitmap decode and OCR pass, so
+ * the overlay never waits for Tesseract.
+ * <p>
+ * The OcrHelper is created, used and destroyed on the scan thread only, which hands the fields of a scan out to
+ * the workers of its OcrEngines and joins them. Results are posted back to the main thread through a
+ * {@link ScanCallback}. Tasks submitted before {@link #cancelPending()} are
+ * skipped if they haven't started yet, and their results are dropped if they have. Tasks submitted after
+ * {@link #shutdown()} are cancelled right away.
+ */
+public class ScanExecutor {
+
+    /**
+     * Work to run on the scan thread.
+     */
+    public interface ScanTask<T> {
+        /**
+         * @param ocr The OCR helper, only valid on the scan thread
+         * @return The result to deliver to the callback on the main thread
+         */
+        T run(@NonNull OcrHelper ocr) throws Exception;
+    }
+
+    /**
+     * Receives the result of a ScanTask on the main thread.
+     */
+    public abstract static class ScanCallback<T> {
+        /**
+         * Called on the main thread when the task is done.
+         *
+         * @param result The result of the task, or null if it threw an exception
+         */
+        public abstract void onResult(@Nullable T result);
+
+        /**
+         * Called on the main thread instead of onResult when the task was cancelled.
+         */
+        public void onCancelled() {
+        }
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "GoIV scan");
+            thread.setPriority(Thread.NORM_PRIORITY - 1); // Leave the UI thread the upper hand
+            return thread;
+        }
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * Only accessed on the scan thread.
+     */
+    private OcrHelper ocr;
+
+    /**
+     * Creates the scan thread and initializes the OCR engine on it.
+     *
+     * @param dataPath Path the OCR data files.
+     */
+    public ScanExecutor(@NonNull final String dataPath,
+                        @NonNull final PokeInfoCalculator pokeInfoCalculator,
+                        @NonNull final GoIVSettings settings,
+                        @NonNull final Resources resources) {
+        executor.execute(new Runnable() {
+            @Override public void run() {
+                ocr = OcrHelper.init(dataPath, pokeInfoCalculator, settings, resources);
+            }
+        });
+    }
+
+    /**
+     * Run a task on the scan thread, and deliver its result to the callback on the main thread.
+     */
+    public <T> void submit(@NonNull final ScanTask<T> task, @NonNull final ScanCallback<T> callback) {
+        final int submittedGeneration = generation.get();
+        Runnable scan = new Runnable() {
+            @Override public void run() {
+                if (submittedGeneration != generation.get() || ocr == null) {
+                    postCancelled(callback);
+                    return;
+                }
+
+                T result = null;
+                try {
+                    result = task.run(ocr);
+                } catch (Exception e) {
+                    Timber.e(e, "Scan task failed");
+                }
+
+                final T finalResult = result;
+                mainHandler.post(new Runnable() {
+                    @Override public void run() {
+                        // Checked on the main thread, where cancelPending is called
+                        if (submittedGeneration != generation.get()) {
+                            callback.onCancelled();
+                        } else {
+                            callback.onResult(finalResult);
+                        }
+                    }
+                });
+            }
+        };
+
+        try {
+            executor.execute(scan);
+        } catch (RejectedExecutionException e) {
+            // Shut down, for example a delayed appraisal scan which fired while Pokefly was being destroyed
+            postCancelled(callback);
+        }
+    }
+
+    private void postCancelled(final ScanCallback<?> callback) {
+        mainHandler.post(new Runnable() {
+            @Override public void run() {
+                callback.onCancelled();
+            }
+        });
+    }
+
+    /**
+     * Cancel every task submitted so far, for example because the user left the screen they were scanning. Must be
+     * called on the main thread.
+     */
+    public void cancelPending() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Cancel every pending task, then release the OCR engine and stop the scan thread. Returns right away, the task
+     * which is running and the release of the engine finish on the scan thread. Must be called on the main thread.
+     *
+     * @param onShutdown Run on the main thread once the scan thread is done, for example to release the screen the
+     *                   tasks grab
+     */
+    public void shutdown(@Nullable final Runnable onShutdown) {
+        cancelPending();
+        executor.execute(new Runnable() {
+            @Override public void run() {
+                try {
+                    if (ocr != null) {
+                        ocr.exit();
+                        ocr = null;
+                    }
+                } finally {
+                    if (onShutdown != null) {
+                        mainHandler.post(onShutdown);
+                    }
+                }
+            }
+        });
+        executor.shutdown();
+    }
+}
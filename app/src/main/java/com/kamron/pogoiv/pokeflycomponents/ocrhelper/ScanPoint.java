@@ -1,18 +1,10 @@
 package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
 
 
-import com.kamron.pogoiv.GoIVSettings;
-
 public class ScanPoint {
     public int xCoord = -1;
     public int yCoord = -1;
 
-    public ScanPoint(String calibrationKey, GoIVSettings settings) {
-        String[] values = settings.getCalibrationValue(calibrationKey).split(",");
-        xCoord = Integer.valueOf(values[0]);
-        yCoord = Integer.valueOf(values[1]);
-    }
-
     public ScanPoint(int x, int y) {
         this.xCoord = x;
         this.yCoord = y;
@@ -0,0 +1,139 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.media.Image;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An image of the whole screen which the OcrHelper reads pixels and field crops from.
+ * <p>
+ * A screen grabbed from the ImageReader is read straight from the buffer of the Image, so scanning it only creates
+ * the small bitmaps of the fields and never a bitmap of the whole screen. Crops may be taken from several threads at
+ * once. Close the image once the scan is done to give the buffer back to the ImageReader.
+ */
+public abstract class ScreenImage implements ScreenPixels, AutoCloseable {
+
+    /**
+     * Copy a part of the screen to a bitmap, which the caller is free to modify.
+     *
+     * @throws IllegalArgumentException if the part isn't entirely in the screen
+     */
+    public abstract Bitmap crop(int x, int y, int width, int height);
+
+    /**
+     * Release the image the screen is read from. The default implementation does nothing.
+     */
+    @Override
+    public void close() {
+    }
+
+    void checkBounds(int x, int y, int width, int height) {
+        if (x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > getWidth() || y + height > getHeight()) {
+            throw new IllegalArgumentException("Crop " + x + "," + y + " " + width + "x" + height
+                    + " is outside of the screen " + getWidth() + "x" + getHeight());
+        }
+    }
+
+    /**
+     * Wrap a bitmap of the screen, for example a screenshot file.
+     */
+    public static ScreenImage of(@NonNull Bitmap bitmap) {
+        return new BitmapScreenImage(bitmap);
+    }
+
+    /**
+     * Wrap an RGBA_8888 image acquired from an ImageReader. The image is closed with the ScreenImage.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public static ScreenImage of(@NonNull Image image) {
+        return new PlaneScreenImage(image);
+    }
+
+    private static class BitmapScreenImage extends ScreenImage {
+        private final Bitmap bitmap;
+
+        BitmapScreenImage(Bitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+
+        @Override public int getWidth() {
+            return bitmap.getWidth();
+        }
+
+        @Override public int getHeight() {
+            return bitmap.getHeight();
+        }
+
+        @Override public int getPixel(int x, int y) {
+            return bitmap.getPixel(x, y);
+        }
+
+        @Override public Bitmap crop(int x, int y, int width, int height) {
+            checkBounds(x, y, width, height);
+            return Bitmap.createBitmap(bitmap, x, y, width, height);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static class PlaneScreenImage extends ScreenImage {
+        private static final int BYTES_PER_PIXEL = 4;
+
+        private final Image image;
+        private final ByteBuffer buffer;
+        private final int width;
+        private final int height;
+        private final int pixelStride;
+        private final int rowStride;
+
+        PlaneScreenImage(Image image) {
+            this.image = image;
+            Image.Plane plane = image.getPlanes()[0];
+            buffer = plane.getBuffer().duplicate().order(ByteOrder.BIG_ENDIAN); // See getPixel
+            width = image.getWidth();
+            height = image.getHeight();
+            pixelStride = plane.getPixelStride();
+            rowStride = plane.getRowStride();
+        }
+
+        @Override public int getWidth() {
+            return width;
+        }
+
+        @Override public int getHeight() {
+            return height;
+        }
+
+        @Override public int getPixel(int x, int y) {
+            // Absolute read, safe from any thread. The buffer is big endian so the int is RGBA, rotate it to ARGB.
+            int rgba = buffer.getInt(y * rowStride + x * pixelStride);
+            return rgba >>> 8 | rgba << 24;
+        }
+
+        @Override public Bitmap crop(int x, int y, int width, int height) {
+            checkBounds(x, y, width, height);
+
+            // Gather the rows of the crop without their padding. The bytes are in RGBA order, which is the memory
+            // layout copyPixelsFromBuffer expects for ARGB_8888.
+            int cropRowBytes = width * BYTES_PER_PIXEL;
+            byte[] pixels = new byte[cropRowBytes * height];
+            ByteBuffer rows = buffer.duplicate(); // Own position, so crops can be taken in parallel
+            for (int row = 0; row < height; row++) {
+                rows.position((y + row) * rowStride + x * pixelStride);
+                rows.get(pixels, row * cropRowBytes, cropRowBytes);
+            }
+
+            Bitmap crop = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            crop.copyPixelsFromBuffer(ByteBuffer.wrap(pixels));
+            return crop;
+        }
+
+        @Override public void close() {
+            image.close();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import android.support.annotation.ColorInt;
+
+/**
+ * The pixels of the screen, read one by one in the coordinates of the screen.
+ * <p>
+ * A {@link ScreenImage} can also crop the fields to scan. Frames which are only good enough to tell which screen the
+ * user is on, like the scaled down frames the screen watcher gets, are only ScreenPixels.
+ */
+public interface ScreenPixels {
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * Get the color of a single pixel of the screen.
+     */
+    @ColorInt
+    int getPixel(int x, int y);
+}
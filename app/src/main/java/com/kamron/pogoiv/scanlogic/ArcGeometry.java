@@ -0,0 +1,80 @@
+package com.kamron.pogoiv.scanlogic;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The points of the level arc on the screen, one per level index up to the maximum level of a trainer.
+ * <p>
+ * An arc is immutable: when the calibration or the trainer level changes, Data.setupArcPoints replaces the whole
+ * arc, so a scan reading the arc never sees points of two different arcs. Every arc gets a new version, which lets
+ * the things precomputed from an arc tell whether they're still up to date.
+ */
+public final class ArcGeometry {
+    private static final AtomicInteger nextVersion = new AtomicInteger();
+
+    private final int version;
+    private final int initX;
+    private final int initY;
+    private final int radius;
+    private final int trainerLevel;
+    private final int[] x;
+    private final int[] y;
+
+    /**
+     * @param x The x coordinates of the points, owned by the arc from now on
+     * @param y The y coordinates of the points, owned by the arc from now on
+     */
+    ArcGeometry(int initX, int initY, int radius, int trainerLevel, int[] x, int[] y) {
+        this.version = nextVersion.incrementAndGet();
+        this.initX = initX;
+        this.initY = initY;
+        this.radius = radius;
+        this.trainerLevel = trainerLevel;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Whether this arc was computed from the given parameters.
+     */
+    boolean isFor(int initX, int initY, int radius, int trainerLevel) {
+        return this.initX == initX && this.initY == initY && this.radius == radius
+                && this.trainerLevel == trainerLevel;
+    }
+
+    /**
+     * A number which is different for every arc computed since the app started.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * The x coordinate of the center of the arc.
+     */
+    public int getInitX() {
+        return initX;
+    }
+
+    /**
+     * The y coordinate of the center of the arc.
+     */
+    public int getInitY() {
+        return initY;
+    }
+
+    /**
+     * The number of points of the arc, which is the maximum level index of the trainer + 1.
+     */
+    public int getPointCount() {
+        return x.length;
+    }
+
+    public int getX(int levelIdx) {
+        return x[levelIdx];
+    }
+
+    public int getY(int levelIdx) {
+        return y[levelIdx];
+    }
+}
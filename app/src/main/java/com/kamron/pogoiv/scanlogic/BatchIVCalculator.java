@@ -0,0 +1,136 @@
+package com.kamron.pogoiv.scanlogic;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Calculates the IV possibilities of many scans at once, spreading the work over every available core.
+ * <p>
+ * The species of every scan is resolved with the PokemonNameCorrector on the calling thread first, since the
+ * corrector isn't thread safe. Only the IV lookups, which read immutable species data and an {@link IVLookupIndex} per
+ * species, run on the pool. The indexes belong to the batch, so a batch neither evicts the index of the pokemon the
+ * user is currently looking at nor touches the ScanContainer. Results are returned in the same order as the scans.
+ */
+public class BatchIVCalculator {
+    private final PokemonNameCorrector pokemonNameCorrector;
+
+    public BatchIVCalculator(PokemonNameCorrector pokemonNameCorrector) {
+        this.pokemonNameCorrector = pokemonNameCorrector;
+    }
+
+    /**
+     * The outcome of a single scan of a batch.
+     */
+    public static class Result {
+        public final ScanResult scanResult;
+        /**
+         * The species the scan was resolved to, or null if the HP or CP of the scan couldn't be read.
+         */
+        @Nullable public final Pokemon pokemon;
+        /**
+         * The IV possibilities of the scan, or null if the HP or CP of the scan couldn't be read.
+         */
+        @Nullable public final IVScanResult ivScanResult;
+        /**
+         * Time spent resolving the species and calculating the IVs of this scan, in nanoseconds. Time spent waiting
+         * for a pool thread isn't included.
+         */
+        public final long elapsedNanos;
+
+        private Result(ScanResult scanResult, @Nullable Pokemon pokemon, @Nullable IVScanResult ivScanResult,
+                       long elapsedNanos) {
+            this.scanResult = scanResult;
+            this.pokemon = pokemon;
+            this.ivScanResult = ivScanResult;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+
+    /**
+     * Calculate the IV possibilities of every scan. Blocks until the whole batch is done.
+     *
+     * @param scanResults The scans to calculate
+     * @return One result per scan, in the same order as scanResults
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the batch
+     */
+    public List<Result> calculate(List<ScanResult> scanResults) throws InterruptedException {
+        Map<Pokemon, IVLookupIndex> indexes = new HashMap<>();
+        List<Callable<Result>> tasks = new ArrayList<>(scanResults.size());
+        for (final ScanResult scanResult : scanResults) {
+            long start = System.nanoTime();
+            final Pokemon pokemon = getPokemon(scanResult);
+            final long resolveNanos = System.nanoTime() - start;
+
+            IVLookupIndex index = null;
+            if (pokemon != null) {
+                index = indexes.get(pokemon);
+                if (index == null) {
+                    index = new IVLookupIndex(pokemon);
+                    indexes.put(pokemon, index);
+                }
+            }
+            final IVLookupIndex pokemonIndex = index;
+            tasks.add(new Callable<Result>() {
+                @Override public Result call() throws Exception {
+                    long start = System.nanoTime();
+                    IVScanResult ivScanResult = pokemonIndex != null
+                            ? getIVPossibilities(scanResult, pokemon, pokemonIndex)
+                            : null;
+                    return new Result(scanResult, pokemon, ivScanResult, resolveNanos + System.nanoTime() - start);
+                }
+            });
+        }
+
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), tasks.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // invokeAll returns the futures in the order of the tasks, whatever order they complete in
+            List<Future<Result>> futures = executor.invokeAll(tasks);
+            List<Result> results = new ArrayList<>(futures.size());
+            for (Future<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Batch IV calculation failed", e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Resolve the species of a scan, or return null if its HP or CP couldn't be read.
+     */
+    @Nullable
+    private Pokemon getPokemon(ScanResult scanResult) {
+        if (!scanResult.getPokemonHP().isPresent() || !scanResult.getPokemonCP().isPresent()) {
+            return null;
+        }
+        return pokemonNameCorrector.getPossiblePokemon(scanResult.getPokemonName(), scanResult.getCandyName(),
+                scanResult.getEvolutionCandyCost(), scanResult.getPokemonType(),
+                scanResult.getPokemonGender()).pokemon;
+    }
+
+    /**
+     * Same as PokeInfoCalculator.getIVPossibilities, but the result isn't remembered in ScanContainer.
+     */
+    private static IVScanResult getIVPossibilities(ScanResult scanResult, Pokemon pokemon, IVLookupIndex index) {
+        int pokemonHP = scanResult.getPokemonHP().get();
+        IVScanResult result = new IVScanResult(pokemon, scanResult.getEstimatedPokemonLevel(),
+                scanResult.getPokemonCP().get(), scanResult.getPokemonGender(), scanResult.getIsLucky());
+        index.addIVCombinations(result, pokemonHP);
+        result.scannedHP = pokemonHP;
+        return result;
+    }
+}
@@ -34,30 +34,80 @@ public class Data {
             0.767397165298462f, 0.770297293677362f, 0.773186504840851f, 0.776064947064992f, 0.778932750225067f,
             0.781790050767666f, 0.784636974334717f, 0.787473608513275f, 0.790300011634827f};
 
+    private static final double[] CpMSquared = new double[CpM.length];
+
+    static {
+        for (int levelIdx = 0; levelIdx < CpM.length; levelIdx++) {
+            CpMSquared[levelIdx] = Math.pow(CpM[levelIdx], 2);
+        }
+    }
+
     public static final int[] POWER_UP_CANDY_COSTS = {
             1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2,
             2, 2, 2, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 6, 6, 6, 6, 8, 8,
             8, 8, 10, 10, 10, 10, 12, 12, 12, 12, 15, 15, 15, 15 };
-    public static int arcInitX;
-    public static int arcInitY;
-    public static int[] arcX;
-    public static int[] arcY;
+    public static final int[] POWER_UP_STARDUST_COSTS = {
+            200, 200, 200, 200, 400, 400, 400, 400, 600, 600, 600, 600, 800, 800, 800, 800, 1000, 1000, 1000, 1000,
+            1300, 1300, 1300, 1300, 1600, 1600, 1600, 1600, 1900, 1900, 1900, 1900, 2200, 2200, 2200, 2200, 2500,
+            2500, 2500, 2500, 3000, 3000, 3000, 3000, 3500, 3500, 3500, 3500, 4000, 4000, 4000, 4000, 4500, 4500,
+            4500, 4500, 5000, 5000, 5000, 5000, 6000, 6000, 6000, 6000, 7000, 7000, 7000, 7000, 8000, 8000, 8000,
+            8000, 9000, 9000, 9000, 9000, 10000, 10000, 10000, 10000 };
+
+    /*
+     * Prefix sums of the power up costs: entry levelIdx is the cost of powering up a pokemon from level index 0 to
+     * levelIdx, so the cost between any two levels is a subtraction. Lucky pokemon pay half the stardust.
+     */
+    private static final int[] CUMULATIVE_CANDY_COSTS = new int[POWER_UP_CANDY_COSTS.length + 1];
+    private static final int[] CUMULATIVE_STARDUST_COSTS = new int[POWER_UP_STARDUST_COSTS.length + 1];
+    private static final int[] CUMULATIVE_LUCKY_STARDUST_COSTS = new int[POWER_UP_STARDUST_COSTS.length + 1];
+
+    static {
+        for (int levelIdx = 0; levelIdx < POWER_UP_CANDY_COSTS.length; levelIdx++) {
+            CUMULATIVE_CANDY_COSTS[levelIdx + 1] = CUMULATIVE_CANDY_COSTS[levelIdx] + POWER_UP_CANDY_COSTS[levelIdx];
+            CUMULATIVE_STARDUST_COSTS[levelIdx + 1] =
+                    CUMULATIVE_STARDUST_COSTS[levelIdx] + POWER_UP_STARDUST_COSTS[levelIdx];
+            CUMULATIVE_LUCKY_STARDUST_COSTS[levelIdx + 1] =
+                    CUMULATIVE_LUCKY_STARDUST_COSTS[levelIdx] + POWER_UP_STARDUST_COSTS[levelIdx] / 2;
+        }
+    }
+
+    private static volatile ArcGeometry arcGeometry;
+
+    /**
+     * Get the level arc last set up, see setupArcPoints.
+     */
+    public static ArcGeometry getArcGeometry() {
+        return arcGeometry;
+    }
+
+    /**
+     * Make an arc the current level arc, for example an arc set up earlier by setupArcPoints.
+     */
+    public static void setArcGeometry(ArcGeometry arc) {
+        arcGeometry = arc;
+    }
 
     /**
      * setupArcPoints
-     * Sets up the x,y coordinates of the arc using the trainer level, stores it in Data.arcX/arcY
+     * Sets up the x,y coordinates of the arc using the trainer level, and makes it the current arc. If the current arc
+     * already has these parameters it's kept as is.
+     *
+     * @return The arc
      */
-    public static void setupArcPoints(ScanPoint arcInit, int arcRadius, int trainerLevel) {
-        arcInitX = arcInit.xCoord;
-        arcInitY = arcInit.yCoord;
+    public static synchronized ArcGeometry setupArcPoints(ScanPoint arcInit, int arcRadius, int trainerLevel) {
+        ArcGeometry current = arcGeometry;
+        if (current != null && current.isFor(arcInit.xCoord, arcInit.yCoord, arcRadius, trainerLevel)) {
+            return current;
+        }
+
         /*
          * Pokemon levels go from 1 to trainerLevel + 2, in increments of 0.5.
          * Here we use levelIdx for levels that are doubled and shifted by - 2; after this adjustment,
-         * the level can be used to index CpM, arcX and arcY.
+         * the level can be used to index CpM and the arc points.
          */
         int maxPokeLevelIndex = (trainerLevelToMaxPokeLevelIndex(trainerLevel));
-        arcX = new int[maxPokeLevelIndex + 1]; //We access entries [0..maxPokeLevelIndex], hence + 1.
-        arcY = new int[maxPokeLevelIndex + 1];
+        int[] arcX = new int[maxPokeLevelIndex + 1]; //We access entries [0..maxPokeLevelIndex], hence + 1.
+        int[] arcY = new int[maxPokeLevelIndex + 1];
 
         double baseCpM = CpM[0];
 
@@ -74,6 +124,10 @@ public class Data {
             arcX[pokeLevelIdx] = (int) Math.round(arcInit.xCoord + (arcRadius * Math.cos(angleInRadians)));
             arcY[pokeLevelIdx] = (int) Math.round(arcInit.yCoord + (arcRadius * Math.sin(angleInRadians))* Data.LEVEL_ARC_SQUISH_FACTOR);
         }
+
+        current = new ArcGeometry(arcInit.xCoord, arcInit.yCoord, arcRadius, trainerLevel, arcX, arcY);
+        arcGeometry = current;
+        return current;
     }
 
     /**
@@ -109,6 +163,17 @@ public class Data {
         return CpM[maxPokeLevelToIndex(level)];
     }
 
+    /**
+     * Return the square of the CpM for a given level index, which is the factor of the CP formula that depends on
+     * the level.
+     *
+     * @param levelIdx The desired level index.
+     * @return Associated CpM squared.
+     */
+    public static double getLevelIdxCpMSquared(int levelIdx) {
+        return CpMSquared[levelIdx];
+    }
+
     /**
      * Maximum pokemon level for a trainer, from the trainer level. This is 2 levels above trainer level.
      * It used to be 1.5, but was changed around december 2017.
@@ -120,13 +185,30 @@ public class Data {
     /*
      * Pokemon levels go from 1 to trainerLevel + 2, in increments of 0.5.
      * Here we use levelIdx for levels that are doubled and shifted by - 2; after this adjustment,
-     * the level can be used to index CpM, arcX and arcY.
+     * the level can be used to index CpM and the arc points.
      */
     public static int trainerLevelToMaxPokeLevelIndex(int trainerLevel) {
         // This is Math.min(2 * trainerLevel + 1, 79).
         return maxPokeLevelToIndex(trainerLevelToMaxPokeLevel(trainerLevel));
     }
 
+    /**
+     * Get the candy and stardust needed to power up a pokemon between two level indexes.
+     *
+     * @param fromLevelIdx The level index of the pokemon
+     * @param toLevelIdx   The level index to reach; if it's not above fromLevelIdx the cost is zero
+     * @param isLucky      Whether the pokemon is lucky, therefore costs one half normal dust
+     * @return The candy and stardust cost.
+     */
+    public static UpgradeCost getUpgradeCost(int fromLevelIdx, int toLevelIdx, boolean isLucky) {
+        if (toLevelIdx <= fromLevelIdx) {
+            return new UpgradeCost(0, 0);
+        }
+        int[] stardustCosts = isLucky ? CUMULATIVE_LUCKY_STARDUST_COSTS : CUMULATIVE_STARDUST_COSTS;
+        return new UpgradeCost(stardustCosts[toLevelIdx] - stardustCosts[fromLevelIdx],
+                CUMULATIVE_CANDY_COSTS[toLevelIdx] - CUMULATIVE_CANDY_COSTS[fromLevelIdx]);
+    }
+
     public static boolean isValidPowerUpCandyCost(int powerUpCandyCost) {
         for (int currentCost : POWER_UP_CANDY_COSTS) {
             if (currentCost == powerUpCandyCost) {
@@ -0,0 +1,95 @@
+package com.kamron.pogoiv.scanlogic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * An index of which species and forms can have a given HP at each level, used to find the pokemon which explain a
+ * scanned CP and HP without knowing the name.
+ * <p>
+ * The HP of a pokemon only depends on its base stamina, so the species and forms are grouped by base stamina and only
+ * the groups are indexed. Every entry is packed in a single int as {@code hp << 16 | staminaIdx}, where staminaIdx is
+ * the position of the group. Each level index owns a sorted array of entries, with one entry per distinct HP a group
+ * can have at that level, built the first time the level is queried.
+ */
+class HpSpeciesIndex {
+    private static final int IV_VALUES = 16;
+    private static final int LEVEL_COUNT = Data.maxPokeLevelToIndex(Data.MAXIMUM_POKEMON_LEVEL) + 1;
+
+    private final int[] baseStaminas;
+    private final List<List<Pokemon>> pokemonsByStamina = new ArrayList<>();
+    private final int[][] entriesByLevel = new int[LEVEL_COUNT][];
+
+    /**
+     * @param pokemons Every species and form to index
+     */
+    HpSpeciesIndex(List<Pokemon> pokemons) {
+        TreeMap<Integer, List<Pokemon>> groups = new TreeMap<>();
+        for (Pokemon pokemon : pokemons) {
+            List<Pokemon> group = groups.get(pokemon.baseStamina);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(pokemon.baseStamina, group);
+            }
+            group.add(pokemon);
+        }
+
+        baseStaminas = new int[groups.size()];
+        for (Integer baseStamina : groups.keySet()) {
+            baseStaminas[pokemonsByStamina.size()] = baseStamina;
+            pokemonsByStamina.add(groups.get(baseStamina));
+        }
+    }
+
+    /**
+     * Upper bound of the memory used by the entries once every level has been queried, in bytes.
+     */
+    int getMaxSizeBytes() {
+        return LEVEL_COUNT * baseStaminas.length * IV_VALUES * 4;
+    }
+
+    /**
+     * Adds every pokemon which can have the given hp at a level to a collection.
+     */
+    void addPokemonWithHp(int levelIdx, int hp, Collection<Pokemon> pokemonWithHp) {
+        int[] entries = getEntries(levelIdx);
+        int i = Arrays.binarySearch(entries, hp << 16);
+        if (i < 0) {
+            i = -i - 1; // Insertion point, (hp << 16) itself is group 0
+        }
+        for (; i < entries.length && (entries[i] >>> 16) == hp; i++) {
+            pokemonWithHp.addAll(pokemonsByStamina.get(entries[i] & 0xFFFF));
+        }
+    }
+
+    /**
+     * Get the sorted entries of a level, computing them if this is the first time the level is requested.
+     */
+    private synchronized int[] getEntries(int levelIdx) {
+        int[] levelEntries = entriesByLevel[levelIdx];
+        if (levelEntries != null) {
+            return levelEntries;
+        }
+
+        double lvlScalar = Data.getLevelCpM(Data.levelIdxToLevel(levelIdx));
+        int[] entries = new int[baseStaminas.length * IV_VALUES];
+        int count = 0;
+        for (int staminaIdx = 0; staminaIdx < baseStaminas.length; staminaIdx++) {
+            int previousHp = -1;
+            for (int staminaIV = 0; staminaIV < IV_VALUES; staminaIV++) {
+                int hp = IVLookupIndex.getHp(baseStaminas[staminaIdx] + staminaIV, lvlScalar);
+                if (hp != previousHp) { // HP never decreases when stamina IV increases
+                    entries[count++] = hp << 16 | staminaIdx;
+                    previousHp = hp;
+                }
+            }
+        }
+        levelEntries = Arrays.copyOf(entries, count);
+        Arrays.sort(levelEntries);
+        entriesByLevel[levelIdx] = levelEntries;
+        return levelEntries;
+    }
+}
@@ -0,0 +1,218 @@
+package com.kamron.pogoiv.scanlogic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A set of IV combinations stored as a 4096 bit bitmap, one bit per possible combination.
+ * <p>
+ * Every combination is identified by a 12 bit index: {@code attack << 8 | defense << 4 | stamina}. Insertion,
+ * lookup and removal are O(1), and union and intersection with another set are 64 long operations.
+ * <p>
+ * Iterate without allocating by walking the indexes:
+ * <pre>
+ * for (int i = set.nextIndex(0); i >= 0; i = set.nextIndex(i + 1)) {
+ *     int att = IVCombinationSet.attackOf(i);
+ *     ...
+ * }
+ * </pre>
+ */
+public class IVCombinationSet {
+    public static final int CAPACITY = 16 * 16 * 16;
+
+    private final long[] words = new long[CAPACITY / 64];
+    private int size = 0;
+
+    public IVCombinationSet() {
+    }
+
+    public IVCombinationSet(IVCombinationSet other) {
+        System.arraycopy(other.words, 0, words, 0, words.length);
+        size = other.size;
+    }
+
+    public static int indexOf(int att, int def, int sta) {
+        return att << 8 | def << 4 | sta;
+    }
+
+    public static int attackOf(int index) {
+        return index >>> 8;
+    }
+
+    public static int defenseOf(int index) {
+        return (index >>> 4) & 0xF;
+    }
+
+    public static int staminaOf(int index) {
+        return index & 0xF;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds a combination to the set.
+     *
+     * @return true if the combination wasn't already in the set
+     */
+    public boolean add(int att, int def, int sta) {
+        return addIndex(indexOf(att, def, sta));
+    }
+
+    /**
+     * Adds the combination with the given index to the set.
+     *
+     * @return true if the combination wasn't already in the set
+     */
+    public boolean addIndex(int index) {
+        long mask = 1L << index;
+        int word = index >>> 6;
+        if ((words[word] & mask) != 0) {
+            return false;
+        }
+        words[word] |= mask;
+        size++;
+        return true;
+    }
+
+    public boolean contains(int att, int def, int sta) {
+        return containsIndex(indexOf(att, def, sta));
+    }
+
+    public boolean contains(IVCombination combination) {
+        return contains(combination.att, combination.def, combination.sta);
+    }
+
+    public boolean containsIndex(int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Removes the combination with the given index from the set.
+     *
+     * @return true if the combination was in the set
+     */
+    public boolean removeIndex(int index) {
+        long mask = 1L << index;
+        int word = index >>> 6;
+        if ((words[word] & mask) == 0) {
+            return false;
+        }
+        words[word] &= ~mask;
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0L);
+        size = 0;
+    }
+
+    /**
+     * Get the index of the first combination in the set, starting the search at fromIndex (inclusive).
+     *
+     * @return the index of the combination, or -1 if there are no more combinations
+     */
+    public int nextIndex(int fromIndex) {
+        if (fromIndex >= CAPACITY) {
+            return -1;
+        }
+        int word = fromIndex >>> 6;
+        long bits = words[word] & (-1L << fromIndex);
+        while (true) {
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == words.length) {
+                return -1;
+            }
+            bits = words[word];
+        }
+    }
+
+    /**
+     * Adds every combination of the other set to this set.
+     *
+     * @return the amount of combinations that weren't already in this set
+     */
+    public int addAll(IVCombinationSet other) {
+        int oldSize = size;
+        int newSize = 0;
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= other.words[i];
+            newSize += Long.bitCount(words[i]);
+        }
+        size = newSize;
+        return newSize - oldSize;
+    }
+
+    /**
+     * Removes every combination which isn't in the other set from this set.
+     *
+     * @return the amount of combinations that were removed
+     */
+    public int retainAll(IVCombinationSet other) {
+        int oldSize = size;
+        int newSize = 0;
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= other.words[i];
+            newSize += Long.bitCount(words[i]);
+        }
+        size = newSize;
+        return oldSize - newSize;
+    }
+
+    /**
+     * Creates a new set containing the combinations present in both sets.
+     */
+    public static IVCombinationSet intersection(IVCombinationSet a, IVCombinationSet b) {
+        IVCombinationSet result = new IVCombinationSet(a);
+        result.retainAll(b);
+        return result;
+    }
+
+    /**
+     * Creates a new set containing the combinations present in either set.
+     */
+    public static IVCombinationSet union(IVCombinationSet a, IVCombinationSet b) {
+        IVCombinationSet result = new IVCombinationSet(a);
+        result.addAll(b);
+        return result;
+    }
+
+    /**
+     * Creates a list with an IVCombination object for every combination in the set, ordered by index.
+     */
+    public List<IVCombination> toList() {
+        List<IVCombination> list = new ArrayList<>(size);
+        for (int i = nextIndex(0); i >= 0; i = nextIndex(i + 1)) {
+            list.add(new IVCombination(attackOf(i), defenseOf(i), staminaOf(i)));
+        }
+        return list;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        IVCombinationSet that = (IVCombinationSet) o;
+
+        return size == that.size && Arrays.equals(words, that.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+}
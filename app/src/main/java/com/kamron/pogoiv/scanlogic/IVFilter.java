@@ -0,0 +1,163 @@
+package com.kamron.pogoiv.scanlogic;
+
+/**
+ * A condition an IV combination must satisfy to stay in an IVScanResult.
+ * <p>
+ * Filters are applied with {@link IVScanResult#refine(IVFilter...)}, which checks every filter against every
+ * combination in a single pass and recomputes the result statistics in that same pass. Use {@link #all(IVFilter...)}
+ * to combine several filters into one.
+ */
+public abstract class IVFilter {
+
+    /**
+     * Check if a combination satisfies this filter.
+     *
+     * @return true if the combination should be kept
+     */
+    public abstract boolean accepts(int att, int def, int sta);
+
+    /**
+     * A filter which accepts everything.
+     */
+    public static final IVFilter NONE = new IVFilter() {
+        @Override public boolean accepts(int att, int def, int sta) {
+            return true;
+        }
+    };
+
+    /**
+     * Combine several filters, which all must accept a combination.
+     */
+    public static IVFilter all(final IVFilter... filters) {
+        return new IVFilter() {
+            @Override public boolean accepts(int att, int def, int sta) {
+                for (IVFilter filter : filters) {
+                    if (!filter.accepts(att, def, sta)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Keeps only the combinations where the stats set to true are the highest stats. Several stats can be highest if
+     * they're equal.
+     */
+    public static IVFilter highestStats(final boolean attIsHighest, final boolean defIsHighest,
+                                        final boolean staIsHighest) {
+        return new IVFilter() {
+            @Override public boolean accepts(int att, int def, int sta) {
+                int maxStat = Math.max(att, Math.max(def, sta));
+                return (att >= maxStat) == attIsHighest
+                        && (def >= maxStat) == defIsHighest
+                        && (sta >= maxStat) == staIsHighest;
+            }
+        };
+    }
+
+    /**
+     * Keeps only the combinations inside the appraisal percentage range.
+     * 1: 81-100%
+     * 2: 66-80%
+     * 3: 51-65%
+     * 4: 0-50%
+     *
+     * @param selectedItemPosition a number between 1 to 4 as detailed above, anything else keeps every combination
+     */
+    public static IVFilter appraisalPercentageRange(int selectedItemPosition) {
+        final int lowest;
+        final int highest;
+
+        switch (selectedItemPosition) {
+            case 1:
+                lowest = 81;
+                highest = 100;
+                break;
+            case 2:
+                lowest = 66;
+                highest = 80;
+                break;
+            case 3:
+                lowest = 51;
+                highest = 65;
+                break;
+            case 4:
+                lowest = 0;
+                highest = 50;
+                break;
+            default:
+                return NONE;
+        }
+
+        return new IVFilter() {
+            @Override public boolean accepts(int att, int def, int sta) {
+                int percentPerfect = IVScanResult.getPercentPerfect(att, def, sta);
+                return percentPerfect >= lowest && percentPerfect <= highest;
+            }
+        };
+    }
+
+    /**
+     * Keeps only the combinations where the highest IV is inside the appraisal stat range.
+     * 1: 15
+     * 2: 13-14
+     * 3: 8-12
+     * 4: 0-7
+     *
+     * @param selectedItemPosition a number between 1 to 4 as detailed above, anything else keeps every combination
+     */
+    public static IVFilter appraisalIVRange(int selectedItemPosition) {
+        final int lowest;
+        final int highest;
+
+        switch (selectedItemPosition) {
+            case 1:
+                lowest = 15;
+                highest = 15;
+                break;
+            case 2:
+                lowest = 13;
+                highest = 14;
+                break;
+            case 3:
+                lowest = 8;
+                highest = 12;
+                break;
+            case 4:
+                lowest = 0;
+                highest = 7;
+                break;
+            default:
+                return NONE;
+        }
+
+        return new IVFilter() {
+            @Override public boolean accepts(int att, int def, int sta) {
+                int highestStat = Math.max(att, Math.max(def, sta));
+                return highestStat >= lowest && highestStat <= highest;
+            }
+        };
+    }
+
+    /**
+     * Keeps only the combinations without stats lower than 10. Egg and raid pokemon cannot have stats lower than 10.
+     */
+    public static final IVFilter EGG_RAID = new IVFilter() {
+        @Override public boolean accepts(int att, int def, int sta) {
+            return att >= 10 && def >= 10 && sta >= 10;
+        }
+    };
+
+    /**
+     * Keeps only the combinations which are also present in another set.
+     */
+    public static IVFilter inSet(final IVCombinationSet set) {
+        return new IVFilter() {
+            @Override public boolean accepts(int att, int def, int sta) {
+                return set.contains(att, def, sta);
+            }
+        };
+    }
+}
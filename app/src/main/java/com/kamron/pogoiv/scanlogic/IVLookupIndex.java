@@ -0,0 +1,189 @@
+package com.kamron.pogoiv.scanlogic;
+
+import com.kamron.pogoiv.utils.LevelRange;
+
+import java.util.Arrays;
+
+/**
+ * A precomputed inverse of the HP and CP formulas for a single pokemon species (or form).
+ * <p>
+ * The HP of every (level, stamina IV) pair is computed when the index is created. The CP of every
+ * (attack IV, defense IV) pair is computed lazily, one level at a time, the first time that level is scanned.
+ * Looking up the IV combinations of a pokemon then only takes a binary search per matching stamina IV,
+ * instead of evaluating the CP formula for every one of the 4096 IV combinations.
+ * <p>
+ * Every CP table entry is packed in a single int as {@code cp << 8 | defenseIV << 4 | attackIV}, and each
+ * stamina IV owns a sorted segment of {@link #ATT_DEF_COMBINATIONS} entries.
+ */
+public class IVLookupIndex {
+    private static final int IV_VALUES = 16;
+    private static final int ATT_DEF_COMBINATIONS = IV_VALUES * IV_VALUES;
+    private static final int LEVEL_COUNT = Data.maxPokeLevelToIndex(Data.MAXIMUM_POKEMON_LEVEL) + 1;
+
+    /**
+     * Upper bound of the memory used by a completely filled index, in bytes.
+     */
+    public static final int MAX_SIZE_BYTES = LEVEL_COUNT * IV_VALUES * (ATT_DEF_COMBINATIONS + 1) * 4;
+
+    private final int baseAttack;
+    private final int baseDefense;
+    private final int baseStamina;
+
+    /**
+     * HP at each level index and stamina IV, indexed by {@code levelIdx * 16 + staminaIV}.
+     */
+    private final int[] hpTable = new int[LEVEL_COUNT * IV_VALUES];
+
+    /**
+     * Packed CP tables per level index, built on first use.
+     */
+    private final int[][] cpTables = new int[LEVEL_COUNT][];
+
+    public IVLookupIndex(Pokemon pokemon) {
+        this.baseAttack = pokemon.baseAttack;
+        this.baseDefense = pokemon.baseDefense;
+        this.baseStamina = pokemon.baseStamina;
+
+        for (int levelIdx = 0; levelIdx < LEVEL_COUNT; levelIdx++) {
+            double lvlScalar = Data.getLevelCpM(Data.levelIdxToLevel(levelIdx));
+            for (int staminaIV = 0; staminaIV < IV_VALUES; staminaIV++) {
+                hpTable[levelIdx * IV_VALUES + staminaIV] = getHp(baseStamina + staminaIV, lvlScalar);
+            }
+        }
+    }
+
+    /**
+     * Adds every IV combination which results in the given hp and cp at the given level to the scan result.
+     * Combinations are added sorted by stamina, defense and then attack IV.
+     *
+     * @param result   The scan result to add the matching combinations to
+     * @param levelIdx The level index of the pokemon, see {@link Data#maxPokeLevelToIndex(double)}
+     * @param hp       The pokemon HP
+     * @param cp       The pokemon CP
+     */
+    public void addIVCombinations(IVScanResult result, int levelIdx, int hp, int cp) {
+        int[] cpTable = null;
+        for (int staminaIV = 0; staminaIV < IV_VALUES; staminaIV++) {
+            int staminaHp = hpTable[levelIdx * IV_VALUES + staminaIV];
+            if (staminaHp > hp) {
+                break; // HP never decreases when stamina IV increases
+            } else if (staminaHp < hp) {
+                continue;
+            }
+
+            if (cpTable == null) {
+                cpTable = getCpTable(levelIdx);
+            }
+            int to = (staminaIV + 1) * ATT_DEF_COMBINATIONS;
+            for (int i = indexOfCp(cpTable, staminaIV, cp); i < to && (cpTable[i] >>> 8) == cp; i++) {
+                int packed = cpTable[i];
+                result.addIVCombination(packed & 0xF, (packed >>> 4) & 0xF, staminaIV);
+            }
+        }
+    }
+
+    /**
+     * Count the IV combinations of a pokemon which result in the given hp and cp at the given level. The CP of the
+     * matching stamina IVs is computed on the spot, so counting many species neither builds nor caches an index for
+     * each of them.
+     *
+     * @param pokemon  The pokemon species or form
+     * @param levelIdx The level index of the pokemon, see {@link Data#maxPokeLevelToIndex(double)}
+     * @param hp       The pokemon HP
+     * @param cp       The pokemon CP
+     * @return The amount of matching combinations
+     */
+    public static int countIVCombinations(Pokemon pokemon, int levelIdx, int hp, int cp) {
+        double lvlScalar = Data.getLevelCpM(Data.levelIdxToLevel(levelIdx));
+        double lvlScalarPow2 = Math.pow(lvlScalar, 2) * 0.1;
+        int count = 0;
+        for (int staminaIV = 0; staminaIV < IV_VALUES; staminaIV++) {
+            int staminaHp = getHp(pokemon.baseStamina + staminaIV, lvlScalar);
+            if (staminaHp > hp) {
+                break; // HP never decreases when stamina IV increases
+            } else if (staminaHp < hp) {
+                continue;
+            }
+
+            double lvlScalarStamina = Math.sqrt(pokemon.baseStamina + staminaIV) * lvlScalarPow2;
+            for (int defenseIV = 0; defenseIV < IV_VALUES; defenseIV++) {
+                double sqrtDefense = Math.sqrt(pokemon.baseDefense + defenseIV);
+                for (int attackIV = 0; attackIV < IV_VALUES; attackIV++) {
+                    if (getCp(pokemon.baseAttack + attackIV, sqrtDefense, lvlScalarStamina) == cp) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The HP formula, shared with HpSpeciesIndex.
+     *
+     * @param stamina   The base stamina plus the stamina IV
+     * @param lvlScalar The CP multiplier of the level
+     */
+    static int getHp(int stamina, double lvlScalar) {
+        return (int) Math.max(Math.floor(stamina * lvlScalar), 10);
+    }
+
+    private static int getCp(int attack, double sqrtDefense, double lvlScalarStamina) {
+        return Math.max(10, (int) Math.floor(attack * sqrtDefense * lvlScalarStamina));
+    }
+
+    /**
+     * Get the index of the first entry of a stamina IV segment with the given cp or higher.
+     */
+    private static int indexOfCp(int[] cpTable, int staminaIV, int cp) {
+        int from = staminaIV * ATT_DEF_COMBINATIONS;
+        int i = Arrays.binarySearch(cpTable, from, from + ATT_DEF_COMBINATIONS, cp << 8);
+        return i < 0 ? -i - 1 : i; // Insertion point, (cp << 8) itself is the 0/0 combination
+    }
+
+    /**
+     * Adds every IV combination which results in the given hp and the scanned cp at any level of the estimated level
+     * range of the scan result. The result is marked as a range scan if it spans several levels and any combination
+     * matched.
+     *
+     * @param result The scan result to add the matching combinations to
+     * @param hp     The pokemon HP
+     */
+    public void addIVCombinations(IVScanResult result, int hp) {
+        LevelRange levelRange = result.estimatedPokemonLevel;
+        int maxLevelIdx = Data.maxPokeLevelToIndex(levelRange.max);
+        for (int levelIdx = Data.maxPokeLevelToIndex(levelRange.min); levelIdx <= maxLevelIdx; levelIdx++) {
+            addIVCombinations(result, levelIdx, hp, result.scannedCP);
+        }
+        result.rangeIVScan = levelRange.min != levelRange.max && result.getCount() > 0;
+    }
+
+    /**
+     * Get the packed CP table of a level, computing it if this is the first time the level is requested.
+     */
+    private synchronized int[] getCpTable(int levelIdx) {
+        int[] cpTable = cpTables[levelIdx];
+        if (cpTable != null) {
+            return cpTable;
+        }
+
+        double lvlScalar = Data.getLevelCpM(Data.levelIdxToLevel(levelIdx));
+        double lvlScalarPow2 = Math.pow(lvlScalar, 2) * 0.1;
+        cpTable = new int[IV_VALUES * ATT_DEF_COMBINATIONS];
+        for (int staminaIV = 0; staminaIV < IV_VALUES; staminaIV++) {
+            int segmentStart = staminaIV * ATT_DEF_COMBINATIONS;
+            double lvlScalarStamina = Math.sqrt(baseStamina + staminaIV) * lvlScalarPow2;
+            for (int defenseIV = 0; defenseIV < IV_VALUES; defenseIV++) {
+                double sqrtDefense = Math.sqrt(baseDefense + defenseIV);
+                for (int attackIV = 0; attackIV < IV_VALUES; attackIV++) {
+                    int cp = getCp(baseAttack + attackIV, sqrtDefense, lvlScalarStamina);
+                    cpTable[segmentStart + defenseIV * IV_VALUES + attackIV] = cp << 8 | defenseIV << 4 | attackIV;
+                }
+            }
+            Arrays.sort(cpTable, segmentStart, segmentStart + ATT_DEF_COMBINATIONS);
+        }
+
+        cpTables[levelIdx] = cpTable;
+        return cpTable;
+    }
+}
@@ -4,10 +4,9 @@ import android.support.annotation.Nullable;
 
 import com.kamron.pogoiv.utils.LevelRange;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 
 /**
  * A class which represents all possible iv combinations for a pokemon.
@@ -17,8 +16,9 @@ import java.util.Comparator;
  * scannedCP: the cp scanned from the image
  * getAveragePercent: returns the average IV% of all alternativs
  * lowPercent: worst case IV%
- * low attack,defence,stamina - the value for the IV stat where the lowest % was found
- * high attack,defence,stamina - the value for hte IV stat where the highest % was found
+ * low attack,defence,stamina - the lowest value of each IV stat among the combinations
+ * high attack,defence,stamina - the highest value of each IV stat among the combinations
+ * All of these are kept up to date as combinations are added, and recomputed in a single pass on refine.
  * <p>
  * The ivscanresult object has evolved (bloated) to incluide several other things not needed to calculate the ivs,
  * which are used by other methods, such as the scanned hp and an identifier for the pokemon.
@@ -35,7 +35,11 @@ public class IVScanResult {
     public int highDefense = 0;
     public int highStamina = 0;
     public final int scannedCP;
-    public ArrayList<IVCombination> iVCombinations = new ArrayList<>();
+    private final IVCombinationSet combinations = new IVCombinationSet();
+    private List<IVCombination> sortedCombinations = null; // Built on demand from combinations
+    private int ivSum = 0; // Sum of att+def+sta of all combinations, for the average
+    private int highestIndex = -1; // Set index of the combination with the highest total
+    private int lowestIndex = -1; // Set index of the combination with the lowest total
     public Pokemon pokemon = null;
     public final LevelRange estimatedPokemonLevel;
     public int scannedHP = 0;
@@ -62,39 +66,66 @@ public class IVScanResult {
     }
 
     public int getCount() {
-        return iVCombinations.size();
+        return combinations.size();
     }
 
     /**
-     * Calculates and returns the average % of the possible IVs.
+     * Get the possible IV combinations as a set. The set must not be modified, use the refine methods instead.
      */
-    public int getAveragePercent() {
-        int sum = 0;
-        for (IVCombination ivc : iVCombinations) {
-            sum += ivc.att + ivc.def + ivc.sta;
-        }
-        return Math.round(sum * 100f / (45f * getCount()));
+    public IVCombinationSet getCombinationSet() {
+        return combinations;
     }
 
-    public void sortCombinations() {
-        Collections.sort(iVCombinations, new Comparator<IVCombination>() {
-            @Override public int compare(IVCombination o1, IVCombination o2) {
-                int comparePercent = o1.percentPerfect - o2.percentPerfect;
-                if (comparePercent != 0) {
-                    return comparePercent;
-                }
-                int compareAtt = o1.att - o2.att;
-                if (compareAtt != 0) {
-                    return compareAtt;
-                }
-                int compareDef = o1.def - o2.def;
-                if (compareDef != 0) {
-                    return compareDef;
+    /**
+     * Get the possible IV combinations, sorted by percentage and then by attack, defense and stamina.
+     *
+     * @return An unmodifiable list, which is cached until the combinations change.
+     */
+    public List<IVCombination> getIVCombinations() {
+        if (sortedCombinations == null) {
+            List<IVCombination> list = combinations.toList();
+            Collections.sort(list, new Comparator<IVCombination>() {
+                @Override public int compare(IVCombination o1, IVCombination o2) {
+                    int comparePercent = o1.percentPerfect - o2.percentPerfect;
+                    if (comparePercent != 0) {
+                        return comparePercent;
+                    }
+                    int compareAtt = o1.att - o2.att;
+                    if (compareAtt != 0) {
+                        return compareAtt;
+                    }
+                    int compareDef = o1.def - o2.def;
+                    if (compareDef != 0) {
+                        return compareDef;
+                    }
+                    int compareSta = o1.sta - o2.sta;
+                    return compareSta;
                 }
-                int compareSta = o1.sta - o2.sta;
-                return compareSta;
-            }
-        });
+            });
+            sortedCombinations = Collections.unmodifiableList(list);
+        }
+        return sortedCombinations;
+    }
+
+    /**
+     * Returns the average % of the possible IVs.
+     */
+    public int getAveragePercent() {
+        return Math.round(ivSum * 100f / (45f * getCount()));
+    }
+
+    /**
+     * Get the best case IV%.
+     */
+    public int getHighPercent() {
+        return highPercent;
+    }
+
+    /**
+     * Get the worst case IV%.
+     */
+    public int getLowPercent() {
+        return lowPercent;
     }
 
     /**
@@ -105,50 +136,27 @@ public class IVScanResult {
      * @param staminaIV the stamina iv
      */
     public void addIVCombination(int attackIV, int defenseIV, int staminaIV) {
-        int sumIV = attackIV + defenseIV + staminaIV;
-        int percentPerfect = Math.round(sumIV / 45f * 100);
-
-        if ((percentPerfect < lowPercent)
-                || (percentPerfect == lowPercent)
-                && (attackIV < lowAttack)) { // check for same percentage but lower atk
-            lowPercent = percentPerfect;
-            //save worst combination for lower end cp range
-            lowAttack = attackIV;
-            lowDefense = defenseIV;
-            lowStamina = staminaIV;
+        int index = IVCombinationSet.indexOf(attackIV, defenseIV, staminaIV);
+        if (combinations.addIndex(index)) { // Ignore already known combinations
+            sortedCombinations = null;
+            accumulate(index);
         }
-        if ((percentPerfect > highPercent)
-                || (percentPerfect == highPercent)
-                && (attackIV > highAttack)) { // check for same percentage but higher atk
-            highPercent = percentPerfect;
-            //save best combination for upper end cp range
-            highAttack = attackIV;
-            highDefense = defenseIV;
-            highStamina = staminaIV;
-        }
-
-        iVCombinations.add(new IVCombination(attackIV, defenseIV, staminaIV));
     }
 
-
     /**
-     * Get the IV combination which has the highest sum of att+def+sta, or tied to equal.
+     * Get the IV combination which has the highest sum of att+def+sta, or tied to equal. Ties are broken by the
+     * highest attack, and then by the highest defense.
      */
     public @Nullable IVCombination getHighestIVCombination() {
-        if (iVCombinations.size() == 0) {
-            return null;
-        }
-        return Collections.max(iVCombinations, IVCombination.totalComparator);
+        return highestIndex < 0 ? null : toCombination(highestIndex);
     }
 
     /**
-     * Get the IV combination which has the lowest sum of att+def+sta, or tied to equal.
+     * Get the IV combination which has the lowest sum of att+def+sta, or tied to equal. Ties are broken by the
+     * lowest attack, and then by the lowest defense.
      */
     public @Nullable IVCombination getLowestIVCombination() {
-        if (iVCombinations.size() == 0) {
-            return null;
-        }
-        return Collections.min(iVCombinations, IVCombination.totalComparator);
+        return lowestIndex < 0 ? null : toCombination(lowestIndex);
     }
 
     /**
@@ -167,11 +175,10 @@ public class IVScanResult {
         return new IVCombination(lowAttack, lowDefense, lowStamina);
     }
 
-
     /**
-     * Readjusts the low and high instance variables by looping through all the combinations again and re-checking them.
+     * Resets all the statistics to the values of an empty result.
      */
-    private void updateHighAndLowValues() {
+    private void resetStatistics() {
         lowAttack = 15;
         lowDefense = 15;
         lowStamina = 15;
@@ -180,38 +187,62 @@ public class IVScanResult {
         highStamina = 0;
         highPercent = 0;
         lowPercent = 100;
+        ivSum = 0;
+        highestIndex = -1;
+        lowestIndex = -1;
+    }
 
-        for (IVCombination ivc : iVCombinations) {
-            int sumIV = ivc.att + ivc.def + ivc.sta;
-            int percentPerfect = Math.round(sumIV / 45f * 100);
-
-            if (ivc.att < lowAttack) {
-                lowAttack = ivc.att;
-            }
-            if (ivc.def < lowDefense) {
-                lowDefense = ivc.def;
-            }
-            if (ivc.sta < lowStamina) {
-                lowStamina = ivc.sta;
-            }
+    /**
+     * Updates the statistics with a combination which was just added to the result.
+     *
+     * @param index The set index of the combination
+     */
+    private void accumulate(int index) {
+        int att = IVCombinationSet.attackOf(index);
+        int def = IVCombinationSet.defenseOf(index);
+        int sta = IVCombinationSet.staminaOf(index);
+        int total = att + def + sta;
+        int percentPerfect = getPercentPerfect(att, def, sta);
+
+        lowAttack = Math.min(lowAttack, att);
+        lowDefense = Math.min(lowDefense, def);
+        lowStamina = Math.min(lowStamina, sta);
+        highAttack = Math.max(highAttack, att);
+        highDefense = Math.max(highDefense, def);
+        highStamina = Math.max(highStamina, sta);
+        lowPercent = Math.min(lowPercent, percentPerfect);
+        highPercent = Math.max(highPercent, percentPerfect);
+        ivSum += total;
+
+        // Indexes grow with attack and then defense, so comparing them breaks ties between equal totals
+        if (highestIndex < 0 || total > getTotal(highestIndex)
+                || total == getTotal(highestIndex) && index > highestIndex) {
+            highestIndex = index;
+        }
+        if (lowestIndex < 0 || total < getTotal(lowestIndex)
+                || total == getTotal(lowestIndex) && index < lowestIndex) {
+            lowestIndex = index;
+        }
+    }
 
-            if (ivc.att > highAttack) {
-                highAttack = ivc.att;
-            }
-            if (ivc.def > highDefense) {
-                highDefense = ivc.def;
-            }
-            if (ivc.sta > highStamina) {
-                highStamina = ivc.sta;
-            }
-            if (percentPerfect > highPercent) {
-                highPercent = percentPerfect;
-            }
-            if (percentPerfect < lowPercent) {
-                lowPercent = percentPerfect;
+    /**
+     * Removes every combination which isn't accepted by all the filters, and recomputes the statistics in the same
+     * pass over the combinations.
+     *
+     * @param filters The filters that the remaining combinations must all satisfy
+     */
+    public void refine(IVFilter... filters) {
+        IVFilter filter = filters.length == 1 ? filters[0] : IVFilter.all(filters);
+        resetStatistics();
+        for (int i = combinations.nextIndex(0); i >= 0; i = combinations.nextIndex(i + 1)) {
+            if (filter.accepts(IVCombinationSet.attackOf(i), IVCombinationSet.defenseOf(i),
+                    IVCombinationSet.staminaOf(i))) {
+                accumulate(i);
+            } else {
+                combinations.removeIndex(i);
+                sortedCombinations = null;
             }
         }
-
     }
 
     /**
@@ -219,113 +250,25 @@ public class IVScanResult {
      * Several stats can be highest if they're equal.
      */
     public void refineByHighest(boolean attIsHighest, boolean defIsHighest, boolean staIsHighest) {
-        ArrayList<IVCombination> refinedList = new ArrayList<>();
-
-        for (IVCombination comb : iVCombinations) {
-            Boolean[] knownAttDefSta = {attIsHighest, defIsHighest, staIsHighest};
-            if (Arrays.equals(comb.getHighestStatSignature(), knownAttDefSta)) {
-                refinedList.add(comb);
-            }
-        }
-        iVCombinations = refinedList;
-        updateHighAndLowValues();
+        refine(IVFilter.highestStats(attIsHighest, defIsHighest, staIsHighest));
     }
 
     /**
      * Removes any iv combination that is outside the scope of the input percentage range.
-     * 1: 81-100%
-     * 2: 66-80%
-     * 3: 51-65%
-     * 4: 0-50%
      *
-     * @param selectedItemPosition a number between 1 to 4 as detailed above
+     * @param selectedItemPosition a number between 1 to 4 as detailed in {@link IVFilter#appraisalPercentageRange}
      */
     public void refineByAppraisalPercentageRange(int selectedItemPosition) {
-        int lowest;
-        int highest;
-
-        switch (selectedItemPosition) {
-            case 1:
-                lowest = 81;
-                highest = 100;
-                break;
-            case 2:
-                lowest = 66;
-                highest = 80;
-                break;
-            case 3:
-                lowest = 51;
-                highest = 65;
-                break;
-            case 4:
-                lowest = 0;
-                highest = 50;
-                break;
-            default:
-                lowest = 0;
-                highest = 100;
-        }
-
-        ArrayList<IVCombination> refinedList = new ArrayList<>();
-
-        for (IVCombination comb : iVCombinations) {
-
-            if (comb.percentPerfect >= lowest && comb.percentPerfect <= highest) {
-                refinedList.add(comb);
-            }
-        }
-
-        iVCombinations = refinedList;
-        updateHighAndLowValues();
+        refine(IVFilter.appraisalPercentageRange(selectedItemPosition));
     }
 
     /**
      * Removes any iv combination where the highest IV is outside the scope of he input range.
-     * Input:
-     * 1: 15
-     * 2: 13-14
-     * 3: 8-12
-     * 4: 0-7
      *
-     * @param selectedItemPosition a number between 1 to 4 as detailed above
+     * @param selectedItemPosition a number between 1 to 4 as detailed in {@link IVFilter#appraisalIVRange}
      */
     public void refineByAppraisalIVRange(int selectedItemPosition) {
-        int lowest;
-        int highest;
-
-        switch (selectedItemPosition) {
-            case 1:
-                lowest = 15;
-                highest = 15;
-                break;
-            case 2:
-                lowest = 13;
-                highest = 14;
-                break;
-            case 3:
-                lowest = 8;
-                highest = 12;
-                break;
-            case 4:
-                lowest = 0;
-                highest = 7;
-                break;
-            default:
-                lowest = 0;
-                highest = 15;
-        }
-
-        ArrayList<IVCombination> refinedList = new ArrayList<>();
-
-        for (IVCombination comb : iVCombinations) {
-
-            if (comb.getHighestStat() >= lowest && comb.getHighestStat() <= highest) {
-                refinedList.add(comb);
-            }
-        }
-        iVCombinations = refinedList;
-
-        updateHighAndLowValues();
+        refine(IVFilter.appraisalIVRange(selectedItemPosition));
     }
 
     /**
@@ -333,25 +276,43 @@ public class IVScanResult {
      * cannot have stats that are lower than 10.
      */
     public void refineByEggRaid() {
-        ArrayList<IVCombination> refinedList = new ArrayList<>();
-        for (IVCombination comb : iVCombinations) {
-            if (comb.att >= 10 && comb.def >= 10 && comb.sta >= 10) {
-                refinedList.add(comb);
-            }
+        refine(IVFilter.EGG_RAID);
+    }
+
+    /**
+     * Removes any combination which isn't also present in the other set of combinations. Used to refine a scan with
+     * the results of a previous scan of the same pokemon.
+     *
+     * @param other The combinations to intersect with
+     */
+    public void refineByIntersection(IVCombinationSet other) {
+        if (combinations.retainAll(other) > 0) {
+            sortedCombinations = null;
+            refine(IVFilter.NONE); // Only recomputes the statistics
         }
-        iVCombinations = refinedList;
     }
 
     public void addPossibilitiesFrom(IVScanResult ivs) {
-
-        for (IVCombination ivc : ivs.iVCombinations) {
-            if (iVCombinations.contains(ivc) == false) { //dont add duplicates
-                addIVCombination(ivc.att, ivc.def, ivc.sta);
+        IVCombinationSet other = ivs.combinations;
+        for (int i = other.nextIndex(0); i >= 0; i = other.nextIndex(i + 1)) {
+            if (combinations.addIndex(i)) { //dont add duplicates
+                sortedCombinations = null;
+                accumulate(i);
                 rangeIVScan = true;
             }
-
         }
+    }
+
+    static int getPercentPerfect(int att, int def, int sta) {
+        return Math.round((att + def + sta) / 45f * 100);
+    }
+
+    private static int getTotal(int index) {
+        return IVCombinationSet.attackOf(index) + IVCombinationSet.defenseOf(index) + IVCombinationSet.staminaOf(index);
+    }
 
-        updateHighAndLowValues();
+    private static IVCombination toCombination(int index) {
+        return new IVCombination(IVCombinationSet.attackOf(index), IVCombinationSet.defenseOf(index),
+                IVCombinationSet.staminaOf(index));
     }
 }
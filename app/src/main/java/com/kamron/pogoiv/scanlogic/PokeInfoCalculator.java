@@ -7,6 +7,7 @@ import android.content.res.Resources;
 import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.LruCache;
 
 import com.kamron.pogoiv.GoIVSettings;
 import com.kamron.pogoiv.R;
@@ -14,8 +15,12 @@ import com.kamron.pogoiv.utils.LevelRange;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by Johan Swanberg on 2016-08-18.
@@ -34,6 +39,42 @@ public class PokeInfoCalculator {
      */
     private ArrayList<Pokemon> candyPokemons = new ArrayList<>();
 
+    /**
+     * Inverse HP/CP indexes of the most recently scanned species, bounded by the user's memory budget.
+     */
+    private final LruCache<Pokemon, IVLookupIndex> ivLookupIndexes;
+
+    /**
+     * CP tables of every species and form whose CP has been predicted, built on first use.
+     */
+    private final Map<Pokemon, SpeciesCpTable> speciesCpTables = new ConcurrentHashMap<>();
+
+    /**
+     * Per level index of which species and forms can have each HP, see getPokemonMatchingCpAndHp.
+     */
+    private final HpSpeciesIndex hpSpeciesIndex;
+
+    /**
+     * A species or form which explains a scanned CP and HP, see getPokemonMatchingCpAndHp.
+     */
+    public static class SpeciesMatch {
+        public final Pokemon pokemon;
+        /**
+         * The amount of IV combinations, summed over every matching level, which give the scanned CP and HP.
+         */
+        public final int combinationCount;
+        /**
+         * The lowest and highest level at which the pokemon matches.
+         */
+        public final LevelRange levelRange;
+
+        SpeciesMatch(Pokemon pokemon, int combinationCount, LevelRange levelRange) {
+            this.pokemon = pokemon;
+            this.combinationCount = combinationCount;
+            this.levelRange = levelRange;
+        }
+    }
+
     protected static synchronized @NonNull PokeInfoCalculator getInstance(@NonNull Context context) {
         if (instance == null) {
             instance = new PokeInfoCalculator(GoIVSettings.getInstance(context), context.getResources());
@@ -60,6 +101,16 @@ public class PokeInfoCalculator {
     private PokeInfoCalculator(@NonNull GoIVSettings settings, @NonNull Resources res) {
         populatePokemon(settings, res);
 
+        List<Pokemon> pokemons = new ArrayList<>();
+        for (Pokemon poke : pokedex) {
+            pokemons.addAll(getForms(poke));
+        }
+        hpSpeciesIndex = new HpSpeciesIndex(pokemons);
+
+        int indexBudget = settings.getIVLookupIndexBudget() - hpSpeciesIndex.getMaxSizeBytes();
+        int maxCachedIndexes = Math.max(1, indexBudget / IVLookupIndex.MAX_SIZE_BYTES);
+        ivLookupIndexes = new LruCache<>(maxCachedIndexes);
+
         // create and cache the full pokemon display name list
         ArrayList<String> pokemonNamesArray = new ArrayList<>();
         for (Pokemon poke : getPokedex()) {
@@ -226,138 +277,99 @@ public class PokeInfoCalculator {
      * @return The text that shows the amount of candy and stardust needed.
      */
     public UpgradeCost getUpgradeCost(double goalLevel, double estimatedPokemonLevel, boolean isLucky) {
-        int neededCandy = 0;
-        int neededStarDust = 0;
-        while (estimatedPokemonLevel != goalLevel) {
-            int rank = 5;
-            if ((estimatedPokemonLevel % 10) >= 1 && (estimatedPokemonLevel % 10) <= 2.5) {
-                rank = 1;
-            } else if ((estimatedPokemonLevel % 10) > 2.5 && (estimatedPokemonLevel % 10) <= 4.5) {
-                rank = 2;
-            } else if ((estimatedPokemonLevel % 10) > 4.5 && (estimatedPokemonLevel % 10) <= 6.5) {
-                rank = 3;
-            } else if ((estimatedPokemonLevel % 10) > 6.5 && (estimatedPokemonLevel % 10) <= 8.5) {
-                rank = 4;
-            }
-
-            if (estimatedPokemonLevel <= 10.5) {
-                neededCandy++;
-                neededStarDust += rank * 200;
-            } else if (estimatedPokemonLevel > 10.5 && estimatedPokemonLevel <= 20.5) {
-                neededCandy += 2;
-                neededStarDust += 1000 + (rank * 300);
-            } else if (estimatedPokemonLevel > 20.5 && estimatedPokemonLevel <= 25.5) {
-                neededCandy += 3;
-                neededStarDust += 2500 + (rank * 500);
-            } else if (estimatedPokemonLevel > 25.5 && estimatedPokemonLevel <= 30.5) {
-                neededCandy += 4;
-                neededStarDust += 2500 + (rank * 500);
-            } else if (estimatedPokemonLevel > 30.5 && estimatedPokemonLevel <= 32.5) {
-                neededCandy += 6;
-                neededStarDust += 5000 + (rank * 1000);
-            } else if (estimatedPokemonLevel > 32.5 && estimatedPokemonLevel <= 34.5) {
-                neededCandy += 8;
-                neededStarDust += 5000 + (rank * 1000);
-            } else if (estimatedPokemonLevel > 34.5 && estimatedPokemonLevel <= 36.5) {
-                neededCandy += 10;
-                neededStarDust += 5000 + (rank * 1000);
-            } else if (estimatedPokemonLevel > 36.5 && estimatedPokemonLevel <= 38.5) {
-                neededCandy += 12;
-                neededStarDust += 5000 + (rank * 1000);
-            } else if (estimatedPokemonLevel > 38.5) {
-                neededCandy += 15;
-                neededStarDust += 5000 + (rank * 1000);
-            }
-
-            estimatedPokemonLevel += 0.5;
-        }
-
-        if (isLucky) {
-            neededStarDust /= 2;
-        }
-
-        return new UpgradeCost(neededStarDust, neededCandy);
+        return Data.getUpgradeCost(Data.maxPokeLevelToIndex(estimatedPokemonLevel), Data.maxPokeLevelToIndex(goalLevel),
+                isLucky);
     }
 
-
     /**
      * Calculates all the IV information that can be gained from the pokemon level, hp and cp
-     * and fills the information in an IVScanResult, which is returned.
+     * and fills the information in an IVScanResult, which is returned and remembered as the latest scan in
+     * ScanContainer.
      *
      * @param estimatedPokemonLevel The estimated pokemon level range
      * @param pokemonHP             The pokemon HP
      * @param pokemonCP             The pokemon CP
-     * @return An IVScanResult which contains the information calculated about the pokemon, or null if there are too
-     * many possibilities or if there are none.
+     * @return An IVScanResult which contains the information calculated about the pokemon, which has no combinations
+     * if there are none.
      */
     public IVScanResult getIVPossibilities(Pokemon selectedPokemon, LevelRange estimatedPokemonLevel,
                                            int pokemonHP, int pokemonCP, Pokemon.Gender pokemonGender, boolean isLucy) {
+        IVScanResult result = ScanContainer.createIVScanResult(selectedPokemon, estimatedPokemonLevel, pokemonCP,
+                pokemonGender, isLucy);
+        getIVLookupIndex(selectedPokemon).addIVCombinations(result, pokemonHP);
+        result.scannedHP = pokemonHP;
+        return result;
+    }
 
-        if (estimatedPokemonLevel.min == estimatedPokemonLevel.max) {
-            return getSingleLevelIVPossibility(selectedPokemon, estimatedPokemonLevel.min, pokemonHP, pokemonCP,
-                    pokemonGender, isLucy);
-        }
-
-        List<IVScanResult> possibilities = new ArrayList<>();
-        for (double i = estimatedPokemonLevel.min; i <= estimatedPokemonLevel.max; i += 0.5) {
-            possibilities.add(getSingleLevelIVPossibility(selectedPokemon, i, pokemonHP, pokemonCP, pokemonGender, isLucy));
-        }
-
-        IVScanResult result = new IVScanResult(selectedPokemon, estimatedPokemonLevel, pokemonCP, pokemonGender, isLucy);
-        for (IVScanResult ivs : possibilities) {
-            result.addPossibilitiesFrom(ivs);
+    /**
+     * Get the inverse HP/CP index of a pokemon, creating it if the pokemon isn't in the index cache.
+     *
+     * @param pokemon The pokemon species or form to get the index for
+     * @return The index for the pokemon
+     */
+    private IVLookupIndex getIVLookupIndex(Pokemon pokemon) {
+        IVLookupIndex index = ivLookupIndexes.get(pokemon);
+        if (index == null) {
+            index = new IVLookupIndex(pokemon);
+            ivLookupIndexes.put(pokemon, index);
         }
-
-        return result;
+        return index;
     }
 
     /**
-     * Calculates all the IV information that can be gained from the pokemon level, hp and cp
-     * and fills the information in an IVScanResult, which is returned.
+     * Finds every species and form which has at least one IV combination giving the scanned CP and HP at a level
+     * inside the level range. Useful when the pokemon name couldn't be read properly. No IV lookup index is built or
+     * cached for the candidates, so a query over every species takes milliseconds and can run on the main thread.
      *
-     * @param estimatedPokemonLevel The estimated pokemon level
-     * @param pokemonHP             THe pokemon hp
-     * @param pokemonCP             The pokemonCP
-     * @return An IVScanResult which contains the information calculated about the pokemon, or null if there are too
-     * many possibilities.
+     * @param pokemonCP   The pokemon CP
+     * @param pokemonHP   The pokemon HP
+     * @param levelRange  The estimated pokemon level range
+     * @param candyFamily Any pokemon of the evolution line the pokemon must be in, or null to search every pokemon
+     * @return The matching pokemon, the ones with the most matching IV combinations first.
      */
-    private IVScanResult getSingleLevelIVPossibility(Pokemon selectedPokemon, double estimatedPokemonLevel,
-                                                     int pokemonHP, int pokemonCP, Pokemon.Gender pokemonGender,
-                                                     boolean isLucky) {
-        int baseAttack = selectedPokemon.baseAttack;
-        int baseDefense = selectedPokemon.baseDefense;
-        int baseStamina = selectedPokemon.baseStamina;
-
-        double lvlScalar = Data.getLevelCpM(estimatedPokemonLevel);
-        double lvlScalarPow2 = Math.pow(lvlScalar, 2) * 0.1; // instead of computing again in every loop
-        //IV vars for lower and upper end cp ranges
-
-
-        IVScanResult returner = ScanContainer.createIVScanResult(selectedPokemon, new LevelRange(estimatedPokemonLevel),
-                pokemonCP, pokemonGender, isLucky);
-        for (int staminaIV = 0; staminaIV < 16; staminaIV++) {
-            int hp = (int) Math.max(Math.floor((baseStamina + staminaIV) * lvlScalar), 10);
-            if (hp == pokemonHP) {
-                double lvlScalarStamina = Math.sqrt(baseStamina + staminaIV) * lvlScalarPow2;
-                for (int defenseIV = 0; defenseIV < 16; defenseIV++) {
-                    for (int attackIV = 0; attackIV < 16; attackIV++) {
-                        int cp = Math.max(10, (int) Math.floor((baseAttack + attackIV) * Math.sqrt(baseDefense
-                                + defenseIV) * lvlScalarStamina));
-                        if (cp == pokemonCP) {
-                            returner.addIVCombination(attackIV, defenseIV, staminaIV);
-                        }
-                    }
+    public List<SpeciesMatch> getPokemonMatchingCpAndHp(int pokemonCP, int pokemonHP, LevelRange levelRange,
+                                                        @Nullable Pokemon candyFamily) {
+        int familyNumber = candyFamily != null ? getLowestEvolution(candyFamily).number : -1;
+
+        // Per pokemon: combination count, lowest and highest matching level index
+        Map<Pokemon, int[]> matches = new LinkedHashMap<>();
+        List<Pokemon> candidates = new ArrayList<>();
+        int maxLevelIdx = Data.maxPokeLevelToIndex(levelRange.max);
+        for (int levelIdx = Data.maxPokeLevelToIndex(levelRange.min); levelIdx <= maxLevelIdx; levelIdx++) {
+            candidates.clear();
+            hpSpeciesIndex.addPokemonWithHp(levelIdx, pokemonHP, candidates);
+            for (Pokemon candidate : candidates) {
+                if (familyNumber >= 0 && getLowestEvolution(candidate).number != familyNumber) {
+                    continue;
+                }
+                int count = IVLookupIndex.countIVCombinations(candidate, levelIdx, pokemonHP, pokemonCP);
+                if (count == 0) {
+                    continue;
+                }
+                int[] match = matches.get(candidate);
+                if (match == null) {
+                    matches.put(candidate, new int[] {count, levelIdx, levelIdx});
+                } else {
+                    match[0] += count;
+                    match[2] = levelIdx;
                 }
-            } else if (hp > pokemonHP) {
-                break;
             }
         }
 
-        returner.scannedHP = pokemonHP;
-        return returner;
+        List<SpeciesMatch> result = new ArrayList<>(matches.size());
+        for (Map.Entry<Pokemon, int[]> match : matches.entrySet()) {
+            int[] value = match.getValue();
+            result.add(new SpeciesMatch(match.getKey(), value[0],
+                    new LevelRange(Data.levelIdxToLevel(value[1]), Data.levelIdxToLevel(value[2]))));
+        }
+        Collections.sort(result, new Comparator<SpeciesMatch>() {
+            @Override public int compare(SpeciesMatch lhs, SpeciesMatch rhs) {
+                return rhs.combinationCount - lhs.combinationCount;
+            }
+        });
+        return result;
     }
 
-
     /**
      * getCpAtRangeLeve
      * Used to calculate CP ranges for a species at a specific level based on the lowest and highest
@@ -375,15 +387,14 @@ public class PokeInfoCalculator {
         if (low == null || high == null || level < 0 || pokemon == null) {
             return new CPRange(0, 0);
         }
-        int baseAttack = pokemon.baseAttack;
-        int baseDefense = pokemon.baseDefense;
-        int baseStamina = pokemon.baseStamina;
-        double lvlScalar = Data.getLevelCpM(level);
-        int cpMin = (int) Math.floor(
-                (baseAttack + low.att) * Math.sqrt(baseDefense + low.def) * Math.sqrt(baseStamina + low.sta)
-                        * Math.pow(lvlScalar, 2) * 0.1);
-        int cpMax = (int) Math.floor((baseAttack + high.att) * Math.sqrt(baseDefense + high.def)
-                * Math.sqrt(baseStamina + high.sta) * Math.pow(lvlScalar, 2) * 0.1);
+        SpeciesCpTable cpTable = speciesCpTables.get(pokemon);
+        if (cpTable == null) {
+            cpTable = new SpeciesCpTable(pokemon);
+            speciesCpTables.put(pokemon, cpTable);
+        }
+        int levelIdx = Data.maxPokeLevelToIndex(level);
+        int cpMin = cpTable.getCp(low, levelIdx);
+        int cpMax = cpTable.getCp(high, levelIdx);
         if (cpMin > cpMax) {
             int tmp = cpMax;
             cpMax = cpMin;
@@ -39,7 +39,7 @@ public class PokemonShareHandler {
             jsonPokemon.put("candyName", calc.getEvolutionLine(ivScan.pokemon).get(0));
 
             JSONArray jsonCombinations = new JSONArray();
-            for (IVCombination ivCombination : ivScan.iVCombinations) {
+            for (IVCombination ivCombination : ivScan.getIVCombinations()) {
                 JSONObject jsonCombination = new JSONObject();
                 jsonCombination.put("Atk", ivCombination.att);
                 jsonCombination.put("Def", ivCombination.def);
@@ -2,18 +2,40 @@ package com.kamron.pogoiv.scanlogic;
 
 import com.kamron.pogoiv.utils.LevelRange;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 
 /**
  * Created by Johan on 2016-08-19.
  * <p/>
- * A class which keeps the 2 most recent IV scans in memory
+ * A class which keeps the 2 most recent IV scans in memory, and a bounded history of the latest scans of the most
+ * recently scanned pokemon, used to refine a pokemon with every earlier scan of it.
  */
 public class ScanContainer {
     public static final ScanContainer scanContainer = new ScanContainer();
+    private static final int MAX_TRACKED_POKEMON = 16;
+    private static final int MAX_SCANS_PER_POKEMON = 8;
+
     public IVScanResult prevScan = null;
     public IVScanResult currScan = null;
 
+    /**
+     * Scan histories of the recently scanned pokemon, most recently scanned first.
+     */
+    private final LinkedList<PokemonHistory> histories = new LinkedList<>();
+
+    /**
+     * The scans of a single pokemon, oldest first. Every scan is the same pokemon as the one before it, at the same
+     * or a higher level, and possibly evolved.
+     */
+    private static class PokemonHistory {
+        final ArrayDeque<IVScanResult> scans = new ArrayDeque<>();
+        final ArrayDeque<String> uniqueIDs = new ArrayDeque<>();
+    }
+
     /**
      * Pushes the 3 scan ago out of memory, and remembers the two latest scans.
      */
@@ -34,74 +56,205 @@ public class ScanContainer {
 
 
     /**
-     * Compares two pokemon scan results, and returns a list of which ivs the scans have in commomn
-     * Useful when you power up a pokemon, and wanna see which combinations you can trash
+     * Adds the current scan to the history of the pokemon it was taken of. A scan belongs to the same pokemon as an
+     * earlier scan of it if it has the same unique ID, or if it is a powered up or evolved version of the latest scan.
+     * <p>
+     * The OCR unique ID contains the HP, CP and power up cost, so it changes with every power up and evolution. That
+     * is why progressions are matched by species and level, like {@link #isScanRefinable()} always did.
+     * <p>
+     * A different pokemon of the same species can look like a progression too. Only the latest scans of the history
+     * which have IV combinations in common with the current scan are kept for it, and if that's not all of them, the
+     * current scan starts a new history with those scans.
      *
-     * @param poke1 the first pokemon scan
-     * @param poke2 the second pokemon scan
-     * @return ArrayList of ivcombination that are present in both iv scans.
+     * @param uniqueID The unique ID of the current scan, from ScanResult.getPokemonUniqueID
      */
-    private static ArrayList<IVCombination> findIVIntersection(IVScanResult poke1, IVScanResult poke2) {
-        ArrayList<IVCombination> intersection = new ArrayList<>();
-
-
-        if (poke1 != null && poke2 != null) {
-            ArrayList<IVCombination> p1IVs = poke1.iVCombinations;
-            ArrayList<IVCombination> p2IVs = poke2.iVCombinations;
-            for (IVCombination p1IV : p1IVs) {
-                for (IVCombination p2IV : p2IVs) {
-                    if (p1IV.equals(p2IV)) {
-                        intersection.add(p1IV);
-                    }
-                }
+    public void addCurrScanToHistory(String uniqueID) {
+        if (currScan == null || findHistory(currScan) != null) {
+            return;
+        }
+
+        PokemonHistory history = null;
+        for (PokemonHistory candidate : histories) {
+            if (uniqueID != null && !uniqueID.isEmpty() && candidate.uniqueIDs.contains(uniqueID)) {
+                history = candidate;
+                break;
+            }
+        }
+        if (history == null && !histories.isEmpty()) {
+            PokemonHistory latest = histories.getFirst();
+            if (isProgression(latest.scans.getLast(), currScan)) {
+                history = latest;
             }
         }
 
-        return intersection;
+        history = history != null ? getCompatibleHistory(history, currScan) : new PokemonHistory();
+
+        if (!histories.contains(history)) {
+            if (histories.size() >= MAX_TRACKED_POKEMON) {
+                histories.removeLast();
+            }
+        } else {
+            histories.remove(history);
+        }
+        histories.addFirst(history);
+
+        if (history.scans.size() >= MAX_SCANS_PER_POKEMON) {
+            history.scans.removeFirst();
+            history.uniqueIDs.removeFirst();
+        }
+        history.scans.addLast(currScan);
+        history.uniqueIDs.addLast(uniqueID != null ? uniqueID : "");
     }
 
     /**
-     * Checks if the last scanned pokemon can be the same pokemon as the previous one, and if there's any
-     * evolution/level-up and it is hence worth enabling result refinement.
+     * Adds scans of the current pokemon from earlier sessions, see ScanHistoryStore, to the start of its history.
+     * They're only added if the pokemon has no earlier scans in this session, since those are in the store too.
+     * <p>
+     * Different pokemon with the same name, CP and HP share a unique ID, so like in addCurrScanToHistory only the
+     * latest scans which have IV combinations in common with the current scan are added.
      *
-     * @return true if the pokemon can be same
+     * @param scans The earlier scans, oldest first
+     * @return true if any scans were added
      */
-    public boolean isScanRefinable() {
-        if (currScan != null && prevScan != null) {
-            Pokemon currPokemon = currScan.pokemon;
-            Pokemon prevPokemon = prevScan.pokemon;
+    public boolean addEarlierScans(List<IVScanResult> scans) {
+        PokemonHistory history = currScan != null ? findHistory(currScan) : null;
+        if (history == null || history.scans.size() != 1 || scans.isEmpty()) {
+            return false;
+        }
+
+        IVCombinationSet intersection = new IVCombinationSet(currScan.getCombinationSet());
+        String uniqueID = history.uniqueIDs.getFirst();
+        int added = 0;
+        for (int i = scans.size() - 1; i >= 0 && added < MAX_SCANS_PER_POKEMON - 1; i--) {
+            intersection.retainAll(scans.get(i).getCombinationSet());
+            if (intersection.isEmpty()) {
+                break;
+            }
+            history.scans.addFirst(scans.get(i));
+            history.uniqueIDs.addFirst(uniqueID);
+            added++;
+        }
+        return added > 0;
+    }
+
+    /**
+     * Get the history a scan can be added to: the history itself if every scan of it has IV combinations in common
+     * with the scan, or else a new history of only its latest scans which do.
+     */
+    private static PokemonHistory getCompatibleHistory(PokemonHistory history, IVScanResult scan) {
+        IVCombinationSet intersection = new IVCombinationSet(scan.getCombinationSet());
+        int compatibleScans = 0;
+        for (Iterator<IVScanResult> it = history.scans.descendingIterator(); it.hasNext(); ) {
+            intersection.retainAll(it.next().getCombinationSet());
+            if (intersection.isEmpty()) {
+                break;
+            }
+            compatibleScans++;
+        }
+        if (compatibleScans == history.scans.size()) {
+            return history;
+        }
 
-            /* Since pokemon can de-evolve, level down or change species, we must check that
-             * both species and level are greater or equal, and at least one is strictly greater.
-             */
-            boolean higherLevel = currScan.estimatedPokemonLevel.min > prevScan.estimatedPokemonLevel.min;
-            boolean sameOrHigherLevel = currScan.estimatedPokemonLevel.min >= prevScan.estimatedPokemonLevel.min;
-            boolean evolved = currPokemon.isNextEvolutionOf(prevPokemon);
-            boolean sameOrEvolved = currPokemon.number == prevPokemon.number || evolved;
+        PokemonHistory compatible = new PokemonHistory();
+        List<IVScanResult> scans = new ArrayList<>(history.scans);
+        List<String> uniqueIDs = new ArrayList<>(history.uniqueIDs);
+        for (int i = scans.size() - compatibleScans; i < scans.size(); i++) {
+            compatible.scans.addLast(scans.get(i));
+            compatible.uniqueIDs.addLast(uniqueIDs.get(i));
+        }
+        return compatible;
+    }
 
-            return (higherLevel || evolved) && sameOrHigherLevel && sameOrEvolved;
+    private PokemonHistory findHistory(IVScanResult scan) {
+        for (PokemonHistory history : histories) {
+            for (IVScanResult historyScan : history.scans) {
+                if (historyScan == scan) {
+                    return history;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the scans taken of the same pokemon before the current scan, oldest first. When the current scan isn't in
+     * any history, the previous scan is used if the current scan is a progression of it.
+     */
+    private List<IVScanResult> getEarlierScans() {
+        List<IVScanResult> earlierScans = new ArrayList<>();
+        if (currScan == null) {
+            return earlierScans;
+        }
+
+        PokemonHistory history = findHistory(currScan);
+        if (history != null) {
+            for (IVScanResult scan : history.scans) {
+                if (scan == currScan) {
+                    break;
+                }
+                earlierScans.add(scan);
+            }
+        } else if (prevScan != null && isProgression(prevScan, currScan)) {
+            earlierScans.add(prevScan);
         }
+        return earlierScans;
+    }
+
+    /**
+     * Checks if a scan can be a later version of the same pokemon as an earlier scan, and if there's any
+     * evolution/level-up between them.
+     */
+    private static boolean isProgression(IVScanResult earlier, IVScanResult later) {
+        Pokemon laterPokemon = later.pokemon;
+        Pokemon earlierPokemon = earlier.pokemon;
+
+        /* Since pokemon can de-evolve, level down or change species, we must check that
+         * both species and level are greater or equal, and at least one is strictly greater.
+         */
+        boolean higherLevel = later.estimatedPokemonLevel.min > earlier.estimatedPokemonLevel.min;
+        boolean sameOrHigherLevel = later.estimatedPokemonLevel.min >= earlier.estimatedPokemonLevel.min;
+        boolean evolved = laterPokemon.isNextEvolutionOf(earlierPokemon);
+        boolean sameOrEvolved = laterPokemon.number == earlierPokemon.number || evolved;
 
-        return false;
+        return (higherLevel || evolved) && sameOrHigherLevel && sameOrEvolved;
     }
 
     /**
-     * Compares the latest two pokemon scan results, and returns a list of which ivs the scans have in commomn
+     * Checks if the last scanned pokemon has been scanned before, either before a level-up or evolution or with
+     * different appraisal information, and it is hence worth enabling result refinement.
+     *
+     * @return true if there are earlier scans of the same pokemon
+     */
+    public boolean isScanRefinable() {
+        return !getEarlierScans().isEmpty();
+    }
+
+    /**
+     * Intersects the latest scan with every earlier scan of the same pokemon, and returns which ivs all of them have
+     * in common.
      * Useful when you power up a pokemon, and wanna see which combinations you can trash
      *
-     * @return ArrayList of ivcombination that are present in both iv scans.
+     * @return Set of ivcombination that are present in every scan of the pokemon.
      */
-    public ArrayList<IVCombination> getLatestIVIntersection() {
-        return findIVIntersection(currScan, prevScan);
+    public IVCombinationSet getLatestIVIntersection() {
+        if (currScan == null) {
+            return new IVCombinationSet();
+        }
 
+        IVCombinationSet intersection = new IVCombinationSet(currScan.getCombinationSet());
+        for (IVScanResult scan : getEarlierScans()) {
+            intersection.retainAll(scan.getCombinationSet());
+        }
+        return intersection;
     }
 
     /**
-     * Returns a string which is either the name of the previously scanned pokemon, or "".
+     * Returns a string which is either the name of the previous scan of the same pokemon, or "".
      */
     public String getPrevScanName() {
-        if (prevScan != null) {
-            return prevScan.pokemon.toString();
+        List<IVScanResult> earlierScans = getEarlierScans();
+        if (!earlierScans.isEmpty()) {
+            return earlierScans.get(earlierScans.size() - 1).pokemon.toString();
         } else {
             return "";
         }
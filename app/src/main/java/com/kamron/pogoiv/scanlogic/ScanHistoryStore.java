@@ -0,0 +1,541 @@
+package com.kamron.pogoiv.scanlogic;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.kamron.pogoiv.utils.LevelRange;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * An append-only log of every IV scan, kept in the app files directory so the scan history survives Pokefly
+ * restarts.
+ * <p>
+ * Every record is stored as:
+ * <pre>
+ * int    length of the rest of the record
+ * short  pokemon number
+ * byte   form index, -1 for the normal form
+ * UTF    unique ID from OcrHelper.scanPokemon
+ * long   scan time in milliseconds
+ * byte   lowest level index, byte highest level index
+ * short  CP, short HP
+ * byte   gender ordinal, byte 1 if lucky
+ * short  combination count, followed by one short index per combination, or by the 64 longs of the
+ *        IVCombinationSet bitmap if that's smaller
+ * </pre>
+ * The species and unique ID come first, so the index of record offsets by species and by unique ID is built when
+ * the store is opened by reading only those fields and skipping the rest of every record. Lookups then only read the
+ * matching records.
+ * <p>
+ * Appends are kept in memory and written in batches on a background thread, so recording a scan never waits for
+ * the disk. Lookups read the disk on the same thread.
+ */
+public class ScanHistoryStore {
+    private static final String FILE_NAME = "scanHistory.bin";
+    private static final int MAGIC = 0x47495648; // "GIVH"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final long FLUSH_DELAY_MS = 2000;
+
+    private static final int BITMAP_WORDS = IVCombinationSet.CAPACITY / 64;
+    private static final int BITMAP_THRESHOLD = BITMAP_WORDS * 8 / 2;
+
+    private static ScanHistoryStore instance;
+
+    private final File file;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+    private final CountDownLatch indexLoaded = new CountDownLatch(1);
+
+    private final Map<String, List<Entry>> entriesByUniqueID = new HashMap<>();
+    private final Map<Integer, List<Entry>> entriesByPokemonNumber = new HashMap<>();
+    private final List<Entry> pendingEntries = new ArrayList<>();
+    private boolean flushScheduled = false;
+
+    /**
+     * A single scan as stored in the history.
+     */
+    public static class Record {
+        public final int pokemonNumber;
+        public final int formIndex;
+        public final String uniqueID;
+        public final long timestamp;
+        public final LevelRange estimatedPokemonLevel;
+        public final int cp;
+        public final int hp;
+        public final Pokemon.Gender gender;
+        public final boolean isLucky;
+        public final IVCombinationSet combinations;
+
+        public Record(int pokemonNumber, int formIndex, String uniqueID, long timestamp,
+                      LevelRange estimatedPokemonLevel, int cp, int hp, Pokemon.Gender gender, boolean isLucky,
+                      IVCombinationSet combinations) {
+            this.pokemonNumber = pokemonNumber;
+            this.formIndex = formIndex;
+            this.uniqueID = uniqueID;
+            this.timestamp = timestamp;
+            this.estimatedPokemonLevel = estimatedPokemonLevel;
+            this.cp = cp;
+            this.hp = hp;
+            this.gender = gender;
+            this.isLucky = isLucky;
+            this.combinations = combinations;
+        }
+
+        /**
+         * Create the scan result this record was made of, with its combinations.
+         *
+         * @param pokemon The species of this record, see getPokemon
+         */
+        public IVScanResult toIVScanResult(Pokemon pokemon) {
+            IVScanResult result = new IVScanResult(pokemon, estimatedPokemonLevel, cp, gender, isLucky);
+            for (int i = combinations.nextIndex(0); i >= 0; i = combinations.nextIndex(i + 1)) {
+                result.addIVCombination(IVCombinationSet.attackOf(i), IVCombinationSet.defenseOf(i),
+                        IVCombinationSet.staminaOf(i));
+            }
+            result.scannedHP = hp;
+            return result;
+        }
+
+        /**
+         * Get the species (or form) of this record.
+         *
+         * @return The pokemon, or null if it doesn't exist in this version of the pokedex.
+         */
+        @Nullable
+        public Pokemon getPokemon(PokeInfoCalculator pokeInfoCalculator) {
+            Pokemon pokemon = pokeInfoCalculator.get(pokemonNumber);
+            if (pokemon == null || formIndex < 0) {
+                return pokemon;
+            }
+            return formIndex < pokemon.forms.size() ? pokemon.forms.get(formIndex) : null;
+        }
+    }
+
+    /**
+     * Receives the records of a lookup on the main thread.
+     */
+    public interface LookupCallback {
+        void onRecords(@NonNull List<Record> records);
+    }
+
+    /**
+     * Index entry of a record. Holds the record itself until it's written, and its file offset afterwards.
+     */
+    private static class Entry {
+        final int pokemonNumber;
+        final String uniqueID;
+        long offset = -1;
+        Record pendingRecord;
+
+        Entry(int pokemonNumber, String uniqueID) {
+            this.pokemonNumber = pokemonNumber;
+            this.uniqueID = uniqueID;
+        }
+    }
+
+    ScanHistoryStore(File file) {
+        this.file = file;
+        writer.execute(new Runnable() {
+            @Override public void run() {
+                loadIndex();
+            }
+        });
+    }
+
+    public static synchronized ScanHistoryStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ScanHistoryStore(new File(context.getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Record a scan in the history. Returns immediately, the record is written later on a background thread.
+     *
+     * @param ivScanResult The scan to record
+     * @param uniqueID     The unique ID of the scanned pokemon, see OcrHelper.scanPokemon
+     */
+    public void append(IVScanResult ivScanResult, @Nullable String uniqueID) {
+        Pokemon pokemon = ivScanResult.pokemon;
+        Pokemon normalForm = PokeInfoCalculator.getInstance().get(pokemon.number);
+        int formIndex = normalForm != null ? normalForm.forms.indexOf(pokemon) : -1;
+
+        append(new Record(pokemon.number, formIndex, uniqueID != null ? uniqueID : "",
+                System.currentTimeMillis(), ivScanResult.estimatedPokemonLevel, ivScanResult.scannedCP,
+                ivScanResult.scannedHP, ivScanResult.scannedGender, ivScanResult.isLucky,
+                new IVCombinationSet(ivScanResult.getCombinationSet())));
+    }
+
+    void append(Record record) {
+        Entry entry = new Entry(record.pokemonNumber, record.uniqueID);
+        entry.pendingRecord = record;
+
+        synchronized (this) {
+            addToIndex(entry);
+            pendingEntries.add(entry);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                writer.schedule(new Runnable() {
+                    @Override public void run() {
+                        writePendingEntries();
+                    }
+                }, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Write every pending record now, without waiting for the next batch. Returns immediately.
+     *
+     * @return A future which is done once the records are written
+     */
+    public Future<?> flush() {
+        return writer.submit(new Runnable() {
+            @Override public void run() {
+                writePendingEntries();
+            }
+        });
+    }
+
+    /**
+     * Look up every scan of a pokemon on the background thread, and deliver them oldest first to the callback on the
+     * main thread.
+     */
+    public void lookupByUniqueID(final String uniqueID, final LookupCallback callback) {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        writer.execute(new Runnable() {
+            @Override public void run() {
+                final List<Record> records = getByUniqueID(uniqueID);
+                mainHandler.post(new Runnable() {
+                    @Override public void run() {
+                        callback.onRecords(records);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Check if a pokemon with this unique ID was scanned before. Blocks while the index is being loaded.
+     */
+    public boolean hasScanned(String uniqueID) {
+        awaitIndex();
+        synchronized (this) {
+            return entriesByUniqueID.containsKey(uniqueID);
+        }
+    }
+
+    /**
+     * Get every scan of a pokemon, oldest first. Blocks while the index is being loaded, and reads the matching
+     * records from disk, so don't call it on the main thread.
+     */
+    @NonNull
+    List<Record> getByUniqueID(String uniqueID) {
+        awaitIndex();
+        return getRecords(entriesByUniqueID, uniqueID);
+    }
+
+    /**
+     * Get every scan of a species and its forms, oldest first. Blocks while the index is being loaded, and reads
+     * the matching records from disk, so don't call it on the main thread.
+     */
+    @NonNull
+    public List<Record> getByPokemonNumber(int pokemonNumber) {
+        awaitIndex();
+        return getRecords(entriesByPokemonNumber, pokemonNumber);
+    }
+
+    /**
+     * Get the records of the index entries of a key. Only the entries are copied under the lock, the file is read
+     * after it's released.
+     */
+    private <K> List<Record> getRecords(Map<K, List<Entry>> index, K key) {
+        List<Record> pendingRecords = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        synchronized (this) {
+            // The writer thread may be moving the entries from memory to disk, only copy them under the lock
+            List<Entry> entries = index.get(key);
+            if (entries != null) {
+                for (Entry entry : entries) {
+                    if (entry.pendingRecord != null) {
+                        pendingRecords.add(entry.pendingRecord);
+                    } else {
+                        offsets.add(entry.offset);
+                    }
+                }
+            }
+        }
+
+        // Records on disk are always older than the pending ones
+        List<Record> records = readRecords(offsets);
+        records.addAll(pendingRecords);
+        return records;
+    }
+
+    private void awaitIndex() {
+        try {
+            indexLoaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void addToIndex(Entry entry) {
+        List<Entry> byNumber = entriesByPokemonNumber.get(entry.pokemonNumber);
+        if (byNumber == null) {
+            byNumber = new ArrayList<>();
+            entriesByPokemonNumber.put(entry.pokemonNumber, byNumber);
+        }
+        byNumber.add(entry);
+
+        if (!entry.uniqueID.isEmpty()) {
+            List<Entry> byID = entriesByUniqueID.get(entry.uniqueID);
+            if (byID == null) {
+                byID = new ArrayList<>();
+                entriesByUniqueID.put(entry.uniqueID, byID);
+            }
+            byID.add(entry);
+        }
+    }
+
+    /**
+     * Read the records at file offsets. Records are only ever appended after the index is loaded, so the records at
+     * these offsets don't change while they're read.
+     */
+    private List<Record> readRecords(List<Long> offsets) {
+        List<Record> records = new ArrayList<>(offsets.size());
+        if (offsets.isEmpty()) {
+            return records;
+        }
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                for (long offset : offsets) {
+                    raf.seek(offset);
+                    byte[] bytes = new byte[raf.readInt()];
+                    raf.readFully(bytes);
+                    records.add(readRecord(new DataInputStream(new ByteArrayInputStream(bytes))));
+                }
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            Timber.e(e, "Could not read scan history");
+        }
+        return records;
+    }
+
+    /**
+     * Build the index by reading the unique ID of every record. Runs on the writer thread.
+     */
+    private void loadIndex() {
+        List<Entry> loadedEntries = new ArrayList<>();
+        long validLength = HEADER_SIZE;
+        try {
+            if (!file.exists() || file.length() < HEADER_SIZE) {
+                writeHeader();
+                return;
+            }
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    Timber.w("Unknown scan history format, starting a new history");
+                    in.close();
+                    writeHeader();
+                    return;
+                }
+
+                long fileLength = file.length();
+                long offset = HEADER_SIZE;
+                while (offset + 4 <= fileLength) {
+                    int length = in.readInt();
+                    if (length <= 0 || offset + 4 + length > fileLength) {
+                        break; // Truncated record, written while the app was killed
+                    }
+                    in.mark(length);
+                    int pokemonNumber = in.readShort();
+                    in.readByte(); // Form index
+                    String uniqueID = in.readUTF();
+                    in.reset();
+                    in.skipBytes(length);
+
+                    Entry entry = new Entry(pokemonNumber, uniqueID);
+                    entry.offset = offset;
+                    loadedEntries.add(entry);
+                    offset += 4 + length;
+                    validLength = offset;
+                }
+            } catch (EOFException e) {
+                Timber.w("Scan history ends with a truncated record");
+            } finally {
+                in.close();
+            }
+
+            if (validLength < file.length()) {
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try {
+                    raf.setLength(validLength);
+                } finally {
+                    raf.close();
+                }
+            }
+        } catch (IOException e) {
+            Timber.e(e, "Could not load scan history");
+        } finally {
+            synchronized (this) {
+                // Scans appended while loading are newer than everything on disk
+                loadedEntries.addAll(pendingEntries);
+                entriesByUniqueID.clear();
+                entriesByPokemonNumber.clear();
+                for (Entry entry : loadedEntries) {
+                    addToIndex(entry);
+                }
+            }
+            indexLoaded.countDown();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Append every pending record to the file in one write. Runs on the writer thread.
+     */
+    private void writePendingEntries() {
+        List<Entry> entries;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pendingEntries.isEmpty()) {
+                return;
+            }
+            entries = new ArrayList<>(pendingEntries);
+            pendingEntries.clear();
+        }
+
+        try {
+            long offset = file.length();
+            long[] offsets = new long[entries.size()];
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            try {
+                for (int i = 0; i < entries.size(); i++) {
+                    recordBytes.reset();
+                    writeRecord(new DataOutputStream(recordBytes), entries.get(i).pendingRecord);
+                    out.writeInt(recordBytes.size());
+                    recordBytes.writeTo(out);
+                    offsets[i] = offset;
+                    offset += 4 + recordBytes.size();
+                }
+            } finally {
+                out.close();
+            }
+
+            synchronized (this) {
+                for (int i = 0; i < entries.size(); i++) {
+                    entries.get(i).offset = offsets[i];
+                    entries.get(i).pendingRecord = null;
+                }
+            }
+        } catch (IOException e) {
+            // Keep the records in memory, they're still found by lookups until the app stops
+            Timber.e(e, "Could not write scan history");
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, Record record) throws IOException {
+        out.writeShort(record.pokemonNumber);
+        out.writeByte(record.formIndex);
+        out.writeUTF(record.uniqueID);
+        out.writeLong(record.timestamp);
+        out.writeByte(Data.maxPokeLevelToIndex(record.estimatedPokemonLevel.min));
+        out.writeByte(Data.maxPokeLevelToIndex(record.estimatedPokemonLevel.max));
+        out.writeShort(record.cp);
+        out.writeShort(record.hp);
+        out.writeByte(record.gender.ordinal());
+        out.writeByte(record.isLucky ? 1 : 0);
+
+        IVCombinationSet combinations = record.combinations;
+        out.writeShort(combinations.size());
+        if (combinations.size() < BITMAP_THRESHOLD) {
+            for (int i = combinations.nextIndex(0); i >= 0; i = combinations.nextIndex(i + 1)) {
+                out.writeShort(i);
+            }
+        } else {
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                long bits = 0;
+                for (int bit = 0; bit < 64; bit++) {
+                    if (combinations.containsIndex(word * 64 + bit)) {
+                        bits |= 1L << bit;
+                    }
+                }
+                out.writeLong(bits);
+            }
+        }
+    }
+
+    private static Record readRecord(DataInputStream in) throws IOException {
+        int pokemonNumber = in.readShort();
+        int formIndex = in.readByte();
+        String uniqueID = in.readUTF();
+        long timestamp = in.readLong();
+        double minLevel = Data.levelIdxToLevel(in.readByte());
+        double maxLevel = Data.levelIdxToLevel(in.readByte());
+        int cp = in.readShort();
+        int hp = in.readShort();
+        Pokemon.Gender gender = Pokemon.Gender.values()[in.readByte()];
+        boolean isLucky = in.readByte() != 0;
+
+        IVCombinationSet combinations = new IVCombinationSet();
+        int count = in.readShort();
+        if (count < BITMAP_THRESHOLD) {
+            for (int i = 0; i < count; i++) {
+                combinations.addIndex(in.readShort());
+            }
+        } else {
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                long bits = in.readLong();
+                while (bits != 0) {
+                    combinations.addIndex(word * 64 + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        return new Record(pokemonNumber, formIndex, uniqueID, timestamp, new LevelRange(minLevel, maxLevel), cp, hp,
+                gender, isLucky, combinations);
+    }
+}
@@ -0,0 +1,50 @@
+package com.kamron.pogoiv.scanlogic;
+
+/**
+ * Cached CP information for a single pokemon species (or form), which makes CP predictions free of square roots
+ * and powers.
+ * <p>
+ * Holds the square roots of the base defense and stamina plus every IV, and the CP of the minimum (0/0/0) and
+ * maximum (15/15/15) IV combinations at every level index.
+ */
+class SpeciesCpTable {
+    private static final int IV_VALUES = 16;
+    private static final int LEVEL_COUNT = Data.maxPokeLevelToIndex(Data.MAXIMUM_POKEMON_LEVEL) + 1;
+
+    private final int baseAttack;
+    private final double[] sqrtDefense = new double[IV_VALUES];
+    private final double[] sqrtStamina = new double[IV_VALUES];
+    private final int[] minCp = new int[LEVEL_COUNT];
+    private final int[] maxCp = new int[LEVEL_COUNT];
+
+    SpeciesCpTable(Pokemon pokemon) {
+        baseAttack = pokemon.baseAttack;
+        for (int iv = 0; iv < IV_VALUES; iv++) {
+            sqrtDefense[iv] = Math.sqrt(pokemon.baseDefense + iv);
+            sqrtStamina[iv] = Math.sqrt(pokemon.baseStamina + iv);
+        }
+        for (int levelIdx = 0; levelIdx < LEVEL_COUNT; levelIdx++) {
+            minCp[levelIdx] = computeCp(0, 0, 0, levelIdx);
+            maxCp[levelIdx] = computeCp(15, 15, 15, levelIdx);
+        }
+    }
+
+    /**
+     * Get the CP of an IV combination at a level index. The CP is not clamped to the in-game minimum of 10, like
+     * PokeInfoCalculator.getCpRangeAtLevel has always done.
+     */
+    int getCp(IVCombination combination, int levelIdx) {
+        if (combination.att == 15 && combination.def == 15 && combination.sta == 15) {
+            return maxCp[levelIdx];
+        } else if (combination.att == 0 && combination.def == 0 && combination.sta == 0) {
+            return minCp[levelIdx];
+        }
+        return computeCp(combination.att, combination.def, combination.sta, levelIdx);
+    }
+
+    private int computeCp(int att, int def, int sta, int levelIdx) {
+        // Same evaluation order as the CP formula, so the results are bit for bit identical
+        return (int) Math.floor((baseAttack + att) * sqrtDefense[def] * sqrtStamina[sta]
+                * Data.getLevelIdxCpMSquared(levelIdx) * 0.1);
+    }
+}
@@ -34,7 +34,7 @@ public class IVResultsAdapter extends RecyclerView.Adapter<IVResultsAdapter.Resu
 
     @Override
     public void onBindViewHolder(ResultsViewHolder holder, int position) {
-        IVCombination currentSet = dataSet.iVCombinations.get(position);
+        IVCombination currentSet = dataSet.getIVCombinations().get(position);
         holder.resultAttack.setText(String.valueOf(currentSet.att));
         holder.resultDefense.setText(String.valueOf(currentSet.def));
         holder.resultHP.setText(String.valueOf(currentSet.sta));
@@ -54,7 +54,7 @@ public class IVResultsAdapter extends RecyclerView.Adapter<IVResultsAdapter.Resu
 
     @Override
     public int getItemCount() {
-        return dataSet.iVCombinations.size();
+        return dataSet.getCount();
     }
 
     class ResultsViewHolder extends RecyclerView.ViewHolder {
@@ -0,0 +1,78 @@
+package com.kamron.pogoiv.pokeflycomponents;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AppraisalPhraseMatcherTest {
+
+    private final AppraisalPhraseMatcher<Integer> matcher = new AppraisalPhraseMatcher<Integer>()
+            .add(1, "wonder", "breathtaking")
+            .add(2, "caught", "attention")
+            .add(3, "above", "average")
+            .add(4, "likely", "headway");
+
+    private AppraisalPhraseMatcher.Match<Integer> match(String text) {
+        return matcher.match(AppraisalPhraseMatcher.normalize(text));
+    }
+
+    @Test
+    public void testExactPhrase() throws Exception {
+        AppraisalPhraseMatcher.Match<Integer> match = match("Overall, your Pidgey is a wonder! What a breathtaking");
+        assertEquals(Integer.valueOf(1), match.key);
+        assertEquals(0, match.distance);
+    }
+
+    @Test
+    public void testMisreadLetters() throws Exception {
+        AppraisalPhraseMatcher.Match<Integer> match = match("Overall, your Pidgey has certainly caughl my attenlion.");
+        assertEquals(Integer.valueOf(2), match.key);
+        assertEquals(1, match.distance);
+        assertEquals("caught", match.phrase);
+    }
+
+    @Test
+    public void testFewestErrorsWin() throws Exception {
+        // "wondor" is off by one, "above average" is exact
+        AppraisalPhraseMatcher.Match<Integer> match = match("I wondor, your Pidgey is above average.");
+        assertEquals(Integer.valueOf(3), match.key);
+        assertEquals(0, match.distance);
+    }
+
+    @Test
+    public void testNoMatch() throws Exception {
+        assertNull(match("Let me take a look at your Pidgey."));
+        assertNull(match(""));
+        // Too many errors for a phrase of six letters
+        assertNull(match("Not lkley to make much hedwy in battle."));
+    }
+
+    @Test
+    public void testShortPhrasesMatchExactly() throws Exception {
+        AppraisalPhraseMatcher<String> stats = new AppraisalPhraseMatcher<String>()
+                .add("att", "attack")
+                .add("hp", "hp");
+        assertEquals("hp", stats.match(AppraisalPhraseMatcher.normalize("Its HP is its strongest feature.")).key);
+        assertNull(stats.match(AppraisalPhraseMatcher.normalize("Its HQ is its strongest feature.")));
+    }
+
+    @Test
+    public void testNormalizesTextAndPhrases() throws Exception {
+        assertEquals("great in battle!", AppraisalPhraseMatcher.normalize("  Great\nin   Battle!\n"));
+
+        AppraisalPhraseMatcher<Integer> valor = new AppraisalPhraseMatcher<Integer>()
+                .add(1, "blown", "WOW")
+                .add(4, "great in");
+        assertEquals(Integer.valueOf(1), valor.match(AppraisalPhraseMatcher.normalize("Wow, your stats...")).key);
+        assertEquals(Integer.valueOf(4), valor.match(AppraisalPhraseMatcher.normalize("It's not great\nin")).key);
+    }
+
+    @Test
+    public void testSubstringDistance() throws Exception {
+        assertEquals(0, AppraisalPhraseMatcher.substringDistance("average", "above average!", 1));
+        assertEquals(1, AppraisalPhraseMatcher.substringDistance("average", "above averge!", 1));
+        assertEquals(2, AppraisalPhraseMatcher.substringDistance("average", "above avrge!", 1));
+        assertEquals(3, AppraisalPhraseMatcher.substringDistance("abc", "", 5));
+    }
+}
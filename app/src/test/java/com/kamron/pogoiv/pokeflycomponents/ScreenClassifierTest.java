@@ -0,0 +1,96 @@
+package com.kamron.pogoiv.pokeflycomponents;
+
+import com.kamron.pogoiv.pokeflycomponents.ocrhelper.CalibrationProfile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScreenClassifierTest {
+
+    private static final int CARD_WHITE = 0xFFFAFAFA;
+    private static final int FAB_GREEN = 0xFF1C8796;
+    private static final int SKY_BLUE = 0xFF8ED2E8;
+
+    private final ScreenClassifier classifier = new ScreenClassifier(CalibrationProfile.UNCALIBRATED, 1080, 1920);
+
+    /**
+     * The pixels of the points of the classifier: the card, the card margin, the background and the menu button.
+     */
+    private static int[] pixels(int card, int margin, int background, int fab) {
+        return new int[]{card, margin, background, fab};
+    }
+
+    private static int dim(int color, float factor) {
+        int r = Math.round(((color >> 16) & 0xFF) * factor);
+        int g = Math.round(((color >> 8) & 0xFF) * factor);
+        int b = Math.round((color & 0xFF) * factor);
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    @Test
+    public void testPokemonInfo() throws Exception {
+        ScreenClassifier.Result result = classifier.classify(pixels(CARD_WHITE, CARD_WHITE, SKY_BLUE, FAB_GREEN));
+        assertEquals(ScreenClassifier.ScreenType.POKEMON_INFO, result.type);
+        assertEquals(1f, result.confidence, 0.001f);
+    }
+
+    @Test
+    public void testToleratesShiftedColors() throws Exception {
+        // A warm night mode filter, and the 249 white of some devices
+        int warmWhite = 0xFFF9F2E6;
+        int warmGreen = 0xFF268A8A;
+        ScreenClassifier.Result result = classifier.classify(pixels(warmWhite, 0xFFF9F9F9, SKY_BLUE, warmGreen));
+        assertEquals(ScreenClassifier.ScreenType.POKEMON_INFO, result.type);
+    }
+
+    @Test
+    public void testOneOffPixelLowersTheConfidence() throws Exception {
+        ScreenClassifier.Result result = classifier.classify(pixels(CARD_WHITE, 0xFF37423D, SKY_BLUE, FAB_GREEN));
+        assertEquals(ScreenClassifier.ScreenType.POKEMON_INFO, result.type);
+        assertEquals(0.75f, result.confidence, 0.001f);
+    }
+
+    @Test
+    public void testMenuButtonIsRequired() throws Exception {
+        // Every other pixel matches, like on a white screen of the settings
+        ScreenClassifier.Result result = classifier.classify(pixels(CARD_WHITE, CARD_WHITE, SKY_BLUE, 0xFFE04040));
+        assertEquals(ScreenClassifier.ScreenType.UNKNOWN, result.type);
+        assertEquals(ScreenClassifier.ScreenType.UNKNOWN,
+                classifier.classify(pixels(CARD_WHITE, CARD_WHITE, CARD_WHITE, CARD_WHITE)).type);
+    }
+
+    @Test
+    public void testScrolledDown() throws Exception {
+        ScreenClassifier.Result result = classifier.classify(pixels(CARD_WHITE, CARD_WHITE, CARD_WHITE, FAB_GREEN));
+        assertEquals(ScreenClassifier.ScreenType.SCROLLED_DOWN, result.type);
+        assertEquals(1f, result.confidence, 0.001f);
+    }
+
+    @Test
+    public void testAppraisal() throws Exception {
+        ScreenClassifier.Result result = classifier.classify(
+                pixels(dim(CARD_WHITE, 0.5f), dim(CARD_WHITE, 0.5f), dim(SKY_BLUE, 0.5f), dim(FAB_GREEN, 0.5f)));
+        assertEquals(ScreenClassifier.ScreenType.APPRAISAL, result.type);
+        assertEquals(1f, result.confidence, 0.001f);
+    }
+
+    @Test
+    public void testUnknownScreens() throws Exception {
+        // The map, a dark gray screen and a screen which couldn't be grabbed
+        assertEquals(ScreenClassifier.ScreenType.UNKNOWN,
+                classifier.classify(pixels(0xFF6FC86F, 0xFF6FC86F, SKY_BLUE, 0xFFE04040)).type);
+        assertEquals(ScreenClassifier.ScreenType.UNKNOWN,
+                classifier.classify(pixels(0xFF404040, 0xFF404040, 0xFF404040, 0xFF404040)).type);
+        assertEquals(ScreenClassifier.ScreenType.UNKNOWN, classifier.classify(null).type);
+    }
+
+    @Test
+    public void testPointsAreGuessedWithoutCalibration() throws Exception {
+        assertEquals(4, classifier.getPoints().length);
+        assertEquals(45, classifier.getPoints()[0].xCoord);
+        assertEquals(1545, classifier.getPoints()[0].yCoord);
+        assertEquals(931, classifier.getPoints()[3].xCoord);
+        assertEquals(1729, classifier.getPoints()[3].yCoord);
+    }
+}
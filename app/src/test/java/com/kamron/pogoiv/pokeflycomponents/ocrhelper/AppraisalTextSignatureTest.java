@@ -0,0 +1,68 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class AppraisalTextSignatureTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int BOX_WHITE = 0xFFFFFFFF;
+    private static final int TEXT = 0xFF44696C;
+
+    private static final ScanArea BOX = new ScanArea(54, 1670, 972, 249);
+
+    private static FakeScreenImage emptyBox() {
+        return new FakeScreenImage(WIDTH, HEIGHT, BOX_WHITE);
+    }
+
+    /**
+     * Type letters into the box like the typewriter animation, as blocks of 20 by 30 pixels on a line.
+     */
+    private static FakeScreenImage type(FakeScreenImage screen, int line, int letters) {
+        int top = BOX.yPoint + 20 + line * 50;
+        for (int letter = 0; letter < letters; letter++) {
+            int left = BOX.xPoint + 20 + letter * 24;
+            screen.fillRect(left, top, left + 20, top + 30, TEXT);
+        }
+        return screen;
+    }
+
+    @Test
+    public void testNoTextInAnEmptyBox() throws Exception {
+        assertEquals(AppraisalTextSignature.NO_TEXT, AppraisalTextSignature.of(emptyBox(), BOX));
+    }
+
+    @Test
+    public void testSameTextSameSignature() throws Exception {
+        int signature = AppraisalTextSignature.of(type(type(emptyBox(), 0, 30), 1, 12), BOX);
+        assertNotEquals(AppraisalTextSignature.NO_TEXT, signature);
+        assertEquals(signature, AppraisalTextSignature.of(type(type(emptyBox(), 0, 30), 1, 12), BOX));
+    }
+
+    @Test
+    public void testTypedLettersChangeTheSignature() throws Exception {
+        int previous = AppraisalTextSignature.NO_TEXT;
+        for (int letters = 4; letters <= 36; letters += 4) {
+            int signature = AppraisalTextSignature.of(type(type(emptyBox(), 0, 36), 1, letters), BOX);
+            assertNotEquals(previous, signature);
+            previous = signature;
+        }
+    }
+
+    @Test
+    public void testTextOutsideOfTheBoxIsIgnored() throws Exception {
+        FakeScreenImage screen = emptyBox();
+        screen.fillRect(0, 0, WIDTH, BOX.yPoint, TEXT);
+        assertEquals(AppraisalTextSignature.NO_TEXT, AppraisalTextSignature.of(screen, BOX));
+    }
+
+    @Test
+    public void testAreaOutsideOfTheScreen() throws Exception {
+        FakeScreenImage screen = type(emptyBox(), 0, 30);
+        assertEquals(AppraisalTextSignature.NO_TEXT,
+                AppraisalTextSignature.of(screen, new ScanArea(WIDTH, HEIGHT, 100, 50)));
+    }
+}
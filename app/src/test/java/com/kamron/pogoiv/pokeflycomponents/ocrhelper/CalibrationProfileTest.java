@@ -0,0 +1,126 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import com.kamron.pogoiv.GoIVSettings;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CalibrationProfileTest {
+
+    /**
+     * The values saveScreenCalibrationResults saves, see GoIVSettings.
+     */
+    private static Map<String, Object> savedCalibration() {
+        Map<String, Object> values = new HashMap<>();
+        values.put(GoIVSettings.MANUAL_SCREEN_CALIBRATION_ACTIVE, true);
+        values.put(ScanFieldNames.POKEMON_NAME_AREA, "100,900,880,80");
+        values.put(ScanFieldNames.POKEMON_TYPE_AREA, "360,1250,360,50");
+        values.put(ScanFieldNames.POKEMON_GENDER_AREA, "900,880,60,60");
+        values.put(ScanFieldNames.CANDY_NAME_AREA, "560,1500,400,50");
+        values.put(ScanFieldNames.POKEMON_HP_AREA, "340,1000,400,50");
+        values.put(ScanFieldNames.POKEMON_CP_AREA, "400,120,300,80");
+        values.put(ScanFieldNames.POKEMON_CANDY_AMOUNT_AREA, "560,1450,100,50");
+        values.put(ScanFieldNames.POKEMON_EVOLUTION_COST_AREA, "880,1750,80,40");
+        values.put(ScanFieldNames.POKEMON_POWER_UP_STARDUST_COST, "700,1650,100,40");
+        values.put(ScanFieldNames.POKEMON_POWER_UP_CANDY_COST, "880,1650,80,40");
+        values.put(ScanFieldNames.ARC_RADIUS, "430");
+        values.put(ScanFieldNames.ARC_INIT_POINT, "540,700");
+        values.put(ScanFieldNames.SCREEN_INFO_CARD_WHITE_PIXEL, "45,1545");
+        values.put(ScanFieldNames.SCREEN_INFO_CARD_WHITE_HEX, "#FAFAFA");
+        values.put(ScanFieldNames.SCREEN_INFO_FAB_GREEN_PIXEL, "931,1729");
+        values.put(ScanFieldNames.SCREEN_INFO_FAB_GREEN_HEX, "#1C8796");
+        return values;
+    }
+
+    @Test
+    public void testParsesTheSavedCalibration() throws Exception {
+        CalibrationProfile profile = CalibrationProfile.parse(savedCalibration());
+
+        assertTrue(profile.isCalibrated());
+        assertEquals(new ScanArea(340, 1000, 400, 50), profile.getHpArea());
+        assertEquals(new ScanArea(400, 120, 300, 80), profile.getCpArea());
+        assertEquals(new ScanArea(880, 1650, 80, 40), profile.getPowerUpCandyCostArea());
+        assertEquals(new ScanPoint(540, 700), profile.getArcInit());
+        assertEquals(430, profile.getArcRadius());
+        assertEquals(new ScanPoint(45, 1545), profile.getCardWhitePixel());
+        assertEquals(Integer.valueOf(0xFFFAFAFA), profile.getCardWhiteColor());
+        assertEquals(new ScanPoint(931, 1729), profile.getFabGreenPixel());
+        assertEquals(Integer.valueOf(0xFF1C8796), profile.getFabGreenColor());
+        assertEquals(0, profile.getLuckyOffset());
+    }
+
+    @Test
+    public void testUncalibratedWithoutManualCalibration() throws Exception {
+        Map<String, Object> values = savedCalibration();
+        values.put(GoIVSettings.MANUAL_SCREEN_CALIBRATION_ACTIVE, false);
+        assertSame(CalibrationProfile.UNCALIBRATED, CalibrationProfile.parse(values));
+        assertSame(CalibrationProfile.UNCALIBRATED, CalibrationProfile.parse(new HashMap<String, Object>()));
+
+        CalibrationProfile profile = CalibrationProfile.UNCALIBRATED;
+        assertFalse(profile.isCalibrated());
+        assertNull(profile.getHpArea());
+        assertNull(profile.getArcInit());
+        assertNull(profile.getCardWhiteColor());
+    }
+
+    @Test
+    public void testUnparsableValuesAreNull() throws Exception {
+        Map<String, Object> values = savedCalibration();
+        values.put(ScanFieldNames.POKEMON_HP_AREA, "Error- no value saved");
+        values.put(ScanFieldNames.POKEMON_CP_AREA, "400,120");
+        values.put(ScanFieldNames.ARC_RADIUS, "Error- no value saved");
+        values.put(ScanFieldNames.SCREEN_INFO_FAB_GREEN_HEX, "green");
+        CalibrationProfile profile = CalibrationProfile.parse(values);
+
+        assertTrue(profile.isCalibrated());
+        assertNull(profile.getHpArea());
+        assertNull(profile.getCpArea());
+        assertNull(profile.getArcInit());
+        assertEquals(-1, profile.getArcRadius());
+        assertNull(profile.getCardWhiteColor());
+        assertNull(profile.getFabGreenColor());
+        assertEquals(new ScanPoint(45, 1545), profile.getCardWhitePixel());
+        assertEquals(new ScanArea(360, 1250, 360, 50), profile.getTypeArea());
+    }
+
+    @Test
+    public void testLuckyProfileOffsetsTheFieldsBelowTheLuckyLine() throws Exception {
+        CalibrationProfile profile = CalibrationProfile.parse(savedCalibration());
+        CalibrationProfile lucky = profile.getLuckyProfile(1920);
+
+        int offset = (int) (40 * 1.2);
+        assertEquals(offset, lucky.getLuckyOffset());
+        assertSame(lucky, profile.getLuckyProfile(1920));
+        assertSame(lucky, lucky.getLuckyProfile(1920));
+        assertEquals(new ScanArea(340, 1000 + offset, 400, 50), lucky.getHpArea());
+        assertEquals(new ScanArea(360, 1250 + offset, 360, 50), lucky.getTypeArea());
+        assertEquals(new ScanArea(900, 880 + offset, 60, 60), lucky.getGenderArea());
+        assertEquals(new ScanArea(880, 1650 + offset, 80, 40), lucky.getPowerUpCandyCostArea());
+        assertSame(profile.getNameArea(), lucky.getNameArea());
+        assertSame(profile.getCpArea(), lucky.getCpArea());
+        assertSame(profile.getArcInit(), lucky.getArcInit());
+        assertSame(profile.getCardWhitePixel(), lucky.getCardWhitePixel());
+
+        // The areas of the profile itself don't move
+        assertEquals(new ScanArea(340, 1000, 400, 50), profile.getHpArea());
+    }
+
+    @Test
+    public void testLuckyOffsetFromScreenHeightWithoutPowerUpCandyCost() throws Exception {
+        Map<String, Object> values = savedCalibration();
+        values.remove(ScanFieldNames.POKEMON_POWER_UP_CANDY_COST);
+        CalibrationProfile lucky = CalibrationProfile.parse(values).getLuckyProfile(1920);
+
+        int offset = (int) (0.0247 * 1.2 * 1920);
+        assertEquals(offset, lucky.getLuckyOffset());
+        assertEquals(new ScanArea(340, 1000 + offset, 400, 50), lucky.getHpArea());
+    }
+}
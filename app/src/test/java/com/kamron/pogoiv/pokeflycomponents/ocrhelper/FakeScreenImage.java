@@ -0,0 +1,54 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import android.graphics.Bitmap;
+
+import java.util.Arrays;
+
+/**
+ * A screen backed by an array of pixels, for tests which draw the screen they scan. Crops aren't supported, since
+ * they need a real Bitmap.
+ */
+public class FakeScreenImage extends ScreenImage {
+    public final int[] pixels;
+    private final int width;
+    private final int height;
+
+    /**
+     * @param background The color of every pixel of the new screen
+     */
+    public FakeScreenImage(int width, int height, int background) {
+        this.width = width;
+        this.height = height;
+        pixels = new int[width * height];
+        Arrays.fill(pixels, background);
+    }
+
+    public void setPixel(int x, int y, int color) {
+        pixels[y * width + x] = color;
+    }
+
+    /**
+     * Fill a rectangle, right and bottom excluded.
+     */
+    public void fillRect(int left, int top, int right, int bottom, int color) {
+        for (int y = top; y < bottom; y++) {
+            Arrays.fill(pixels, y * width + left, y * width + right, color);
+        }
+    }
+
+    @Override public int getWidth() {
+        return width;
+    }
+
+    @Override public int getHeight() {
+        return height;
+    }
+
+    @Override public int getPixel(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    @Override public Bitmap crop(int x, int y, int width, int height) {
+        throw new UnsupportedOperationException();
+    }
+}
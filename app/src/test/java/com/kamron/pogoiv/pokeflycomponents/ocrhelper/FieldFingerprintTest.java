@@ -0,0 +1,126 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FieldFingerprintTest {
+
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int TEXT = 0xFF446C6C;
+    private static final int SCALE = 3;
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 30;
+
+    private static final String[] FIVE = {
+            "#####",
+            "#....",
+            "####.",
+            "....#",
+            "....#",
+            "#...#",
+            ".###."};
+    private static final String[] SIX = {
+            ".###.",
+            "#....",
+            "####.",
+            "#...#",
+            "#...#",
+            "#...#",
+            ".###."};
+    private static final String[] NINE = {
+            ".###.",
+            "#...#",
+            "#...#",
+            "#...#",
+            ".####",
+            "....#",
+            ".###."};
+
+    /**
+     * Draw glyphs side by side on a white field, like a filtered crop.
+     */
+    private static int[] draw(String[]... glyphs) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, WHITE);
+        int left = 10;
+        for (String[] glyph : glyphs) {
+            for (int row = 0; row < glyph.length; row++) {
+                for (int column = 0; column < glyph[row].length(); column++) {
+                    if (glyph[row].charAt(column) == '#') {
+                        for (int dy = 0; dy < SCALE; dy++) {
+                            for (int dx = 0; dx < SCALE; dx++) {
+                                int x = left + column * SCALE + dx;
+                                int y = 5 + row * SCALE + dy;
+                                pixels[y * WIDTH + x] = TEXT;
+                            }
+                        }
+                    }
+                }
+            }
+            left += (glyph[0].length() + 1) * SCALE;
+        }
+        return pixels;
+    }
+
+    private static FieldFingerprint fingerprint(int[] pixels) {
+        return FieldFingerprint.of(pixels, WIDTH, HEIGHT, WHITE);
+    }
+
+    @Test
+    public void testShimmerMatchesButDigitChangeDoesnt() throws Exception {
+        FieldFingerprint fiftyFive = fingerprint(draw(FIVE, FIVE));
+
+        int[] shimmer = draw(FIVE, FIVE);
+        shimmer[12 * WIDTH + 20] = shimmer[12 * WIDTH + 20] == WHITE ? TEXT : WHITE;
+        assertTrue(fiftyFive.matches(fingerprint(shimmer), 1));
+
+        assertFalse(fiftyFive.matches(fingerprint(draw(FIVE, SIX)), 1));
+        assertFalse(fiftyFive.matches(fingerprint(draw(FIVE, FIVE, FIVE)), 64));
+    }
+
+    @Test
+    public void testDigitChangeWithSamePixelCountDoesntMatch() throws Exception {
+        // A nine is a six turned upside down, so only the hash tells them apart
+        FieldFingerprint fiftySix = fingerprint(draw(FIVE, SIX));
+        FieldFingerprint fiftyNine = fingerprint(draw(FIVE, NINE));
+        assertEquals(fiftySix.textPixels, fiftyNine.textPixels);
+        assertEquals(fiftySix.textWidth, fiftyNine.textWidth);
+        assertEquals(fiftySix.textHeight, fiftyNine.textHeight);
+
+        assertTrue(fiftySix.distance(fiftyNine) > 1);
+        assertFalse(fiftySix.matches(fiftyNine, 1));
+    }
+
+    @Test
+    public void testBlankFieldHasEmptyFingerprint() throws Exception {
+        int[] blank = new int[WIDTH * HEIGHT];
+        Arrays.fill(blank, WHITE);
+        FieldFingerprint fingerprint = fingerprint(blank);
+        assertEquals(0, fingerprint.bits);
+        assertEquals(0, fingerprint.textPixels);
+    }
+
+    @Test
+    public void testCacheCountsHits() throws Exception {
+        FingerprintCache cache = new FingerprintCache("candy", 2, 1);
+        FieldFingerprint fiftyFive = fingerprint(draw(FIVE, FIVE));
+        assertNull(cache.get(fiftyFive));
+        cache.put(fiftyFive, "55");
+        cache.put(fingerprint(draw(FIVE, SIX)), "56");
+
+        assertEquals("55", cache.get(fingerprint(draw(FIVE, FIVE))));
+        assertEquals("56", cache.get(fingerprint(draw(FIVE, SIX))));
+        cache.put(fingerprint(draw(SIX, SIX)), "66"); // Replaces the oldest, 55
+        assertNull(cache.get(fiftyFive));
+
+        assertEquals(4, cache.getLookups());
+        assertEquals(2, cache.getHits());
+        assertEquals("candy: 2/4 (50%) at distance 1", cache.toString());
+    }
+}
@@ -0,0 +1,146 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class GlyphTemplatesTest {
+
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int TEXT = 0xFF446C6C;
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 40;
+
+    private static final String[] ONE = {
+            "..#..",
+            ".##..",
+            "..#..",
+            "..#..",
+            "..#..",
+            "..#..",
+            ".###."};
+    private static final String[] FIVE = {
+            "#####",
+            "#....",
+            "####.",
+            "....#",
+            "....#",
+            "#...#",
+            ".###."};
+    private static final String[] SIX = {
+            ".###.",
+            "#....",
+            "####.",
+            "#...#",
+            "#...#",
+            "#...#",
+            ".###."};
+    /**
+     * An S of a blocky font, which correlates well with the five.
+     */
+    private static final String[] S = {
+            "#####",
+            "#....",
+            "####.",
+            "....#",
+            "....#",
+            "....#",
+            "####."};
+
+    /**
+     * Draw glyphs side by side on a white field, like a filtered crop.
+     */
+    private static int[] draw(int scale, String[]... glyphs) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, WHITE);
+        int left = 10;
+        for (String[] glyph : glyphs) {
+            for (int row = 0; row < glyph.length; row++) {
+                for (int column = 0; column < glyph[row].length(); column++) {
+                    if (glyph[row].charAt(column) == '#') {
+                        for (int dy = 0; dy < scale; dy++) {
+                            for (int dx = 0; dx < scale; dx++) {
+                                pixels[(5 + row * scale + dy) * WIDTH + left + column * scale + dx] = TEXT;
+                            }
+                        }
+                    }
+                }
+            }
+            left += (glyph[0].length() + 1) * scale;
+        }
+        return pixels;
+    }
+
+    private static String recognize(GlyphTemplates templates, int[] pixels) {
+        return templates.recognize(pixels, WIDTH, 0, 0, WIDTH, HEIGHT, WHITE);
+    }
+
+    private static void learn(GlyphTemplates templates, int[] pixels, String text) {
+        templates.learn(pixels, WIDTH, 0, 0, WIDTH, HEIGHT, WHITE, text);
+    }
+
+    @Test
+    public void testReadsLearnedDigitsAtAnotherSize() throws Exception {
+        GlyphTemplates templates = new GlyphTemplates("candyAmount", "156");
+        assertNull(recognize(templates, draw(3, FIVE, SIX)));
+
+        learn(templates, draw(3, FIVE, SIX, ONE), "561");
+        assertNull(recognize(templates, draw(3, FIVE, SIX))); // Every digit needs two samples
+        learn(templates, draw(3, ONE, SIX, FIVE), "1 65");
+
+        assertEquals("651", recognize(templates, draw(4, SIX, FIVE, ONE)));
+        assertEquals("115", recognize(templates, draw(2, ONE, ONE, FIVE)));
+        assertEquals("candyAmount: 2/4 (50%) by template", templates.toString());
+    }
+
+    @Test
+    public void testIgnoresTextsWhichDontFitTheField() throws Exception {
+        GlyphTemplates templates = new GlyphTemplates("hp", "56");
+        learn(templates, draw(3, FIVE, SIX), "5");  // A digit is missing
+        learn(templates, draw(3, FIVE, SIX), "57"); // 7 isn't in the alphabet
+        learn(templates, draw(3, FIVE, SIX), "56");
+        learn(templates, draw(3, FIVE, SIX), "56");
+        learn(templates, draw(3, FIVE, SIX), "65"); // Both digits swapped, doesn't look like what was learned
+        learn(templates, draw(3, FIVE, SIX), "65");
+        learn(templates, draw(3, FIVE, SIX), "65");
+        assertEquals("56", recognize(templates, draw(3, FIVE, SIX)));
+    }
+
+    @Test
+    public void testNeedsEveryCharacterOfTheAlphabet() throws Exception {
+        GlyphTemplates templates = new GlyphTemplates("hp", "156");
+        learn(templates, draw(3, FIVE, SIX), "56");
+        learn(templates, draw(3, SIX, FIVE), "65");
+
+        // A 1 would be read as whichever learned digit it looks the most like
+        assertNull(recognize(templates, draw(3, FIVE, SIX)));
+        assertNull(recognize(templates, draw(3, S)));
+
+        learn(templates, draw(3, ONE, ONE), "11");
+        assertEquals("56", recognize(templates, draw(3, FIVE, SIX)));
+        assertEquals("1", recognize(templates, draw(3, ONE)));
+    }
+
+    @Test
+    public void testLearnsTheSampleOnlyOnceConfirmed() throws Exception {
+        GlyphTemplates templates = new GlyphTemplates("cp", "56");
+        templates.keepSample(draw(3, FIVE, SIX), WIDTH, 0, 0, WIDTH, HEIGHT, WHITE, "56");
+        assertEquals("56", templates.getSampleText());
+        templates.learnSample("55", "55"); // Checked against an older sample
+        assertEquals("56", templates.getSampleText());
+        templates.learnSample("56", "56");
+        assertNull(templates.getSampleText());
+
+        // Cropped to a region, like the CP
+        int[] pixels = draw(3, SIX, FIVE);
+        templates.keepSample(pixels, WIDTH, 5, 2, WIDTH - 20, HEIGHT - 2, WHITE, "65");
+        templates.learnSample("65", "65");
+        assertEquals("65", recognize(templates, pixels));
+
+        templates.keepSample(draw(3, SIX, SIX), WIDTH, 0, 0, WIDTH, HEIGHT, WHITE, "66");
+        assertEquals("66", templates.getSampleText()); // Never learned until confirmed
+    }
+}
@@ -0,0 +1,106 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import com.kamron.pogoiv.scanlogic.ArcGeometry;
+import com.kamron.pogoiv.scanlogic.Data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LevelArcDetectorTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1200;
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int BACKGROUND = 0xFF7BB7C4;
+    private static final int TRAINER_LEVEL = 30;
+
+    private static void fillDisc(FakeScreenImage screen, int centerX, int centerY, int radius) {
+        for (int y = centerY - radius; y <= centerY + radius; y++) {
+            for (int x = centerX - radius; x <= centerX + radius; x++) {
+                if ((x - centerX) * (x - centerX) + (y - centerY) * (y - centerY) <= radius * radius) {
+                    screen.setPixel(x, y, WHITE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draw the white part of the arc up to a level, and the dot on that level.
+     */
+    private static FakeScreenImage drawArc(ArcGeometry arc, int dotLevelIdx) {
+        FakeScreenImage screen = new FakeScreenImage(WIDTH, HEIGHT, BACKGROUND);
+        for (int levelIdx = 0; levelIdx < dotLevelIdx; levelIdx++) {
+            for (int step = 0; step < 8; step++) {
+                int x = arc.getX(levelIdx) + (arc.getX(levelIdx + 1) - arc.getX(levelIdx)) * step / 8;
+                int y = arc.getY(levelIdx) + (arc.getY(levelIdx + 1) - arc.getY(levelIdx)) * step / 8;
+                fillDisc(screen, x, y, 2);
+            }
+        }
+        fillDisc(screen, arc.getX(dotLevelIdx), arc.getY(dotLevelIdx), 14);
+        return screen;
+    }
+
+    /**
+     * The level the detector found before its probes were precomputed: a walk down from the maximum level, with the
+     * probes computed at every step.
+     */
+    private static double detectLevelByWalk(ArcGeometry arc, ScreenImage screen) {
+        double previousLevel = Data.trainerLevelToMaxPokeLevel(TRAINER_LEVEL) + 0.5;
+        int previousDistance = -1;
+        for (double level = previousLevel - 0.5; level >= 1.0; level -= 0.5) {
+            int x = arc.getX(Data.maxPokeLevelToIndex(level));
+            int y = arc.getY(Data.maxPokeLevelToIndex(level));
+            double angle = Math.atan2(arc.getInitY() - y, arc.getInitX() - x);
+            int r = -1;
+            int i1x = x;
+            int i1y = y;
+            int i2x = x;
+            int i2y = y;
+            while (screen.getPixel(i1x, i1y) == WHITE || screen.getPixel(i2x, i2y) == WHITE) {
+                r++;
+                i1x = (int) Math.round(x + r * Math.cos(angle));
+                i1y = (int) Math.round(y + r * Math.sin(angle));
+                i2x = (int) Math.round(x - r * Math.cos(angle));
+                i2y = (int) Math.round(y - r * Math.sin(angle));
+            }
+            if (r < previousDistance) {
+                return previousLevel;
+            }
+            previousLevel = level;
+            previousDistance = r;
+        }
+        return 1;
+    }
+
+    @Test
+    public void testFindsTheSameLevelAsTheWalk() throws Exception {
+        ArcGeometry arc = Data.setupArcPoints(new ScanPoint(WIDTH / 2, 500), 430, TRAINER_LEVEL);
+        LevelArcDetector detector = new LevelArcDetector(arc, WIDTH, HEIGHT);
+        double maxLevel = Data.trainerLevelToMaxPokeLevel(TRAINER_LEVEL);
+
+        for (int dotLevelIdx = 0; dotLevelIdx < arc.getPointCount(); dotLevelIdx++) {
+            FakeScreenImage screen = drawArc(arc, dotLevelIdx);
+            double level = detector.detectLevel(screen, maxLevel);
+            assertEquals("Dot at level index " + dotLevelIdx, detectLevelByWalk(arc, screen), level, 0);
+            assertEquals("Dot at level index " + dotLevelIdx, Data.levelIdxToLevel(dotLevelIdx), level, 1);
+        }
+    }
+
+    @Test
+    public void testIsForTheSameArcOnly() throws Exception {
+        ArcGeometry arc = Data.setupArcPoints(new ScanPoint(WIDTH / 2, 500), 430, TRAINER_LEVEL);
+        LevelArcDetector detector = new LevelArcDetector(arc, WIDTH, HEIGHT);
+        ArcGeometry sameArc = Data.setupArcPoints(new ScanPoint(WIDTH / 2, 500), 430, TRAINER_LEVEL);
+        assertSame(arc, sameArc);
+        assertTrue(detector.isFor(sameArc, WIDTH, HEIGHT));
+        assertFalse(detector.isFor(sameArc, WIDTH, HEIGHT + 1));
+
+        ArcGeometry otherArc = Data.setupArcPoints(new ScanPoint(WIDTH / 2, 500), 431, TRAINER_LEVEL);
+        assertSame(otherArc, Data.getArcGeometry());
+        assertFalse(detector.isFor(otherArc, WIDTH, HEIGHT));
+    }
+}
@@ -0,0 +1,70 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LuckyLayoutClassifierTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int BACKGROUND = 0xFFFAFAFA;
+    private static final int HP_TEXT = 0xFF37423D;
+    private static final int LUCKY_TEXT = 0xFFE6AA32;
+    private static final int HP_BAR = 0xFF67E9A4;
+
+    private static final ScanArea HP_AREA = new ScanArea(340, 1000, 400, 50);
+
+    /**
+     * Draw text as vertical strokes, 3 pixels wide with 5 pixel gaps, over the middle of an area.
+     */
+    private static void drawText(FakeScreenImage screen, ScanArea area, int color) {
+        for (int y = area.yPoint + area.height / 5; y < area.yPoint + area.height * 4 / 5; y++) {
+            for (int x = area.xPoint + area.width / 5; x < area.xPoint + area.width * 4 / 5; x++) {
+                if (x % 8 < 3) {
+                    screen.setPixel(x, y, color);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNormalPokemon() throws Exception {
+        FakeScreenImage screen = new FakeScreenImage(WIDTH, HEIGHT, BACKGROUND);
+        drawText(screen, HP_AREA, HP_TEXT);
+        assertFalse(LuckyLayoutClassifier.looksLucky(screen, HP_AREA));
+    }
+
+    @Test
+    public void testLuckyPokemon() throws Exception {
+        FakeScreenImage screen = new FakeScreenImage(WIDTH, HEIGHT, BACKGROUND);
+        drawText(screen, HP_AREA, LUCKY_TEXT);
+        drawText(screen, new ScanArea(HP_AREA.xPoint, HP_AREA.yPoint + 48, HP_AREA.width, HP_AREA.height), HP_TEXT);
+        assertTrue(LuckyLayoutClassifier.looksLucky(screen, HP_AREA));
+    }
+
+    @Test
+    public void testNotLuckyWithoutText() throws Exception {
+        FakeScreenImage screen = new FakeScreenImage(WIDTH, HEIGHT, BACKGROUND);
+        assertFalse(LuckyLayoutClassifier.looksLucky(screen, HP_AREA));
+
+        drawText(screen, HP_AREA, HP_BAR);
+        assertFalse(LuckyLayoutClassifier.looksLucky(screen, HP_AREA));
+    }
+
+    @Test
+    public void testNotLuckyWhenTheColorsMix() throws Exception {
+        FakeScreenImage screen = new FakeScreenImage(WIDTH, HEIGHT, BACKGROUND);
+        drawText(screen, HP_AREA, LUCKY_TEXT);
+        drawText(screen, new ScanArea(HP_AREA.xPoint, HP_AREA.yPoint, HP_AREA.width / 2, HP_AREA.height), HP_TEXT);
+        assertFalse(LuckyLayoutClassifier.looksLucky(screen, HP_AREA));
+    }
+
+    @Test
+    public void testAreaOutsideOfTheScreen() throws Exception {
+        FakeScreenImage screen = new FakeScreenImage(WIDTH, HEIGHT, BACKGROUND);
+        assertFalse(LuckyLayoutClassifier.looksLucky(screen, new ScanArea(WIDTH, HEIGHT, 100, 50)));
+        assertFalse(LuckyLayoutClassifier.looksLucky(screen, new ScanArea(-1, -1, -1, -1)));
+    }
+}
@@ -0,0 +1,143 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OcrResultCacheTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("ocrCache", ".log");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void testResultsSurviveReopening() throws Exception {
+        OcrResultCache cache = new OcrResultCache(file, 10000);
+        cache.put("hp1f3a", "55");
+        cache.put("name2b4c", "Pikachu");
+        cache.put("appraisal3c5d", "wrong");
+        cache.remove("appraisal3c5d");
+        cache.close();
+
+        OcrResultCache reopened = new OcrResultCache(file, 10000);
+        reopened.awaitLoaded();
+        assertEquals("55", reopened.get("hp1f3a"));
+        assertEquals("Pikachu", reopened.get("name2b4c"));
+        assertNull(reopened.get("appraisal3c5d"));
+        reopened.close();
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedOverBudget() throws Exception {
+        // Each of these entries takes (4 + 2) * 2 + 64 = 76 bytes
+        OcrResultCache cache = new OcrResultCache(file, 160);
+        cache.put("hp01", "10");
+        cache.put("hp02", "20");
+        assertEquals("10", cache.get("hp01")); // hp02 is now the least recently used
+        cache.put("hp03", "30");
+
+        assertEquals("10", cache.get("hp01"));
+        assertNull(cache.get("hp02"));
+        assertEquals("30", cache.get("hp03"));
+        cache.close();
+    }
+
+    @Test
+    public void testIgnoresTruncatedRecord() throws Exception {
+        OcrResultCache cache = new OcrResultCache(file, 10000);
+        cache.put("cp1", "100");
+        cache.put("cp2", "200");
+        cache.close();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 2); // The app was killed while writing cp2
+        raf.close();
+        long truncatedLength = file.length();
+
+        OcrResultCache reopened = new OcrResultCache(file, 10000);
+        reopened.awaitLoaded();
+        assertEquals("100", reopened.get("cp1"));
+        assertNull(reopened.get("cp2"));
+        assertTrue(file.length() < truncatedLength);
+        reopened.put("cp2", "200");
+        reopened.close();
+
+        OcrResultCache again = new OcrResultCache(file, 10000);
+        again.awaitLoaded();
+        assertEquals("200", again.get("cp2"));
+        again.close();
+    }
+
+    @Test
+    public void testCompactsOutdatedRecords() throws Exception {
+        OcrResultCache cache = new OcrResultCache(file, 10000);
+        for (int i = 0; i < 500; i++) {
+            cache.put("hp", String.valueOf(i));
+        }
+        cache.close();
+        assertTrue(file.length() < 100);
+
+        OcrResultCache reopened = new OcrResultCache(file, 10000);
+        reopened.awaitLoaded();
+        assertEquals("499", reopened.get("hp"));
+        reopened.close();
+    }
+
+    @Test
+    public void testChangesWhileLoadingWinOverTheLog() throws Exception {
+        OcrResultCache cache = new OcrResultCache(file, 10000);
+        cache.put("hp1", "10");
+        cache.put("hp2", "20");
+        cache.put("hp3", "30");
+        cache.close();
+
+        // Doesn't wait for the log, and the newer results are kept once it's loaded
+        OcrResultCache reopened = new OcrResultCache(file, 10000);
+        reopened.put("hp1", "11");
+        reopened.remove("hp2");
+        assertEquals("11", reopened.get("hp1"));
+        reopened.awaitLoaded();
+        assertEquals("11", reopened.get("hp1"));
+        assertNull(reopened.get("hp2"));
+        assertEquals("30", reopened.get("hp3"));
+        reopened.close();
+
+        OcrResultCache again = new OcrResultCache(file, 10000);
+        again.awaitLoaded();
+        assertEquals("11", again.get("hp1"));
+        assertNull(again.get("hp2"));
+        again.close();
+    }
+
+    @Test
+    public void testIgnoresChangesAfterClose() throws Exception {
+        OcrResultCache cache = new OcrResultCache(file, 10000);
+        cache.put("hp1", "10");
+        cache.close();
+        cache.put("hp2", "20");
+        cache.remove("hp1");
+        cache.close();
+
+        OcrResultCache reopened = new OcrResultCache(file, 10000);
+        reopened.awaitLoaded();
+        assertEquals("10", reopened.get("hp1"));
+        assertNull(reopened.get("hp2"));
+        reopened.close();
+    }
+}
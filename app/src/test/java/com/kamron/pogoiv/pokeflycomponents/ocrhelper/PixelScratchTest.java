@@ -0,0 +1,121 @@
+package com.kamron.pogoiv.pokeflycomponents.ocrhelper;
+
+import com.kamron.pogoiv.scanlogic.Pokemon;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class PixelScratchTest {
+
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int TEXT = 0xFF446C6C; // 68,108,108
+    private static final int NOISE = 0xFFC8C8C8;
+
+    @Test
+    public void testReplaceColorsHashesOriginalPixels() throws Exception {
+        int[] pixels = {WHITE, TEXT, NOISE, WHITE};
+        int expectedHash = Arrays.hashCode(pixels.clone());
+
+        int hash = PixelScratch.replaceColorsAndHash(pixels, pixels, pixels.length, 68, 105, 108, WHITE, 30, true);
+
+        assertEquals(expectedHash, hash);
+        assertArrayEquals(new int[]{WHITE, TEXT, WHITE, WHITE}, pixels);
+        assertEquals(expectedHash, PixelScratch.hash(new int[]{WHITE, TEXT, NOISE, WHITE, TEXT}, 4));
+    }
+
+    @Test
+    public void testDetectsGender() throws Exception {
+        int width = 4;
+        int height = 4;
+        int[] male = new int[width * height];
+        Arrays.fill(male, WHITE);
+        male[2] = TEXT; // Row 0 starts further right than row 2
+        male[2 * width] = TEXT;
+        assertEquals(Pokemon.Gender.M, PixelScratch.detectGender(male, width, height));
+
+        int[] blank = new int[width * height];
+        Arrays.fill(blank, WHITE);
+        assertEquals(Pokemon.Gender.N, PixelScratch.detectGender(blank, width, height));
+        assertTrue(PixelScratch.isRowOnlyWhite(blank, width, height));
+        assertFalse(PixelScratch.isRowOnlyWhite(male, width, height));
+    }
+
+    @Test
+    public void testCleansCostAreaOfEitherTextColor() throws Exception {
+        int width = 4;
+        int height = 3;
+        int red = 0xFFFF5F64; // 255,95,100
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, NOISE);
+        pixels[width] = red;
+        pixels[width + 1] = red;
+
+        int[] cleaned = PixelScratch.cleanCostArea(pixels, width, height);
+        assertEquals(red, cleaned[width]);
+        assertEquals(WHITE, cleaned[width + 2]);
+
+        pixels[width + 1] = TEXT;
+        cleaned = PixelScratch.cleanCostArea(pixels, width, height);
+        assertEquals(WHITE, cleaned[width]);
+        assertEquals(TEXT, cleaned[width + 1]);
+        assertEquals(NOISE, pixels[width + 2]); // The read pixels are left as they are
+    }
+
+    @Test
+    public void testCostAndGenderScansDontAllocateOnceWarm() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        int width = 200;
+        int height = 40;
+        int[] field = new int[width * height];
+        for (int i = 0; i < field.length; i++) {
+            field[i] = i % 7 == 0 ? TEXT : NOISE;
+        }
+
+        // Grow the buffers to the field, and give the JIT a chance to settle
+        for (int i = 0; i < 100; i++) {
+            scanCostAndGender(field, width, height);
+        }
+        int[] pixels = PixelScratch.get().pixels(field.length);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100; i++) {
+            scanCostAndGender(field, width, height);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // A single copy of the field would be 32000 bytes, leave some room for the measuring itself
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+        assertSame(pixels, PixelScratch.get().pixels(field.length / 2));
+    }
+
+    /**
+     * What OcrHelper does with the pixels of the evolution cost area and the gender area, once readPixels has read
+     * them into the pixel buffer with Bitmap.getPixels.
+     */
+    private static int scanCostAndGender(int[] field, int width, int height) {
+        int count = width * height;
+        int[] pixels = PixelScratch.get().pixels(count);
+        System.arraycopy(field, 0, pixels, 0, count); // Stands in for Bitmap.getPixels
+        int hash = PixelScratch.hash(pixels, count);
+        int[] cleaned = PixelScratch.cleanCostArea(pixels, width, height);
+
+        pixels = PixelScratch.get().pixels(count);
+        System.arraycopy(field, 0, pixels, 0, count);
+        return hash + cleaned[0] + PixelScratch.filterAndDetectGender(pixels, width, height).ordinal();
+    }
+}
@@ -0,0 +1,38 @@
+package com.kamron.pogoiv.scanlogic;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DataTest {
+
+    @Test
+    public void testUpgradeCostFromOneToForty() throws Exception {
+        UpgradeCost cost = Data.getUpgradeCost(Data.maxPokeLevelToIndex(1), Data.maxPokeLevelToIndex(40), false);
+        assertEquals(304, cost.candy);
+        assertEquals(270000, cost.dust);
+    }
+
+    @Test
+    public void testUpgradeCostSingleStep() throws Exception {
+        UpgradeCost cost = Data.getUpgradeCost(Data.maxPokeLevelToIndex(30.5), Data.maxPokeLevelToIndex(31), false);
+        assertEquals(4, cost.candy);
+        assertEquals(5000, cost.dust);
+    }
+
+    @Test
+    public void testLuckyUpgradeCostIsHalfDust() throws Exception {
+        UpgradeCost cost = Data.getUpgradeCost(Data.maxPokeLevelToIndex(20), Data.maxPokeLevelToIndex(30), true);
+        UpgradeCost normalCost = Data.getUpgradeCost(Data.maxPokeLevelToIndex(20), Data.maxPokeLevelToIndex(30),
+                false);
+        assertEquals(normalCost.candy, cost.candy);
+        assertEquals(normalCost.dust / 2, cost.dust);
+    }
+
+    @Test
+    public void testUpgradeCostToLowerLevelIsFree() throws Exception {
+        UpgradeCost cost = Data.getUpgradeCost(Data.maxPokeLevelToIndex(25), Data.maxPokeLevelToIndex(20), false);
+        assertEquals(0, cost.candy);
+        assertEquals(0, cost.dust);
+    }
+}
@@ -0,0 +1,61 @@
+package com.kamron.pogoiv.scanlogic;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HpSpeciesIndexTest {
+
+    private final Pokemon pidgey = new Pokemon("Pidgey", "Pidgey", 15, 85, 73, 80, -1, 12);
+    private final Pokemon rattata = new Pokemon("Rattata", "Rattata", 18, 103, 70, 60, -1, 25);
+    private final Pokemon spearow = new Pokemon("Spearow", "Spearow", 20, 112, 61, 80, -1, 50);
+    private final Pokemon snorlax = new Pokemon("Snorlax", "Snorlax", 142, 190, 190, 320, -1, -1);
+    private final HpSpeciesIndex index = new HpSpeciesIndex(Arrays.asList(pidgey, rattata, spearow, snorlax));
+
+    private static int hp(Pokemon pokemon, int levelIdx, int sta) {
+        double cpM = Data.getLevelCpM(Data.levelIdxToLevel(levelIdx));
+        return Math.max(10, (int) Math.floor((pokemon.baseStamina + sta) * cpM));
+    }
+
+    private List<Pokemon> pokemonWithHp(int levelIdx, int hp) {
+        List<Pokemon> pokemons = new ArrayList<>();
+        index.addPokemonWithHp(levelIdx, hp, pokemons);
+        return pokemons;
+    }
+
+    @Test
+    public void testFindsEveryPokemonWithTheHp() throws Exception {
+        int levelIdx = Data.maxPokeLevelToIndex(20);
+        for (int sta = 0; sta < 16; sta++) {
+            List<Pokemon> pokemons = pokemonWithHp(levelIdx, hp(pidgey, levelIdx, sta));
+            assertTrue(pokemons.contains(pidgey));
+            assertFalse(pokemons.contains(snorlax));
+        }
+        List<Pokemon> pokemons = pokemonWithHp(levelIdx, hp(snorlax, levelIdx, 15));
+        assertEquals(1, pokemons.size());
+        assertEquals(snorlax, pokemons.get(0));
+    }
+
+    @Test
+    public void testSameHpFindsSeveralPokemon() throws Exception {
+        int levelIdx = Data.maxPokeLevelToIndex(20);
+        // Pidgey and spearow have the same base stamina
+        List<Pokemon> pokemons = pokemonWithHp(levelIdx, hp(pidgey, levelIdx, 10));
+        assertEquals(2, pokemons.size());
+        assertTrue(pokemons.contains(pidgey));
+        assertTrue(pokemons.contains(spearow));
+    }
+
+    @Test
+    public void testNoPokemonWithTheHp() throws Exception {
+        int levelIdx = Data.maxPokeLevelToIndex(20);
+        assertTrue(pokemonWithHp(levelIdx, 1).isEmpty());
+        assertTrue(pokemonWithHp(levelIdx, 10000).isEmpty());
+    }
+}
@@ -0,0 +1,73 @@
+package com.kamron.pogoiv.scanlogic;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IVCombinationSetTest {
+
+    @Test
+    public void testAddIgnoresDuplicates() throws Exception {
+        IVCombinationSet set = new IVCombinationSet();
+        assertTrue(set.add(15, 0, 7));
+        assertFalse(set.add(15, 0, 7));
+        assertEquals(1, set.size());
+        assertTrue(set.contains(15, 0, 7));
+        assertFalse(set.contains(0, 15, 7));
+    }
+
+    @Test
+    public void testIterationIsOrderedByIndex() throws Exception {
+        IVCombinationSet set = new IVCombinationSet();
+        set.add(15, 15, 15);
+        set.add(0, 0, 0);
+        set.add(3, 4, 5);
+
+        int[] expected = {IVCombinationSet.indexOf(0, 0, 0), IVCombinationSet.indexOf(3, 4, 5),
+                IVCombinationSet.indexOf(15, 15, 15)};
+        int n = 0;
+        for (int i = set.nextIndex(0); i >= 0; i = set.nextIndex(i + 1)) {
+            assertEquals(expected[n++], i);
+        }
+        assertEquals(3, n);
+        assertEquals(3, IVCombinationSet.attackOf(expected[1]));
+        assertEquals(4, IVCombinationSet.defenseOf(expected[1]));
+        assertEquals(5, IVCombinationSet.staminaOf(expected[1]));
+    }
+
+    @Test
+    public void testIntersectionAndUnion() throws Exception {
+        IVCombinationSet a = new IVCombinationSet();
+        a.add(1, 2, 3);
+        a.add(10, 11, 12);
+        IVCombinationSet b = new IVCombinationSet();
+        b.add(10, 11, 12);
+        b.add(13, 14, 15);
+
+        IVCombinationSet intersection = IVCombinationSet.intersection(a, b);
+        assertEquals(1, intersection.size());
+        assertTrue(intersection.contains(10, 11, 12));
+
+        IVCombinationSet union = IVCombinationSet.union(a, b);
+        assertEquals(3, union.size());
+        assertEquals(2, a.size()); // Operands are left untouched
+    }
+
+    @Test
+    public void testRemoveWhileIterating() throws Exception {
+        IVCombinationSet set = new IVCombinationSet();
+        for (int att = 0; att < 16; att++) {
+            set.add(att, att, att);
+        }
+        for (int i = set.nextIndex(0); i >= 0; i = set.nextIndex(i + 1)) {
+            if (IVCombinationSet.attackOf(i) % 2 == 1) {
+                set.removeIndex(i);
+            }
+        }
+        assertEquals(8, set.size());
+        assertFalse(set.contains(1, 1, 1));
+        assertTrue(set.contains(14, 14, 14));
+    }
+}
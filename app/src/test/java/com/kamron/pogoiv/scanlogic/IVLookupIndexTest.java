@@ -0,0 +1,70 @@
+package com.kamron.pogoiv.scanlogic;
+
+import com.kamron.pogoiv.utils.LevelRange;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IVLookupIndexTest {
+
+    private final Pokemon pidgey = new Pokemon("Pidgey", "Pidgey", 15, 85, 73, 80, -1, 12);
+    private final IVLookupIndex index = new IVLookupIndex(pidgey);
+
+    private int cp(double level, int att, int def, int sta) {
+        double cpM = Data.getLevelCpM(level);
+        return Math.max(10, (int) Math.floor((pidgey.baseAttack + att) * Math.sqrt(pidgey.baseDefense + def)
+                * Math.sqrt(pidgey.baseStamina + sta) * cpM * cpM / 10));
+    }
+
+    private int hp(double level, int sta) {
+        return Math.max(10, (int) Math.floor((pidgey.baseStamina + sta) * Data.getLevelCpM(level)));
+    }
+
+    private IVScanResult scan(LevelRange levelRange, int cp, int hp) {
+        IVScanResult result = new IVScanResult(pidgey, levelRange, cp, Pokemon.Gender.N, false);
+        index.addIVCombinations(result, hp);
+        return result;
+    }
+
+    @Test
+    public void testSingleLevelIsNoRangeScan() throws Exception {
+        IVScanResult result = scan(new LevelRange(20), cp(20, 15, 15, 15), hp(20, 15));
+        assertTrue(result.getCount() > 0);
+        assertTrue(result.getIVCombinations().contains(new IVCombination(15, 15, 15)));
+        assertFalse(result.rangeIVScan);
+    }
+
+    @Test
+    public void testLevelRangeIsRangeScan() throws Exception {
+        IVScanResult single = scan(new LevelRange(20), cp(20, 10, 12, 8), hp(20, 8));
+        IVScanResult range = scan(new LevelRange(19, 21), cp(20, 10, 12, 8), hp(20, 8));
+        assertTrue(range.getCount() >= single.getCount());
+        assertTrue(range.getIVCombinations().contains(new IVCombination(10, 12, 8)));
+        assertTrue(range.rangeIVScan);
+    }
+
+    @Test
+    public void testLevelRangeWithoutCombinationsIsNoRangeScan() throws Exception {
+        // No pidgey between level 19 and 21 has 10 HP
+        IVScanResult result = scan(new LevelRange(19, 21), cp(20, 10, 12, 8), 10);
+        assertEquals(0, result.getCount());
+        assertFalse(result.rangeIVScan);
+    }
+
+    @Test
+    public void testCountMatchesAddedCombinations() throws Exception {
+        int levelIdx = Data.maxPokeLevelToIndex(20);
+        for (int sta = 0; sta < 16; sta += 5) {
+            int cp = cp(20, 7, 9, sta);
+            int hp = hp(20, sta);
+            IVScanResult result = new IVScanResult(pidgey, new LevelRange(20), cp, Pokemon.Gender.N, false);
+            index.addIVCombinations(result, levelIdx, hp, cp);
+            assertTrue(result.getCount() > 0);
+            assertEquals(result.getCount(), IVLookupIndex.countIVCombinations(pidgey, levelIdx, hp, cp));
+        }
+        assertEquals(0, IVLookupIndex.countIVCombinations(pidgey, levelIdx, 10, cp(20, 7, 9, 5)));
+    }
+}
@@ -0,0 +1,65 @@
+package com.kamron.pogoiv.scanlogic;
+
+import com.kamron.pogoiv.utils.LevelRange;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class IVScanResultTest {
+
+    private IVScanResult result;
+
+    @Before
+    public void setUp() throws Exception {
+        Pokemon pokemon = new Pokemon("Pidgey", "Pidgey", 15, 85, 73, 80, -1, 12);
+        result = new IVScanResult(pokemon, new LevelRange(10), 200, Pokemon.Gender.N, false);
+        result.addIVCombination(15, 15, 15);
+        result.addIVCombination(9, 14, 14);
+        result.addIVCombination(14, 9, 14);
+        result.addIVCombination(12, 11, 10);
+        result.addIVCombination(0, 8, 3);
+        result.addIVCombination(9, 14, 14); // Duplicate, ignored
+    }
+
+    @Test
+    public void testStatisticsAreUpdatedOnAdd() throws Exception {
+        assertEquals(5, result.getCount());
+        assertEquals(0, result.lowAttack);
+        assertEquals(15, result.highAttack);
+        assertEquals(3, result.lowStamina);
+        assertEquals(100, result.getHighPercent());
+        assertEquals(24, result.getLowPercent());
+        assertEquals(Math.round((45 + 37 + 37 + 33 + 11) * 100f / (45f * 5)), result.getAveragePercent());
+        assertEquals(new IVCombination(15, 15, 15), result.getHighestIVCombination());
+        assertEquals(new IVCombination(0, 8, 3), result.getLowestIVCombination());
+    }
+
+    @Test
+    public void testChainedFiltersRefineInOnePass() throws Exception {
+        result.refine(IVFilter.appraisalPercentageRange(1), IVFilter.appraisalIVRange(2));
+
+        assertEquals(2, result.getCount());
+        assertEquals(9, result.lowAttack);
+        assertEquals(14, result.highAttack);
+        assertEquals(14, result.lowStamina);
+        assertEquals(82, result.getLowPercent());
+        assertEquals(82, result.getHighPercent());
+        // Equal totals are broken by the attack
+        assertEquals(new IVCombination(9, 14, 14), result.getLowestIVCombination());
+        assertEquals(new IVCombination(14, 9, 14), result.getHighestIVCombination());
+    }
+
+    @Test
+    public void testRefineToEmpty() throws Exception {
+        result.refineByHighest(false, false, false);
+
+        assertEquals(0, result.getCount());
+        assertNull(result.getHighestIVCombination());
+        assertNull(result.getLowestIVCombination());
+        assertEquals(15, result.lowAttack);
+        assertEquals(0, result.highAttack);
+    }
+}
@@ -0,0 +1,128 @@
+package com.kamron.pogoiv.scanlogic;
+
+import com.kamron.pogoiv.utils.LevelRange;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanContainerTest {
+
+    private ScanContainer container;
+    private Pokemon pidgey;
+    private Pokemon pidgeotto;
+
+    @Before
+    public void setUp() throws Exception {
+        container = new ScanContainer();
+        pidgey = new Pokemon("Pidgey", "Pidgey", 15, 85, 73, 80, -1, 12);
+        pidgeotto = new Pokemon("Pidgeotto", "Pidgeotto", 16, 117, 105, 126, 15, 50);
+        pidgey.evolutions.add(pidgeotto);
+    }
+
+    private static IVScanResult result(Pokemon pokemon, double level, int... indexes) {
+        IVScanResult scan = new IVScanResult(pokemon, new LevelRange(level), 100, Pokemon.Gender.N, false);
+        for (int index : indexes) {
+            scan.addIVCombination(IVCombinationSet.attackOf(index), IVCombinationSet.defenseOf(index),
+                    IVCombinationSet.staminaOf(index));
+        }
+        return scan;
+    }
+
+    private void scan(Pokemon pokemon, double level, String uniqueID, int... indexes) {
+        IVScanResult scan = result(pokemon, level, indexes);
+        container.prevScan = container.currScan;
+        container.currScan = scan;
+        container.addCurrScanToHistory(uniqueID);
+    }
+
+    @Test
+    public void testIntersectsEveryScanOfTheSamePokemon() throws Exception {
+        scan(pidgey, 10, "a", 1, 2, 3, 4, 5);
+        assertFalse(container.isScanRefinable());
+
+        scan(pidgey, 10.5, "b", 2, 3, 4, 5, 6);
+        scan(pidgeotto, 10.5, "c", 1, 3, 4, 5, 7);
+        scan(pidgeotto, 11, "d", 3, 4, 8);
+
+        assertTrue(container.isScanRefinable());
+        IVCombinationSet intersection = container.getLatestIVIntersection();
+        assertEquals(2, intersection.size());
+        assertTrue(intersection.containsIndex(3));
+        assertTrue(intersection.containsIndex(4));
+    }
+
+    @Test
+    public void testUnrelatedPokemonStartsNewHistory() throws Exception {
+        scan(pidgeotto, 20, "a", 1, 2);
+        scan(pidgey, 21, "b", 2, 3);
+
+        assertFalse(container.isScanRefinable());
+        assertEquals("", container.getPrevScanName());
+    }
+
+    @Test
+    public void testSameUniqueIDJoinsEarlierHistory() throws Exception {
+        scan(pidgey, 10, "a", 1, 2, 3);
+        scan(new Pokemon("Rattata", "Rattata", 18, 103, 70, 60, -1, 25), 30, "b", 5);
+        scan(pidgey, 10, "a", 2, 3, 4);
+
+        assertTrue(container.isScanRefinable());
+        assertEquals("Pidgey", container.getPrevScanName());
+        assertEquals(2, container.getLatestIVIntersection().size());
+    }
+
+    @Test
+    public void testDifferentPokemonOfTheSameSpeciesStopsTheChain() throws Exception {
+        scan(pidgey, 10, "a", 1, 2, 3);
+        scan(pidgey, 10.5, "b", 2, 3, 4);
+        // Looks like a power up, but can't have the IVs of the first scan
+        scan(pidgey, 11, "c", 4, 5);
+
+        assertTrue(container.isScanRefinable());
+        IVCombinationSet intersection = container.getLatestIVIntersection();
+        assertEquals(1, intersection.size());
+        assertTrue(intersection.containsIndex(4));
+
+        // An entirely different pidgey starts over
+        scan(pidgey, 12, "d", 8, 9);
+        assertFalse(container.isScanRefinable());
+        assertEquals(2, container.getLatestIVIntersection().size());
+
+        // And the next power up of it only refines with it
+        scan(pidgey, 12.5, "e", 9, 10);
+        assertTrue(container.isScanRefinable());
+        assertEquals(1, container.getLatestIVIntersection().size());
+    }
+
+    @Test
+    public void testEarlierSessionScansAreAddedToNewHistory() throws Exception {
+        scan(pidgey, 10, "a", 1, 2, 3, 4);
+        assertTrue(container.addEarlierScans(Arrays.asList(result(pidgey, 9, 1, 2, 3), result(pidgey, 9.5, 2, 3))));
+
+        assertTrue(container.isScanRefinable());
+        assertEquals(2, container.getLatestIVIntersection().size());
+
+        // Scans from this session are in the store too
+        scan(pidgey, 10.5, "a", 2, 3);
+        assertFalse(container.addEarlierScans(Arrays.asList(result(pidgey, 9, 1, 2, 3))));
+    }
+
+    @Test
+    public void testEarlierSessionScansOfAnotherPokemonAreSkipped() throws Exception {
+        scan(pidgey, 10, "a", 1, 2, 3, 4);
+        // The oldest record is a different pidgey with the same name, CP and HP
+        assertTrue(container.addEarlierScans(Arrays.asList(result(pidgey, 10, 7, 8), result(pidgey, 9, 2, 3, 5))));
+        assertEquals(2, container.getLatestIVIntersection().size());
+        assertEquals("Pidgey", container.getPrevScanName());
+
+        scan(pidgey, 20, "b", 9);
+        assertFalse(container.addEarlierScans(Arrays.asList(result(pidgey, 19, 10))));
+        assertFalse(container.isScanRefinable());
+    }
+}
@@ -0,0 +1,153 @@
+package com.kamron.pogoiv.scanlogic;
+
+import com.kamron.pogoiv.utils.LevelRange;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanHistoryStoreTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("scanHistory", ".bin");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    private static ScanHistoryStore.Record record(String uniqueID, long timestamp, int... indexes) {
+        IVCombinationSet combinations = new IVCombinationSet();
+        for (int index : indexes) {
+            combinations.addIndex(index);
+        }
+        return new ScanHistoryStore.Record(16, -1, uniqueID, timestamp, new LevelRange(19.5, 21), 402, 61,
+                Pokemon.Gender.F, true, combinations);
+    }
+
+    private static IVCombinationSet firstCombinations(int count) {
+        IVCombinationSet combinations = new IVCombinationSet();
+        for (int i = 0; i < count; i++) {
+            combinations.addIndex(i);
+        }
+        return combinations;
+    }
+
+    private static void assertRecordEquals(ScanHistoryStore.Record expected, ScanHistoryStore.Record actual) {
+        assertEquals(expected.pokemonNumber, actual.pokemonNumber);
+        assertEquals(expected.formIndex, actual.formIndex);
+        assertEquals(expected.uniqueID, actual.uniqueID);
+        assertEquals(expected.timestamp, actual.timestamp);
+        assertEquals(expected.estimatedPokemonLevel.min, actual.estimatedPokemonLevel.min, 0);
+        assertEquals(expected.estimatedPokemonLevel.max, actual.estimatedPokemonLevel.max, 0);
+        assertEquals(expected.cp, actual.cp);
+        assertEquals(expected.hp, actual.hp);
+        assertEquals(expected.gender, actual.gender);
+        assertEquals(expected.isLucky, actual.isLucky);
+        assertEquals(expected.combinations, actual.combinations);
+    }
+
+    @Test
+    public void testRecordsSurviveReopening() throws Exception {
+        ScanHistoryStore store = new ScanHistoryStore(file);
+        ScanHistoryStore.Record first = record("a", 1000, 5, 17, 4095);
+        ScanHistoryStore.Record other = record("b", 2000, 3);
+        ScanHistoryStore.Record second = record("a", 3000, 17);
+        store.append(first);
+        store.append(other);
+        store.append(second);
+        // Pending records are found before they're written
+        assertEquals(2, store.getByUniqueID("a").size());
+        store.flush().get();
+
+        List<ScanHistoryStore.Record> records = new ScanHistoryStore(file).getByUniqueID("a");
+        assertEquals(2, records.size());
+        assertRecordEquals(first, records.get(0));
+        assertRecordEquals(second, records.get(1));
+        assertEquals(0, new ScanHistoryStore(file).getByUniqueID("c").size());
+    }
+
+    @Test
+    public void testLookupBySpecies() throws Exception {
+        ScanHistoryStore store = new ScanHistoryStore(file);
+        ScanHistoryStore.Record rattata = new ScanHistoryStore.Record(18, 0, "c", 2000, new LevelRange(20), 300, 40,
+                Pokemon.Gender.M, false, firstCombinations(3));
+        store.append(record("a", 1000, 1));
+        store.append(rattata);
+        store.flush().get();
+        store.append(record("b", 3000, 2));
+        assertTrue(store.hasScanned("b"));
+        assertFalse(store.hasScanned("d"));
+
+        // One written and one pending record
+        List<ScanHistoryStore.Record> records = store.getByPokemonNumber(16);
+        assertEquals(2, records.size());
+        assertEquals("a", records.get(0).uniqueID);
+        assertEquals("b", records.get(1).uniqueID);
+        store.flush().get();
+
+        ScanHistoryStore reopened = new ScanHistoryStore(file);
+        assertEquals(2, reopened.getByPokemonNumber(16).size());
+        assertRecordEquals(rattata, reopened.getByPokemonNumber(18).get(0));
+        assertEquals(0, reopened.getByPokemonNumber(19).size());
+    }
+
+    @Test
+    public void testTruncatedRecordIsDropped() throws Exception {
+        ScanHistoryStore store = new ScanHistoryStore(file);
+        store.append(record("a", 1000, 1, 2, 3));
+        store.append(record("a", 2000, 2, 3));
+        store.flush().get();
+
+        // The app was killed while writing the second record
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 3);
+        raf.close();
+
+        ScanHistoryStore reopened = new ScanHistoryStore(file);
+        List<ScanHistoryStore.Record> records = reopened.getByUniqueID("a");
+        assertEquals(1, records.size());
+        assertEquals(1000, records.get(0).timestamp);
+
+        // New records are appended after the last valid one
+        reopened.append(record("a", 3000, 3));
+        reopened.flush().get();
+        records = new ScanHistoryStore(file).getByUniqueID("a");
+        assertEquals(2, records.size());
+        assertEquals(1000, records.get(0).timestamp);
+        assertEquals(3000, records.get(1).timestamp);
+    }
+
+    @Test
+    public void testListAndBitmapEncoding() throws Exception {
+        ScanHistoryStore store = new ScanHistoryStore(file);
+        store.append(record("list", 1000, 0, 1, 2));
+        store.flush().get();
+        long listFileLength = file.length();
+
+        ScanHistoryStore.Record many = new ScanHistoryStore.Record(16, -1, "bitmap", 2000, new LevelRange(20), 402,
+                61, Pokemon.Gender.N, false, firstCombinations(2000));
+        store.append(many);
+        store.flush().get();
+        // 64 longs instead of 2000 shorts
+        assertTrue(file.length() - listFileLength < 2000 * 2);
+
+        ScanHistoryStore reopened = new ScanHistoryStore(file);
+        assertEquals(new IVCombinationSet(record("", 0, 0, 1, 2).combinations),
+                reopened.getByUniqueID("list").get(0).combinations);
+        assertRecordEquals(many, reopened.getByUniqueID("bitmap").get(0));
+    }
+}